@@ -0,0 +1,113 @@
+package uz.billsplitter2.demo.benchmark;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// бд бенчмарков с поднятым приложением: по умолчанию h2 в памяти, с -PjmhJdbcUrl=... - внешняя бд
+// (postgresql), схему в обоих случаях создает hibernate; у h2 нет сети, поэтому задержку круга до бд
+// можно добавить к каждому выполнению запроса и к commit/rollback
+final class BenchmarkDatabase {
+
+    static final String URL_PROPERTY = "benchmark.jdbc.url";
+
+    private BenchmarkDatabase() {
+    }
+
+    // свойства datasource для аргументов командной строки приложения
+    static Map<String, Object> properties(String name) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        String url = System.getProperty(URL_PROPERTY);
+        if (url != null) {
+            properties.put("spring.datasource.url", url);
+            properties.put("spring.datasource.username", System.getProperty("benchmark.jdbc.username", "postgres"));
+            properties.put("spring.datasource.password", System.getProperty("benchmark.jdbc.password", "postgres"));
+        } else {
+            properties.put("spring.datasource.url", "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+            properties.put("spring.datasource.driver-class-name", "org.h2.Driver");
+            properties.put("spring.datasource.username", "sa");
+            properties.put("spring.datasource.password", "");
+            properties.put("spring.jpa.properties.hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        }
+        properties.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+        properties.put("spring.flyway.enabled", false);
+        return properties;
+    }
+
+    // задержка круга до бд: DataSource приложения оборачивается до того, как его получат jpa и остальные бины
+    static ApplicationContextInitializer<ConfigurableApplicationContext> latency(Duration roundTrip) {
+        return context -> {
+            if (roundTrip.isZero()) {
+                return;
+            }
+            context.getBeanFactory().addBeanPostProcessor(new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource && !(bean instanceof LatencyDataSource)
+                            ? new LatencyDataSource(dataSource, roundTrip)
+                            : bean;
+                }
+            });
+        };
+    }
+
+    private static final class LatencyDataSource extends DelegatingDataSource {
+        private final long roundTripNanos;
+
+        private LatencyDataSource(DataSource target, Duration roundTrip) {
+            super(target);
+            this.roundTripNanos = roundTrip.toNanos();
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return wrap(Connection.class, super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return wrap(Connection.class, super.getConnection(username, password));
+        }
+
+        private <T> T wrap(Class<T> type, T target) {
+            InvocationHandler handler = (proxy, method, args) -> {
+                String name = method.getName();
+                if (name.startsWith("execute") || name.equals("commit") || name.equals("rollback")) {
+                    // sleep отпускает несущий поток виртуального потока, как ожидание ответа сокета
+                    Thread.sleep(Duration.ofNanos(roundTripNanos));
+                }
+                Object result = invoke(target, method, args);
+                return switch (result) {
+                    case CallableStatement statement when name.equals("prepareCall") -> wrap(CallableStatement.class, statement);
+                    case PreparedStatement statement when name.equals("prepareStatement") -> wrap(PreparedStatement.class, statement);
+                    case Statement statement when name.equals("createStatement") -> wrap(Statement.class, statement);
+                    case null, default -> result;
+                };
+            };
+            return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package uz.billsplitter2.demo.benchmark;
+
+import org.springframework.test.util.ReflectionTestUtils;
+import uz.billsplitter2.demo.dto.request.BillRequestDto;
+import uz.billsplitter2.demo.dto.request.OrderItemRequestDto;
+import uz.billsplitter2.demo.entity.Bill;
+import uz.billsplitter2.demo.entity.Guest;
+import uz.billsplitter2.demo.entity.OrderItem;
+import uz.billsplitter2.demo.entity.Party;
+import uz.billsplitter2.demo.entity.RestaurantTable;
+import uz.billsplitter2.demo.entity.Waiter;
+import uz.billsplitter2.demo.mapper.BillMapper;
+import uz.billsplitter2.demo.mapper.BillMapperImpl;
+import uz.billsplitter2.demo.mapper.GuestMapperImpl;
+import uz.billsplitter2.demo.mapper.OrderItemMapperImpl;
+import uz.billsplitter2.demo.service.BillCalculationService;
+import uz.billsplitter2.demo.service.impl.BillCalculationServiceImpl;
+import uz.billsplitter2.demo.service.impl.FixedPointBillCalculationServiceImpl;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+// общие данные для бенчмарков: счета, сущности и движки без поднятия spring-контекста
+final class BenchmarkFixtures {
+
+    static final BigDecimal SERVICE_FEE_PERCENT = new BigDecimal("10");
+
+    private BenchmarkFixtures() {
+    }
+
+    static BillCalculationService engine(String name) {
+        BillCalculationServiceImpl decimalEngine = new BillCalculationServiceImpl();
+        ReflectionTestUtils.setField(decimalEngine, "serviceFeePercent", SERVICE_FEE_PERCENT);
+        if ("decimal".equals(name)) {
+            return decimalEngine;
+        }
+        FixedPointBillCalculationServiceImpl fixedPointEngine = new FixedPointBillCalculationServiceImpl(decimalEngine);
+        ReflectionTestUtils.setField(fixedPointEngine, "serviceFeePercent", SERVICE_FEE_PERCENT);
+        return fixedPointEngine;
+    }
+
+    static BillMapper billMapper() {
+        OrderItemMapperImpl orderItemMapper = new OrderItemMapperImpl();
+        ReflectionTestUtils.setField(orderItemMapper, "guestMapper", new GuestMapperImpl());
+        BillMapperImpl billMapper = new BillMapperImpl();
+        ReflectionTestUtils.setField(billMapper, "orderItemMapper", orderItemMapper);
+        return billMapper;
+    }
+
+    static BillRequestDto request(BillShape shape, long seed) {
+        return bill(shape.items, shape.guests, shape.maxParticipants, seed).toBillRequestDto();
+    }
+
+    // открытый счет с позициями и гостями, как после загрузки из бд
+    static Bill bill(int itemCount, int guestCount, int maxParticipants, long seed) {
+        Random random = new Random(seed);
+        OffsetDateTime now = OffsetDateTime.now();
+
+        Waiter waiter = Waiter.builder().keycloakId("kc-bench").username("bench").email("bench@example.com").build();
+        waiter.setId(UUID.randomUUID());
+        RestaurantTable table = RestaurantTable.builder().tableNumber("B1").capacity(guestCount).build();
+        table.setId(UUID.randomUUID());
+        Party party = Party.builder().table(table).waiter(waiter).build();
+        party.setId(UUID.randomUUID());
+
+        List<Guest> guests = new ArrayList<>(guestCount);
+        for (int i = 0; i < guestCount; i++) {
+            Guest guest = Guest.builder().id(UUID.randomUUID()).name("Guest " + i).createdAt(now).build();
+            party.addGuest(guest);
+            guests.add(guest);
+        }
+
+        Bill bill = Bill.builder()
+                .party(party)
+                .billNumber("BILL-BENCH-" + seed)
+                .serviceFeePercent(SERVICE_FEE_PERCENT)
+                .build();
+        bill.setId(UUID.randomUUID());
+        bill.setCreatedAt(now);
+        bill.setUpdatedAt(now);
+
+        for (int i = 0; i < itemCount; i++) {
+            int participants = 1 + random.nextInt(Math.min(maxParticipants, guestCount));
+            int offset = random.nextInt(guestCount);
+            List<Guest> itemGuests = new ArrayList<>(participants);
+            for (int j = 0; j < participants; j++) {
+                itemGuests.add(guests.get((offset + j) % guestCount));
+            }
+            OrderItem item = OrderItem.builder()
+                    .id(UUID.randomUUID())
+                    .name("Item " + i)
+                    .price(BigDecimal.valueOf(100 + random.nextInt(20_000), 2))
+                    .quantity(1)
+                    .guests(itemGuests)
+                    .createdAt(now)
+                    .build();
+            bill.addOrderItem(item);
+        }
+        return bill;
+    }
+
+    // худший случай раздачи остатка: каждая позиция делится на всех с остатком около n/2 копеек
+    static BillRequestDto remainderWorstCase(int participants, int items) {
+        List<String> names = new ArrayList<>(participants);
+        for (int i = 0; i < participants; i++) {
+            names.add("Guest " + i);
+        }
+        List<OrderItemRequestDto> requestItems = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            long cents = (long) participants * (100 + i) + participants / 2 - 1;
+            requestItems.add(new OrderItemRequestDto("Shared " + i, BigDecimal.valueOf(cents, 2), names));
+        }
+        return new BillRequestDto(requestItems);
+    }
+}
@@ -0,0 +1,69 @@
+package uz.billsplitter2.demo.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import uz.billsplitter2.demo.dto.request.BillRequestDto;
+import uz.billsplitter2.demo.dto.response.BillDto;
+import uz.billsplitter2.demo.dto.response.BillResponseDto;
+import uz.billsplitter2.demo.entity.Bill;
+import uz.billsplitter2.demo.mapper.BillMapper;
+import uz.billsplitter2.demo.service.BillCalculationService;
+
+import java.util.concurrent.TimeUnit;
+
+// in-memory часть пути closeBill: сущность -> запрос расчета -> split -> BillDto
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BillConversionBenchmark {
+
+    @Param({"200"})
+    int items;
+
+    Bill bill;
+    BillMapper billMapper;
+
+    @Setup
+    public void setUp() {
+        bill = BenchmarkFixtures.bill(items, 12, 4, 42);
+        billMapper = BenchmarkFixtures.billMapper();
+    }
+
+    // движок нужен только полному пути закрытия, остальные замеры от него не зависят
+    @State(Scope.Benchmark)
+    public static class EngineState {
+
+        @Param({"decimal", "fixed-point"})
+        String engine;
+
+        BillCalculationService calculationService;
+
+        @Setup
+        public void setUp() {
+            calculationService = BenchmarkFixtures.engine(engine);
+        }
+    }
+
+    @Benchmark
+    public BillRequestDto toBillRequestDto() {
+        return bill.toBillRequestDto();
+    }
+
+    @Benchmark
+    public BillDto mapToDto() {
+        return billMapper.toDto(bill);
+    }
+
+    @Benchmark
+    public BillDto closeBillPipeline(EngineState state) {
+        BillResponseDto calculation = state.calculationService.split(bill.toBillRequestDto());
+        bill.applyCalculationResult(calculation);
+        return billMapper.toDto(bill);
+    }
+}
@@ -0,0 +1,241 @@
+package uz.billsplitter2.demo.benchmark;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+import uz.billsplitter2.demo.DemoApplication;
+import uz.billsplitter2.demo.entity.Bill;
+import uz.billsplitter2.demo.entity.Guest;
+import uz.billsplitter2.demo.entity.Party;
+import uz.billsplitter2.demo.entity.RestaurantTable;
+import uz.billsplitter2.demo.entity.Waiter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+// нагрузка на POST /api/v1/bills/{id}/items через настоящий tomcat: platform - пул потоков tomcat,
+// virtual - профиль virtual-threads; запрос блокируется на бд (блокировка строки счета, insert позиции
+// и гостей, commit), поэтому у каждого потока jmh свой счет - иначе потоки ждали бы друг друга на строке
+// счета; h2 в памяти не ждет сети, круг до бд задает dbLatencyMicros, внешнюю бд - -PjmhJdbcUrl
+// (BenchmarkDatabase); пул hikari тот же, на 10 соединений, проверка jwt по локальному jwks
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(BillItemsLoadBenchmark.THREADS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+public class BillItemsLoadBenchmark {
+
+    static final int THREADS = 64;
+
+    private static final String SUBJECT = "kc-load-waiter";
+    private static final int GUESTS = 6;
+
+    @Param({"platform", "virtual"})
+    String threads;
+
+    // круг до бд на каждый запрос и commit, мкс; 0 - без добавленной задержки
+    @Param({"0", "1000"})
+    int dbLatencyMicros;
+
+    HttpServer jwks;
+    ConfigurableApplicationContext context;
+    String authorization;
+    // счет потока: адрес позиций и тело запроса с гостями его компании
+    List<URI> itemsUris;
+    List<byte[]> itemBodies;
+    final AtomicInteger nextBill = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class BillSlot {
+        URI itemsUri;
+        byte[] itemBody;
+
+        @Setup(Level.Trial)
+        public void setUp(BillItemsLoadBenchmark benchmark) {
+            int bill = benchmark.nextBill.getAndIncrement() % benchmark.itemsUris.size();
+            itemsUri = benchmark.itemsUris.get(bill);
+            itemBody = benchmark.itemBodies.get(bill);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        // keep-alive соединений на хост у HttpURLConnection по умолчанию 5, нагрузка идет из 64 потоков
+        System.setProperty("http.maxConnections", "128");
+
+        RSAKey key = new RSAKeyGenerator(2048).keyID("load").generate();
+        jwks = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        byte[] keys = new JWKSet(key.toPublicJWK()).toString().getBytes(StandardCharsets.UTF_8);
+        jwks.createContext("/realms/billsplitter/protocol/openid-connect/certs", exchange -> {
+            exchange.sendResponseHeaders(200, keys.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(keys);
+            }
+        });
+        jwks.start();
+        String issuer = "http://127.0.0.1:" + jwks.getAddress().getPort() + "/realms/billsplitter";
+
+        SpringApplicationBuilder application = new SpringApplicationBuilder(DemoApplication.class)
+                .initializers(BenchmarkDatabase.latency(Duration.ofNanos(dbLatencyMicros * 1000L)));
+        if ("virtual".equals(threads)) {
+            application.profiles("virtual-threads");
+        }
+        // аргументами командной строки, иначе application.yaml перекрывает datasource и flyway
+        context = application.run(arguments(issuer));
+
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        itemsUris = new ArrayList<>(THREADS);
+        itemBodies = new ArrayList<>(THREADS);
+        for (Map.Entry<UUID, List<UUID>> bill : seed().entrySet()) {
+            itemsUris.add(URI.create("http://127.0.0.1:" + port + "/api/v1/bills/" + bill.getKey() + "/items"));
+            itemBodies.add(itemBody(bill.getValue()));
+        }
+        authorization = "Bearer " + token(key, issuer);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        jwks.stop(0);
+    }
+
+    @Benchmark
+    public int addItem(BillSlot slot) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) slot.itemsUri.toURL().openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Authorization", authorization);
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setFixedLengthStreamingMode(slot.itemBody.length);
+        try (OutputStream body = connection.getOutputStream()) {
+            body.write(slot.itemBody);
+        }
+        int status = connection.getResponseCode();
+        if (status != 201) {
+            throw new IllegalStateException("POST items returned " + status);
+        }
+        // тело дочитывается до конца, иначе соединение не вернется в keep-alive
+        try (InputStream body = connection.getInputStream()) {
+            return body.readAllBytes().length;
+        }
+    }
+
+    private String[] arguments(String issuer) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("server.port", 0);
+        properties.putAll(BenchmarkDatabase.properties("load-" + threads));
+        properties.put("spring.security.oauth2.resourceserver.jwt.issuer-uri", issuer);
+        properties.put("spring.security.oauth2.resourceserver.jwt.jwk-set-uri", issuer + "/protocol/openid-connect/certs");
+        properties.put("keycloak.admin.server-url", "http://127.0.0.1:1");
+        properties.put("app.analytics.rollups.backfill", "never");
+        // virtual: 64 клиента ждут слот ConcurrencyGuardFilter, а не соединение hikari - возврат соединения
+        // ожидающему крутится на Thread.yield (ConcurrentBag.requite) и на одном ядре занимает несущие потоки;
+        // измеряется ожидание, а не отказы 503 по таймауту
+        properties.put("app.virtual-threads.guard.permits", 10);
+        properties.put("app.virtual-threads.guard.wait-timeout", "60s");
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.uz.billsplitter2.demo", "WARN");
+        properties.put("logging.level.org.springframework.security", "WARN");
+        return properties.entrySet().stream()
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+    }
+
+    // официант и по открытому счету на поток: свой стол и компания из 6 гостей; счет -> гости его компании
+    private Map<UUID, List<UUID>> seed() {
+        EntityManager entityManager = context.getBean(EntityManager.class);
+        return context.getBean(TransactionTemplate.class).execute(status -> {
+            Waiter waiter = Waiter.builder().keycloakId(SUBJECT).username("load-waiter").email("load@example.com").build();
+            entityManager.persist(waiter);
+
+            Map<UUID, List<UUID>> bills = new LinkedHashMap<>();
+            for (int t = 0; t < THREADS; t++) {
+                RestaurantTable table = RestaurantTable.builder().tableNumber("T-LOAD-" + t).capacity(GUESTS).build();
+                entityManager.persist(table);
+                Party party = Party.builder().table(table).waiter(waiter).build();
+                entityManager.persist(party);
+
+                List<UUID> guests = new ArrayList<>(GUESTS);
+                for (int i = 0; i < GUESTS; i++) {
+                    Guest guest = Guest.builder().party(party).name("Guest " + i).build();
+                    entityManager.persist(guest);
+                    guests.add(guest.getId());
+                }
+
+                Bill bill = Bill.builder().party(party).billNumber("BILL-LOAD-" + t).build();
+                entityManager.persist(bill);
+                bills.put(bill.getId(), guests);
+            }
+            return bills;
+        });
+    }
+
+    // позиция на трех гостей компании, делится поровну
+    private static byte[] itemBody(List<UUID> guests) {
+        String guestIds = guests.subList(0, 3).stream()
+                .map(id -> "\"" + id + "\"")
+                .collect(Collectors.joining(","));
+        return ("{\"name\":\"Tea\",\"price\":12.50,\"quantity\":1,\"guestIds\":[" + guestIds + "]}")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String token(RSAKey key, String issuer) throws JOSEException {
+        Instant now = Instant.now();
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject(SUBJECT)
+                .issuer(issuer)
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plus(Duration.ofHours(2))))
+                .claim("preferred_username", "load-waiter")
+                .claim("realm_access", Map.of("roles", List.of("WAITER")))
+                .build();
+        SignedJWT jwt = new SignedJWT(
+                new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).type(JOSEObjectType.JWT).build(),
+                claims);
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+}
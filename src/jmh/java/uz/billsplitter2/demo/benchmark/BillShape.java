@@ -0,0 +1,18 @@
+package uz.billsplitter2.demo.benchmark;
+
+// форма счета: количество позиций, гостей и максимум участников на позицию
+public enum BillShape {
+    SINGLE(1, 1, 1),
+    TABLE(50, 12, 4),
+    BANQUET(500, 40, 40);
+
+    final int items;
+    final int guests;
+    final int maxParticipants;
+
+    BillShape(int items, int guests, int maxParticipants) {
+        this.items = items;
+        this.guests = guests;
+        this.maxParticipants = maxParticipants;
+    }
+}
@@ -0,0 +1,149 @@
+package uz.billsplitter2.demo.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+import uz.billsplitter2.demo.DemoApplication;
+import uz.billsplitter2.demo.config.IdempotencyFilter;
+import uz.billsplitter2.demo.entity.RestaurantTable;
+import uz.billsplitter2.demo.repository.RestaurantTableRepository;
+import uz.billsplitter2.demo.service.IdempotencyStore;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// накладные расходы IdempotencyFilter на POST /api/v1/bills (перцентили):
+// withoutKey - запрос без заголовка, newKey - захват ключа и запись ответа в бд,
+// replayedKey - повтор с тем же ключом из кэша; контроллер - одна транзакция с insert строки, как
+// createBill, поэтому добавка фильтра - разница newKey и withoutKey: ключ захватывается в памяти,
+// строка ключа - еще один insert в транзакции контроллера (круг до бд без своего commit), ответ пишется
+// в фоне после отправки; задержку сети задает dbLatencyMicros или внешняя бд (BenchmarkDatabase);
+// запуск: -PjmhIncludes=IdempotencyFilterBenchmark -PjmhWarmupIterations=8
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IdempotencyFilterBenchmark {
+
+    private static final byte[] REQUEST = "{\"partyId\":\"6f1c2b1e-3c4d-4e5f-8a9b-0c1d2e3f4a5b\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RESPONSE = ("{\"id\":\"0b7e3f2a-1c2d-4e5f-8a9b-0c1d2e3f4a5b\",\"billNumber\":\"BILL-20261018-000001\","
+            + "\"status\":\"OPEN\",\"itemsTotal\":0.00,\"serviceFee\":0.00,\"total\":0.00,\"items\":[],\"guestShares\":[]}")
+            .getBytes(StandardCharsets.UTF_8);
+
+    // круг до бд на каждый запрос и commit, мкс; 0 - без добавленной задержки
+    @Param({"0", "500"})
+    int dbLatencyMicros;
+
+    ConfigurableApplicationContext context;
+    IdempotencyFilter filter;
+    TransactionTemplate transactionTemplate;
+    RestaurantTableRepository tableRepository;
+    Authentication authentication;
+    AtomicLong keys = new AtomicLong();
+    AtomicLong tables = new AtomicLong();
+
+    // контроллер заменен транзакцией с одним insert и записью готового ответа
+    final FilterChain created = (request, response) -> {
+        request.getInputStream().readAllBytes();
+        transactionTemplate.executeWithoutResult(status -> tableRepository.save(RestaurantTable.builder()
+                .tableNumber("B-" + tables.incrementAndGet())
+                .capacity(4)
+                .build()));
+        HttpServletResponse http = (HttpServletResponse) response;
+        http.setStatus(201);
+        http.setContentType("application/json");
+        http.getOutputStream().write(RESPONSE);
+    };
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = new SpringApplicationBuilder(DemoApplication.class)
+                .initializers(BenchmarkDatabase.latency(Duration.ofNanos(dbLatencyMicros * 1000L)))
+                .run(arguments());
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        tableRepository = context.getBean(RestaurantTableRepository.class);
+        filter = new IdempotencyFilter(context.getBean(IdempotencyStore.class), List.of("/api/v1/bills"),
+                Duration.ofSeconds(10), context.getBean(ObjectMapper.class));
+        authentication = new TestingAuthenticationToken("kc-bench-waiter", null);
+        // ответ, который повторяет replayedKey
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+        filter.doFilter(request("replayed"), new MockHttpServletResponse(), created);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+        context.close();
+    }
+
+    @Benchmark
+    public int withoutKey() throws Exception {
+        return perform(request(null));
+    }
+
+    @Benchmark
+    public int newKey() throws Exception {
+        return perform(request("key-" + keys.incrementAndGet()));
+    }
+
+    @Benchmark
+    public int replayedKey() throws Exception {
+        return perform(request("replayed"));
+    }
+
+    private int perform(MockHttpServletRequest request) throws Exception {
+        // SecurityContextHolder привязан к потоку, а потоки jmh не совпадают с потоком setUp
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, created);
+        return response.getStatus();
+    }
+
+    private MockHttpServletRequest request(String key) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/bills");
+        if (key != null) {
+            request.addHeader(IdempotencyFilter.HEADER, key);
+        }
+        request.setContentType("application/json");
+        request.setContent(REQUEST);
+        return request;
+    }
+
+    private String[] arguments() {
+        String issuer = "http://127.0.0.1:1/realms/billsplitter";
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("server.port", 0);
+        properties.putAll(BenchmarkDatabase.properties("idempotency"));
+        properties.put("spring.security.oauth2.resourceserver.jwt.issuer-uri", issuer);
+        properties.put("spring.security.oauth2.resourceserver.jwt.jwk-set-uri", issuer + "/protocol/openid-connect/certs");
+        properties.put("keycloak.admin.server-url", "http://127.0.0.1:1");
+        properties.put("app.analytics.rollups.backfill", "never");
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.uz.billsplitter2.demo", "WARN");
+        return properties.entrySet().stream()
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+    }
+}
@@ -0,0 +1,100 @@
+package uz.billsplitter2.demo.benchmark;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import uz.billsplitter2.demo.config.JwtDecoderConfig;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// JwtDecoder.decode на горячих токенах (одни и те же bearer повторяются от запроса к запросу):
+// nimbus - проверка подписи и claims на каждый вызов, cached - JwtDecoderConfig с кэшем проверенных токенов
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JwtDecodeBenchmark {
+
+    private static final String ISSUER = "http://localhost:8080/realms/billsplitter";
+
+    @Param({"nimbus", "cached"})
+    String decoder;
+
+    // активных сессий официантов
+    @Param({"64"})
+    int tokens;
+
+    JwtDecoder jwtDecoder;
+    String[] hotTokens;
+    int next;
+
+    @Setup
+    public void setUp() throws JOSEException {
+        RSAKey key = new RSAKeyGenerator(2048).keyID("bench").generate();
+
+        if ("nimbus".equals(decoder)) {
+            NimbusJwtDecoder nimbus = NimbusJwtDecoder.withPublicKey(key.toRSAPublicKey()).build();
+            nimbus.setJwtValidator(JwtValidators.createDefaultWithIssuer(ISSUER));
+            jwtDecoder = nimbus;
+        } else {
+            jwtDecoder = new JwtDecoderConfig().jwtDecoder(new ImmutableJWKSet<>(new JWKSet(key.toPublicJWK())),
+                    new SimpleMeterRegistry(), ISSUER, 10_000, Duration.ofMinutes(5));
+        }
+
+        hotTokens = new String[tokens];
+        for (int i = 0; i < tokens; i++) {
+            hotTokens[i] = token(key, "kc-waiter-" + i);
+        }
+    }
+
+    @Benchmark
+    public Jwt decode() {
+        String token = hotTokens[next];
+        next = (next + 1) % hotTokens.length;
+        return jwtDecoder.decode(token);
+    }
+
+    // access-токен keycloak: роли realm и клиента, как в бою
+    private static String token(RSAKey key, String subject) throws JOSEException {
+        Instant now = Instant.now();
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject(subject)
+                .issuer(ISSUER)
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plus(Duration.ofHours(1))))
+                .claim("preferred_username", subject)
+                .claim("realm_access", Map.of("roles", List.of("WAITER", "offline_access", "uma_authorization")))
+                .claim("resource_access", Map.of("billsplitter-api", Map.of("roles", List.of("WAITER"))))
+                .build();
+        SignedJWT jwt = new SignedJWT(
+                new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).type(JOSEObjectType.JWT).build(),
+                claims);
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+}
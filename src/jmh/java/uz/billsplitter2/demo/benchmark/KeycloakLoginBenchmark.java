@@ -0,0 +1,139 @@
+package uz.billsplitter2.demo.benchmark;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.core5.io.CloseMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestClient;
+import uz.billsplitter2.demo.config.RestClientConfig;
+import uz.billsplitter2.demo.dto.request.WaiterLoginRequest;
+import uz.billsplitter2.demo.dto.response.WaiterAuthResponse;
+import uz.billsplitter2.demo.entity.Waiter;
+import uz.billsplitter2.demo.mapper.WaiterMapperImpl;
+import uz.billsplitter2.demo.repository.WaiterRepository;
+import uz.billsplitter2.demo.service.impl.WaiterAuthServiceImpl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// нагрузочный замер логина официанта против локальной заглушки token endpoint:
+// simple - прежний HttpURLConnection, pooled - пул apache httpclient 5 из RestClientConfig;
+// Throughput - логинов в мс, SampleTime - распределение задержки с p0.99
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(32)
+public class KeycloakLoginBenchmark {
+
+    private static final String TOKEN_RESPONSE =
+            "{\"access_token\":\"access\",\"refresh_token\":\"refresh\",\"expires_in\":300,\"token_type\":\"Bearer\"}";
+
+    @Param({"simple", "pooled"})
+    String client;
+
+    // время ответа keycloak на password grant
+    @Param({"2"})
+    long tokenLatencyMillis;
+
+    HttpServer server;
+    ExecutorService serverExecutor;
+    CloseableHttpClient httpClient;
+    WaiterAuthServiceImpl authService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // без TCP_NODELAY заглушка отвечает с задержкой delayed ack (~40 мс) и замер меряет только ее
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        serverExecutor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 512);
+        server.setExecutor(serverExecutor);
+        server.createContext("/token", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            sleep(tokenLatencyMillis);
+            byte[] body = TOKEN_RESPONSE.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        authService = new WaiterAuthServiceImpl(restClient(), this::decode, waiterRepository(), new WaiterMapperImpl());
+        ReflectionTestUtils.setField(authService, "tokenUri", "http://127.0.0.1:" + server.getAddress().getPort() + "/token");
+        ReflectionTestUtils.setField(authService, "clientId", "billsplitter-api");
+        ReflectionTestUtils.setField(authService, "clientSecret", "");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (httpClient != null) {
+            httpClient.close(CloseMode.IMMEDIATE);
+        }
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public WaiterAuthResponse login() {
+        return authService.login(new WaiterLoginRequest("alice", "secret"));
+    }
+
+    private RestClient restClient() {
+        if ("simple".equals(client)) {
+            SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+            requestFactory.setConnectTimeout((int) Duration.ofSeconds(5).toMillis());
+            requestFactory.setReadTimeout((int) Duration.ofSeconds(10).toMillis());
+            return RestClient.builder().requestFactory(requestFactory).build();
+        }
+
+        RestClientConfig config = new RestClientConfig();
+        httpClient = config.keycloakHttpClient(Duration.ofSeconds(5), Duration.ofSeconds(10), Duration.ofSeconds(30),
+                100, 50, Duration.ofSeconds(5));
+        return config.restClient(RestClient.builder(), httpClient);
+    }
+
+    private Jwt decode(String token) {
+        return Jwt.withTokenValue(token).header("alg", "none").subject("kc-alice").claim("preferred_username", "alice").build();
+    }
+
+    private WaiterRepository waiterRepository() {
+        Waiter waiter = Waiter.builder().keycloakId("kc-alice").username("alice").email("alice@example.com").build();
+        waiter.setId(UUID.randomUUID());
+        WaiterRepository repository = mock(WaiterRepository.class);
+        when(repository.findByKeycloakId("kc-alice")).thenReturn(Optional.of(waiter));
+        return repository;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package uz.billsplitter2.demo.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import uz.billsplitter2.demo.dto.request.BillRequestDto;
+import uz.billsplitter2.demo.dto.response.BillResponseDto;
+import uz.billsplitter2.demo.service.BillCalculationService;
+
+import java.util.concurrent.TimeUnit;
+
+// раздача остатка (distributeRemainder) в худшем случае: позиции на всех гостей с остатком около n/2 копеек
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RemainderDistributionBenchmark {
+
+    @Param({"12", "40", "200"})
+    int participants;
+
+    @Param({"decimal", "fixed-point"})
+    String engine;
+
+    BillCalculationService calculationService;
+    BillRequestDto request;
+
+    @Setup
+    public void setUp() {
+        calculationService = BenchmarkFixtures.engine(engine);
+        request = BenchmarkFixtures.remainderWorstCase(participants, 20);
+    }
+
+    @Benchmark
+    public BillResponseDto splitSharedByEveryone() {
+        return calculationService.split(request);
+    }
+}
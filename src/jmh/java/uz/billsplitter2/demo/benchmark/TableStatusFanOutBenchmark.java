@@ -0,0 +1,224 @@
+package uz.billsplitter2.demo.benchmark;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+import uz.billsplitter2.demo.DemoApplication;
+import uz.billsplitter2.demo.entity.RestaurantTable;
+import uz.billsplitter2.demo.entity.Waiter;
+import uz.billsplitter2.demo.enums.TableStatus;
+import uz.billsplitter2.demo.service.TableStatusRegistry;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+// рассылка изменения стола по /api/v1/tables/status/stream: время от изменения в реестре
+// до получения события всеми подписчиками через настоящий tomcat; бд h2 в памяти, jwt по локальному jwks
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+public class TableStatusFanOutBenchmark {
+
+    private static final String SUBJECT = "kc-fanout-waiter";
+
+    // одновременных sse-подписчиков
+    @Param({"1000", "5000"})
+    int subscribers;
+
+    HttpServer jwks;
+    ConfigurableApplicationContext context;
+    HttpClient client;
+    List<CompletableFuture<HttpResponse<Void>>> streams;
+    TableStatusRegistry registry;
+    RestaurantTable table;
+
+    // версия, которую ждут подписчики в текущем вызове, и счетчик получивших ее
+    volatile long expectedVersion;
+    volatile CountDownLatch delivered;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        RSAKey key = new RSAKeyGenerator(2048).keyID("fanout").generate();
+        jwks = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        byte[] keys = new JWKSet(key.toPublicJWK()).toString().getBytes(StandardCharsets.UTF_8);
+        jwks.createContext("/realms/billsplitter/protocol/openid-connect/certs", exchange -> {
+            exchange.sendResponseHeaders(200, keys.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(keys);
+            }
+        });
+        jwks.start();
+        String issuer = "http://127.0.0.1:" + jwks.getAddress().getPort() + "/realms/billsplitter";
+
+        // аргументами командной строки, иначе application.yaml перекрывает datasource и flyway
+        context = new SpringApplicationBuilder(DemoApplication.class).run(arguments(issuer));
+        table = seed();
+        registry = context.getBean(TableStatusRegistry.class);
+
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/api/v1/tables/status/stream"))
+                .header("Authorization", "Bearer " + token(key, issuer))
+                .header("Accept", "text/event-stream")
+                .build();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        // каждый подписчик сначала получает снимок с текущей версией
+        expect(registry.snapshot().version());
+        streams = new ArrayList<>(subscribers);
+        for (int i = 0; i < subscribers; i++) {
+            streams.add(client.sendAsync(request, HttpResponse.BodyHandlers.fromLineSubscriber(new EventCounter())));
+        }
+        await();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        streams.forEach(stream -> stream.cancel(true));
+        context.close();
+        client.close();
+        jwks.stop(0);
+    }
+
+    @Benchmark
+    public long changeTableStatus() throws InterruptedException {
+        table.setStatus(table.getStatus() == TableStatus.AVAILABLE ? TableStatus.OCCUPIED : TableStatus.AVAILABLE);
+        // вне транзакции изменение применяется сразу
+        expect(registry.snapshot().version() + 1);
+        registry.tableChanged(table);
+        await();
+        return expectedVersion;
+    }
+
+    private void expect(long version) {
+        delivered = new CountDownLatch(subscribers);
+        expectedVersion = version;
+    }
+
+    private void await() throws InterruptedException {
+        if (!delivered.await(30, TimeUnit.SECONDS)) {
+            throw new IllegalStateException(delivered.getCount() + " subscribers missed version " + expectedVersion);
+        }
+    }
+
+    private String[] arguments(String issuer) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("server.port", 0);
+        properties.put("server.tomcat.max-connections", subscribers + 100);
+        properties.put("spring.datasource.url", "jdbc:h2:mem:fanout-" + subscribers + ";DB_CLOSE_DELAY=-1");
+        properties.put("spring.datasource.driver-class-name", "org.h2.Driver");
+        properties.put("spring.datasource.username", "sa");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+        properties.put("spring.jpa.properties.hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        properties.put("spring.flyway.enabled", false);
+        properties.put("spring.security.oauth2.resourceserver.jwt.issuer-uri", issuer);
+        properties.put("spring.security.oauth2.resourceserver.jwt.jwk-set-uri", issuer + "/protocol/openid-connect/certs");
+        properties.put("keycloak.admin.server-url", "http://127.0.0.1:1");
+        properties.put("app.analytics.rollups.backfill", "never");
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.uz.billsplitter2.demo", "WARN");
+        properties.put("logging.level.org.springframework.security", "WARN");
+        return properties.entrySet().stream()
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+    }
+
+    // официант для jwt и 30 столов зала
+    private RestaurantTable seed() {
+        EntityManager entityManager = context.getBean(EntityManager.class);
+        return context.getBean(TransactionTemplate.class).execute(status -> {
+            entityManager.persist(Waiter.builder().keycloakId(SUBJECT).username("fanout-waiter").email("fanout@example.com").build());
+            RestaurantTable first = null;
+            for (int i = 0; i < 30; i++) {
+                RestaurantTable table = RestaurantTable.builder().tableNumber("T-" + i).capacity(4).build();
+                entityManager.persist(table);
+                first = first == null ? table : first;
+            }
+            return first;
+        });
+    }
+
+    private static String token(RSAKey key, String issuer) throws JOSEException {
+        Instant now = Instant.now();
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject(SUBJECT)
+                .issuer(issuer)
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plus(Duration.ofHours(2))))
+                .claim("preferred_username", "fanout-waiter")
+                .claim("realm_access", Map.of("roles", List.of("WAITER")))
+                .build();
+        SignedJWT jwt = new SignedJWT(
+                new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).type(JOSEObjectType.JWT).build(),
+                claims);
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+
+    // строки sse-потока одного подписчика: считается только id с ожидаемой версией
+    private final class EventCounter implements Flow.Subscriber<String> {
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (line.startsWith("id:") && Long.parseLong(line.substring(3).trim()) == expectedVersion) {
+                delivered.countDown();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
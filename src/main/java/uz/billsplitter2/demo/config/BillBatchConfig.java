@@ -0,0 +1,29 @@
+package uz.billsplitter2.demo.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+// ограниченный пул для пакетного расчета счетов
+@Configuration
+public class BillBatchConfig {
+
+    @Bean
+    public ThreadPoolTaskExecutor billCalculationExecutor(
+            @Value("${app.bill.batch.parallelism:4}") int parallelism,
+            @Value("${app.bill.batch.queue-capacity:1000}") int queueCapacity
+    ) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("bill-calc-");
+        // при переполнении очереди считаем в потоке запроса вместо отказа
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+}
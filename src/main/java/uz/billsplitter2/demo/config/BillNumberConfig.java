@@ -0,0 +1,28 @@
+package uz.billsplitter2.demo.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import uz.billsplitter2.demo.repository.BillRepository;
+import uz.billsplitter2.demo.service.BillNumberGenerator;
+import uz.billsplitter2.demo.service.impl.SequenceBillNumberGenerator;
+
+import java.time.Clock;
+import java.time.ZoneId;
+
+// генератор номеров счетов по умолчанию; собственный бин BillNumberGenerator (@Component/@Service)
+// заменяет его, а не дает второй кандидат для внедрения
+@Configuration
+public class BillNumberConfig {
+
+    // день в номере считается в поясе заведения, как и дни аналитики
+    @Bean
+    @ConditionalOnMissingBean(BillNumberGenerator.class)
+    public BillNumberGenerator billNumberGenerator(
+            BillRepository billRepository,
+            @Value("${app.analytics.time-zone:UTC}") ZoneId zone
+    ) {
+        return new SequenceBillNumberGenerator(billRepository, Clock.system(zone));
+    }
+}
@@ -0,0 +1,65 @@
+package uz.billsplitter2.demo.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+import uz.billsplitter2.demo.dto.response.ErrorResponse;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// ограничение одновременно обрабатываемых запросов: виртуальных потоков сколько угодно, и без ограничения
+// все они встают в очередь hikari (open-in-view держит соединение до конца запроса) и падают по
+// connection-timeout; лишние запросы ждут слот не дольше waitTimeout и получают 503
+public class ConcurrencyGuardFilter extends OncePerRequestFilter {
+
+    private final Semaphore permits;
+    private final long waitTimeoutNanos;
+    private final ObjectMapper objectMapper;
+
+    public ConcurrencyGuardFilter(int permits, Duration waitTimeout, ObjectMapper objectMapper) {
+        // fair: под нагрузкой слоты достаются в порядке прихода, без голодания отдельных запросов
+        this.permits = new Semaphore(permits, true);
+        this.waitTimeoutNanos = waitTimeout.toNanos();
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(waitTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            reject(request, response);
+            return;
+        }
+
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ErrorResponse error = ErrorResponse.of("SERVICE_UNAVAILABLE", "Server is busy, retry later",
+                HttpStatus.SERVICE_UNAVAILABLE, request.getRequestURI());
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), error);
+    }
+}
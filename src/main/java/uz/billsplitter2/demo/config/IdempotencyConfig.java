@@ -0,0 +1,41 @@
+package uz.billsplitter2.demo.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import uz.billsplitter2.demo.service.IdempotencyStore;
+
+import java.time.Duration;
+import java.util.List;
+
+// Idempotency-Key для изменяющих запросов счетов и компаний
+@Configuration
+public class IdempotencyConfig {
+
+    // расчеты без сохранения (/calculate) повторяются безопасно и сюда не входят;
+    // добавление позиций (/items, /items/batch) читает тот же заголовок само, в транзакции под блокировкой
+    // счета (order_item_requests) - второе хранилище ключей для них не нужно
+    static final List<String> IDEMPOTENT_PATHS = List.of(
+            "/api/v1/bills",
+            "/api/v1/bills/{id}/close",
+            "/api/v1/parties",
+            "/api/v1/parties/{id}/close"
+    );
+
+    @Bean
+    public FilterRegistrationBean<IdempotencyFilter> idempotencyFilter(
+            IdempotencyStore store,
+            ObjectMapper objectMapper,
+            @Value("${app.idempotency.wait-timeout:10s}") Duration waitTimeout
+    ) {
+        FilterRegistrationBean<IdempotencyFilter> registration =
+                new FilterRegistrationBean<>(new IdempotencyFilter(store, IDEMPOTENT_PATHS, waitTimeout, objectMapper));
+        registration.addUrlPatterns("/api/v1/bills", "/api/v1/bills/*", "/api/v1/parties", "/api/v1/parties/*");
+        // после spring security: ключ привязан к пользователю, чужой ключ не вернет чужой ответ
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER + 1);
+        return registration;
+    }
+}
@@ -0,0 +1,274 @@
+package uz.billsplitter2.demo.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.PathContainer;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import uz.billsplitter2.demo.dto.response.ErrorResponse;
+import uz.billsplitter2.demo.service.IdempotencyStore;
+import uz.billsplitter2.demo.service.IdempotencyStore.Claim;
+import uz.billsplitter2.demo.service.IdempotencyStore.StoredResponse;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// POST с заголовком Idempotency-Key: первый запрос выполняется и его ответ сохраняется,
+// повтор после таймаута клиента получает тот же ответ вместо второго счета или ошибки "уже закрыт";
+// ответы 5xx и с Retry-After не сохраняются - повтор выполнит запрос заново
+@Slf4j
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    // длина колонки idempotency_keys.record_key минус subject пользователя
+    private static final int MAX_KEY_LENGTH = 64;
+
+    private final IdempotencyStore store;
+    private final List<PathPattern> paths;
+    private final long waitTimeoutNanos;
+    private final ObjectMapper objectMapper;
+
+    public IdempotencyFilter(IdempotencyStore store, List<String> paths, Duration waitTimeout, ObjectMapper objectMapper) {
+        this.store = store;
+        this.paths = paths.stream().map(PathPatternParser.defaultInstance::parse).toList();
+        this.waitTimeoutNanos = waitTimeout.toNanos();
+        this.objectMapper = objectMapper;
+    }
+
+    // без заголовка и на прочих путях фильтр не делает ничего
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (request.getHeader(HEADER) == null || !"POST".equals(request.getMethod())) {
+            return true;
+        }
+        PathContainer path = PathContainer.parsePath(request.getRequestURI().substring(request.getContextPath().length()));
+        return paths.stream().noneMatch(pattern -> pattern.matches(path));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String idempotencyKey = request.getHeader(HEADER);
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            reject(request, response, HttpStatus.BAD_REQUEST, "VALIDATION_ERROR",
+                    "Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters", false);
+            return;
+        }
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        CachedBodyRequest cached = new CachedBodyRequest(request);
+        String key = authentication.getName() + ":" + idempotencyKey;
+        String requestHash = requestHash(request, cached.body);
+
+        Claim claim = store.claim(key, requestHash);
+        while (true) {
+            switch (claim) {
+                case IdempotencyStore.Acquired acquired -> {
+                    Claim taken = execute(key, cached, response, filterChain);
+                    if (taken == null) {
+                        return;
+                    }
+                    // ключ оказался занят в бд: вместо ответа этого выполнения - результат по записи ключа
+                    claim = taken;
+                }
+                case IdempotencyStore.Replay replay -> {
+                    replay(response, replay.response());
+                    return;
+                }
+                case IdempotencyStore.Mismatch mismatch -> {
+                    reject(request, response, HttpStatus.UNPROCESSABLE_ENTITY, "IDEMPOTENCY_KEY_REUSED",
+                            "Idempotency-Key was already used for another request", false);
+                    return;
+                }
+                case IdempotencyStore.InProgress inProgress -> {
+                    rejectInProgress(request, response);
+                    return;
+                }
+                case IdempotencyStore.Wait wait -> {
+                    StoredResponse result;
+                    try {
+                        result = wait.result().get(waitTimeoutNanos, TimeUnit.NANOSECONDS);
+                    } catch (TimeoutException | ExecutionException e) {
+                        rejectInProgress(request, response);
+                        return;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        rejectInProgress(request, response);
+                        return;
+                    }
+                    if (result != null) {
+                        replay(response, result);
+                        return;
+                    }
+                    // первый запрос не сохранил ответ: ключ захватывается заново
+                    claim = store.claim(key, requestHash);
+                }
+            }
+        }
+    }
+
+    // ответ отправляется клиенту до записи в бд: запись не добавляет задержки к ответу;
+    // null - ответ отправлен, иначе ключ занят другим запросом и ответ этого выполнения отброшен
+    private Claim execute(String key, CachedBodyRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        boolean executed = false;
+        try {
+            filterChain.doFilter(request, wrapper);
+            executed = true;
+        } finally {
+            if (!executed) {
+                store.release(key);
+            }
+        }
+
+        int status = wrapper.getStatus();
+        boolean cacheable = status < 500 && wrapper.getHeader(HttpHeaders.RETRY_AFTER) == null;
+        Claim taken = store.confirm(key, cacheable);
+        if (taken != null) {
+            response.reset();
+            return taken;
+        }
+        StoredResponse stored = new StoredResponse(status, wrapper.getContentType(), wrapper.getContentAsByteArray());
+        try {
+            wrapper.copyBodyToResponse();
+            response.flushBuffer();
+        } finally {
+            try {
+                if (cacheable) {
+                    store.complete(key, stored);
+                } else {
+                    store.release(key);
+                }
+            } catch (RuntimeException e) {
+                // запись останется "выполняется" и будет захвачена заново после in-progress-timeout
+                log.warn("Failed to record response for idempotency key {}: {}", key, e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private void replay(HttpServletResponse response, StoredResponse stored) throws IOException {
+        response.setStatus(stored.status());
+        response.setHeader(REPLAYED_HEADER, "true");
+        if (stored.contentType() != null) {
+            response.setContentType(stored.contentType());
+        }
+        if (stored.body() != null && stored.body().length > 0) {
+            response.setContentLength(stored.body().length);
+            response.getOutputStream().write(stored.body());
+        }
+    }
+
+    private void rejectInProgress(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        reject(request, response, HttpStatus.CONFLICT, "IDEMPOTENCY_KEY_IN_PROGRESS",
+                "Request with this Idempotency-Key is still in progress, retry later", true);
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response, HttpStatus status,
+                        String code, String message, boolean retry) throws IOException {
+        ErrorResponse error = ErrorResponse.of(code, message, status, request.getRequestURI());
+        response.setStatus(status.value());
+        if (retry) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        }
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), error);
+    }
+
+    // метод, путь и тело: тот же ключ на другом пути или с другим телом - другой запрос
+    private static String requestHash(HttpServletRequest request, byte[] body) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(request.getMethod().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) ' ');
+            digest.update(request.getRequestURI().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            return HexFormat.of().formatHex(digest.digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // тело читается один раз для hash и отдается контроллеру из памяти
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        private CachedBodyRequest(HttpServletRequest request) throws IOException {
+            super(request);
+            this.body = request.getInputStream().readAllBytes();
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // тело уже целиком в памяти, асинхронное чтение (servlet non-blocking io) ему не нужно
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    throw new IllegalStateException("Non-blocking reads are not supported on the request body "
+                            + "buffered by IdempotencyFilter; read it with the blocking InputStream");
+                }
+
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return input.read(buffer, offset, length);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+    }
+}
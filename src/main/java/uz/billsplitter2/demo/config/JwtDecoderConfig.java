@@ -0,0 +1,79 @@
+package uz.billsplitter2.demo.config;
+
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.jwk.source.JWKSourceBuilder;
+import com.nimbusds.jose.proc.DefaultJOSEObjectTypeVerifier;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jose.util.DefaultResourceRetriever;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import uz.billsplitter2.demo.security.CachingJwtDecoder;
+
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+
+// проверка jwt без обращений к keycloak на каждый запрос: ключи из jwk-set-uri кэшируются и обновляются
+// в фоне, неизвестный kid (ротация ключей) перечитывает набор не чаще rate-limit; на старте keycloak не
+// нужен - набор загружается при первой проверке; вместо автоконфигурации spring boot, которая по
+// issuer-uri ходит в keycloak за discovery
+@Configuration
+public class JwtDecoderConfig {
+
+    // размер ответа jwks
+    private static final int JWKS_SIZE_LIMIT = 64 * 1024;
+
+    @Bean
+    public JWKSource<SecurityContext> keycloakJwkSource(
+            @Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri}") String jwkSetUri,
+            @Value("${app.security.jwt.jwks.ttl:15m}") Duration ttl,
+            @Value("${app.security.jwt.jwks.refresh-ahead:1m}") Duration refreshAhead,
+            @Value("${app.security.jwt.jwks.refresh-timeout:15s}") Duration refreshTimeout,
+            @Value("${app.security.jwt.jwks.rate-limit:30s}") Duration rateLimit,
+            @Value("${app.http-client.connect-timeout:5s}") Duration connectTimeout,
+            @Value("${app.http-client.read-timeout:10s}") Duration readTimeout
+    ) throws MalformedURLException {
+        DefaultResourceRetriever retriever = new DefaultResourceRetriever(
+                (int) connectTimeout.toMillis(), (int) readTimeout.toMillis(), JWKS_SIZE_LIMIT);
+
+        return JWKSourceBuilder.<SecurityContext>create(URI.create(jwkSetUri).toURL(), retriever)
+                .cache(ttl.toMillis(), refreshTimeout.toMillis())
+                // фоновое обновление до истечения ttl, запросы не ждут загрузки набора
+                .refreshAheadCache(refreshAhead.toMillis(), true)
+                .rateLimited(rateLimit.toMillis())
+                .retrying(true)
+                .build();
+    }
+
+    @Bean
+    public JwtDecoder jwtDecoder(
+            JWKSource<SecurityContext> keycloakJwkSource,
+            MeterRegistry meterRegistry,
+            @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}") String issuerUri,
+            @Value("${app.security.jwt.decoded-cache.max-size:10000}") long maxSize,
+            @Value("${app.security.jwt.decoded-cache.max-ttl:5m}") Duration maxTtl
+    ) {
+        DefaultJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
+        jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, keycloakJwkSource));
+        // как в NimbusJwtDecoder.withJwkSetUri: typ JWT или at+jwt, exp/iss проверяют валидаторы spring
+        jwtProcessor.setJWSTypeVerifier(new DefaultJOSEObjectTypeVerifier<>(
+                JOSEObjectType.JWT, new JOSEObjectType("at+jwt"), null));
+        jwtProcessor.setJWTClaimsSetVerifier((claims, context) -> {
+        });
+
+        NimbusJwtDecoder decoder = new NimbusJwtDecoder(jwtProcessor);
+        decoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(issuerUri));
+
+        return new CachingJwtDecoder(decoder, maxSize, maxTtl, Clock.systemUTC()).monitor(meterRegistry);
+    }
+}
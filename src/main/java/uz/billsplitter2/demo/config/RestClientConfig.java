@@ -1,23 +1,66 @@
 package uz.billsplitter2.demo.config;
 
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestClient;
 
 import java.time.Duration;
 
+// http-клиент для keycloak (логин, refresh, logout, admin api) на пуле соединений apache httpclient 5:
+// keep-alive вместо нового соединения на каждый запрос, лимит соединений на хост, ожидание свободного
+// соединения ограничено по времени; пул на ReentrantLock, поэтому блокирующий вызов не пиннит виртуальный поток
 @Configuration
 public class RestClientConfig {
 
-    @Bean
-    public RestClient restClient(RestClient.Builder builder) {
-        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
-        requestFactory.setConnectTimeout((int) Duration.ofSeconds(5).toMillis());
-        requestFactory.setReadTimeout((int) Duration.ofSeconds(10).toMillis());
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient keycloakHttpClient(
+            @Value("${app.http-client.connect-timeout:5s}") Duration connectTimeout,
+            @Value("${app.http-client.read-timeout:10s}") Duration readTimeout,
+            @Value("${app.http-client.keep-alive:30s}") Duration keepAlive,
+            @Value("${app.http-client.max-total:100}") int maxTotal,
+            @Value("${app.http-client.max-per-route:50}") int maxPerRoute,
+            @Value("${app.http-client.acquire-timeout:5s}") Duration acquireTimeout
+    ) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxTotal)
+                .setMaxConnPerRoute(maxPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(readTimeout))
+                        // соединение, простоявшее дольше секунды, проверяется перед выдачей из пула
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(1))
+                        .build())
+                .build();
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(acquireTimeout))
+                        .setResponseTimeout(Timeout.of(readTimeout))
+                        .build())
+                // соединение держится не дольше keep-alive, даже если сервер разрешает больше
+                .setKeepAliveStrategy((response, context) -> TimeValue.of(keepAlive))
+                .evictIdleConnections(TimeValue.of(keepAlive))
+                .evictExpiredConnections()
+                // повторы решают вызывающие (KeycloakAdminTokenHolder), клиент сам не повторяет
+                .disableAutomaticRetries()
+                .build();
+    }
 
+    @Bean
+    public RestClient restClient(RestClient.Builder builder, CloseableHttpClient keycloakHttpClient) {
         return builder
-                .requestFactory(requestFactory)
+                .requestFactory(new HttpComponentsClientHttpRequestFactory(keycloakHttpClient))
                 .build();
     }
 }
@@ -0,0 +1,39 @@
+package uz.billsplitter2.demo.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.time.Duration;
+
+// профиль virtual-threads: запросы tomcat, @Async и @Scheduled на виртуальных потоках
+// (spring.threads.virtual.enabled в application-virtual-threads.yaml), ограничение одновременных
+// запросов к api перед пулом соединений и диагностика пиннинга
+@Configuration
+@Profile("virtual-threads")
+public class VirtualThreadConfig {
+
+    @Bean
+    public FilterRegistrationBean<ConcurrencyGuardFilter> concurrencyGuardFilter(
+            ObjectMapper objectMapper,
+            @Value("${app.virtual-threads.guard.permits:20}") int permits,
+            @Value("${app.virtual-threads.guard.wait-timeout:3s}") Duration waitTimeout
+    ) {
+        FilterRegistrationBean<ConcurrencyGuardFilter> registration =
+                new FilterRegistrationBean<>(new ConcurrencyGuardFilter(permits, waitTimeout, objectMapper));
+        registration.addUrlPatterns("/api/*");
+        return registration;
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public VirtualThreadPinningMonitor virtualThreadPinningMonitor(
+            MeterRegistry meterRegistry,
+            @Value("${app.virtual-threads.pinning.threshold:20ms}") Duration threshold
+    ) {
+        return new VirtualThreadPinningMonitor(meterRegistry, threshold);
+    }
+}
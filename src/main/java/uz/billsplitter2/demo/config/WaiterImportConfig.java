@@ -0,0 +1,33 @@
+package uz.billsplitter2.demo.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+// ограниченный пул для массового импорта официантов: каждый поток держит соединение с бд
+// на время вызовов keycloak, поэтому параллелизм меньше пула hikari
+@Configuration
+public class WaiterImportConfig {
+
+    @Bean
+    public ThreadPoolTaskExecutor waiterImportExecutor(
+            @Value("${app.waiter.import.parallelism:4}") int parallelism,
+            @Value("${app.waiter.import.queue-capacity:500}") int queueCapacity,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads
+    ) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("waiter-import-");
+        // импорт ждет keycloak, а не процессор: в профиле virtual-threads потоки пула виртуальные
+        executor.setVirtualThreads(virtualThreads);
+        // при переполнении очереди импортируем в потоке запроса вместо отказа
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+}
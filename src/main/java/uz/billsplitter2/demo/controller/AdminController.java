@@ -1,5 +1,6 @@
 package uz.billsplitter2.demo.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -16,6 +17,8 @@ import org.springframework.web.bind.annotation.RestController;
 import uz.billsplitter2.demo.dto.request.CreateWaiterDto;
 import uz.billsplitter2.demo.dto.request.UpdateWaiterDto;
 import uz.billsplitter2.demo.dto.response.WaiterDto;
+import uz.billsplitter2.demo.dto.response.WaiterImportEntryDto;
+import uz.billsplitter2.demo.service.WaiterImportService;
 import uz.billsplitter2.demo.service.WaiterService;
 
 import java.util.List;
@@ -27,6 +30,7 @@ import java.util.UUID;
 public class AdminController {
 
     private final WaiterService waiterService;
+    private final WaiterImportService waiterImportService;
 
     // создание нового официанта (только админ)
     @PostMapping("/waiters")
@@ -35,6 +39,16 @@ public class AdminController {
         return ResponseEntity.status(HttpStatus.CREATED).body(waiterService.createWaiter(dto));
     }
 
+    // массовый импорт официантов (только админ): результат и ошибка по каждой строке отдельно
+    @PostMapping("/waiters/import")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<WaiterImportEntryDto>> importWaiters(
+            @RequestBody List<CreateWaiterDto> waiters,
+            HttpServletRequest request
+    ) {
+        return ResponseEntity.ok(waiterImportService.importWaiters(waiters, request.getRequestURI()));
+    }
+
     // получение списка всех официантов (только админ)
     @GetMapping("/waiters")
     @PreAuthorize("hasRole('ADMIN')")
@@ -1,9 +1,16 @@
 package uz.billsplitter2.demo.controller;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -11,18 +18,25 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import uz.billsplitter2.demo.dto.request.AddOrderItemDto;
 import uz.billsplitter2.demo.dto.request.BillRequestDto;
 import uz.billsplitter2.demo.dto.request.CreateBillDto;
+import uz.billsplitter2.demo.dto.response.BillBatchEntryDto;
 import uz.billsplitter2.demo.dto.response.BillDto;
 import uz.billsplitter2.demo.dto.response.BillResponseDto;
 import uz.billsplitter2.demo.dto.response.OrderItemDto;
+import uz.billsplitter2.demo.exception.ValidationException;
+import uz.billsplitter2.demo.service.BillBatchCalculationService;
 import uz.billsplitter2.demo.service.BillCalculationService;
 import uz.billsplitter2.demo.service.BillManagementService;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
@@ -34,6 +48,12 @@ public class BillController {
 
     private final BillCalculationService billCalculationService;
     private final BillManagementService billManagementService;
+    private final BillBatchCalculationService billBatchCalculationService;
+    private final ObjectMapper objectMapper;
+
+    // предел пакета /calculate/batch: проверяется при чтении тела, до разбора лишних счетов
+    @Value("${app.bill.batch.max-size:500}")
+    int maxBatchSize;
 
     // stateless расчет счета без сохранения в бд
     @PostMapping("/calculate")
@@ -42,6 +62,44 @@ public class BillController {
         return ResponseEntity.ok(billCalculationService.split(requestDto));
     }
 
+    // пакетный расчет: json-массив счетов, ошибки возвращаются по каждому счету отдельно;
+    // массив читается по элементам и чтение прекращается на первом счете сверх max-size
+    @PostMapping(value = "/calculate/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN', 'WAITER')")
+    public ResponseEntity<List<BillBatchEntryDto>> calculateBatch(HttpServletRequest request) throws IOException {
+        List<BillRequestDto> requests = new ArrayList<>();
+        try (JsonParser parser = objectMapper.createParser(request.getInputStream())) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new ValidationException("Batch must be a JSON array of bills");
+            }
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                checkBatchSize(requests.size());
+                requests.add(objectMapper.readValue(parser, BillRequestDto.class));
+            }
+        } catch (JsonProcessingException ex) {
+            throw new ValidationException("Malformed batch body: " + ex.getOriginalMessage());
+        }
+        return ResponseEntity.ok(billBatchCalculationService.calculateBatch(requests, request.getRequestURI()));
+    }
+
+    // пакетный расчет в формате ndjson: один счет на строку, битая строка дает ошибку только своей записи;
+    // тело читается построчно и чтение прекращается на первой строке сверх max-size
+    @PostMapping(value = "/calculate/batch", consumes = "application/x-ndjson")
+    @PreAuthorize("hasAnyRole('ADMIN', 'WAITER')")
+    public ResponseEntity<List<BillBatchEntryDto>> calculateBatchNdjson(HttpServletRequest request) throws IOException {
+        List<BillRequestDto> requests = new ArrayList<>();
+        BufferedReader reader = request.getReader();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            checkBatchSize(requests.size());
+            requests.add(parseNdjsonLine(line));
+        }
+        return ResponseEntity.ok(billBatchCalculationService.calculateBatch(requests, request.getRequestURI()));
+    }
+
     // создание счета для компании
     @PostMapping
     @PreAuthorize("hasAnyRole('ADMIN', 'WAITER')")
@@ -69,14 +127,26 @@ public class BillController {
         return ResponseEntity.ok(billManagementService.getOrderItemsByBill(id));
     }
 
-    // добавление позиции в счет
+    // добавление позиции в счет; повтор с тем же Idempotency-Key возвращает уже созданную позицию
     @PostMapping("/{id}/items")
     @PreAuthorize("hasAnyRole('ADMIN', 'WAITER')")
     public ResponseEntity<OrderItemDto> addItem(
             @PathVariable UUID id,
-            @Valid @RequestBody AddOrderItemDto dto
+            @Valid @RequestBody AddOrderItemDto dto,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey
+    ) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(billManagementService.addOrderItem(id, dto, idempotencyKey));
+    }
+
+    // пакетное добавление позиций одним запросом: все или ничего, в ответе созданные позиции в порядке запроса
+    @PostMapping("/{id}/items/batch")
+    @PreAuthorize("hasAnyRole('ADMIN', 'WAITER')")
+    public ResponseEntity<List<OrderItemDto>> addItems(
+            @PathVariable UUID id,
+            @RequestBody List<AddOrderItemDto> dtos,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey
     ) {
-        return ResponseEntity.status(HttpStatus.CREATED).body(billManagementService.addOrderItem(id, dto));
+        return ResponseEntity.status(HttpStatus.CREATED).body(billManagementService.addOrderItems(id, dtos, idempotencyKey));
     }
 
     // удаление позиции из счета
@@ -100,4 +170,19 @@ public class BillController {
     public ResponseEntity<BillDto> closeBill(@PathVariable UUID id) {
         return ResponseEntity.ok(billManagementService.closeBill(id));
     }
+
+    private void checkBatchSize(int alreadyRead) {
+        if (alreadyRead == maxBatchSize) {
+            throw new ValidationException("Batch size exceeds limit of " + maxBatchSize);
+        }
+    }
+
+    private BillRequestDto parseNdjsonLine(String line) {
+        try {
+            return objectMapper.readValue(line, BillRequestDto.class);
+        } catch (JsonProcessingException ex) {
+            log.debug("Malformed ndjson batch entry: {}", ex.getOriginalMessage());
+            return null;
+        }
+    }
 }
@@ -11,7 +11,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import uz.billsplitter2.demo.dto.response.AnalyticsDto;
 import uz.billsplitter2.demo.dto.response.BillDto;
-import uz.billsplitter2.demo.dto.response.BillHistoryDto;
+import uz.billsplitter2.demo.dto.response.BillHistoryPageDto;
 import uz.billsplitter2.demo.enums.BillStatus;
 import uz.billsplitter2.demo.service.OrderHistoryService;
 
@@ -28,12 +28,14 @@ public class OrderHistoryController {
 
     @GetMapping("/bills")
     @PreAuthorize("hasAnyRole('ADMIN', 'WAITER')")
-    public ResponseEntity<List<BillHistoryDto>> getClosedBills(
+    public ResponseEntity<BillHistoryPageDto> getClosedBills(
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime startDate,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime endDate,
-            @RequestParam(required = false) UUID waiterId
+            @RequestParam(required = false) UUID waiterId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size
     ) {
-        return ResponseEntity.ok(orderHistoryService.getClosedBills(startDate, endDate, waiterId));
+        return ResponseEntity.ok(orderHistoryService.getClosedBills(startDate, endDate, waiterId, cursor, size));
     }
 
     @GetMapping("/bills/{id}")
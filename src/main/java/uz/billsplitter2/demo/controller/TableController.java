@@ -1,8 +1,10 @@
 package uz.billsplitter2.demo.controller;
 
+import io.swagger.v3.oas.annotations.Operation;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -12,13 +14,17 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import uz.billsplitter2.demo.dto.request.CreateTableDto;
 import uz.billsplitter2.demo.dto.request.UpdateTableDto;
 import uz.billsplitter2.demo.dto.response.TableDto;
+import uz.billsplitter2.demo.dto.response.TableStatusSnapshotDto;
 import uz.billsplitter2.demo.enums.TableStatus;
 import uz.billsplitter2.demo.service.TableService;
+import uz.billsplitter2.demo.service.TableStatusRegistry;
 
 import java.util.List;
 import java.util.UUID;
@@ -29,6 +35,7 @@ import java.util.UUID;
 public class TableController {
 
     private final TableService tableService;
+    private final TableStatusRegistry tableStatusRegistry;
 
     // создание нового стола (только админ)
     @PostMapping
@@ -37,8 +44,11 @@ public class TableController {
         return ResponseEntity.status(HttpStatus.CREATED).body(tableService.createTable(dto));
     }
 
-    // получение списка столов с фильтрацией по статусу
+    // получение списка столов с фильтрацией по статусу из реестра статусов в памяти, без запроса к бд
     @GetMapping
+    @Operation(summary = "List tables", description = "Served from the in-memory table status registry, not from the database. "
+            + "The registry is local to the application instance: it reflects changes committed through this instance "
+            + "and is reloaded on restart, so behind a load balancer instances may briefly disagree.")
     @PreAuthorize("hasAnyRole('ADMIN', 'WAITER')")
     public ResponseEntity<List<TableDto>> getAllTables(
             @RequestParam(required = false) TableStatus status
@@ -49,6 +59,23 @@ public class TableController {
         return ResponseEntity.ok(tableService.getAllTables());
     }
 
+    // снимок статусов столов с версией: дальше клиент получает только изменения из /status/stream
+    @GetMapping("/status")
+    @PreAuthorize("hasAnyRole('ADMIN', 'WAITER')")
+    public ResponseEntity<TableStatusSnapshotDto> getTableStatus() {
+        return ResponseEntity.ok(tableStatusRegistry.snapshot());
+    }
+
+    // sse-поток изменений столов: без Last-Event-ID первым событием приходит снимок (event: snapshot),
+    // дальше - изменения (event: table) с версией в id; при переподключении досылаются пропущенные
+    @GetMapping(value = "/status/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN', 'WAITER')")
+    public SseEmitter streamTableStatus(
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId
+    ) {
+        return tableStatusRegistry.subscribe(lastEventId);
+    }
+
     @GetMapping("/{id}")
     @PreAuthorize("hasAnyRole('ADMIN', 'WAITER')")
     public ResponseEntity<TableDto> getTableById(@PathVariable UUID id) {
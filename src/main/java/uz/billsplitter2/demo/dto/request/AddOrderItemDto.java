@@ -10,6 +10,7 @@ import lombok.Builder;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @Builder
@@ -27,6 +28,29 @@ public record AddOrderItemDto(
         Integer quantity,
 
         @NotEmpty(message = "At least one guest must be specified")
-        List<UUID> guestIds
+        @Size(max = MAX_GUESTS, message = "At most " + MAX_GUESTS + " guests can share an item")
+        List<UUID> guestIds,
+
+        // сколько из quantity единиц у каждого гостя; без него позиция делится поровну
+        Map<UUID, @NotNull @Min(value = 1, message = "Guest units must be at least 1") Integer> guestUnits,
+
+        // веса гостей (2:1:1), по умолчанию 1
+        Map<UUID, @NotNull @DecimalMin(value = "0", inclusive = false, message = "Guest weight must be greater than 0") BigDecimal> guestWeights,
+
+        // фиксированные суммы гостей, остаток делится между прочими по весам
+        Map<UUID, @NotNull @DecimalMin(value = "0.01", message = "Guest fixed amount must be greater than 0") BigDecimal> guestFixedAmounts
 ) {
+    // участников одной позиции; guest_units, guest_weights и guest_fixed_amounts - json по гостям
+    public static final int MAX_GUESTS = 200;
+
+    // позиция, которая делится поровну
+    public AddOrderItemDto(String name, BigDecimal price, Integer quantity, List<UUID> guestIds) {
+        this(name, price, quantity, guestIds, null, null, null);
+    }
+
+    // позиция с закреплением единиц за гостями
+    public AddOrderItemDto(String name, BigDecimal price, Integer quantity, List<UUID> guestIds,
+                           Map<UUID, Integer> guestUnits) {
+        this(name, price, quantity, guestIds, guestUnits, null, null);
+    }
 }
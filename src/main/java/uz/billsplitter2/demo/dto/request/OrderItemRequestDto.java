@@ -1,5 +1,6 @@
 package uz.billsplitter2.demo.dto.request;
 
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
@@ -7,15 +8,26 @@ import jakarta.validation.constraints.Positive;
 import lombok.Builder;
 
 import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+// price - цена единицы, сумма позиции price * quantity. Доли участников:
+// units - сколько единиц у каждого (взаимоисключающе с остальными способами);
+// fixedAmounts - фиксированные суммы, остаток делится между прочими участниками по weights (по умолчанию вес 1)
 @Builder
 public record OrderItemRequestDto(
         @NotBlank String name,
         @NotNull @Positive BigDecimal price,
-        @NotNull @NotEmpty List<@NotBlank String> participants
+        @Min(1) Integer quantity,
+        @NotNull @NotEmpty List<@NotBlank String> participants,
+        Map<String, Integer> units,
+        Map<String, BigDecimal> weights,
+        Map<String, BigDecimal> fixedAmounts
 ) {
     public OrderItemRequestDto {
+        quantity = quantity == null ? 1 : quantity;
         // удаление дубликатов и trim
         participants = participants == null
                 ? List.of()
@@ -23,5 +35,35 @@ public record OrderItemRequestDto(
                     .map(String::trim)
                     .distinct()
                     .toList();
+        units = trimKeys(units);
+        weights = trimKeys(weights);
+        fixedAmounts = trimKeys(fixedAmounts);
+    }
+
+    // одна единица, поровну между участниками
+    public OrderItemRequestDto(String name, BigDecimal price, List<String> participants) {
+        this(name, price, 1, participants, null, null, null);
+    }
+
+    public OrderItemRequestDto(String name, BigDecimal price, Integer quantity, List<String> participants,
+                               Map<String, Integer> units) {
+        this(name, price, quantity, participants, units, null, null);
+    }
+
+    public boolean hasUnitAssignment() {
+        return !units.isEmpty();
+    }
+
+    public boolean hasCustomShares() {
+        return !weights.isEmpty() || !fixedAmounts.isEmpty();
+    }
+
+    private static <V> Map<String, V> trimKeys(Map<String, V> values) {
+        if (values == null || values.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, V> trimmed = new LinkedHashMap<>();
+        values.forEach((participant, value) -> trimmed.put(participant == null ? null : participant.trim(), value));
+        return Collections.unmodifiableMap(trimmed);
     }
 }
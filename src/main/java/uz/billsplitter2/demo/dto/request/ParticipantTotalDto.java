@@ -0,0 +1,10 @@
+package uz.billsplitter2.demo.dto.request;
+
+import java.math.BigDecimal;
+
+// уже посчитанная сумма позиций участника (промежуточные итоги открытого счета)
+public record ParticipantTotalDto(
+        String name,
+        BigDecimal itemsTotal
+) {
+}
@@ -0,0 +1,16 @@
+package uz.billsplitter2.demo.dto.response;
+
+import lombok.Builder;
+
+import java.math.BigDecimal;
+
+@Builder
+public record AnalyticsBucketDto(
+        String key,
+        String label,
+        Long bills,
+        BigDecimal revenue,
+        BigDecimal serviceFees,
+        BigDecimal averageBillAmount
+) {
+}
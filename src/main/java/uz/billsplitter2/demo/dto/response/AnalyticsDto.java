@@ -4,6 +4,7 @@ import lombok.Builder;
 
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
+import java.util.List;
 
 @Builder
 public record AnalyticsDto(
@@ -12,6 +13,11 @@ public record AnalyticsDto(
         BigDecimal totalServiceFees,
         BigDecimal averageBillAmount,
         OffsetDateTime periodStart,
-        OffsetDateTime periodEnd
+        OffsetDateTime periodEnd,
+        String timeZone,
+        List<AnalyticsBucketDto> byWaiter,
+        List<AnalyticsBucketDto> byTable,
+        List<AnalyticsBucketDto> byHourOfDay,
+        List<AnalyticsBucketDto> byDay
 ) {
 }
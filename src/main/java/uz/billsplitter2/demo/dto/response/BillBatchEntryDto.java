@@ -0,0 +1,21 @@
+package uz.billsplitter2.demo.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+
+// результат одного счета из пакетного расчета: либо расчет, либо ошибка в формате ErrorResponse
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BillBatchEntryDto(
+        int index,
+        BillResponseDto result,
+        ErrorResponse error
+) {
+    public static BillBatchEntryDto success(int index, BillResponseDto result) {
+        return new BillBatchEntryDto(index, result, null);
+    }
+
+    public static BillBatchEntryDto failure(int index, ErrorResponse error) {
+        return new BillBatchEntryDto(index, null, error);
+    }
+}
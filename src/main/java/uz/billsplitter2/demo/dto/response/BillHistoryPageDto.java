@@ -0,0 +1,11 @@
+package uz.billsplitter2.demo.dto.response;
+
+import java.util.List;
+
+// страница истории закрытых счетов; nextCursor == null - страниц больше нет
+public record BillHistoryPageDto(
+        List<BillHistoryDto> items,
+        int size,
+        String nextCursor
+) {
+}
@@ -5,6 +5,7 @@ import lombok.Builder;
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @Builder
@@ -14,6 +15,9 @@ public record OrderItemDto(
         String name,
         BigDecimal price,
         Integer quantity,
+        Map<UUID, Integer> guestUnits,
+        Map<UUID, BigDecimal> guestWeights,
+        Map<UUID, BigDecimal> guestFixedAmounts,
         List<GuestDto> guests,
         OffsetDateTime createdAt
 ) {
@@ -12,6 +12,8 @@ public record TableDto(
         String tableNumber,
         Integer capacity,
         TableStatus status,
+        // версия строки стола: реестр статусов по ней отбрасывает устаревшие изменения
+        Long version,
         OffsetDateTime createdAt,
         OffsetDateTime updatedAt
 ) {
@@ -0,0 +1,11 @@
+package uz.billsplitter2.demo.dto.response;
+
+import java.util.UUID;
+
+// изменение одного стола; table == null - стол удален
+public record TableStatusEventDto(
+        long version,
+        UUID tableId,
+        TableDto table
+) {
+}
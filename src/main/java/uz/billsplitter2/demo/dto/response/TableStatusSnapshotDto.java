@@ -0,0 +1,10 @@
+package uz.billsplitter2.demo.dto.response;
+
+import java.util.List;
+
+// столы на момент версии version; следующие изменения приходят событиями с большей версией
+public record TableStatusSnapshotDto(
+        long version,
+        List<TableDto> tables
+) {
+}
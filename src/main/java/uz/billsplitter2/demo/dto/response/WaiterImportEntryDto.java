@@ -0,0 +1,22 @@
+package uz.billsplitter2.demo.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+
+// результат одной строки массового импорта: либо созданный официант, либо ошибка в формате ErrorResponse
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record WaiterImportEntryDto(
+        int index,
+        String username,
+        WaiterDto result,
+        ErrorResponse error
+) {
+    public static WaiterImportEntryDto success(int index, WaiterDto result) {
+        return new WaiterImportEntryDto(index, result.username(), result, null);
+    }
+
+    public static WaiterImportEntryDto failure(int index, String username, ErrorResponse error) {
+        return new WaiterImportEntryDto(index, username, null, error);
+    }
+}
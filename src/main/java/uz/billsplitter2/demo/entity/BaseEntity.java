@@ -6,6 +6,7 @@ import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.MappedSuperclass;
+import jakarta.persistence.Version;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.data.annotation.CreatedDate;
@@ -32,4 +33,9 @@ public abstract class BaseEntity {
     @LastModifiedDate
     @Column(nullable = false)
     private OffsetDateTime updatedAt;
+
+    // оптимистическая блокировка: изменение по устаревшей версии дает 409 вместо потерянного обновления
+    @Version
+    @Column(nullable = false)
+    private Long version;
 }
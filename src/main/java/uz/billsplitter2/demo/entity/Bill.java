@@ -65,6 +65,11 @@ public class Bill extends BaseEntity {
     @Column(name = "closed_at")
     private OffsetDateTime closedAt;
 
+    // промежуточные итоги гостей (bill_guest_shares) соответствуют позициям счета
+    @Column(name = "guest_shares_ready", nullable = false)
+    @Builder.Default
+    private Boolean guestSharesReady = false;
+
     @OneToMany(mappedBy = "bill", cascade = CascadeType.ALL, orphanRemoval = true)
     @Builder.Default
     private List<OrderItem> orderItems = new ArrayList<>();
@@ -81,13 +86,7 @@ public class Bill extends BaseEntity {
 
     public BillRequestDto toBillRequestDto() {
         List<OrderItemRequestDto> items = orderItems.stream()
-            .map(item -> new OrderItemRequestDto(
-                item.getName(),
-                item.getPrice(),
-                item.getGuests().stream()
-                    .map(Guest::getName)
-                    .toList()
-            ))
+            .map(OrderItem::toRequestDto)
             .toList();
         return new BillRequestDto(items);
     }
@@ -0,0 +1,56 @@
+package uz.billsplitter2.demo.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+// промежуточный итог гостя по позициям открытого счета
+@Entity
+@Table(name = "bill_guest_shares")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BillGuestShare extends BaseEntity {
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "bill_id", nullable = false)
+    private Bill bill;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "guest_id", nullable = false)
+    private Guest guest;
+
+    // порядок первого появления гостя в позициях счета
+    @Column(nullable = false)
+    private Integer position;
+
+    @Column(name = "items_total", precision = 10, scale = 2, nullable = false)
+    @Builder.Default
+    private BigDecimal itemsTotal = BigDecimal.ZERO;
+
+    @Column(name = "item_count", nullable = false)
+    @Builder.Default
+    private Integer itemCount = 0;
+
+    public void addItemShare(BigDecimal amount) {
+        itemsTotal = itemsTotal.add(amount);
+        itemCount++;
+    }
+
+    public void removeItemShare(BigDecimal amount) {
+        itemsTotal = itemsTotal.subtract(amount);
+        itemCount--;
+    }
+}
@@ -0,0 +1,72 @@
+package uz.billsplitter2.demo.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.UUID;
+
+// суммы закрытых счетов за час дня (в поясе заведения) по официанту и столу
+@Entity
+@Table(name = "daily_bill_rollups")
+@IdClass(DailyBillRollup.Key.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DailyBillRollup {
+
+    @Id
+    @Column(name = "rollup_date", nullable = false)
+    private LocalDate rollupDate;
+
+    @Id
+    @Column(name = "hour_of_day", nullable = false)
+    private Integer hourOfDay;
+
+    @Id
+    @Column(name = "waiter_id", nullable = false)
+    private UUID waiterId;
+
+    @Id
+    @Column(name = "table_id", nullable = false)
+    private UUID tableId;
+
+    @Column(name = "bill_count", nullable = false)
+    @Builder.Default
+    private Long billCount = 0L;
+
+    @Column(name = "items_total", precision = 14, scale = 2, nullable = false)
+    @Builder.Default
+    private BigDecimal itemsTotal = BigDecimal.ZERO;
+
+    @Column(name = "service_fees", precision = 14, scale = 2, nullable = false)
+    @Builder.Default
+    private BigDecimal serviceFees = BigDecimal.ZERO;
+
+    @Column(name = "total_amount", precision = 14, scale = 2, nullable = false)
+    @Builder.Default
+    private BigDecimal totalAmount = BigDecimal.ZERO;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private LocalDate rollupDate;
+        private Integer hourOfDay;
+        private UUID waiterId;
+        private UUID tableId;
+    }
+}
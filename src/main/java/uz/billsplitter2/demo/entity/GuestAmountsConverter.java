@@ -0,0 +1,18 @@
+package uz.billsplitter2.demo.entity;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import jakarta.persistence.Converter;
+
+import java.math.BigDecimal;
+import java.util.TreeMap;
+import java.util.UUID;
+
+// веса и фиксированные суммы гостей в позиции
+@Converter
+public class GuestAmountsConverter extends GuestMapConverter<BigDecimal> {
+
+    public GuestAmountsConverter() {
+        super(new TypeReference<TreeMap<UUID, BigDecimal>>() {
+        });
+    }
+}
@@ -0,0 +1,48 @@
+package uz.billsplitter2.demo.entity;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.AttributeConverter;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+// значения позиции по гостям в виде json-строки {"<guest_id>": <value>}: одна колонка в строке позиции,
+// без отдельной таблицы и лишнего запроса при загрузке позиций
+abstract class GuestMapConverter<V> implements AttributeConverter<Map<UUID, V>, String> {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final TypeReference<TreeMap<UUID, V>> type;
+
+    GuestMapConverter(TypeReference<TreeMap<UUID, V>> type) {
+        this.type = type;
+    }
+
+    @Override
+    public String convertToDatabaseColumn(Map<UUID, V> values) {
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        try {
+            // ключи по порядку: одинаковое содержимое дает одинаковую строку и не считается изменением
+            return MAPPER.writeValueAsString(new TreeMap<>(values));
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("Cannot serialize guest values", ex);
+        }
+    }
+
+    @Override
+    public Map<UUID, V> convertToEntityAttribute(String column) {
+        if (column == null || column.isBlank()) {
+            return null;
+        }
+        try {
+            return MAPPER.readValue(column, type);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("Cannot read guest values: " + column, ex);
+        }
+    }
+}
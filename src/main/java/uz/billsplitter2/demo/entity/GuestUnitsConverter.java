@@ -0,0 +1,17 @@
+package uz.billsplitter2.demo.entity;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import jakarta.persistence.Converter;
+
+import java.util.TreeMap;
+import java.util.UUID;
+
+// единицы позиции по гостям
+@Converter
+public class GuestUnitsConverter extends GuestMapConverter<Integer> {
+
+    public GuestUnitsConverter() {
+        super(new TypeReference<TreeMap<UUID, Integer>>() {
+        });
+    }
+}
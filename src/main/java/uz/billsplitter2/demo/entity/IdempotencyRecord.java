@@ -0,0 +1,47 @@
+package uz.billsplitter2.demo.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.OffsetDateTime;
+
+// сохраненный ответ запроса с заголовком Idempotency-Key; пока status пуст, запрос выполняется
+@Entity
+@Table(name = "idempotency_keys")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IdempotencyRecord {
+
+    // subject пользователя и ключ клиента: ключи разных пользователей не пересекаются
+    @Id
+    @Column(name = "record_key", length = 200)
+    private String key;
+
+    // sha-256 метода, пути и тела запроса
+    @Column(name = "request_hash", nullable = false, length = 64)
+    private String requestHash;
+
+    private Integer status;
+
+    @Column(name = "content_type", length = 200)
+    private String contentType;
+
+    @Column(name = "response_body")
+    private byte[] responseBody;
+
+    @Column(name = "created_at", nullable = false)
+    private OffsetDateTime createdAt;
+
+    @Column(name = "completed_at")
+    private OffsetDateTime completedAt;
+}
@@ -1,7 +1,9 @@
 package uz.billsplitter2.demo.entity;
 
 import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -17,14 +19,20 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+import uz.billsplitter2.demo.dto.request.OrderItemRequestDto;
 
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @Entity
+@EntityListeners(AuditingEntityListener.class)
 @Table(name = "order_items")
 @Getter
 @Setter
@@ -51,6 +59,21 @@ public class OrderItem {
     @Builder.Default
     private Integer quantity = 1;
 
+    // единицы позиции по гостям (guest id -> число единиц); null - позиция делится поровну
+    @Convert(converter = GuestUnitsConverter.class)
+    @Column(name = "guest_units", length = 20000)
+    private Map<UUID, Integer> guestUnits;
+
+    // веса гостей при делении суммы позиции (по умолчанию 1); null - поровну
+    @Convert(converter = GuestAmountsConverter.class)
+    @Column(name = "guest_weights", length = 20000)
+    private Map<UUID, BigDecimal> guestWeights;
+
+    // фиксированные суммы гостей, остаток делится между прочими гостями по весам
+    @Convert(converter = GuestAmountsConverter.class)
+    @Column(name = "guest_fixed_amounts", length = 20000)
+    private Map<UUID, BigDecimal> guestFixedAmounts;
+
     @ManyToMany
     @JoinTable(
         name = "order_item_guests",
@@ -63,4 +86,60 @@ public class OrderItem {
     @CreatedDate
     @Column(nullable = false, updatable = false)
     private OffsetDateTime createdAt;
+
+    // участники в порядке деления (по имени): от него зависит, кому достанутся копейки остатка
+    public List<Guest> getParticipantsInSplitOrder() {
+        return guests.stream()
+            .sorted(Comparator.comparing(Guest::getName))
+            .toList();
+    }
+
+    // у гостя закреплены единицы или фиксированная сумма позиции
+    public boolean assignsSharesTo(UUID guestId) {
+        return (guestUnits != null && guestUnits.containsKey(guestId))
+            || (guestFixedAmounts != null && guestFixedAmounts.containsKey(guestId));
+    }
+
+    // вход движка расчета: участники, их единицы, веса и фиксированные суммы - по именам гостей.
+    // Сумма позиции всегда price * quantity, даже если единицы или фиксированная сумма остались за гостем,
+    // которого уже нет в позиции (данные до запрета такого удаления): без его единиц позиция делится
+    // между оставшимися гостями поровну
+    public OrderItemRequestDto toRequestDto() {
+        List<Guest> participants = getParticipantsInSplitOrder();
+        Map<String, Integer> units = byGuestName(participants, guestUnits);
+        Map<String, BigDecimal> fixedAmounts = byGuestName(participants, guestFixedAmounts);
+
+        if (units != null && units.size() != guestUnits.size()) {
+            units = null;
+        }
+        // остаток фиксированных сумм достается гостям без них; если таких не осталось, делится заново
+        if (fixedAmounts != null && fixedAmounts.size() == participants.size()
+                && fixedAmounts.size() != guestFixedAmounts.size()) {
+            fixedAmounts = null;
+        }
+
+        return new OrderItemRequestDto(
+            name,
+            price,
+            quantity,
+            participants.stream().map(Guest::getName).toList(),
+            units,
+            byGuestName(participants, guestWeights),
+            fixedAmounts
+        );
+    }
+
+    private static <V> Map<String, V> byGuestName(List<Guest> participants, Map<UUID, V> values) {
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        Map<String, V> byName = new LinkedHashMap<>();
+        for (Guest guest : participants) {
+            V value = values.get(guest.getId());
+            if (value != null) {
+                byName.put(guest.getName(), value);
+            }
+        }
+        return byName.isEmpty() ? null : byName;
+    }
 }
@@ -0,0 +1,64 @@
+package uz.billsplitter2.demo.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.io.Serializable;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+// запрос добавления позиций с заголовком Idempotency-Key: повтор с тем же ключом получает
+// уже созданные позиции вместо новых; ключ уникален в пределах счета
+@Entity
+@EntityListeners(AuditingEntityListener.class)
+@Table(name = "order_item_requests")
+@IdClass(OrderItemRequest.Key.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OrderItemRequest {
+
+    @Id
+    @Column(name = "bill_id", nullable = false)
+    private UUID billId;
+
+    @Id
+    @Column(name = "idempotency_key", length = 64)
+    private String idempotencyKey;
+
+    // sha-256 тела запроса: тот же ключ с другим телом отклоняется
+    @Column(name = "request_hash", nullable = false, length = 64)
+    private String requestHash;
+
+    @Convert(converter = UuidListConverter.class)
+    @Column(name = "item_ids", nullable = false, length = 20000)
+    private List<UUID> itemIds;
+
+    @CreatedDate
+    @Column(nullable = false, updatable = false)
+    private OffsetDateTime createdAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private UUID billId;
+        private String idempotencyKey;
+    }
+}
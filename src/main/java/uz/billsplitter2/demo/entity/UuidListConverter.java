@@ -0,0 +1,30 @@
+package uz.billsplitter2.demo.entity;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+// список id через запятую: порядок сохраняется, 37 символов на id
+@Converter
+public class UuidListConverter implements AttributeConverter<List<UUID>, String> {
+
+    @Override
+    public String convertToDatabaseColumn(List<UUID> ids) {
+        if (ids == null) {
+            return null;
+        }
+        return ids.stream().map(UUID::toString).collect(Collectors.joining(","));
+    }
+
+    @Override
+    public List<UUID> convertToEntityAttribute(String column) {
+        if (column == null || column.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(column.split(",")).map(UUID::fromString).toList();
+    }
+}
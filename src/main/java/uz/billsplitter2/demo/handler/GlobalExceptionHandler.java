@@ -3,12 +3,15 @@ package uz.billsplitter2.demo.handler;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.context.request.async.AsyncRequestNotUsableException;
 import uz.billsplitter2.demo.dto.response.ErrorResponse;
 import uz.billsplitter2.demo.exception.ApplicationException;
 import uz.billsplitter2.demo.exception.KeycloakException;
@@ -59,6 +62,21 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.FORBIDDEN).body(body);
     }
 
+    // строку изменили параллельно (@Version): повтор запроса прочитает новую версию
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ErrorResponse> handleOptimisticLocking(OptimisticLockingFailureException ex, HttpServletRequest request) {
+        log.warn("Concurrent modification: {}", ex.getMessage());
+        ErrorResponse body = ErrorResponse.of("CONCURRENT_MODIFICATION", "Resource was modified concurrently, retry the request",
+                HttpStatus.CONFLICT, request.getRequestURI());
+        return ResponseEntity.status(HttpStatus.CONFLICT).header(HttpHeaders.RETRY_AFTER, "0").body(body);
+    }
+
+    // клиент sse-потока отключился: ответ уже не записать, это не ошибка сервера
+    @ExceptionHandler(AsyncRequestNotUsableException.class)
+    public void handleAsyncRequestNotUsable(AsyncRequestNotUsableException ex) {
+        log.debug("Async response is no longer usable: {}", ex.getMessage());
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResponse> handleOthers(Exception ex, HttpServletRequest request) {
         log.error("Unhandled exception", ex);
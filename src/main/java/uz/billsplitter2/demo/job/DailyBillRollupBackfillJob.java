@@ -0,0 +1,36 @@
+package uz.billsplitter2.demo.job;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import uz.billsplitter2.demo.service.DailyBillRollupService;
+
+// заполнение daily_bill_rollups для счетов, закрытых до появления свертки
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DailyBillRollupBackfillJob implements ApplicationRunner {
+
+    private final DailyBillRollupService rollupService;
+
+    // if-empty | always | never
+    @Value("${app.analytics.rollups.backfill:if-empty}")
+    String mode;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        switch (mode) {
+            case "always" -> rollupService.rebuild();
+            case "if-empty" -> {
+                if (rollupService.rebuildIfEmpty()) {
+                    log.info("Daily bill rollups were empty, backfilled from closed bills");
+                }
+            }
+            case "never" -> log.debug("Daily bill rollup backfill is disabled");
+            default -> throw new IllegalStateException("Unknown app.analytics.rollups.backfill mode: " + mode);
+        }
+    }
+}
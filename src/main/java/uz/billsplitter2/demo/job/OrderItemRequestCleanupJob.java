@@ -0,0 +1,66 @@
+package uz.billsplitter2.demo.job;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import uz.billsplitter2.demo.repository.OrderItemRequestRepository;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// удаление ключей Idempotency-Key добавления позиций старше ttl: таблица хранит только окно повторов
+@Slf4j
+@Component
+public class OrderItemRequestCleanupJob {
+
+    private final OrderItemRequestRepository requestRepository;
+    private final Duration ttl;
+    private final Duration interval;
+
+    private final ScheduledExecutorService cleaner = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("order-item-request-cleanup").daemon().factory());
+
+    public OrderItemRequestCleanupJob(
+            OrderItemRequestRepository requestRepository,
+            @Value("${app.bill.items.idempotency.ttl:24h}") Duration ttl,
+            @Value("${app.bill.items.idempotency.cleanup-interval:15m}") Duration interval
+    ) {
+        this.requestRepository = requestRepository;
+        this.ttl = ttl;
+        this.interval = interval;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        long delay = interval.toMillis();
+        cleaner.scheduleWithFixedDelay(this::cleanUpQuietly, delay, delay, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cleaner.shutdownNow();
+    }
+
+    public int cleanUp() {
+        int removed = requestRepository.deleteCreatedBefore(OffsetDateTime.now().minus(ttl));
+        if (removed > 0) {
+            log.debug("Removed {} expired order item idempotency keys", removed);
+        }
+        return removed;
+    }
+
+    private void cleanUpQuietly() {
+        try {
+            cleanUp();
+        } catch (RuntimeException e) {
+            // бд недоступна: ключи удалятся при следующем запуске
+            log.warn("Failed to remove expired order item idempotency keys: {}", e.getMessage());
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package uz.billsplitter2.demo.mapper;
 
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import org.mapstruct.MappingTarget;
 import org.mapstruct.NullValuePropertyMappingStrategy;
 import uz.billsplitter2.demo.dto.request.CreateTableDto;
@@ -15,5 +16,6 @@ public interface TableMapper {
 
     TableDto toDto(RestaurantTable entity);
 
+    @Mapping(target = "version", ignore = true)
     void updateEntity(UpdateTableDto dto, @MappingTarget RestaurantTable entity);
 }
@@ -18,5 +18,6 @@ public interface WaiterMapper {
 
     WaiterDto toDto(Waiter entity);
 
+    @Mapping(target = "version", ignore = true)
     void updateEntity(UpdateWaiterDto dto, @MappingTarget Waiter entity);
 }
@@ -0,0 +1,17 @@
+package uz.billsplitter2.demo.repository;
+
+import java.math.BigDecimal;
+
+// строка агрегата закрытых счетов: группа (официант, стол, час, день) и суммы по ней
+public interface AnalyticsBucketView {
+
+    String getBucket();
+
+    String getLabel();
+
+    Long getBills();
+
+    BigDecimal getRevenue();
+
+    BigDecimal getServiceFees();
+}
@@ -0,0 +1,17 @@
+package uz.billsplitter2.demo.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import uz.billsplitter2.demo.entity.BillGuestShare;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface BillGuestShareRepository extends JpaRepository<BillGuestShare, UUID> {
+
+    @Query("SELECT s FROM BillGuestShare s JOIN FETCH s.guest WHERE s.bill.id = :billId ORDER BY s.position")
+    List<BillGuestShare> findAllByBillIdWithGuest(@Param("billId") UUID billId);
+}
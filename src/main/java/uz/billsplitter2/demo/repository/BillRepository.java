@@ -1,10 +1,15 @@
 package uz.billsplitter2.demo.repository;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import uz.billsplitter2.demo.dto.response.BillHistoryDto;
 import uz.billsplitter2.demo.entity.Bill;
+import uz.billsplitter2.demo.entity.OrderItem;
 import uz.billsplitter2.demo.enums.BillStatus;
 
 import java.time.OffsetDateTime;
@@ -17,21 +22,153 @@ public interface BillRepository extends JpaRepository<Bill, UUID> {
 
     List<Bill> findAllByPartyId(UUID partyId);
 
+    // счет с компанией для проверки доступа
+    @EntityGraph(attributePaths = {"party"})
+    @Query("SELECT b FROM Bill b WHERE b.id = :id")
+    Optional<Bill> findWithPartyById(@Param("id") UUID id);
+
+    // счет с компанией и позициями
+    @EntityGraph(attributePaths = {"party", "orderItems"})
+    @Query("SELECT b FROM Bill b WHERE b.id = :id")
+    Optional<Bill> findWithOrderItemsById(@Param("id") UUID id);
+
+    // гости позиций счета: заполняют уже загруженные позиции того же persistence context
+    @Query("SELECT DISTINCT i FROM OrderItem i LEFT JOIN FETCH i.guests WHERE i.bill.id = :billId")
+    List<OrderItem> findOrderItemsWithGuestsByBillId(@Param("billId") UUID billId);
+
+    // счет со всем входом расчета и содержимым BillDto за два запроса:
+    // позиции и гости - две коллекции-bag, одним join fetch их не выбрать (MultipleBagFetchException)
+    default Optional<Bill> findWithCalculationInputById(UUID id) {
+        Optional<Bill> bill = findWithOrderItemsById(id);
+        bill.ifPresent(found -> findOrderItemsWithGuestsByBillId(found.getId()));
+        return bill;
+    }
+
     Optional<Bill> findByPartyIdAndStatus(UUID partyId, BillStatus status);
 
+    // условное увеличение версии: строка счета блокируется до конца транзакции, поэтому изменения
+    // позиций одного счета идут по очереди, а закрытие, прочитавшее счет раньше, получит конфликт версий;
+    // счет в другом статусе не меняется и не блокируется
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Bill b SET b.version = b.version + 1, b.updatedAt = :now WHERE b.id = :id AND b.status = :status")
+    int incrementVersionIfStatus(
+        @Param("id") UUID id,
+        @Param("status") BillStatus status,
+        @Param("now") OffsetDateTime now
+    );
+
     Optional<Bill> findByBillNumber(String billNumber);
 
+    // начало следующего блока номеров счетов: последовательность растет шагом SequenceBillNumberGenerator.BLOCK_SIZE
+    @Query(value = "SELECT nextval('bill_number_seq')", nativeQuery = true)
+    long nextBillNumberBlock();
+
     List<Bill> findAllByStatus(BillStatus status);
 
-    @Query("SELECT b FROM Bill b WHERE b.status = :status " +
+    boolean existsByStatus(BillStatus status);
+
+    // страница истории сразу в BillHistoryDto, без загрузки Bill/Party/RestaurantTable/Waiter;
+    // порядок (closed_at desc, id) совпадает с индексом idx_bills_status_closed_at_id
+    String HISTORY_PAGE_SELECT = "SELECT new uz.billsplitter2.demo.dto.response.BillHistoryDto(" +
+           "b.id, b.billNumber, p.id, t.id, t.tableNumber, w.id, w.username, w.fullName, " +
+           "b.itemsTotal, b.serviceFeePercent, b.serviceFeeAmount, b.totalAmount, b.status, b.createdAt, b.closedAt) " +
+           "FROM Bill b JOIN b.party p JOIN p.table t JOIN p.waiter w " +
+           "WHERE b.status = :status " +
+           "AND (:startDate IS NULL OR b.closedAt >= :startDate) " +
+           "AND (:endDate IS NULL OR b.closedAt <= :endDate) " +
+           "AND (:waiterId IS NULL OR w.id = :waiterId) ";
+    String HISTORY_PAGE_ORDER = "ORDER BY b.closedAt DESC, b.id ASC";
+
+    // первая страница истории
+    @Query(HISTORY_PAGE_SELECT + HISTORY_PAGE_ORDER)
+    List<BillHistoryDto> findHistoryFirstPage(
+        @Param("status") BillStatus status,
+        @Param("startDate") OffsetDateTime startDate,
+        @Param("endDate") OffsetDateTime endDate,
+        @Param("waiterId") UUID waiterId,
+        Limit limit
+    );
+
+    // следующая страница после строки курсора: отдельный запрос без ветки IS NULL для курсора,
+    // иначе общий план не ограничивает по нему диапазон индекса; closedAt <= :afterClosedAt -
+    // верхняя граница диапазона, остальное условие отсекает уже выданные строки с тем же closedAt
+    @Query(HISTORY_PAGE_SELECT +
+           "AND b.closedAt <= :afterClosedAt " +
+           "AND (b.closedAt < :afterClosedAt OR b.id > :afterId) " +
+           HISTORY_PAGE_ORDER)
+    List<BillHistoryDto> findHistoryPageAfter(
+        @Param("status") BillStatus status,
+        @Param("startDate") OffsetDateTime startDate,
+        @Param("endDate") OffsetDateTime endDate,
+        @Param("waiterId") UUID waiterId,
+        @Param("afterClosedAt") OffsetDateTime afterClosedAt,
+        @Param("afterId") UUID afterId,
+        Limit limit
+    );
+
+    // итоги закрытых счетов за период одним агрегатом
+    @Query("SELECT COUNT(b) AS bills, COALESCE(SUM(b.totalAmount), 0) AS revenue, " +
+           "COALESCE(SUM(b.serviceFeeAmount), 0) AS serviceFees " +
+           "FROM Bill b WHERE b.status = :status " +
+           "AND (:startDate IS NULL OR b.closedAt >= :startDate) " +
+           "AND (:endDate IS NULL OR b.closedAt <= :endDate)")
+    AnalyticsBucketView aggregateClosedBills(
+        @Param("status") BillStatus status,
+        @Param("startDate") OffsetDateTime startDate,
+        @Param("endDate") OffsetDateTime endDate
+    );
+
+    @Query("SELECT CAST(w.id AS String) AS bucket, w.username AS label, COUNT(b) AS bills, " +
+           "SUM(b.totalAmount) AS revenue, SUM(b.serviceFeeAmount) AS serviceFees " +
+           "FROM Bill b JOIN b.party p JOIN p.waiter w WHERE b.status = :status " +
+           "AND (:startDate IS NULL OR b.closedAt >= :startDate) " +
+           "AND (:endDate IS NULL OR b.closedAt <= :endDate) " +
+           "GROUP BY w.id, w.username ORDER BY SUM(b.totalAmount) DESC")
+    List<AnalyticsBucketView> aggregateClosedBillsByWaiter(
+        @Param("status") BillStatus status,
+        @Param("startDate") OffsetDateTime startDate,
+        @Param("endDate") OffsetDateTime endDate
+    );
+
+    @Query("SELECT CAST(t.id AS String) AS bucket, t.tableNumber AS label, COUNT(b) AS bills, " +
+           "SUM(b.totalAmount) AS revenue, SUM(b.serviceFeeAmount) AS serviceFees " +
+           "FROM Bill b JOIN b.party p JOIN p.table t WHERE b.status = :status " +
            "AND (:startDate IS NULL OR b.closedAt >= :startDate) " +
            "AND (:endDate IS NULL OR b.closedAt <= :endDate) " +
-           "AND (:waiterId IS NULL OR b.party.waiter.id = :waiterId) " +
-           "ORDER BY b.closedAt DESC")
-    List<Bill> findClosedBillsWithFilters(
+           "GROUP BY t.id, t.tableNumber ORDER BY t.tableNumber")
+    List<AnalyticsBucketView> aggregateClosedBillsByTable(
         @Param("status") BillStatus status,
+        @Param("startDate") OffsetDateTime startDate,
+        @Param("endDate") OffsetDateTime endDate
+    );
+
+    // час и день считаются в часовом поясе заведения (AT TIME ZONE), а не в поясе сессии бд;
+    // группировка во внешнем запросе: выражение с параметром в GROUP BY postgres не сопоставит с SELECT
+    @Query(value = "SELECT h.bucket AS bucket, h.bucket AS label, COUNT(*) AS bills, " +
+                   "SUM(h.total_amount) AS revenue, SUM(h.service_fee_amount) AS serviceFees " +
+                   "FROM (SELECT TO_CHAR(b.closed_at AT TIME ZONE :zone, 'HH24') AS bucket, " +
+                   "b.total_amount, b.service_fee_amount FROM bills b WHERE b.status = 'CLOSED' " +
+                   "AND (CAST(:startDate AS TIMESTAMP WITH TIME ZONE) IS NULL OR b.closed_at >= :startDate) " +
+                   "AND (CAST(:endDate AS TIMESTAMP WITH TIME ZONE) IS NULL OR b.closed_at <= :endDate)) h " +
+                   "GROUP BY h.bucket ORDER BY h.bucket",
+           nativeQuery = true)
+    List<AnalyticsBucketView> aggregateClosedBillsByHourOfDay(
+        @Param("startDate") OffsetDateTime startDate,
+        @Param("endDate") OffsetDateTime endDate,
+        @Param("zone") String zone
+    );
+
+    @Query(value = "SELECT d.bucket AS bucket, d.bucket AS label, COUNT(*) AS bills, " +
+                   "SUM(d.total_amount) AS revenue, SUM(d.service_fee_amount) AS serviceFees " +
+                   "FROM (SELECT TO_CHAR(b.closed_at AT TIME ZONE :zone, 'YYYY-MM-DD') AS bucket, " +
+                   "b.total_amount, b.service_fee_amount FROM bills b WHERE b.status = 'CLOSED' " +
+                   "AND (CAST(:startDate AS TIMESTAMP WITH TIME ZONE) IS NULL OR b.closed_at >= :startDate) " +
+                   "AND (CAST(:endDate AS TIMESTAMP WITH TIME ZONE) IS NULL OR b.closed_at <= :endDate)) d " +
+                   "GROUP BY d.bucket ORDER BY d.bucket",
+           nativeQuery = true)
+    List<AnalyticsBucketView> aggregateClosedBillsByDay(
         @Param("startDate") OffsetDateTime startDate,
         @Param("endDate") OffsetDateTime endDate,
-        @Param("waiterId") UUID waiterId
+        @Param("zone") String zone
     );
 }
@@ -0,0 +1,99 @@
+package uz.billsplitter2.demo.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import uz.billsplitter2.demo.entity.DailyBillRollup;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface DailyBillRollupRepository extends JpaRepository<DailyBillRollup, DailyBillRollup.Key> {
+
+    // атомарное прибавление закрытого счета к строке свертки (postgres upsert)
+    @Modifying
+    @Query(value = "INSERT INTO daily_bill_rollups (rollup_date, hour_of_day, waiter_id, table_id, " +
+                   "bill_count, items_total, service_fees, total_amount) " +
+                   "VALUES (:rollupDate, :hourOfDay, :waiterId, :tableId, 1, :itemsTotal, :serviceFees, :totalAmount) " +
+                   "ON CONFLICT (rollup_date, hour_of_day, waiter_id, table_id) DO UPDATE SET " +
+                   "bill_count = daily_bill_rollups.bill_count + 1, " +
+                   "items_total = daily_bill_rollups.items_total + EXCLUDED.items_total, " +
+                   "service_fees = daily_bill_rollups.service_fees + EXCLUDED.service_fees, " +
+                   "total_amount = daily_bill_rollups.total_amount + EXCLUDED.total_amount",
+           nativeQuery = true)
+    void addClosedBill(
+        @Param("rollupDate") LocalDate rollupDate,
+        @Param("hourOfDay") int hourOfDay,
+        @Param("waiterId") UUID waiterId,
+        @Param("tableId") UUID tableId,
+        @Param("itemsTotal") BigDecimal itemsTotal,
+        @Param("serviceFees") BigDecimal serviceFees,
+        @Param("totalAmount") BigDecimal totalAmount
+    );
+
+    // закрытия счетов ждут окончания пересборки, иначе их прибавка потеряется при DELETE
+    @Modifying
+    @Query(value = "LOCK TABLE daily_bill_rollups IN EXCLUSIVE MODE", nativeQuery = true)
+    void lockForRebuild();
+
+    // пересборка свертки из bills; день и час через TO_CHAR, как в разбивке аналитики
+    @Modifying
+    @Query(value = "INSERT INTO daily_bill_rollups (rollup_date, hour_of_day, waiter_id, table_id, " +
+                   "bill_count, items_total, service_fees, total_amount) " +
+                   "SELECT CAST(s.local_date AS DATE), CAST(s.local_hour AS INTEGER), s.waiter_id, s.table_id, " +
+                   "COUNT(*), SUM(s.items_total), SUM(s.service_fee_amount), SUM(s.total_amount) " +
+                   "FROM (SELECT TO_CHAR(b.closed_at AT TIME ZONE :zone, 'YYYY-MM-DD') AS local_date, " +
+                   "TO_CHAR(b.closed_at AT TIME ZONE :zone, 'HH24') AS local_hour, p.waiter_id, p.table_id, " +
+                   "b.items_total, b.service_fee_amount, b.total_amount " +
+                   "FROM bills b JOIN parties p ON p.id = b.party_id " +
+                   "WHERE b.status = 'CLOSED' AND b.closed_at IS NOT NULL) s " +
+                   "GROUP BY s.local_date, s.local_hour, s.waiter_id, s.table_id",
+           nativeQuery = true)
+    int insertFromClosedBills(@Param("zone") String zone);
+
+    @Query("SELECT COALESCE(SUM(r.billCount), 0) AS bills, COALESCE(SUM(r.totalAmount), 0) AS revenue, " +
+           "COALESCE(SUM(r.serviceFees), 0) AS serviceFees " +
+           "FROM DailyBillRollup r " +
+           "WHERE (:fromDate IS NULL OR r.rollupDate >= :fromDate) " +
+           "AND (:toDate IS NULL OR r.rollupDate <= :toDate)")
+    AnalyticsBucketView aggregate(@Param("fromDate") LocalDate fromDate, @Param("toDate") LocalDate toDate);
+
+    @Query("SELECT CAST(w.id AS String) AS bucket, w.username AS label, SUM(r.billCount) AS bills, " +
+           "SUM(r.totalAmount) AS revenue, SUM(r.serviceFees) AS serviceFees " +
+           "FROM DailyBillRollup r JOIN Waiter w ON w.id = r.waiterId " +
+           "WHERE (:fromDate IS NULL OR r.rollupDate >= :fromDate) " +
+           "AND (:toDate IS NULL OR r.rollupDate <= :toDate) " +
+           "GROUP BY w.id, w.username")
+    List<AnalyticsBucketView> aggregateByWaiter(@Param("fromDate") LocalDate fromDate, @Param("toDate") LocalDate toDate);
+
+    @Query("SELECT CAST(t.id AS String) AS bucket, t.tableNumber AS label, SUM(r.billCount) AS bills, " +
+           "SUM(r.totalAmount) AS revenue, SUM(r.serviceFees) AS serviceFees " +
+           "FROM DailyBillRollup r JOIN RestaurantTable t ON t.id = r.tableId " +
+           "WHERE (:fromDate IS NULL OR r.rollupDate >= :fromDate) " +
+           "AND (:toDate IS NULL OR r.rollupDate <= :toDate) " +
+           "GROUP BY t.id, t.tableNumber")
+    List<AnalyticsBucketView> aggregateByTable(@Param("fromDate") LocalDate fromDate, @Param("toDate") LocalDate toDate);
+
+    // группа часа в том же виде, что TO_CHAR(..., 'HH24'): две цифры
+    @Query("SELECT pad(CAST(r.hourOfDay AS String) with 2 leading '0') AS bucket, " +
+           "pad(CAST(r.hourOfDay AS String) with 2 leading '0') AS label, SUM(r.billCount) AS bills, " +
+           "SUM(r.totalAmount) AS revenue, SUM(r.serviceFees) AS serviceFees " +
+           "FROM DailyBillRollup r " +
+           "WHERE (:fromDate IS NULL OR r.rollupDate >= :fromDate) " +
+           "AND (:toDate IS NULL OR r.rollupDate <= :toDate) " +
+           "GROUP BY r.hourOfDay")
+    List<AnalyticsBucketView> aggregateByHourOfDay(@Param("fromDate") LocalDate fromDate, @Param("toDate") LocalDate toDate);
+
+    @Query("SELECT CAST(r.rollupDate AS String) AS bucket, CAST(r.rollupDate AS String) AS label, " +
+           "SUM(r.billCount) AS bills, SUM(r.totalAmount) AS revenue, SUM(r.serviceFees) AS serviceFees " +
+           "FROM DailyBillRollup r " +
+           "WHERE (:fromDate IS NULL OR r.rollupDate >= :fromDate) " +
+           "AND (:toDate IS NULL OR r.rollupDate <= :toDate) " +
+           "GROUP BY r.rollupDate")
+    List<AnalyticsBucketView> aggregateByDay(@Param("fromDate") LocalDate fromDate, @Param("toDate") LocalDate toDate);
+}
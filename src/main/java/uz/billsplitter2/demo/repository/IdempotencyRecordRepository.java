@@ -0,0 +1,61 @@
+package uz.billsplitter2.demo.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import uz.billsplitter2.demo.entity.IdempotencyRecord;
+
+import java.time.OffsetDateTime;
+
+// каждый метод - отдельная короткая транзакция, кроме insertPending из транзакции самого запроса:
+// фильтр работает вне транзакции запроса
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    // запись ключа одним insert без предварительного select; занятый ключ - нарушение первичного ключа;
+    // в открытой транзакции запроса выполняется в ней
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO idempotency_keys (record_key, request_hash, created_at) VALUES (:key, :hash, :now)",
+           nativeQuery = true)
+    void insertPending(@Param("key") String key, @Param("hash") String requestHash, @Param("now") OffsetDateTime now);
+
+    // повторный захват устаревшей записи: проходит только у запроса, заставшего ту же created_at
+    @Transactional
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.requestHash = :hash, r.createdAt = :now, r.status = NULL, " +
+           "r.contentType = NULL, r.responseBody = NULL, r.completedAt = NULL " +
+           "WHERE r.key = :key AND r.createdAt = :seen")
+    int restart(
+        @Param("key") String key,
+        @Param("hash") String requestHash,
+        @Param("seen") OffsetDateTime seenCreatedAt,
+        @Param("now") OffsetDateTime now
+    );
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.status = :status, r.contentType = :contentType, " +
+           "r.responseBody = :body, r.completedAt = :now WHERE r.key = :key AND r.status IS NULL")
+    int complete(
+        @Param("key") String key,
+        @Param("status") int status,
+        @Param("contentType") String contentType,
+        @Param("body") byte[] body,
+        @Param("now") OffsetDateTime now
+    );
+
+    // ответ не сохраняется (5xx, Retry-After): повтор выполнит запрос заново
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.key = :key AND r.status IS NULL")
+    int deletePending(@Param("key") String key);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.createdAt < :before")
+    int deleteCreatedBefore(@Param("before") OffsetDateTime before);
+}
@@ -0,0 +1,21 @@
+package uz.billsplitter2.demo.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import uz.billsplitter2.demo.entity.OrderItemRequest;
+
+import java.time.OffsetDateTime;
+
+@Repository
+public interface OrderItemRequestRepository extends JpaRepository<OrderItemRequest, OrderItemRequest.Key> {
+
+    // очистка по индексу created_at одним delete, без загрузки строк
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM OrderItemRequest r WHERE r.createdAt < :before")
+    int deleteCreatedBefore(@Param("before") OffsetDateTime before);
+}
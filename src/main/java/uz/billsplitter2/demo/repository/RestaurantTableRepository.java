@@ -1,10 +1,14 @@
 package uz.billsplitter2.demo.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import uz.billsplitter2.demo.entity.RestaurantTable;
 import uz.billsplitter2.demo.enums.TableStatus;
 
+import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -15,4 +19,15 @@ public interface RestaurantTableRepository extends JpaRepository<RestaurantTable
     Optional<RestaurantTable> findByTableNumber(String tableNumber);
 
     List<RestaurantTable> findAllByStatus(TableStatus status);
+
+    // условная смена статуса одним update: строку меняет только запрос, заставший другой статус,
+    // одновременные запросы получают 0; версия увеличивается, как при обычном сохранении сущности
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE RestaurantTable t SET t.status = :status, t.version = t.version + 1, t.updatedAt = :now " +
+           "WHERE t.id = :id AND t.status <> :status")
+    int updateStatusIfDifferent(
+        @Param("id") UUID id,
+        @Param("status") TableStatus status,
+        @Param("now") OffsetDateTime now
+    );
 }
@@ -0,0 +1,73 @@
+package uz.billsplitter2.demo.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import uz.billsplitter2.demo.entity.Waiter;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+// официанты по keycloak subject между запросами; метрики cache.gets/cache.evictions с тегом cache=current-waiter
+@Component
+public class CurrentWaiterCache {
+
+    static final String CACHE_NAME = "current-waiter";
+
+    // в кэше лежат снимки, наружу отдаются копии: общий экземпляр сущности между потоками не делим
+    private final Cache<String, Waiter> cache;
+
+    public CurrentWaiterCache(
+            MeterRegistry meterRegistry,
+            @Value("${app.security.waiter-cache.max-size:10000}") long maxSize,
+            @Value("${app.security.waiter-cache.ttl:5m}") Duration ttl
+    ) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    // отсутствие официанта не кэшируется: после создания он виден сразу
+    public Optional<Waiter> get(String keycloakId, Function<String, Optional<Waiter>> loader) {
+        Waiter snapshot = cache.get(keycloakId, key -> loader.apply(key).map(CurrentWaiterCache::copy).orElse(null));
+        return Optional.ofNullable(snapshot).map(CurrentWaiterCache::copy);
+    }
+
+    // сброс сразу и повторно после коммита: параллельный запрос мог перечитать старую строку до коммита
+    public void invalidate(String keycloakId) {
+        cache.invalidate(keycloakId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(keycloakId);
+                }
+            });
+        }
+    }
+
+    private static Waiter copy(Waiter source) {
+        Waiter copy = Waiter.builder()
+                .keycloakId(source.getKeycloakId())
+                .username(source.getUsername())
+                .email(source.getEmail())
+                .fullName(source.getFullName())
+                .role(source.getRole())
+                .active(source.getActive())
+                .build();
+        copy.setId(source.getId());
+        copy.setCreatedAt(source.getCreatedAt());
+        copy.setUpdatedAt(source.getUpdatedAt());
+        copy.setVersion(source.getVersion());
+        return copy;
+    }
+}
@@ -1,64 +1,96 @@
 package uz.billsplitter2.demo.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.security.authentication.AbstractAuthenticationToken;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.oauth2.jwt.Jwt;
-import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 @Component
 public class KeycloakJwtConverter implements Converter<Jwt, AbstractAuthenticationToken> {
 
+    // различных наборов ролей единицы, поэтому готовые authorities переиспользуются между токенами
+    private static final int ROLE_SETS_CACHE_SIZE = 256;
+
+    private final Cache<RoleClaims, ResolvedRoles> roleSets = Caffeine.newBuilder()
+            .maximumSize(ROLE_SETS_CACHE_SIZE)
+            .build();
+
     @Value("${keycloak.client-id:billsplitter-api}")
     private String clientId;
 
     @Override
     public AbstractAuthenticationToken convert(Jwt jwt) {
-        Collection<GrantedAuthority> authorities = extractAuthorities(jwt);
-        return new JwtAuthenticationToken(jwt, authorities);
+        RoleClaims claims = new RoleClaims(realmRoles(jwt), clientRoles(jwt));
+        ResolvedRoles resolved = roleSets.get(claims, KeycloakJwtConverter::resolve);
+        return new WaiterAuthenticationToken(jwt, resolved.authorities(), resolved.bits());
     }
 
-    private Collection<GrantedAuthority> extractAuthorities(Jwt jwt) {
-        Set<String> roles = new HashSet<>();
-
+    private List<?> realmRoles(Jwt jwt) {
         Map<String, Object> realmAccess = jwt.getClaim("realm_access");
-        if (realmAccess != null && realmAccess.containsKey("roles")) {
-            Object realmRoles = realmAccess.get("roles");
-            if (realmRoles instanceof Collection<?> collection) {
-                collection.stream()
-                        .filter(Objects::nonNull)
-                        .map(Object::toString)
-                        .forEach(roles::add);
-            }
+        if (realmAccess != null && realmAccess.get("roles") instanceof Collection<?> roles) {
+            return asList(roles);
         }
+        return List.of();
+    }
 
+    private List<?> clientRoles(Jwt jwt) {
         Map<String, Object> resourceAccess = jwt.getClaim("resource_access");
-        if (resourceAccess != null && clientId != null && resourceAccess.containsKey(clientId)) {
-            Object clientAccess = resourceAccess.get(clientId);
-            if (clientAccess instanceof Map<?, ?> clientMap && clientMap.containsKey("roles")) {
-                Object clientRoles = clientMap.get("roles");
-                if (clientRoles instanceof Collection<?> collection) {
-                    collection.stream()
-                            .filter(Objects::nonNull)
-                            .map(Object::toString)
-                            .forEach(roles::add);
-                }
-            }
+        if (resourceAccess != null && clientId != null
+                && resourceAccess.get(clientId) instanceof Map<?, ?> clientAccess
+                && clientAccess.get("roles") instanceof Collection<?> roles) {
+            return asList(roles);
         }
+        return List.of();
+    }
+
+    private static List<?> asList(Collection<?> roles) {
+        return roles instanceof List<?> list ? list : new ArrayList<>(roles);
+    }
+
+    private static ResolvedRoles resolve(RoleClaims claims) {
+        Set<String> roles = new HashSet<>();
+        collect(claims.realmRoles(), roles);
+        collect(claims.clientRoles(), roles);
+
+        Set<GrantedAuthority> authorities = new HashSet<>();
+        int bits = 0;
+        for (String role : roles) {
+            String upper = role.toUpperCase();
+            String authority = upper.startsWith("ROLE_") ? upper : "ROLE_" + upper;
+            authorities.add(new SimpleGrantedAuthority(authority));
+            bits |= switch (authority) {
+                case "ROLE_ADMIN" -> WaiterAuthenticationToken.ROLE_ADMIN;
+                case "ROLE_WAITER" -> WaiterAuthenticationToken.ROLE_WAITER;
+                default -> 0;
+            };
+        }
+        return new ResolvedRoles(Set.copyOf(authorities), bits);
+    }
+
+    private static void collect(Collection<?> claim, Set<String> roles) {
+        claim.stream()
+                .filter(Objects::nonNull)
+                .map(Object::toString)
+                .forEach(roles::add);
+    }
+
+    // сырые списки ролей из claims realm_access и resource_access.<client-id>
+    private record RoleClaims(List<?> realmRoles, List<?> clientRoles) {
+    }
 
-        return roles.stream()
-                .map(role -> role.toUpperCase().startsWith("ROLE_") ? role.toUpperCase() : "ROLE_" + role.toUpperCase())
-                .map(SimpleGrantedAuthority::new)
-                .collect(Collectors.toSet());
+    private record ResolvedRoles(Set<GrantedAuthority> authorities, int bits) {
     }
 }
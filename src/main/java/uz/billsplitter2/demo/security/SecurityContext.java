@@ -5,6 +5,8 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 import uz.billsplitter2.demo.entity.Waiter;
 import uz.billsplitter2.demo.exception.ResourceNotFoundException;
 import uz.billsplitter2.demo.exception.UnauthorizedException;
@@ -16,7 +18,11 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class SecurityContext {
 
+    // для прочих jwt-аутентификаций официант запроса хранится в атрибутах запроса
+    private static final String REQUEST_WAITER_ATTRIBUTE = SecurityContext.class.getName() + ".currentWaiter";
+
     private final WaiterRepository waiterRepository;
+    private final CurrentWaiterCache currentWaiterCache;
 
     public Waiter getCurrentWaiter() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
@@ -31,8 +37,29 @@ public class SecurityContext {
         }
 
         String keycloakId = jwt.getSubject();
-        return waiterRepository.findByKeycloakId(keycloakId)
-                .orElseThrow(() -> new ResourceNotFoundException("Waiter not found for keycloak ID: " + keycloakId));
+
+        // токен от KeycloakJwtConverter живет один запрос и сам хранит найденного официанта
+        if (authentication instanceof WaiterAuthenticationToken token) {
+            Waiter waiter = token.getCurrentWaiter();
+            if (waiter == null) {
+                waiter = loadWaiter(keycloakId);
+                token.setCurrentWaiter(waiter);
+            }
+            return waiter;
+        }
+
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request != null
+                && request.getAttribute(REQUEST_WAITER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof Waiter waiter
+                && keycloakId.equals(waiter.getKeycloakId())) {
+            return waiter;
+        }
+
+        Waiter waiter = loadWaiter(keycloakId);
+        if (request != null) {
+            request.setAttribute(REQUEST_WAITER_ATTRIBUTE, waiter, RequestAttributes.SCOPE_REQUEST);
+        }
+        return waiter;
     }
 
     public UUID getCurrentWaiterId() {
@@ -44,6 +71,9 @@ public class SecurityContext {
         if (authentication == null) {
             return false;
         }
+        if (authentication instanceof WaiterAuthenticationToken token) {
+            return token.hasRole(WaiterAuthenticationToken.ROLE_ADMIN);
+        }
         return authentication.getAuthorities().stream()
                 .anyMatch(auth -> auth.getAuthority().equals("ROLE_ADMIN"));
     }
@@ -53,6 +83,9 @@ public class SecurityContext {
         if (authentication == null) {
             return false;
         }
+        if (authentication instanceof WaiterAuthenticationToken token) {
+            return token.hasRole(WaiterAuthenticationToken.ROLE_WAITER);
+        }
         return authentication.getAuthorities().stream()
                 .anyMatch(auth -> auth.getAuthority().equals("ROLE_WAITER"));
     }
@@ -60,4 +93,9 @@ public class SecurityContext {
     public String getCurrentUsername() {
         return getCurrentWaiter().getUsername();
     }
+
+    private Waiter loadWaiter(String keycloakId) {
+        return currentWaiterCache.get(keycloakId, waiterRepository::findByKeycloakId)
+                .orElseThrow(() -> new ResourceNotFoundException("Waiter not found for keycloak ID: " + keycloakId));
+    }
 }
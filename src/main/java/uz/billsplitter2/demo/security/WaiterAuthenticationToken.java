@@ -0,0 +1,47 @@
+package uz.billsplitter2.demo.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import uz.billsplitter2.demo.entity.Waiter;
+
+import java.util.Collection;
+import java.util.UUID;
+
+// jwt-аутентификация с ролями в битовой маске и официантом, найденным за время запроса
+public class WaiterAuthenticationToken extends JwtAuthenticationToken {
+
+    public static final int ROLE_ADMIN = 1;
+    public static final int ROLE_WAITER = 1 << 1;
+
+    private final int roles;
+
+    // заполняется SecurityContext при первом обращении: запросы без официанта его не ищут
+    private transient volatile Waiter currentWaiter;
+
+    public WaiterAuthenticationToken(Jwt jwt, Collection<? extends GrantedAuthority> authorities, int roles) {
+        super(jwt, authorities);
+        this.roles = roles;
+    }
+
+    public boolean hasRole(int role) {
+        return (roles & role) != 0;
+    }
+
+    public int getRoles() {
+        return roles;
+    }
+
+    public UUID getWaiterId() {
+        Waiter waiter = currentWaiter;
+        return waiter == null ? null : waiter.getId();
+    }
+
+    Waiter getCurrentWaiter() {
+        return currentWaiter;
+    }
+
+    void setCurrentWaiter(Waiter waiter) {
+        this.currentWaiter = waiter;
+    }
+}
@@ -0,0 +1,11 @@
+package uz.billsplitter2.demo.service;
+
+import uz.billsplitter2.demo.dto.request.BillRequestDto;
+import uz.billsplitter2.demo.dto.response.BillBatchEntryDto;
+
+import java.util.List;
+
+public interface BillBatchCalculationService {
+
+    List<BillBatchEntryDto> calculateBatch(List<BillRequestDto> requests, String path);
+}
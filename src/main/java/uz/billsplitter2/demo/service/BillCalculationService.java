@@ -1,8 +1,14 @@
 package uz.billsplitter2.demo.service;
 
 import uz.billsplitter2.demo.dto.request.BillRequestDto;
+import uz.billsplitter2.demo.dto.request.ParticipantTotalDto;
 import uz.billsplitter2.demo.dto.response.BillResponseDto;
 
+import java.util.List;
+
 public interface BillCalculationService {
     BillResponseDto split(BillRequestDto requestDto);
+
+    // расчет по готовым суммам позиций участников: только сервисный сбор и раздача его остатка
+    BillResponseDto splitTotals(List<ParticipantTotalDto> totals);
 }
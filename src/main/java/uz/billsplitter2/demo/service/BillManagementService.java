@@ -15,7 +15,9 @@ public interface BillManagementService {
 
     BillDto getBillById(UUID id);
 
-    OrderItemDto addOrderItem(UUID billId, AddOrderItemDto dto);
+    OrderItemDto addOrderItem(UUID billId, AddOrderItemDto dto, String idempotencyKey);
+
+    List<OrderItemDto> addOrderItems(UUID billId, List<AddOrderItemDto> dtos, String idempotencyKey);
 
     void removeOrderItem(UUID billId, UUID itemId);
 
@@ -0,0 +1,9 @@
+package uz.billsplitter2.demo.service;
+
+// номер нового счета (bills.bill_number): уникальный, короткий и возрастающий, чтобы
+// вставки шли в правый край индекса; другая реализация подключается своим бином вместо
+// SequenceBillNumberGenerator (BillNumberConfig)
+public interface BillNumberGenerator {
+
+    String next();
+}
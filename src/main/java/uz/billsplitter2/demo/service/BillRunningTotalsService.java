@@ -0,0 +1,28 @@
+package uz.billsplitter2.demo.service;
+
+import uz.billsplitter2.demo.dto.request.ParticipantTotalDto;
+import uz.billsplitter2.demo.entity.Bill;
+import uz.billsplitter2.demo.entity.OrderItem;
+
+import java.util.List;
+
+public interface BillRunningTotalsService {
+
+    // вызывается до сохранения позиции
+    void addItem(Bill bill, OrderItem item);
+
+    // то же для нескольких позиций: доли гостей читаются один раз
+    void addItems(Bill bill, List<OrderItem> items);
+
+    // вызывается до удаления позиции
+    void removeItem(Bill bill, OrderItem item);
+
+    // итоги для предпросмотра, без записи в бд
+    List<ParticipantTotalDto> currentTotals(Bill bill);
+
+    // итоги для закрытия счета, в режиме проверки сверяются с полным пересчетом
+    List<ParticipantTotalDto> finalTotals(Bill bill);
+
+    // итоги пересоберутся из позиций при следующем обращении
+    void invalidate(Bill bill);
+}
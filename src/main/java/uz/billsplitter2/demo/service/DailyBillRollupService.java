@@ -0,0 +1,15 @@
+package uz.billsplitter2.demo.service;
+
+import uz.billsplitter2.demo.entity.Bill;
+
+public interface DailyBillRollupService {
+
+    // вызывается в транзакции закрытия счета, после bill.close()
+    void recordClosedBill(Bill bill);
+
+    // полная пересборка свертки из закрытых счетов, возвращает число строк
+    int rebuild();
+
+    // пересборка, только если свертка пуста, а закрытые счета есть (первый запуск после миграции)
+    boolean rebuildIfEmpty();
+}
@@ -0,0 +1,47 @@
+package uz.billsplitter2.demo.service;
+
+import java.util.concurrent.CompletableFuture;
+
+// ответы изменяющих запросов по ключу Idempotency-Key: первый запрос с ключом выполняется,
+// повторы получают его сохраненный ответ
+public interface IdempotencyStore {
+
+    Claim claim(String key, String requestHash);
+
+    // после выполнения, до отправки ответа: null - ключ за этим запросом; иначе ключ в бд занят другим
+    // запросом, изменения этого откатились, ответ не отправляется, а вместо него - этот результат;
+    // keep - ответ будет сохранен, поэтому ключ записывается, если транзакция запроса его не записала
+    Claim confirm(String key, boolean keep);
+
+    // ответ выполненного запроса; после этого повторы с ключом получают его
+    void complete(String key, StoredResponse response);
+
+    // ответ не сохраняется, повтор выполнит запрос заново
+    void release(String key);
+
+    record StoredResponse(int status, String contentType, byte[] body) {
+    }
+
+    sealed interface Claim permits Acquired, Replay, Wait, InProgress, Mismatch {
+    }
+
+    // ключ захвачен на этом экземпляре, запрос выполняется этим вызовом
+    record Acquired() implements Claim {
+    }
+
+    record Replay(StoredResponse response) implements Claim {
+    }
+
+    // запрос с тем же ключом выполняется на этом экземпляре: его ответ придет в result,
+    // null - ответ не сохранен, ключ нужно захватить заново
+    record Wait(CompletableFuture<StoredResponse> result) implements Claim {
+    }
+
+    // запрос с тем же ключом выполняется на другом экземпляре
+    record InProgress() implements Claim {
+    }
+
+    // ключ уже использован с другим запросом
+    record Mismatch() implements Claim {
+    }
+}
@@ -2,6 +2,8 @@ package uz.billsplitter2.demo.service;
 
 import uz.billsplitter2.demo.dto.keycloak.KeycloakUserRepresentation;
 
+import java.util.Set;
+
 public interface KeycloakAdminService {
 
     /**
@@ -46,6 +48,13 @@ public interface KeycloakAdminService {
      */
     void assignRealmRole(String userId, String roleName);
 
+    /**
+     * Assign several roles to user in Keycloak with one role-mapping request
+     * @param userId Keycloak user ID
+     * @param roleNames Role names to assign
+     */
+    void assignRealmRoles(String userId, Set<String> roleNames);
+
     /**
      * Remove role from user in Keycloak
      * @param userId Keycloak user ID
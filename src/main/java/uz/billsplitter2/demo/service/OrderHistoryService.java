@@ -2,7 +2,7 @@ package uz.billsplitter2.demo.service;
 
 import uz.billsplitter2.demo.dto.response.AnalyticsDto;
 import uz.billsplitter2.demo.dto.response.BillDto;
-import uz.billsplitter2.demo.dto.response.BillHistoryDto;
+import uz.billsplitter2.demo.dto.response.BillHistoryPageDto;
 import uz.billsplitter2.demo.enums.BillStatus;
 
 import java.time.OffsetDateTime;
@@ -11,7 +11,7 @@ import java.util.UUID;
 
 public interface OrderHistoryService {
 
-    List<BillHistoryDto> getClosedBills(OffsetDateTime startDate, OffsetDateTime endDate, UUID waiterId);
+    BillHistoryPageDto getClosedBills(OffsetDateTime startDate, OffsetDateTime endDate, UUID waiterId, String cursor, Integer size);
 
     BillDto getBillDetails(UUID billId);
 
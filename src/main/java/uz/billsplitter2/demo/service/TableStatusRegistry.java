@@ -0,0 +1,20 @@
+package uz.billsplitter2.demo.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import uz.billsplitter2.demo.dto.response.TableStatusSnapshotDto;
+import uz.billsplitter2.demo.entity.RestaurantTable;
+
+import java.util.UUID;
+
+public interface TableStatusRegistry {
+
+    TableStatusSnapshotDto snapshot();
+
+    // lastVersion - версия последнего полученного события (Last-Event-ID), null - начать со снимка
+    SseEmitter subscribe(Long lastVersion);
+
+    // изменения применяются после коммита текущей транзакции, вне транзакции - сразу
+    void tableChanged(RestaurantTable table);
+
+    void tableRemoved(UUID tableId);
+}
@@ -0,0 +1,11 @@
+package uz.billsplitter2.demo.service;
+
+import uz.billsplitter2.demo.dto.request.CreateWaiterDto;
+import uz.billsplitter2.demo.dto.response.WaiterImportEntryDto;
+
+import java.util.List;
+
+public interface WaiterImportService {
+
+    List<WaiterImportEntryDto> importWaiters(List<CreateWaiterDto> waiters, String path);
+}
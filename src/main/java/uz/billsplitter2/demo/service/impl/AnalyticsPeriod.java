@@ -0,0 +1,48 @@
+package uz.billsplitter2.demo.service.impl;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+// период аналитики: целые дни (из daily_bill_rollups) и неполные крайние дни (из bills);
+// null в границах целых дней - без ограничения, hasWholeDays = false - все из bills
+record AnalyticsPeriod(boolean hasWholeDays, LocalDate firstWholeDay, LocalDate lastWholeDay, List<Range> edges) {
+
+    // отрезок закрытия счетов с включенными границами, как в фильтре closed_at >= start AND closed_at <= end
+    record Range(OffsetDateTime start, OffsetDateTime end) {
+    }
+
+    static AnalyticsPeriod of(OffsetDateTime startDate, OffsetDateTime endDate, ZoneId zone) {
+        LocalDate first = startDate == null ? null : firstWholeDay(startDate, zone);
+        // день endDate неполный при любом времени: целые дни заканчиваются накануне
+        LocalDate last = endDate == null ? null : endDate.atZoneSameInstant(zone).toLocalDate().minusDays(1);
+
+        if (first != null && last != null && first.isAfter(last)) {
+            return new AnalyticsPeriod(false, null, null, List.of(new Range(startDate, endDate)));
+        }
+
+        List<Range> edges = new ArrayList<>(2);
+        if (startDate != null && startDate.isBefore(startOf(first, zone))) {
+            // closed_at в postgres хранится с точностью до микросекунды: <= полночь - 1 мкс то же, что < полночь
+            edges.add(new Range(startDate, startOf(first, zone).minus(1, ChronoUnit.MICROS)));
+        }
+        if (endDate != null) {
+            edges.add(new Range(startOf(last.plusDays(1), zone), endDate));
+        }
+        return new AnalyticsPeriod(true, first, last, edges);
+    }
+
+    private static LocalDate firstWholeDay(OffsetDateTime startDate, ZoneId zone) {
+        ZonedDateTime local = startDate.atZoneSameInstant(zone);
+        LocalDate day = local.toLocalDate();
+        return local.isEqual(day.atStartOfDay(zone)) ? day : day.plusDays(1);
+    }
+
+    private static OffsetDateTime startOf(LocalDate day, ZoneId zone) {
+        return day.atStartOfDay(zone).toOffsetDateTime();
+    }
+}
@@ -0,0 +1,81 @@
+package uz.billsplitter2.demo.service.impl;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import uz.billsplitter2.demo.dto.request.BillRequestDto;
+import uz.billsplitter2.demo.dto.response.BillBatchEntryDto;
+import uz.billsplitter2.demo.dto.response.ErrorResponse;
+import uz.billsplitter2.demo.exception.ApplicationException;
+import uz.billsplitter2.demo.exception.ValidationException;
+import uz.billsplitter2.demo.service.BillBatchCalculationService;
+import uz.billsplitter2.demo.service.BillCalculationService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BillBatchCalculationServiceImpl implements BillBatchCalculationService {
+
+    private final BillCalculationService calculationService;
+    private final Validator validator;
+    private final TaskExecutor billCalculationExecutor;
+
+    // параллельный расчет пакета счетов: порядок сохраняется, ошибка одного счета не роняет пакет;
+    // размер пакета ограничивает BillController еще при чтении тела
+    @Override
+    public List<BillBatchEntryDto> calculateBatch(List<BillRequestDto> requests, String path) {
+        if (requests == null || requests.isEmpty()) {
+            throw new ValidationException("Batch must contain at least one bill");
+        }
+
+        List<CompletableFuture<BillBatchEntryDto>> futures = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            int index = i;
+            BillRequestDto request = requests.get(i);
+            futures.add(CompletableFuture.supplyAsync(() -> calculateEntry(index, request, path), billCalculationExecutor));
+        }
+
+        return futures.stream()
+                .map(CompletableFuture::join)
+                .toList();
+    }
+
+    private BillBatchEntryDto calculateEntry(int index, BillRequestDto request, String path) {
+        try {
+            ensureValid(request);
+            return BillBatchEntryDto.success(index, calculationService.split(request));
+        } catch (ApplicationException ex) {
+            ErrorResponse error = ErrorResponse.of(ex.getCode(), ex.getMessage(), ex.getStatus(), path);
+            return BillBatchEntryDto.failure(index, error);
+        } catch (RuntimeException ex) {
+            log.error("Unhandled exception in batch entry {}", index, ex);
+            ErrorResponse error = ErrorResponse.of("INTERNAL_ERROR", "Unexpected error", HttpStatus.INTERNAL_SERVER_ERROR, path);
+            return BillBatchEntryDto.failure(index, error);
+        }
+    }
+
+    // та же bean validation, что @Valid на одиночном /calculate, но для каждого счета отдельно
+    private void ensureValid(BillRequestDto request) {
+        if (request == null) {
+            throw new ValidationException("Batch entry is empty or malformed");
+        }
+        Set<ConstraintViolation<BillRequestDto>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            String message = violations.stream()
+                    .map(v -> v.getPropertyPath() + " " + v.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+            throw new ValidationException(message);
+        }
+    }
+}
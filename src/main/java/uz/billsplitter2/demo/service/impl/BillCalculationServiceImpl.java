@@ -7,6 +7,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import uz.billsplitter2.demo.dto.request.BillRequestDto;
 import uz.billsplitter2.demo.dto.request.OrderItemRequestDto;
+import uz.billsplitter2.demo.dto.request.ParticipantTotalDto;
 import uz.billsplitter2.demo.dto.response.BillResponseDto;
 import uz.billsplitter2.demo.dto.response.ParticipantShareDto;
 import uz.billsplitter2.demo.exception.ValidationException;
@@ -15,7 +16,6 @@ import uz.billsplitter2.demo.service.BillCalculationService;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -46,19 +46,45 @@ public class BillCalculationServiceImpl implements BillCalculationService {
 
         BigDecimal normalizedServiceFee = defaultIfNull(serviceFeePercent, BigDecimal.ZERO);
 
-        if (normalizedServiceFee.compareTo(BigDecimal.ZERO) < 0) {
-            throw new ValidationException("Service fee percent cannot be negative");
-        }
-
-        ensureValid(dto);
+        BillCalculationValidator.ensureServiceFeeValid(normalizedServiceFee);
+        BillCalculationValidator.ensureValid(dto);
 
         BigDecimal itemsTotal = dto.items().stream()
-                .map(OrderItemRequestDto::price)
+                .map(this::lineTotal)
                 .reduce(BigDecimal.ZERO, BigDecimal::add)
                 .setScale(MONEY_SCALE, RoundingMode.HALF_UP);
 
         LinkedHashMap<String, ParticipantPortion> portions = allocateItemTotals(dto.items());
 
+        return applyServiceFee(portions, itemsTotal, normalizedServiceFee);
+    }
+
+    // расчет по промежуточным итогам открытого счета: доли позиций уже распределены
+    @Override
+    public BillResponseDto splitTotals(List<ParticipantTotalDto> totals) {
+
+        BigDecimal normalizedServiceFee = defaultIfNull(serviceFeePercent, BigDecimal.ZERO);
+
+        BillCalculationValidator.ensureServiceFeeValid(normalizedServiceFee);
+        BillCalculationValidator.ensureValid(totals);
+
+        LinkedHashMap<String, ParticipantPortion> portions = new LinkedHashMap<>();
+        for (ParticipantTotalDto total : totals) {
+            portions.computeIfAbsent(total.name(), ParticipantPortion::new).addItemsShare(total.itemsTotal());
+        }
+
+        // цены хранятся в копейках, поэтому сумма долей совпадает с суммой цен позиций
+        BigDecimal itemsTotal = totals.stream()
+                .map(ParticipantTotalDto::itemsTotal)
+                .reduce(BigDecimal.ZERO, BigDecimal::add)
+                .setScale(MONEY_SCALE, RoundingMode.HALF_UP);
+
+        return applyServiceFee(portions, itemsTotal, normalizedServiceFee);
+    }
+
+    // сервисный сбор, его распределение и итоговые доли участников
+    private BillResponseDto applyServiceFee(LinkedHashMap<String, ParticipantPortion> portions,
+                                            BigDecimal itemsTotal, BigDecimal normalizedServiceFee) {
         BigDecimal serviceFeeApplied = percentageOf(itemsTotal, normalizedServiceFee)
                 .setScale(MONEY_SCALE, RoundingMode.HALF_UP);
 
@@ -75,43 +101,14 @@ public class BillCalculationServiceImpl implements BillCalculationService {
         return new BillResponseDto(itemsTotal, serviceFeeApplied, totalToPay, shares);
     }
 
-    // проверка валидности данных запроса
-    private void ensureValid(BillRequestDto dto) {
-        if (dto.items().isEmpty()) {
-            throw new ValidationException("At least one order item is required");
-        }
-
-        boolean hasInvalidItem = dto.items().stream().anyMatch(item ->
-                item.price() == null
-                        || item.price().compareTo(BigDecimal.ZERO) <= 0
-                        || item.participants() == null
-                        || item.participants().isEmpty()
-        );
-        if (hasInvalidItem) {
-            throw new ValidationException("Each order item must have price and participants");
-        }
-
-        boolean hasBlankNames = dto.items().stream()
-                .flatMap(item -> item.participants().stream())
-                .anyMatch(name -> name == null || name.isBlank());
-        if (hasBlankNames) {
-            throw new ValidationException("Participant name cannot be blank");
-        }
-
-        boolean hasEmptyItemName = dto.items().stream()
-                .map(OrderItemRequestDto::name)
-                .anyMatch(name -> name == null || name.isBlank());
-        if (hasEmptyItemName) {
-            throw new ValidationException("Item name cannot be blank");
-        }
-    }
-
     // распределение сумм позиций между участниками
     private LinkedHashMap<String, ParticipantPortion> allocateItemTotals(List<OrderItemRequestDto> items) {
         LinkedHashMap<String, ParticipantPortion> totals = new LinkedHashMap<>();
 
         for (OrderItemRequestDto item : items) {
-            List<ItemShare> shares = splitAmount(item.price(), item.participants());
+            List<ItemShare> shares = item.hasUnitAssignment()
+                    ? assignUnits(item)
+                    : splitAmount(lineTotal(item), item);
             for (ItemShare share : shares) {
                 ParticipantPortion portion = totals.computeIfAbsent(
                         share.name(),
@@ -128,25 +125,68 @@ public class BillCalculationServiceImpl implements BillCalculationService {
         return totals;
     }
 
-    // разделение суммы позиции на равные части с распределением остатка
-    private List<ItemShare> splitAmount(BigDecimal amount, List<String> participants) {
-        BigDecimal normalizedAmount = amount.setScale(MONEY_SCALE, RoundingMode.HALF_UP);
+    // сумма позиции: цена единицы в копейках на количество, совпадает с суммой закрепленных единиц
+    private BigDecimal lineTotal(OrderItemRequestDto item) {
+        return unitPrice(item).multiply(BigDecimal.valueOf(item.quantity()));
+    }
+
+    private BigDecimal unitPrice(OrderItemRequestDto item) {
+        return item.price().setScale(MONEY_SCALE, RoundingMode.HALF_UP);
+    }
+
+    // единицы закреплены за участниками: доля - цена единицы на их число, остатка нет
+    private List<ItemShare> assignUnits(OrderItemRequestDto item) {
+        BigDecimal unitPrice = unitPrice(item);
+        List<ItemShare> shares = new ArrayList<>(item.participants().size());
+        for (int i = 0; i < item.participants().size(); i++) {
+            String participant = item.participants().get(i);
+            BigDecimal amount = unitPrice.multiply(BigDecimal.valueOf(item.units().get(participant)));
+            shares.add(new ItemShare(participant, amount, BigDecimal.ZERO));
+        }
+        return shares;
+    }
+
+    // разделение суммы позиции: фиксированные суммы как есть, остаток - пропорционально весам
+    // (по умолчанию 1, то есть поровну) с раздачей копеек по наибольшей дробной части
+    private List<ItemShare> splitAmount(BigDecimal amount, OrderItemRequestDto item) {
+        List<String> participants = item.participants();
         int count = participants.size();
-        BigDecimal rawShare = normalizedAmount.divide(BigDecimal.valueOf(count), MONEY_SCALE + EXTRA_SCALE, RoundingMode.HALF_UP);
+
+        BigDecimal rest = amount;
+        BigDecimal totalWeight = BigDecimal.ZERO;
+        for (String participant : participants) {
+            BigDecimal fixed = item.fixedAmounts().get(participant);
+            if (fixed != null) {
+                rest = rest.subtract(fixed.setScale(MONEY_SCALE, RoundingMode.HALF_UP));
+            } else {
+                totalWeight = totalWeight.add(item.weights().getOrDefault(participant, BigDecimal.ONE));
+            }
+        }
 
         List<ItemShare> shares = new ArrayList<>(count);
+        List<ItemShare> weighted = new ArrayList<>(count);
         BigDecimal roundedSum = BigDecimal.ZERO;
 
         for (int i = 0; i < count; i++) {
+            String participant = participants.get(i);
+            BigDecimal fixed = item.fixedAmounts().get(participant);
+            if (fixed != null) {
+                shares.add(new ItemShare(participant, fixed.setScale(MONEY_SCALE, RoundingMode.HALF_UP), BigDecimal.ZERO));
+                continue;
+            }
+            BigDecimal weight = item.weights().getOrDefault(participant, BigDecimal.ONE);
+            BigDecimal rawShare = rest.multiply(weight).divide(totalWeight, MONEY_SCALE + EXTRA_SCALE, RoundingMode.HALF_UP);
             BigDecimal rounded = rawShare.setScale(MONEY_SCALE, RoundingMode.HALF_UP);
-            BigDecimal fractionalPart = rawShare.remainder(BigDecimal.ONE);
-            shares.add(new ItemShare(i, participants.get(i), rounded, fractionalPart));
+            ItemShare share = new ItemShare(participant, rounded, rawShare.remainder(BigDecimal.ONE));
+            shares.add(share);
+            weighted.add(share);
             roundedSum = roundedSum.add(rounded);
         }
 
-        BigDecimal remainder = normalizedAmount.subtract(roundedSum).setScale(MONEY_SCALE, RoundingMode.HALF_UP);
+        BigDecimal remainder = rest.subtract(roundedSum).setScale(MONEY_SCALE, RoundingMode.HALF_UP);
         if (remainder.signum() != 0) {
-            distributeRemainder(shares, remainder);
+            // остаток только по долям с весом, порядок в списке - порядок участников
+            distributeRemainder(weighted, remainder);
         }
 
         return shares;
@@ -156,13 +196,12 @@ public class BillCalculationServiceImpl implements BillCalculationService {
     private void distributeServiceFee(Map<String, ParticipantPortion> portions, BigDecimal itemsTotal, BigDecimal serviceFee) {
         List<FeeShare> shares = new ArrayList<>(portions.size());
         BigDecimal roundedSum = BigDecimal.ZERO;
-        int order = 0;
 
         for (ParticipantPortion portion : portions.values()) {
             BigDecimal rawShare = serviceFee.multiply(portion.itemsTotal()).divide(itemsTotal, MONEY_SCALE + EXTRA_SCALE, RoundingMode.HALF_UP);
             BigDecimal rounded = rawShare.setScale(MONEY_SCALE, RoundingMode.HALF_UP);
             BigDecimal fractional = rawShare.remainder(BigDecimal.ONE);
-            shares.add(new FeeShare(order++, portion, rounded, fractional));
+            shares.add(new FeeShare(portion, rounded, fractional));
             roundedSum = roundedSum.add(rounded);
         }
 
@@ -185,35 +224,33 @@ public class BillCalculationServiceImpl implements BillCalculationService {
         return Objects.requireNonNullElse(value, fallback);
     }
 
+    // копейки остатка по наибольшей дробной части, при равенстве - по порядку в списке
     private void distributeRemainder(List<? extends AdjustableShare> shares, BigDecimal remainder) {
-        int centsToDistribute = remainder.movePointRight(MONEY_SCALE).intValue();
-        Comparator<AdjustableShare> comparator = Comparator.comparing(AdjustableShare::fractionalPart).reversed()
-                .thenComparingInt(AdjustableShare::order);
-        shares.sort(comparator);
-
-        BigDecimal step = ONE_CENT.multiply(BigDecimal.valueOf(remainder.signum()));
-        int iterations = Math.abs(centsToDistribute);
-        for (int i = 0; i < iterations; i++) {
-            shares.get(i % shares.size()).bump(step);
+        long[] residues = new long[shares.size()];
+        for (int i = 0; i < residues.length; i++) {
+            residues[i] = shares.get(i).fractionalPart().movePointRight(MONEY_SCALE + EXTRA_SCALE).longValueExact();
+        }
+
+        long[] deltas = RemainderAllocator.allocate(residues, remainder.movePointRight(MONEY_SCALE).longValueExact());
+        for (int i = 0; i < deltas.length; i++) {
+            if (deltas[i] != 0) {
+                shares.get(i).bump(ONE_CENT.multiply(BigDecimal.valueOf(deltas[i])));
+            }
         }
     }
 
     private interface AdjustableShare {
         BigDecimal fractionalPart();
 
-        int order();
-
         void bump(BigDecimal delta);
     }
 
     private static final class ItemShare implements AdjustableShare {
-        private final int order;
         private final String name;
         private BigDecimal amount;
         private final BigDecimal fractionalPart;
 
-        private ItemShare(int order, String name, BigDecimal amount, BigDecimal fractionalPart) {
-            this.order = order;
+        private ItemShare(String name, BigDecimal amount, BigDecimal fractionalPart) {
             this.name = name;
             this.amount = amount;
             this.fractionalPart = fractionalPart;
@@ -232,11 +269,6 @@ public class BillCalculationServiceImpl implements BillCalculationService {
             return fractionalPart;
         }
 
-        @Override
-        public int order() {
-            return order;
-        }
-
         @Override
         public void bump(BigDecimal delta) {
             amount = amount.add(delta);
@@ -244,13 +276,11 @@ public class BillCalculationServiceImpl implements BillCalculationService {
     }
 
     private static final class FeeShare implements AdjustableShare {
-        private final int order;
         private final ParticipantPortion portion;
         private BigDecimal amount;
         private final BigDecimal fractionalPart;
 
-        private FeeShare(int order, ParticipantPortion portion, BigDecimal amount, BigDecimal fractionalPart) {
-            this.order = order;
+        private FeeShare(ParticipantPortion portion, BigDecimal amount, BigDecimal fractionalPart) {
             this.portion = portion;
             this.amount = amount;
             this.fractionalPart = fractionalPart;
@@ -261,11 +291,6 @@ public class BillCalculationServiceImpl implements BillCalculationService {
             return fractionalPart;
         }
 
-        @Override
-        public int order() {
-            return order;
-        }
-
         @Override
         public void bump(BigDecimal delta) {
             amount = amount.add(delta);
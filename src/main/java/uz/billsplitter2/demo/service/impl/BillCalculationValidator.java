@@ -0,0 +1,159 @@
+package uz.billsplitter2.demo.service.impl;
+
+import uz.billsplitter2.demo.dto.request.BillRequestDto;
+import uz.billsplitter2.demo.dto.request.OrderItemRequestDto;
+import uz.billsplitter2.demo.dto.request.ParticipantTotalDto;
+import uz.billsplitter2.demo.exception.ValidationException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// общие проверки входных данных для всех движков расчета счета
+final class BillCalculationValidator {
+
+    // количество знаков после запятой для денег (копейки)
+    private static final int MONEY_SCALE = 2;
+
+    private BillCalculationValidator() {
+    }
+
+    static void ensureServiceFeeValid(BigDecimal serviceFeePercent) {
+        if (serviceFeePercent.compareTo(BigDecimal.ZERO) < 0) {
+            throw new ValidationException("Service fee percent cannot be negative");
+        }
+    }
+
+    // проверка валидности данных запроса
+    static void ensureValid(BillRequestDto dto) {
+        if (dto.items().isEmpty()) {
+            throw new ValidationException("At least one order item is required");
+        }
+
+        boolean hasInvalidItem = dto.items().stream().anyMatch(item ->
+                item.price() == null
+                        || item.price().compareTo(BigDecimal.ZERO) <= 0
+                        || item.participants() == null
+                        || item.participants().isEmpty()
+        );
+        if (hasInvalidItem) {
+            throw new ValidationException("Each order item must have price and participants");
+        }
+
+        if (dto.items().stream().anyMatch(item -> item.quantity() == null || item.quantity() < 1)) {
+            throw new ValidationException("Item quantity must be at least 1");
+        }
+
+        for (OrderItemRequestDto item : dto.items()) {
+            String violation = itemSharesViolation(item.participants(), item.price(), item.quantity(),
+                    item.units(), item.weights(), item.fixedAmounts());
+            if (violation != null) {
+                throw new ValidationException(violation);
+            }
+        }
+
+        boolean hasBlankNames = dto.items().stream()
+                .flatMap(item -> item.participants().stream())
+                .anyMatch(name -> name == null || name.isBlank());
+        if (hasBlankNames) {
+            throw new ValidationException("Participant name cannot be blank");
+        }
+
+        boolean hasEmptyItemName = dto.items().stream()
+                .map(OrderItemRequestDto::name)
+                .anyMatch(name -> name == null || name.isBlank());
+        if (hasEmptyItemName) {
+            throw new ValidationException("Item name cannot be blank");
+        }
+    }
+
+    // правила долей одной позиции, общие для движков и добавления позиций в счет
+    // (ключи - имена участников или id гостей); null, если нарушений нет
+    static <K> String itemSharesViolation(Collection<K> participants, BigDecimal price, int quantity,
+                                          Map<K, Integer> units, Map<K, BigDecimal> weights,
+                                          Map<K, BigDecimal> fixedAmounts) {
+        Set<K> members = new HashSet<>(participants);
+
+        if (units != null && !units.isEmpty()) {
+            if (hasEntries(weights) || hasEntries(fixedAmounts)) {
+                return "Item units cannot be combined with weights or fixed amounts";
+            }
+            return unitsMatch(members, quantity, units) ? null : "Item units must assign every unit to a participant";
+        }
+
+        if (hasEntries(weights) && weights.entrySet().stream().anyMatch(entry ->
+                !members.contains(entry.getKey()) || entry.getValue() == null || entry.getValue().signum() <= 0)) {
+            return "Item weights must be positive and belong to participants";
+        }
+
+        if (!hasEntries(fixedAmounts)) {
+            return null;
+        }
+        BigDecimal fixedTotal = BigDecimal.ZERO;
+        for (Map.Entry<K, BigDecimal> entry : fixedAmounts.entrySet()) {
+            BigDecimal amount = entry.getValue();
+            if (!members.contains(entry.getKey()) || amount == null || amount.signum() <= 0
+                    || amount.stripTrailingZeros().scale() > MONEY_SCALE) {
+                return "Item fixed amounts must be positive whole cents and belong to participants";
+            }
+            if (hasEntries(weights) && weights.containsKey(entry.getKey())) {
+                return "Participant cannot have both weight and fixed amount";
+            }
+            fixedTotal = fixedTotal.add(amount);
+        }
+
+        BigDecimal lineTotal = price.setScale(MONEY_SCALE, RoundingMode.HALF_UP).multiply(BigDecimal.valueOf(quantity));
+        int comparison = fixedTotal.compareTo(lineTotal);
+        if (comparison > 0) {
+            return "Item fixed amounts exceed item total";
+        }
+        if (fixedAmounts.keySet().containsAll(members) && comparison != 0) {
+            return "Item fixed amounts must add up to item total when every participant is fixed";
+        }
+        return null;
+    }
+
+    // единицы заданы каждому участнику и только им, у каждого не меньше одной, в сумме quantity
+    private static <K> boolean unitsMatch(Set<K> members, int quantity, Map<K, Integer> units) {
+        if (!units.keySet().equals(members)) {
+            return false;
+        }
+        long assigned = 0;
+        for (Integer count : units.values()) {
+            if (count == null || count < 1) {
+                return false;
+            }
+            assigned += count;
+        }
+        return assigned == quantity;
+    }
+
+    private static boolean hasEntries(Map<?, ?> values) {
+        return values != null && !values.isEmpty();
+    }
+
+    // проверка промежуточных итогов участников
+    static void ensureValid(List<ParticipantTotalDto> totals) {
+        if (totals.isEmpty()) {
+            throw new ValidationException("No participants found for items");
+        }
+
+        boolean hasInvalidTotal = totals.stream().anyMatch(total ->
+                total.itemsTotal() == null || total.itemsTotal().signum() < 0
+        );
+        if (hasInvalidTotal) {
+            throw new ValidationException("Participant items total cannot be negative");
+        }
+
+        boolean hasBlankNames = totals.stream()
+                .map(ParticipantTotalDto::name)
+                .anyMatch(name -> name == null || name.isBlank());
+        if (hasBlankNames) {
+            throw new ValidationException("Participant name cannot be blank");
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package uz.billsplitter2.demo.service.impl;
+
+import uz.billsplitter2.demo.exception.ValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.UUID;
+
+// непрозрачный курсор keyset-пагинации истории: позиция (closed_at, id) последнего счета страницы
+record BillHistoryCursor(OffsetDateTime closedAt, UUID id) {
+
+    private static final char SEPARATOR = '|';
+
+    String encode() {
+        String raw = closedAt.toInstant().toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static BillHistoryCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            Instant closedAt = Instant.parse(raw.substring(0, separator));
+            UUID id = UUID.fromString(raw.substring(separator + 1));
+            return new BillHistoryCursor(closedAt.atOffset(ZoneOffset.UTC), id);
+        } catch (RuntimeException e) {
+            throw new ValidationException("Invalid history cursor");
+        }
+    }
+}
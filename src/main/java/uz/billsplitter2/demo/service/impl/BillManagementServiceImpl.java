@@ -1,56 +1,95 @@
 package uz.billsplitter2.demo.service.impl;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import uz.billsplitter2.demo.dto.request.AddOrderItemDto;
 import uz.billsplitter2.demo.dto.request.CreateBillDto;
+import uz.billsplitter2.demo.dto.request.ParticipantTotalDto;
 import uz.billsplitter2.demo.dto.response.BillDto;
 import uz.billsplitter2.demo.dto.response.BillResponseDto;
 import uz.billsplitter2.demo.dto.response.OrderItemDto;
 import uz.billsplitter2.demo.entity.Bill;
 import uz.billsplitter2.demo.entity.Guest;
 import uz.billsplitter2.demo.entity.OrderItem;
+import uz.billsplitter2.demo.entity.OrderItemRequest;
 import uz.billsplitter2.demo.entity.Party;
 import uz.billsplitter2.demo.enums.BillStatus;
 import uz.billsplitter2.demo.enums.PartyStatus;
 import uz.billsplitter2.demo.exception.BusinessLogicException;
 import uz.billsplitter2.demo.exception.ResourceNotFoundException;
 import uz.billsplitter2.demo.exception.UnauthorizedException;
+import uz.billsplitter2.demo.exception.ValidationException;
 import uz.billsplitter2.demo.mapper.BillMapper;
 import uz.billsplitter2.demo.mapper.OrderItemMapper;
 import uz.billsplitter2.demo.repository.BillRepository;
 import uz.billsplitter2.demo.repository.GuestRepository;
 import uz.billsplitter2.demo.repository.OrderItemRepository;
+import uz.billsplitter2.demo.repository.OrderItemRequestRepository;
 import uz.billsplitter2.demo.repository.PartyRepository;
 import uz.billsplitter2.demo.security.SecurityContext;
 import uz.billsplitter2.demo.service.BillCalculationService;
 import uz.billsplitter2.demo.service.BillManagementService;
+import uz.billsplitter2.demo.service.BillNumberGenerator;
+import uz.billsplitter2.demo.service.BillRunningTotalsService;
+import uz.billsplitter2.demo.service.DailyBillRollupService;
 
 import java.math.BigDecimal;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Transactional
 public class BillManagementServiceImpl implements BillManagementService {
 
+    // длина колонки order_item_requests.idempotency_key
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 64;
+
+    // ключи map по порядку: одинаковое тело запроса дает одинаковый hash
+    private static final ObjectWriter REQUEST_WRITER = new ObjectMapper().writer()
+            .with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+
     private final BillRepository billRepository;
     private final PartyRepository partyRepository;
     private final OrderItemRepository orderItemRepository;
+    private final OrderItemRequestRepository orderItemRequestRepository;
     private final GuestRepository guestRepository;
     private final BillMapper billMapper;
     private final OrderItemMapper orderItemMapper;
     private final BillCalculationService calculationService;
+    private final BillRunningTotalsService runningTotalsService;
+    private final DailyBillRollupService rollupService;
     private final SecurityContext securityContext;
+    private final Validator validator;
+    private final BillNumberGenerator billNumberGenerator;
 
     @Value("${app.bill.service-fee-percent}")
     BigDecimal serviceFeePercent;
 
+    @Value("${app.bill.items.batch-max-size:200}")
+    int maxItemBatchSize;
+
     // создание нового счета для компании
     @Override
     public BillDto createBill(CreateBillDto dto) {
@@ -67,7 +106,7 @@ public class BillManagementServiceImpl implements BillManagementService {
             throw new BusinessLogicException("Party already has an open bill");
         }
 
-        String billNumber = generateBillNumber();
+        String billNumber = billNumberGenerator.next();
 
         Bill bill = Bill.builder()
                 .party(party)
@@ -77,6 +116,7 @@ public class BillManagementServiceImpl implements BillManagementService {
                 .serviceFeeAmount(BigDecimal.ZERO)
                 .totalAmount(BigDecimal.ZERO)
                 .status(BillStatus.OPEN)
+                .guestSharesReady(true)
                 .build();
 
         Bill saved = billRepository.save(bill);
@@ -87,51 +127,90 @@ public class BillManagementServiceImpl implements BillManagementService {
     @Override
     @Transactional(readOnly = true)
     public BillDto getBillById(UUID id) {
-        Bill bill = findBillOrThrow(id);
+        Bill bill = findBillWithCalculationInputOrThrow(id);
         checkAccess(bill.getParty());
         return billMapper.toDto(bill);
     }
 
     // добавление позиции в счет с привязкой к гостям
     @Override
-    public OrderItemDto addOrderItem(UUID billId, AddOrderItemDto dto) {
-        Bill bill = findBillOrThrow(billId);
-        checkAccess(bill.getParty());
+    public OrderItemDto addOrderItem(UUID billId, AddOrderItemDto dto, String idempotencyKey) {
+        validateIdempotencyKey(idempotencyKey);
+        String violation = guestSharesViolation(dto);
+        if (violation != null) {
+            throw new ValidationException(violation);
+        }
+        String requestHash = idempotencyKey != null ? requestHash(dto) : null;
+        Bill bill = lockBillForItems(billId);
 
-        if (bill.getStatus() != BillStatus.OPEN) {
-            throw new BusinessLogicException("Cannot add items to closed bill");
+        List<OrderItem> replayed = replay(idempotencyKey, billId, requestHash);
+        if (replayed != null) {
+            if (replayed.isEmpty()) {
+                throw new ResourceNotFoundException("Order item created by this request was removed");
+            }
+            return orderItemMapper.toDto(replayed.get(0));
         }
+        ensureOpenForItems(bill);
 
         // проверка существования всех гостей
         List<Guest> guests = guestRepository.findAllById(dto.guestIds());
         if (guests.size() != dto.guestIds().size()) {
             throw new ResourceNotFoundException("Some guests not found");
         }
+        checkGuestsBelongToParty(bill, guests);
 
-        // проверка что все гости принадлежат этой компании
-        for (Guest guest : guests) {
-            if (!guest.getParty().getId().equals(bill.getParty().getId())) {
-                throw new BusinessLogicException("Guest does not belong to this party");
-            }
-        }
-
-        OrderItem orderItem = OrderItem.builder()
-                .bill(bill)
-                .name(dto.name())
-                .price(dto.price())
-                .quantity(dto.quantity())
-                .guests(guests)
-                .build();
+        OrderItem orderItem = toOrderItem(bill, dto, guests);
 
+        runningTotalsService.addItem(bill, orderItem);
         OrderItem saved = orderItemRepository.save(orderItem);
+        rememberRequest(idempotencyKey, billId, requestHash, List.of(saved));
         return orderItemMapper.toDto(saved);
     }
 
+    // пакетное добавление позиций: все или ничего, гости всего пакета проверяются одним запросом,
+    // uuid позиций генерируются до insert, поэтому hibernate пишет позиции и их гостей jdbc-батчами
+    @Override
+    public List<OrderItemDto> addOrderItems(UUID billId, List<AddOrderItemDto> dtos, String idempotencyKey) {
+        validateIdempotencyKey(idempotencyKey);
+        validateItemBatch(dtos);
+        String requestHash = idempotencyKey != null ? requestHash(dtos) : null;
+        Bill bill = lockBillForItems(billId);
+
+        List<OrderItem> replayed = replay(idempotencyKey, billId, requestHash);
+        if (replayed != null) {
+            return replayed.stream().map(orderItemMapper::toDto).toList();
+        }
+        ensureOpenForItems(bill);
+
+        Set<UUID> guestIds = new LinkedHashSet<>();
+        dtos.forEach(dto -> guestIds.addAll(dto.guestIds()));
+        List<Guest> found = guestRepository.findAllById(guestIds);
+        if (found.size() != guestIds.size()) {
+            throw new ResourceNotFoundException("Some guests not found");
+        }
+        checkGuestsBelongToParty(bill, found);
+
+        Map<UUID, Guest> guestsById = new HashMap<>();
+        found.forEach(guest -> guestsById.put(guest.getId(), guest));
+
+        List<OrderItem> orderItems = new ArrayList<>(dtos.size());
+        for (AddOrderItemDto dto : dtos) {
+            List<Guest> guests = dto.guestIds().stream().map(guestsById::get).toList();
+            orderItems.add(toOrderItem(bill, dto, new ArrayList<>(guests)));
+        }
+
+        runningTotalsService.addItems(bill, orderItems);
+        List<OrderItem> saved = orderItemRepository.saveAll(orderItems);
+        rememberRequest(idempotencyKey, billId, requestHash, saved);
+        return saved.stream()
+                .map(orderItemMapper::toDto)
+                .toList();
+    }
+
     // удаление позиции из счета
     @Override
     public void removeOrderItem(UUID billId, UUID itemId) {
-        Bill bill = findBillOrThrow(billId);
-        checkAccess(bill.getParty());
+        Bill bill = lockBillForItems(billId);
 
         if (bill.getStatus() != BillStatus.OPEN) {
             throw new BusinessLogicException("Cannot remove items from closed bill");
@@ -144,6 +223,11 @@ public class BillManagementServiceImpl implements BillManagementService {
             throw new BusinessLogicException("Order item does not belong to this bill");
         }
 
+        runningTotalsService.removeItem(bill, orderItem);
+        if (Hibernate.isInitialized(bill.getOrderItems())) {
+            // иначе каскад из загруженной коллекции счета вернет удаленную позицию при flush
+            bill.getOrderItems().remove(orderItem);
+        }
         orderItemRepository.delete(orderItem);
     }
 
@@ -158,32 +242,38 @@ public class BillManagementServiceImpl implements BillManagementService {
             throw new BusinessLogicException("Can only calculate open bills");
         }
 
-        if (bill.getOrderItems().isEmpty()) {
+        // суммы позиций по гостям уже накоплены, остается сервисный сбор
+        List<ParticipantTotalDto> totals = runningTotalsService.currentTotals(bill);
+        if (totals.isEmpty()) {
             throw new BusinessLogicException("Cannot calculate bill with no items");
         }
 
-        return calculationService.split(bill.toBillRequestDto());
+        return calculationService.splitTotals(totals);
     }
 
-    // закрытие счета с финальным расчетом
+    // закрытие счета с финальным расчетом; версия счета проверяется при сохранении:
+    // если позиции изменились после чтения счета, закрытие откатывается с 409 и повторяется клиентом
     @Override
     public BillDto closeBill(UUID billId) {
-        Bill bill = findBillOrThrow(billId);
+        Bill bill = findBillWithCalculationInputOrThrow(billId);
         checkAccess(bill.getParty());
 
         if (bill.getStatus() == BillStatus.CLOSED) {
             throw new BusinessLogicException("Bill is already closed");
         }
 
-        if (bill.getOrderItems().isEmpty()) {
+        List<ParticipantTotalDto> totals = runningTotalsService.finalTotals(bill);
+        if (totals.isEmpty()) {
             throw new BusinessLogicException("Cannot close bill with no items");
         }
 
-        BillResponseDto calculation = calculationService.split(bill.toBillRequestDto());
+        BillResponseDto calculation = calculationService.splitTotals(totals);
         bill.applyCalculationResult(calculation);
         bill.close();
 
         Bill saved = billRepository.save(bill);
+        // в той же транзакции: откат закрытия откатывает и свертку
+        rollupService.recordClosedBill(saved);
         return billMapper.toDto(saved);
     }
 
@@ -193,7 +283,7 @@ public class BillManagementServiceImpl implements BillManagementService {
     public List<OrderItemDto> getOrderItemsByBill(UUID billId) {
         Bill bill = findBillOrThrow(billId);
         checkAccess(bill.getParty());
-        return orderItemRepository.findAllByBillId(billId).stream()
+        return billRepository.findOrderItemsWithGuestsByBillId(billId).stream()
                 .map(orderItemMapper::toDto)
                 .toList();
     }
@@ -210,8 +300,143 @@ public class BillManagementServiceImpl implements BillManagementService {
                 .toList();
     }
 
+    // открытый счет блокируется до конца транзакции до чтения: статус читается уже под блокировкой,
+    // поэтому позиция не попадет в счет, закрытый параллельной транзакцией
+    private Bill lockBillForItems(UUID billId) {
+        // доступ проверяется до блокировки: официант без доступа не держит строку счета и не сбивает
+        // версию одновременному закрытию
+        checkAccess(findBillOrThrow(billId).getParty());
+        billRepository.incrementVersionIfStatus(billId, BillStatus.OPEN, OffsetDateTime.now());
+        // update очистил persistence context, счет читается заново уже под блокировкой
+        return findBillOrThrow(billId);
+    }
+
+    private void ensureOpenForItems(Bill bill) {
+        if (bill.getStatus() != BillStatus.OPEN) {
+            throw new BusinessLogicException("Cannot add items to closed bill");
+        }
+    }
+
+    // позиции, созданные прежним запросом с этим ключом, в порядке запроса; null - запрос новый.
+    // одновременный повтор ждет блокировку счета и видит ключ, записанный первым запросом
+    private List<OrderItem> replay(String idempotencyKey, UUID billId, String requestHash) {
+        if (idempotencyKey == null) {
+            return null;
+        }
+        return orderItemRequestRepository.findById(new OrderItemRequest.Key(billId, idempotencyKey))
+                .map(request -> {
+                    if (!request.getRequestHash().equals(requestHash)) {
+                        throw new BusinessLogicException("Idempotency key was already used for another request");
+                    }
+                    Map<UUID, OrderItem> items = new HashMap<>();
+                    orderItemRepository.findAllById(request.getItemIds()).forEach(item -> items.put(item.getId(), item));
+                    // удаленные с тех пор позиции пропускаются
+                    return request.getItemIds().stream()
+                            .map(items::get)
+                            .filter(Objects::nonNull)
+                            .toList();
+                })
+                .orElse(null);
+    }
+
+    private void rememberRequest(String idempotencyKey, UUID billId, String requestHash, List<OrderItem> items) {
+        if (idempotencyKey == null) {
+            return;
+        }
+        orderItemRequestRepository.save(OrderItemRequest.builder()
+                .idempotencyKey(idempotencyKey)
+                .billId(billId)
+                .requestHash(requestHash)
+                .itemIds(items.stream().map(OrderItem::getId).toList())
+                .build());
+    }
+
+    private static void validateIdempotencyKey(String idempotencyKey) {
+        if (idempotencyKey != null && (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH)) {
+            throw new ValidationException("Idempotency-Key must be 1 to " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+        }
+    }
+
+    private static String requestHash(Object body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(REQUEST_WRITER.writeValueAsBytes(body));
+            return HexFormat.of().formatHex(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Failed to hash request body", e);
+        }
+    }
+
+    // проверка что все гости принадлежат этой компании
+    private void checkGuestsBelongToParty(Bill bill, List<Guest> guests) {
+        for (Guest guest : guests) {
+            if (!guest.getParty().getId().equals(bill.getParty().getId())) {
+                throw new BusinessLogicException("Guest does not belong to this party");
+            }
+        }
+    }
+
+    private OrderItem toOrderItem(Bill bill, AddOrderItemDto dto, List<Guest> guests) {
+        return OrderItem.builder()
+                .bill(bill)
+                .name(dto.name())
+                .price(dto.price())
+                .quantity(dto.quantity())
+                .guestUnits(copyOrNull(dto.guestUnits()))
+                .guestWeights(copyOrNull(dto.guestWeights()))
+                .guestFixedAmounts(copyOrNull(dto.guestFixedAmounts()))
+                .guests(guests)
+                .build();
+    }
+
+    private static <V> Map<UUID, V> copyOrNull(Map<UUID, V> values) {
+        return values == null || values.isEmpty() ? null : new HashMap<>(values);
+    }
+
+    // те же правила долей, что и у движка расчета, по id гостей
+    private String guestSharesViolation(AddOrderItemDto dto) {
+        return BillCalculationValidator.itemSharesViolation(dto.guestIds(), dto.price(), dto.quantity(),
+                dto.guestUnits(), dto.guestWeights(), dto.guestFixedAmounts());
+    }
+
+    // весь пакет проверяется до обращения к бд, ошибка указывает номер позиции
+    private void validateItemBatch(List<AddOrderItemDto> dtos) {
+        if (dtos == null || dtos.isEmpty()) {
+            throw new ValidationException("Batch must contain at least one item");
+        }
+        if (dtos.size() > maxItemBatchSize) {
+            throw new ValidationException("Batch size exceeds limit of " + maxItemBatchSize);
+        }
+        for (int i = 0; i < dtos.size(); i++) {
+            AddOrderItemDto dto = dtos.get(i);
+            if (dto == null) {
+                throw new ValidationException("Item " + i + ": item is required");
+            }
+            Set<ConstraintViolation<AddOrderItemDto>> violations = validator.validate(dto);
+            if (!violations.isEmpty()) {
+                String message = violations.stream()
+                        .map(ConstraintViolation::getMessage)
+                        .sorted()
+                        .collect(Collectors.joining("; "));
+                throw new ValidationException("Item " + i + ": " + message);
+            }
+            if (new HashSet<>(dto.guestIds()).size() != dto.guestIds().size()) {
+                throw new ValidationException("Item " + i + ": duplicate guest");
+            }
+            String violation = guestSharesViolation(dto);
+            if (violation != null) {
+                throw new ValidationException("Item " + i + ": " + violation);
+            }
+        }
+    }
+
     private Bill findBillOrThrow(UUID id) {
-        return billRepository.findById(id)
+        return billRepository.findWithPartyById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Bill not found with id: " + id));
+    }
+
+    // счет с позициями и их гостями за два запроса независимо от числа позиций
+    private Bill findBillWithCalculationInputOrThrow(UUID id) {
+        return billRepository.findWithCalculationInputById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Bill not found with id: " + id));
     }
 
@@ -221,11 +446,4 @@ public class BillManagementServiceImpl implements BillManagementService {
             throw new UnauthorizedException("You don't have access to this bill");
         }
     }
-
-    // генерация уникального номера счета
-    private String generateBillNumber() {
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
-        String random = UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-        return "BILL-" + timestamp + "-" + random;
-    }
 }
@@ -0,0 +1,267 @@
+package uz.billsplitter2.demo.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import uz.billsplitter2.demo.dto.request.BillRequestDto;
+import uz.billsplitter2.demo.dto.request.OrderItemRequestDto;
+import uz.billsplitter2.demo.dto.request.ParticipantTotalDto;
+import uz.billsplitter2.demo.dto.response.BillResponseDto;
+import uz.billsplitter2.demo.dto.response.ParticipantShareDto;
+import uz.billsplitter2.demo.entity.Bill;
+import uz.billsplitter2.demo.entity.BillGuestShare;
+import uz.billsplitter2.demo.entity.Guest;
+import uz.billsplitter2.demo.entity.OrderItem;
+import uz.billsplitter2.demo.exception.ValidationException;
+import uz.billsplitter2.demo.repository.BillGuestShareRepository;
+import uz.billsplitter2.demo.repository.BillRepository;
+import uz.billsplitter2.demo.service.BillCalculationService;
+import uz.billsplitter2.demo.service.BillRunningTotalsService;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Transactional
+public class BillRunningTotalsServiceImpl implements BillRunningTotalsService {
+
+    private final BillGuestShareRepository shareRepository;
+    private final BillRepository billRepository;
+    private final BillCalculationService calculationService;
+
+    // сверка промежуточных итогов с полным пересчетом при закрытии счета
+    @Value("${app.bill.running-totals.verify:false}")
+    boolean verify;
+
+    // добавление долей новой позиции к итогам гостей
+    @Override
+    public void addItem(Bill bill, OrderItem item) {
+        addItems(bill, List.of(item));
+    }
+
+    // доли всех позиций пакета накапливаются в одних и тех же строках, каждая сохраняется один раз
+    @Override
+    public void addItems(Bill bill, List<OrderItem> items) {
+        ensureReady(bill);
+
+        List<BillGuestShare> shares = shareRepository.findAllByBillIdWithGuest(bill.getId());
+        Map<UUID, BillGuestShare> byGuest = indexByGuest(shares);
+        int nextPosition = shares.isEmpty() ? 0 : shares.get(shares.size() - 1).getPosition() + 1;
+
+        Map<UUID, BillGuestShare> changed = new LinkedHashMap<>();
+        for (OrderItem item : items) {
+            for (ItemPart part : splitItem(item)) {
+                BillGuestShare share = byGuest.get(part.guest().getId());
+                if (share == null) {
+                    share = BillGuestShare.builder()
+                            .bill(bill)
+                            .guest(part.guest())
+                            .position(nextPosition++)
+                            .build();
+                    byGuest.put(part.guest().getId(), share);
+                }
+                share.addItemShare(part.amount());
+                changed.put(part.guest().getId(), share);
+            }
+        }
+        changed.values().forEach(shareRepository::save);
+    }
+
+    // вычитание долей удаляемой позиции, гости без позиций выбывают из итогов
+    @Override
+    public void removeItem(Bill bill, OrderItem item) {
+        if (!isReady(bill)) {
+            // итоги пересоберутся при следующем обращении, уже без удаленной позиции
+            return;
+        }
+
+        Map<UUID, BillGuestShare> byGuest = indexByGuest(shareRepository.findAllByBillIdWithGuest(bill.getId()));
+
+        for (ItemPart part : splitItem(item)) {
+            BillGuestShare share = byGuest.get(part.guest().getId());
+            if (share == null) {
+                log.warn("Running totals of bill {} have no share for guest {}, scheduling rebuild", bill.getId(), part.guest().getId());
+                invalidate(bill);
+                return;
+            }
+            share.removeItemShare(part.amount());
+            if (share.getItemCount() <= 0) {
+                shareRepository.delete(share);
+            }
+        }
+    }
+
+    // предпросмотр: готовые итоги из bill_guest_shares, для старых счетов - подсчет в памяти
+    @Override
+    @Transactional(readOnly = true)
+    public List<ParticipantTotalDto> currentTotals(Bill bill) {
+        if (!isReady(bill)) {
+            return accumulate(bill).values().stream()
+                    .map(total -> new ParticipantTotalDto(total.guest.getName().trim(), total.itemsTotal))
+                    .toList();
+        }
+        return toTotals(shareRepository.findAllByBillIdWithGuest(bill.getId()));
+    }
+
+    // закрытие: итоги из bill_guest_shares, в режиме проверки - сверка с полным пересчетом
+    @Override
+    public List<ParticipantTotalDto> finalTotals(Bill bill) {
+        ensureReady(bill);
+        List<BillGuestShare> shares = shareRepository.findAllByBillIdWithGuest(bill.getId());
+
+        if (verify && !matchesFullRecompute(bill, shares)) {
+            rebuild(bill);
+            shares = shareRepository.findAllByBillIdWithGuest(bill.getId());
+        }
+
+        return toTotals(shares);
+    }
+
+    @Override
+    public void invalidate(Bill bill) {
+        bill.setGuestSharesReady(false);
+    }
+
+    private boolean isReady(Bill bill) {
+        return Boolean.TRUE.equals(bill.getGuestSharesReady());
+    }
+
+    private void ensureReady(Bill bill) {
+        if (!isReady(bill)) {
+            rebuild(bill);
+        }
+    }
+
+    // пересборка итогов по всем позициям счета: существующие строки переиспользуются,
+    // чтобы не упереться в уникальность (bill_id, guest_id) при порядке flush insert -> delete
+    private void rebuild(Bill bill) {
+        Map<UUID, BillGuestShare> existing = indexByGuest(shareRepository.findAllByBillIdWithGuest(bill.getId()));
+        int position = 0;
+
+        for (GuestTotal total : accumulate(bill).values()) {
+            BillGuestShare share = existing.remove(total.guest.getId());
+            if (share == null) {
+                share = BillGuestShare.builder().bill(bill).guest(total.guest).build();
+            }
+            share.setPosition(position++);
+            share.setItemsTotal(total.itemsTotal);
+            share.setItemCount(total.itemCount);
+            shareRepository.save(share);
+        }
+
+        shareRepository.deleteAll(existing.values());
+        bill.setGuestSharesReady(true);
+    }
+
+    // полный пересчет сумм позиций по гостям в порядке первого появления
+    private LinkedHashMap<UUID, GuestTotal> accumulate(Bill bill) {
+        if (!Hibernate.isInitialized(bill.getOrderItems())) {
+            // позиции с гостями одним запросом, иначе обход ниже дает запрос на каждую позицию
+            billRepository.findOrderItemsWithGuestsByBillId(bill.getId());
+        }
+
+        LinkedHashMap<UUID, GuestTotal> totals = new LinkedHashMap<>();
+        for (OrderItem item : bill.getOrderItems()) {
+            requireParticipants(item);
+            for (ItemPart part : splitItem(item)) {
+                GuestTotal total = totals.computeIfAbsent(part.guest().getId(), id -> new GuestTotal(part.guest()));
+                total.itemsTotal = total.itemsTotal.add(part.amount());
+                total.itemCount++;
+            }
+        }
+        return totals;
+    }
+
+    // позиция без гостей не входила бы ни в одну долю, и ее сумма пропала бы из счета
+    private static void requireParticipants(OrderItem item) {
+        if (item.getGuests().isEmpty()) {
+            throw new ValidationException("Order item '" + item.getName() + "' has no participants");
+        }
+    }
+
+    // доли гостей в одной позиции по правилам движка расчета
+    private List<ItemPart> splitItem(OrderItem item) {
+        List<Guest> participants = item.getParticipantsInSplitOrder();
+        if (participants.isEmpty()) {
+            return List.of();
+        }
+
+        Map<String, BigDecimal> amounts = new HashMap<>();
+        for (ParticipantShareDto share : calculationService.split(new BillRequestDto(List.of(item.toRequestDto()))).shares()) {
+            amounts.put(share.name(), share.itemsTotal());
+        }
+
+        List<ItemPart> parts = new ArrayList<>(participants.size());
+        for (Guest guest : participants) {
+            parts.add(new ItemPart(guest, amounts.get(guest.getName().trim())));
+        }
+        return parts;
+    }
+
+    // сравнение сумм позиций по гостям с результатом split() по всему счету
+    private boolean matchesFullRecompute(Bill bill, List<BillGuestShare> shares) {
+        bill.getOrderItems().forEach(BillRunningTotalsServiceImpl::requireParticipants);
+        List<OrderItemRequestDto> items = bill.toBillRequestDto().items();
+        if (items.isEmpty()) {
+            return shares.isEmpty();
+        }
+        BillResponseDto recomputed = calculationService.split(new BillRequestDto(items));
+
+        Map<String, BigDecimal> expected = new HashMap<>();
+        for (ParticipantShareDto share : recomputed.shares()) {
+            expected.put(share.name(), share.itemsTotal());
+        }
+
+        Map<String, BigDecimal> actual = new HashMap<>();
+        for (BillGuestShare share : shares) {
+            actual.put(share.getGuest().getName().trim(), share.getItemsTotal());
+        }
+
+        boolean matches = expected.size() == actual.size() && expected.entrySet().stream()
+                .allMatch(entry -> actual.containsKey(entry.getKey())
+                        && actual.get(entry.getKey()).compareTo(entry.getValue()) == 0);
+
+        if (!matches) {
+            log.error("Running totals of bill {} diverged from full recompute: expected {}, actual {}",
+                    bill.getId(), expected, actual);
+        }
+        return matches;
+    }
+
+    private Map<UUID, BillGuestShare> indexByGuest(List<BillGuestShare> shares) {
+        Map<UUID, BillGuestShare> byGuest = new HashMap<>();
+        for (BillGuestShare share : shares) {
+            byGuest.put(share.getGuest().getId(), share);
+        }
+        return byGuest;
+    }
+
+    private List<ParticipantTotalDto> toTotals(List<BillGuestShare> shares) {
+        return shares.stream()
+                .map(share -> new ParticipantTotalDto(share.getGuest().getName().trim(), share.getItemsTotal()))
+                .toList();
+    }
+
+    private record ItemPart(Guest guest, BigDecimal amount) {
+    }
+
+    private static final class GuestTotal {
+        private final Guest guest;
+        private BigDecimal itemsTotal = BigDecimal.ZERO;
+        private int itemCount;
+
+        private GuestTotal(Guest guest) {
+            this.guest = guest;
+        }
+    }
+}
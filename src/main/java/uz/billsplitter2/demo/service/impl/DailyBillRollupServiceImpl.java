@@ -0,0 +1,64 @@
+package uz.billsplitter2.demo.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import uz.billsplitter2.demo.entity.Bill;
+import uz.billsplitter2.demo.entity.Party;
+import uz.billsplitter2.demo.enums.BillStatus;
+import uz.billsplitter2.demo.repository.BillRepository;
+import uz.billsplitter2.demo.repository.DailyBillRollupRepository;
+import uz.billsplitter2.demo.service.DailyBillRollupService;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Transactional
+public class DailyBillRollupServiceImpl implements DailyBillRollupService {
+
+    private final DailyBillRollupRepository rollupRepository;
+    private final BillRepository billRepository;
+
+    // день и час свертки считаются в поясе заведения; при смене пояса свертку нужно пересобрать
+    @Value("${app.analytics.time-zone:UTC}")
+    ZoneId analyticsZone;
+
+    @Override
+    public void recordClosedBill(Bill bill) {
+        ZonedDateTime closedAt = bill.getClosedAt().atZoneSameInstant(analyticsZone);
+        Party party = bill.getParty();
+
+        rollupRepository.addClosedBill(
+                closedAt.toLocalDate(),
+                closedAt.getHour(),
+                party.getWaiter().getId(),
+                party.getTable().getId(),
+                bill.getItemsTotal(),
+                bill.getServiceFeeAmount(),
+                bill.getTotalAmount()
+        );
+    }
+
+    @Override
+    public int rebuild() {
+        rollupRepository.lockForRebuild();
+        rollupRepository.deleteAllInBatch();
+        int rows = rollupRepository.insertFromClosedBills(analyticsZone.getId());
+        log.info("Daily bill rollups rebuilt in zone {}: {} rows", analyticsZone, rows);
+        return rows;
+    }
+
+    @Override
+    public boolean rebuildIfEmpty() {
+        if (rollupRepository.count() > 0 || !billRepository.existsByStatus(BillStatus.CLOSED)) {
+            return false;
+        }
+        rebuild();
+        return true;
+    }
+}
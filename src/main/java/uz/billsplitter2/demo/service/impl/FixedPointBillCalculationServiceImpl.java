@@ -0,0 +1,309 @@
+package uz.billsplitter2.demo.service.impl;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import uz.billsplitter2.demo.dto.request.BillRequestDto;
+import uz.billsplitter2.demo.dto.request.OrderItemRequestDto;
+import uz.billsplitter2.demo.dto.request.ParticipantTotalDto;
+import uz.billsplitter2.demo.dto.response.BillResponseDto;
+import uz.billsplitter2.demo.dto.response.ParticipantShareDto;
+import uz.billsplitter2.demo.service.BillCalculationService;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Движок расчета счета на целых копейках ({@code long}).
+ * <p>
+ * Повторяет правила {@link BillCalculationServiceImpl} шаг в шаг (промежуточная точность 6 знаков,
+ * HALF_UP, раздача остатка по убыванию дробной части и исходному порядку), поэтому результат
+ * совпадает с десятичным движком до масштаба {@link BigDecimal}. Если вход не укладывается
+ * в копейки или в диапазон {@code long} (цена с долями копейки, переполнение), расчет
+ * передается десятичному движку.
+ * <p>
+ * Включается свойством {@code app.bill.calculation-engine=fixed-point}.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "app.bill.calculation-engine", havingValue = "fixed-point")
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class FixedPointBillCalculationServiceImpl implements BillCalculationService {
+
+    // количество знаков после запятой для денег (копейки)
+    private static final int MONEY_SCALE = 2;
+
+    // шаг промежуточной точности относительно копеек (6 знаков против 2)
+    private static final long SUB_CENT_UNITS = 10_000L;
+
+    // единица валюты в промежуточной точности
+    private static final long MICRO_UNITS = 1_000_000L;
+
+    // процент сервисного сбора хранится с точностью 6 знаков
+    private static final int PERCENT_SCALE = 6;
+
+    final BillCalculationServiceImpl decimalEngine;
+
+    @Value("${app.bill.service-fee-percent}")
+    BigDecimal serviceFeePercent;
+
+    @Override
+    public BillResponseDto split(BillRequestDto dto) {
+        BigDecimal normalizedServiceFee = Objects.requireNonNullElse(serviceFeePercent, BigDecimal.ZERO);
+
+        BillCalculationValidator.ensureServiceFeeValid(normalizedServiceFee);
+        BillCalculationValidator.ensureValid(dto);
+
+        try {
+            return splitInCents(dto.items(), normalizedServiceFee);
+        } catch (ArithmeticException e) {
+            // вход вне области целых копеек - считаем точным десятичным движком
+            return decimalEngine.split(dto);
+        }
+    }
+
+    @Override
+    public BillResponseDto splitTotals(List<ParticipantTotalDto> totals) {
+        BigDecimal normalizedServiceFee = Objects.requireNonNullElse(serviceFeePercent, BigDecimal.ZERO);
+
+        BillCalculationValidator.ensureServiceFeeValid(normalizedServiceFee);
+        BillCalculationValidator.ensureValid(totals);
+
+        try {
+            CentLedger ledger = new CentLedger();
+            long itemsTotal = 0;
+            for (ParticipantTotalDto total : totals) {
+                long amount = toCents(total.itemsTotal());
+                itemsTotal = Math.addExact(itemsTotal, amount);
+                ledger.addItemsShare(total.name(), amount);
+            }
+            return settle(ledger, itemsTotal, normalizedServiceFee);
+        } catch (ArithmeticException e) {
+            return decimalEngine.splitTotals(totals);
+        }
+    }
+
+    private BillResponseDto splitInCents(List<OrderItemRequestDto> items, BigDecimal percent) {
+        CentLedger ledger = new CentLedger();
+        long itemsTotal = 0;
+
+        for (OrderItemRequestDto item : items) {
+            long unitPrice = toCents(item.price());
+            itemsTotal = Math.addExact(itemsTotal, Math.multiplyExact(unitPrice, item.quantity()));
+            if (item.hasUnitAssignment()) {
+                for (String participant : item.participants()) {
+                    ledger.addItemsShare(participant, Math.multiplyExact(unitPrice, item.units().get(participant)));
+                }
+            } else if (item.hasCustomShares()) {
+                allocateWeighted(ledger, Math.multiplyExact(unitPrice, item.quantity()), item);
+            } else {
+                allocateItem(ledger, Math.multiplyExact(unitPrice, item.quantity()), item.participants());
+            }
+        }
+
+        return settle(ledger, itemsTotal, percent);
+    }
+
+    // сервисный сбор и итоговые доли по уже распределенным суммам позиций
+    private BillResponseDto settle(CentLedger ledger, long itemsTotal, BigDecimal percent) {
+        long serviceFee = serviceFeeCents(itemsTotal, percent);
+        if (serviceFee != 0) {
+            distributeServiceFee(ledger, itemsTotal, serviceFee);
+        }
+
+        long totalToPay = Math.addExact(itemsTotal, serviceFee);
+
+        List<ParticipantShareDto> shares = new ArrayList<>(ledger.size);
+        for (int i = 0; i < ledger.size; i++) {
+            long total = Math.addExact(ledger.itemsTotals[i], ledger.serviceFees[i]);
+            shares.add(new ParticipantShareDto(
+                    ledger.names.get(i),
+                    money(ledger.itemsTotals[i]),
+                    money(ledger.serviceFees[i]),
+                    money(total),
+                    percentageOf(total, totalToPay)
+            ));
+        }
+
+        return new BillResponseDto(money(itemsTotal), money(serviceFee), money(totalToPay), shares);
+    }
+
+    // равные доли позиции: все дробные части одинаковы, поэтому остаток уходит первым по порядку
+    private void allocateItem(CentLedger ledger, long amount, List<String> participants) {
+        int count = participants.size();
+        long rawShare = divideScaledHalfUp(amount, count);
+        long share = divideHalfUp(rawShare, SUB_CENT_UNITS);
+        long remainder = Math.subtractExact(amount, Math.multiplyExact(share, count));
+
+        long step = Long.signum(remainder);
+        long fullRounds = Math.abs(remainder) / count;
+        long extra = Math.abs(remainder) % count;
+
+        for (int i = 0; i < count; i++) {
+            long bumps = fullRounds + (i < extra ? 1 : 0);
+            ledger.addItemsShare(participants.get(i), share + step * bumps);
+        }
+    }
+
+    // фиксированные суммы как есть, остаток по весам; веса приводятся к целым умножением на 10^scale,
+    // отношение весов и, значит, результат совпадают с десятичным движком
+    private void allocateWeighted(CentLedger ledger, long amount, OrderItemRequestDto item) {
+        List<String> participants = item.participants();
+        int count = participants.size();
+
+        int weightScale = 0;
+        for (BigDecimal weight : item.weights().values()) {
+            weightScale = Math.max(weightScale, weight.stripTrailingZeros().scale());
+        }
+        long defaultWeight = BigDecimal.ONE.movePointRight(weightScale).longValueExact();
+
+        long[] amounts = new long[count];
+        long[] weights = new long[count];
+        boolean[] fixed = new boolean[count];
+        long rest = amount;
+        long totalWeight = 0;
+        for (int i = 0; i < count; i++) {
+            String participant = participants.get(i);
+            BigDecimal fixedAmount = item.fixedAmounts().get(participant);
+            if (fixedAmount != null) {
+                fixed[i] = true;
+                amounts[i] = toCents(fixedAmount);
+                rest = Math.subtractExact(rest, amounts[i]);
+            } else {
+                BigDecimal weight = item.weights().get(participant);
+                weights[i] = weight == null ? defaultWeight : weight.movePointRight(weightScale).longValueExact();
+                totalWeight = Math.addExact(totalWeight, weights[i]);
+            }
+        }
+
+        // остаток раздается только долям с весом: slots - их индексы среди участников
+        long[] residues = new long[count];
+        int[] slots = new int[count];
+        int weightedCount = 0;
+        long roundedSum = 0;
+        for (int i = 0; i < count; i++) {
+            if (fixed[i]) {
+                continue;
+            }
+            long rawShare = divideScaledHalfUp(Math.multiplyExact(rest, weights[i]), totalWeight);
+            amounts[i] = divideHalfUp(rawShare, SUB_CENT_UNITS);
+            roundedSum += amounts[i];
+            residues[weightedCount] = rawShare % MICRO_UNITS;
+            slots[weightedCount++] = i;
+        }
+
+        long[] deltas = RemainderAllocator.allocate(Arrays.copyOf(residues, weightedCount), rest - roundedSum);
+        for (int j = 0; j < weightedCount; j++) {
+            amounts[slots[j]] += deltas[j];
+        }
+        for (int i = 0; i < count; i++) {
+            ledger.addItemsShare(participants.get(i), amounts[i]);
+        }
+    }
+
+    // распределение сервисного сбора пропорционально сумме позиций
+    private void distributeServiceFee(CentLedger ledger, long itemsTotal, long serviceFee) {
+        int count = ledger.size;
+        long[] fees = ledger.serviceFees;
+        long[] residues = new long[count];
+        long roundedSum = 0;
+
+        for (int i = 0; i < count; i++) {
+            long rawShare = divideScaledHalfUp(Math.multiplyExact(serviceFee, ledger.itemsTotals[i]), itemsTotal);
+            fees[i] = divideHalfUp(rawShare, SUB_CENT_UNITS);
+            roundedSum += fees[i];
+
+            // аналог BigDecimal.remainder(ONE): дробная часть в единицах валюты
+            residues[i] = rawShare % MICRO_UNITS;
+        }
+
+        long[] deltas = RemainderAllocator.allocate(residues, serviceFee - roundedSum);
+        for (int i = 0; i < count; i++) {
+            fees[i] += deltas[i];
+        }
+    }
+
+    // сервисный сбор: base * percent / 100 с округлением до 6 знаков, затем до копеек
+    private long serviceFeeCents(long itemsTotal, BigDecimal percent) {
+        if (percent.signum() <= 0) {
+            return 0;
+        }
+        long microPercent = percent.movePointRight(PERCENT_SCALE).longValueExact();
+        long rawFee = divideHalfUp(Math.multiplyExact(itemsTotal, microPercent), SUB_CENT_UNITS);
+        return divideHalfUp(rawFee, SUB_CENT_UNITS);
+    }
+
+    private BigDecimal percentageOf(long total, long totalToPay) {
+        if (totalToPay == 0) {
+            return BigDecimal.ZERO;
+        }
+        return money(divideScaledHalfUp(total, totalToPay));
+    }
+
+    // цена в копейках; доли копейки дают ArithmeticException и уход в десятичный движок
+    private static long toCents(BigDecimal price) {
+        return price.movePointRight(MONEY_SCALE).longValueExact();
+    }
+
+    private static BigDecimal money(long cents) {
+        return BigDecimal.valueOf(cents, MONEY_SCALE);
+    }
+
+    // numerator * 10^4 / denominator с HALF_UP: целая часть отдельно, чтобы произведение не переполняло long
+    private static long divideScaledHalfUp(long numerator, long denominator) {
+        long quotient = numerator / denominator;
+        long remainder = numerator % denominator;
+        return Math.addExact(
+                Math.multiplyExact(quotient, SUB_CENT_UNITS),
+                divideHalfUp(Math.multiplyExact(remainder, SUB_CENT_UNITS), denominator)
+        );
+    }
+
+    // целочисленное деление с округлением HALF_UP (как RoundingMode.HALF_UP), divisor > 0
+    private static long divideHalfUp(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = Math.abs(dividend % divisor);
+        if (remainder >= divisor - remainder) {
+            quotient += Long.signum(dividend);
+        }
+        return quotient;
+    }
+
+    // доли участников в порядке первого появления, как LinkedHashMap в десятичном движке
+    private static final class CentLedger {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        private long[] itemsTotals = new long[8];
+        private long[] serviceFees = new long[8];
+        private int size;
+
+        void addItemsShare(String name, long cents) {
+            Integer index = indexes.get(name);
+            if (index == null) {
+                index = size;
+                indexes.put(name, index);
+                names.add(name);
+                ensureCapacity(++size);
+            }
+            itemsTotals[index] = Math.addExact(itemsTotals[index], cents);
+        }
+
+        private void ensureCapacity(int required) {
+            if (required > itemsTotals.length) {
+                int capacity = Math.max(required, itemsTotals.length * 2);
+                itemsTotals = Arrays.copyOf(itemsTotals, capacity);
+                serviceFees = Arrays.copyOf(serviceFees, capacity);
+            }
+        }
+    }
+}
@@ -5,19 +5,25 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import uz.billsplitter2.demo.dto.request.AddGuestDto;
 import uz.billsplitter2.demo.dto.response.GuestDto;
+import uz.billsplitter2.demo.entity.Bill;
 import uz.billsplitter2.demo.entity.Guest;
+import uz.billsplitter2.demo.entity.OrderItem;
 import uz.billsplitter2.demo.entity.Party;
+import uz.billsplitter2.demo.enums.BillStatus;
 import uz.billsplitter2.demo.enums.PartyStatus;
 import uz.billsplitter2.demo.exception.BusinessLogicException;
 import uz.billsplitter2.demo.exception.ResourceNotFoundException;
 import uz.billsplitter2.demo.exception.UnauthorizedException;
 import uz.billsplitter2.demo.mapper.GuestMapper;
+import uz.billsplitter2.demo.repository.BillRepository;
 import uz.billsplitter2.demo.repository.GuestRepository;
 import uz.billsplitter2.demo.repository.PartyRepository;
 import uz.billsplitter2.demo.security.SecurityContext;
+import uz.billsplitter2.demo.service.BillRunningTotalsService;
 import uz.billsplitter2.demo.service.GuestService;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Service
@@ -27,6 +33,8 @@ public class GuestServiceImpl implements GuestService {
 
     private final GuestRepository guestRepository;
     private final PartyRepository partyRepository;
+    private final BillRepository billRepository;
+    private final BillRunningTotalsService runningTotalsService;
     private final GuestMapper guestMapper;
     private final SecurityContext securityContext;
 
@@ -81,6 +89,23 @@ public class GuestServiceImpl implements GuestService {
             throw new BusinessLogicException("Guest does not belong to this party");
         }
 
+        // бд удалит гостя из позиций, итоги открытого счета нужно пересобрать; позиция, оставшаяся
+        // без участников, выпала бы из счета вместе с суммой, а закрепленные за гостем единицы и
+        // фиксированная сумма разошлись бы с количеством позиции, которое видит официант
+        Optional<Bill> openBill = billRepository.findByPartyIdAndStatus(partyId, BillStatus.OPEN);
+        if (openBill.isPresent()) {
+            List<String> items = billRepository.findOrderItemsWithGuestsByBillId(openBill.get().getId()).stream()
+                    .filter(item -> item.getGuests().stream().anyMatch(g -> g.getId().equals(guestId)))
+                    .filter(item -> item.getGuests().size() == 1 || item.assignsSharesTo(guestId))
+                    .map(OrderItem::getName)
+                    .toList();
+            if (!items.isEmpty()) {
+                throw new BusinessLogicException("Cannot remove guest '" + guest.getName()
+                        + "': order items " + items + " are assigned to this guest only or in units or fixed amounts");
+            }
+            runningTotalsService.invalidate(openBill.get());
+        }
+
         guestRepository.delete(guest);
     }
 
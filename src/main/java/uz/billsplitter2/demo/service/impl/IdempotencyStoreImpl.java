@@ -0,0 +1,298 @@
+package uz.billsplitter2.demo.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import uz.billsplitter2.demo.entity.IdempotencyRecord;
+import uz.billsplitter2.demo.repository.IdempotencyRecordRepository;
+import uz.billsplitter2.demo.service.IdempotencyStore;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// ключи в idempotency_keys, перед таблицей кэш готовых ответов и реестр выполняемых на этом экземпляре
+// запросов: повтор готового запроса не идет в бд, одновременные повторы ждут первый без обращения к бд;
+// новый ключ захватывается в памяти, строка ключа пишется insert'ом в транзакции самого запроса перед ее
+// commit (занятый другим экземпляром ключ откатывает изменения запроса), ответ - update в фоне после отправки
+@Slf4j
+@Service
+public class IdempotencyStoreImpl implements IdempotencyStore, TransactionExecutionListener {
+
+    static final String CACHE_NAME = "idempotency-responses";
+
+    private final IdempotencyRecordRepository repository;
+    private final Duration ttl;
+    private final Duration inProgressTimeout;
+    private final Duration cleanupInterval;
+
+    private final Cache<String, Completed> completed;
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    // ключ, захваченный запросом этого потока: его пишут транзакции, начатые запросом
+    private final ThreadLocal<Pending> current = new ThreadLocal<>();
+
+    private final ExecutorService writer = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("idempotency-writer-", 0).factory());
+
+    private final ScheduledExecutorService cleaner = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("idempotency-cleanup").daemon().factory());
+
+    public IdempotencyStoreImpl(
+            IdempotencyRecordRepository repository,
+            MeterRegistry meterRegistry,
+            @Value("${app.idempotency.ttl:24h}") Duration ttl,
+            @Value("${app.idempotency.in-progress-timeout:30s}") Duration inProgressTimeout,
+            @Value("${app.idempotency.cache.max-size:10000}") long cacheSize,
+            @Value("${app.idempotency.cleanup-interval:15m}") Duration cleanupInterval
+    ) {
+        this.repository = repository;
+        this.ttl = ttl;
+        this.inProgressTimeout = inProgressTimeout;
+        this.cleanupInterval = cleanupInterval;
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, completed, CACHE_NAME);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startCleanup() {
+        long interval = cleanupInterval.toMillis();
+        cleaner.scheduleWithFixedDelay(this::cleanUpQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cleaner.shutdownNow();
+        // дописать ответы, еще не сохраненные в бд
+        writer.close();
+    }
+
+    @Override
+    public Claim claim(String key, String requestHash) {
+        Completed done = completed.getIfPresent(key);
+        if (done != null) {
+            return done.requestHash.equals(requestHash) ? new Replay(done.response) : new Mismatch();
+        }
+
+        Pending mine = new Pending(key, requestHash);
+        Pending running = pending.putIfAbsent(key, mine);
+        if (running != null) {
+            return running.requestHash.equals(requestHash) ? new Wait(running.result) : new Mismatch();
+        }
+        current.set(mine);
+        return new Acquired();
+    }
+
+    @Override
+    public Claim confirm(String key, boolean keep) {
+        Pending mine = pending.get(key);
+        if (mine == null || mine != current.get()) {
+            return null;
+        }
+        if (!mine.conflicted) {
+            if (mine.persisted || !keep) {
+                return null;
+            }
+            // запрос ничего не записал в бд, и ключ в ней еще не записан: пишется отдельным insert
+            try {
+                repository.insertPending(key, mine.requestHash, OffsetDateTime.now());
+                mine.persisted = true;
+                return null;
+            } catch (DataIntegrityViolationException e) {
+                // ключ уже есть: ответ готов, запрос выполняется в другом месте или запись устарела
+            }
+        }
+
+        Claim claim;
+        try {
+            claim = claimStored(key, mine.requestHash);
+        } catch (RuntimeException e) {
+            current.remove();
+            finish(key, mine, null);
+            throw e;
+        }
+        if (claim instanceof Acquired) {
+            // устаревшая запись захвачена заново update'ом: повтор выполнения ее уже не вставляет
+            mine.conflicted = false;
+            mine.persisted = true;
+        } else {
+            current.remove();
+            // ждущие этот же ключ получают готовый ответ или захватывают ключ заново
+            finish(key, mine, claim instanceof Replay replay ? replay.response() : null);
+        }
+        return claim;
+    }
+
+    @Override
+    public void complete(String key, StoredResponse response) {
+        current.remove();
+        Pending mine = pending.get(key);
+        if (mine != null) {
+            // в кэш до снятия из реестра: повтор между этими шагами не уйдет в бд за незаписанным ответом
+            completed.put(key, new Completed(mine.requestHash, response));
+            finish(key, mine, response);
+        }
+        // ответ уже отправлен клиенту; пока update не прошел, другие экземпляры отвечают на повтор 409
+        writer.execute(() -> {
+            try {
+                repository.complete(key, response.status(), response.contentType(), response.body(), OffsetDateTime.now());
+            } catch (RuntimeException e) {
+                // запись останется "выполняется" и будет захвачена заново после in-progress-timeout
+                log.warn("Failed to record response for idempotency key {}: {}", key, e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public void release(String key) {
+        current.remove();
+        Pending mine = pending.get(key);
+        try {
+            if (mine == null || mine.persisted) {
+                repository.deletePending(key);
+            }
+        } finally {
+            if (mine != null) {
+                finish(key, mine, null);
+            }
+        }
+    }
+
+    // транзакция запроса, захватившего ключ, записывает строку ключа перед своим commit
+    @Override
+    public void afterBegin(TransactionExecution transaction, Throwable beginFailure) {
+        Pending mine = current.get();
+        if (mine == null || mine.persisted || beginFailure != null || transaction.isReadOnly()
+                || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new KeyInsert(mine));
+    }
+
+    public int cleanUp() {
+        int removed = repository.deleteCreatedBefore(OffsetDateTime.now().minus(ttl));
+        if (removed > 0) {
+            log.debug("Removed {} expired idempotency keys", removed);
+        }
+        return removed;
+    }
+
+    // ключ уже записан в бд другим запросом
+    private Claim claimStored(String key, String requestHash) {
+        OffsetDateTime now = OffsetDateTime.now();
+        IdempotencyRecord record = repository.findById(key).orElse(null);
+        if (record == null) {
+            // запись удалили между insert и select: повтор клиента захватит ключ
+            return new InProgress();
+        }
+        boolean expired = record.getCreatedAt().isBefore(now.minus(ttl));
+        if (expired) {
+            return restart(record, requestHash, now);
+        }
+        if (!record.getRequestHash().equals(requestHash)) {
+            return new Mismatch();
+        }
+        if (record.getStatus() != null) {
+            StoredResponse response = new StoredResponse(record.getStatus(), record.getContentType(), record.getResponseBody());
+            completed.put(key, new Completed(requestHash, response));
+            return new Replay(response);
+        }
+        // экземпляр, захвативший ключ, не ответил за in-progress-timeout (упал или потерял бд)
+        if (record.getCreatedAt().isBefore(now.minus(inProgressTimeout))) {
+            log.warn("Idempotency key {} is stuck in progress since {}, taking over", key, record.getCreatedAt());
+            return restart(record, requestHash, now);
+        }
+        return new InProgress();
+    }
+
+    private Claim restart(IdempotencyRecord record, String requestHash, OffsetDateTime now) {
+        return repository.restart(record.getKey(), requestHash, record.getCreatedAt(), now) == 1
+                ? new Acquired()
+                : new InProgress();
+    }
+
+    private void finish(String key, Pending mine, StoredResponse response) {
+        pending.remove(key, mine);
+        mine.result.complete(response);
+    }
+
+    private void cleanUpQuietly() {
+        try {
+            cleanUp();
+        } catch (RuntimeException e) {
+            // бд недоступна: ключи удалятся при следующем запуске
+            log.warn("Failed to remove expired idempotency keys: {}", e.getMessage());
+        }
+    }
+
+    private record Completed(String requestHash, StoredResponse response) {
+    }
+
+    private static final class Pending {
+        private final String key;
+        private final String requestHash;
+        private final CompletableFuture<StoredResponse> result = new CompletableFuture<>();
+        // строка ключа закоммичена в бд
+        private volatile boolean persisted;
+        // insert ключа в транзакции запроса нарушил первичный ключ: ключ занят другим запросом
+        private volatile boolean conflicted;
+
+        private Pending(String key, String requestHash) {
+            this.key = key;
+            this.requestHash = requestHash;
+        }
+    }
+
+    // insert ключа в транзакции запроса: без отдельного commit, изменения запроса и ключ фиксируются вместе
+    private final class KeyInsert implements TransactionSynchronization {
+        private final Pending mine;
+        private boolean inserted;
+
+        private KeyInsert(Pending mine) {
+            this.mine = mine;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            if (readOnly || mine.persisted) {
+                return;
+            }
+            try {
+                repository.insertPending(mine.key, mine.requestHash, OffsetDateTime.now());
+                inserted = true;
+            } catch (DataIntegrityViolationException e) {
+                // исключение откатывает транзакцию, фильтр не отправит ответ запроса
+                mine.conflicted = true;
+                throw e;
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (inserted && status == STATUS_COMMITTED) {
+                mine.persisted = true;
+            }
+        }
+    }
+}
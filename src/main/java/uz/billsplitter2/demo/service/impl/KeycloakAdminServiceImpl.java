@@ -1,32 +1,50 @@
 package uz.billsplitter2.demo.service.impl;
 
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestClient;
 import org.springframework.web.client.RestClientResponseException;
 import uz.billsplitter2.demo.dto.keycloak.KeycloakCredentialRepresentation;
 import uz.billsplitter2.demo.dto.keycloak.KeycloakUserRepresentation;
-import uz.billsplitter2.demo.dto.response.KeycloakTokenResponse;
 import uz.billsplitter2.demo.exception.KeycloakException;
 import uz.billsplitter2.demo.service.KeycloakAdminService;
 
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class KeycloakAdminServiceImpl implements KeycloakAdminService {
 
+    private static final ParameterizedTypeReference<Map<String, Object>> ROLE = new ParameterizedTypeReference<>() {
+    };
+    private static final ParameterizedTypeReference<List<Map<String, Object>>> ROLE_LIST = new ParameterizedTypeReference<>() {
+    };
+
     private final RestClient restClient;
+    private final KeycloakAdminTokenHolder tokenHolder;
 
     @Value("${keycloak.admin.realm:billsplitter}")
     private String realm;
@@ -34,50 +52,54 @@ public class KeycloakAdminServiceImpl implements KeycloakAdminService {
     @Value("${keycloak.admin.server-url:http://localhost:8080}")
     private String serverUrl;
 
-    @Value("${keycloak.admin.client-id:admin-cli}")
-    private String adminClientId;
-
-    @Value("${keycloak.admin.username:admin}")
-    private String adminUsername;
+    // период фонового обновления каталога ролей
+    @Value("${keycloak.admin.roles.refresh-interval:10m}")
+    private Duration roleRefreshInterval;
 
-    @Value("${keycloak.admin.password:admin}")
-    private String adminPassword;
+    // представления ролей realm по имени: назначение роли обходится без GET /roles/{name}
+    private final Map<String, Map<String, Object>> roleCatalog = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService roleRefresher = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("keycloak-role-catalogue").daemon().factory());
 
     @Override
     public String createUser(KeycloakUserRepresentation user) {
-        String accessToken = getAdminAccessToken();
         String url = String.format("%s/admin/realms/%s/users", serverUrl, realm);
 
+        ResponseEntity<Void> response;
         try {
-            restClient.post()
+            response = tokenHolder.execute(accessToken -> restClient.post()
                     .uri(url)
                     .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
                     .contentType(MediaType.APPLICATION_JSON)
                     .body(user)
                     .retrieve()
-                    .toBodilessEntity();
-
-            // Get the created user ID from Location header or by searching
-            return getUserIdByUsername(user.username(), accessToken);
+                    .toBodilessEntity());
         } catch (RestClientResponseException e) {
             log.error("Failed to create user in Keycloak: {}", e.getResponseBodyAsString());
             throw new KeycloakException("Failed to create user in Keycloak: " + e.getMessage());
         }
+
+        // keycloak отвечает 201 с Location .../users/{id}; поиск по username - только если заголовка нет
+        String userId = userIdFromLocation(response.getHeaders().getLocation());
+        if (userId != null) {
+            return userId;
+        }
+        log.warn("Keycloak returned no Location for created user {}, searching by username", user.username());
+        return getUserIdByUsername(user.username());
     }
 
     @Override
     public void updateUser(String userId, KeycloakUserRepresentation user) {
-        String accessToken = getAdminAccessToken();
         String url = String.format("%s/admin/realms/%s/users/%s", serverUrl, realm, userId);
 
         try {
-            restClient.put()
+            tokenHolder.execute(accessToken -> restClient.put()
                     .uri(url)
                     .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
                     .contentType(MediaType.APPLICATION_JSON)
                     .body(user)
                     .retrieve()
-                    .toBodilessEntity();
+                    .toBodilessEntity());
         } catch (RestClientResponseException e) {
             log.error("Failed to update user in Keycloak: {}", e.getResponseBodyAsString());
             throw new KeycloakException("Failed to update user in Keycloak: " + e.getMessage());
@@ -86,15 +108,14 @@ public class KeycloakAdminServiceImpl implements KeycloakAdminService {
 
     @Override
     public void deleteUser(String userId) {
-        String accessToken = getAdminAccessToken();
         String url = String.format("%s/admin/realms/%s/users/%s", serverUrl, realm, userId);
 
         try {
-            restClient.delete()
+            tokenHolder.execute(accessToken -> restClient.delete()
                     .uri(url)
                     .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
                     .retrieve()
-                    .toBodilessEntity();
+                    .toBodilessEntity());
         } catch (RestClientResponseException e) {
             log.error("Failed to delete user from Keycloak: {}", e.getResponseBodyAsString());
             throw new KeycloakException("Failed to delete user from Keycloak: " + e.getMessage());
@@ -103,7 +124,6 @@ public class KeycloakAdminServiceImpl implements KeycloakAdminService {
 
     @Override
     public void setUserEnabled(String userId, boolean enabled) {
-        String accessToken = getAdminAccessToken();
         KeycloakUserRepresentation update = KeycloakUserRepresentation.builder()
                 .enabled(enabled)
                 .build();
@@ -111,13 +131,13 @@ public class KeycloakAdminServiceImpl implements KeycloakAdminService {
         String url = String.format("%s/admin/realms/%s/users/%s", serverUrl, realm, userId);
 
         try {
-            restClient.put()
+            tokenHolder.execute(accessToken -> restClient.put()
                     .uri(url)
                     .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
                     .contentType(MediaType.APPLICATION_JSON)
                     .body(update)
                     .retrieve()
-                    .toBodilessEntity();
+                    .toBodilessEntity());
         } catch (RestClientResponseException e) {
             log.error("Failed to update user enabled status in Keycloak: {}", e.getResponseBodyAsString());
             throw new KeycloakException("Failed to update user enabled status: " + e.getMessage());
@@ -126,19 +146,18 @@ public class KeycloakAdminServiceImpl implements KeycloakAdminService {
 
     @Override
     public void resetPassword(String userId, String newPassword, boolean temporary) {
-        String accessToken = getAdminAccessToken();
         String url = String.format("%s/admin/realms/%s/users/%s/reset-password", serverUrl, realm, userId);
 
         KeycloakCredentialRepresentation credential = KeycloakCredentialRepresentation.password(newPassword, temporary);
 
         try {
-            restClient.put()
+            tokenHolder.execute(accessToken -> restClient.put()
                     .uri(url)
                     .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
                     .contentType(MediaType.APPLICATION_JSON)
                     .body(credential)
                     .retrieve()
-                    .toBodilessEntity();
+                    .toBodilessEntity());
         } catch (RestClientResponseException e) {
             log.error("Failed to reset password in Keycloak: {}", e.getResponseBodyAsString());
             throw new KeycloakException("Failed to reset password: " + e.getMessage());
@@ -147,34 +166,24 @@ public class KeycloakAdminServiceImpl implements KeycloakAdminService {
 
     @Override
     public void assignRealmRole(String userId, String roleName) {
-        String accessToken = getAdminAccessToken();
-
-        // Get role representation
-        String getRoleUrl = String.format("%s/admin/realms/%s/roles/%s", serverUrl, realm, roleName);
-        Map<String, Object> role;
+        assignRealmRoles(userId, Set.of(roleName));
+    }
 
-        try {
-            role = restClient.get()
-                    .uri(getRoleUrl)
-                    .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
-                    .retrieve()
-                    .body(Map.class);
-        } catch (RestClientResponseException e) {
-            log.error("Failed to get role from Keycloak: {}", e.getResponseBodyAsString());
-            throw new KeycloakException("Failed to get role: " + e.getMessage());
+    @Override
+    public void assignRealmRoles(String userId, Set<String> roleNames) {
+        if (roleNames.isEmpty()) {
+            return;
         }
-
-        // Assign role to user
         String assignRoleUrl = String.format("%s/admin/realms/%s/users/%s/role-mappings/realm", serverUrl, realm, userId);
 
         try {
-            restClient.post()
+            mapRoles(roleNames, roles -> tokenHolder.execute(accessToken -> restClient.post()
                     .uri(assignRoleUrl)
                     .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
                     .contentType(MediaType.APPLICATION_JSON)
-                    .body(List.of(role))
+                    .body(roles)
                     .retrieve()
-                    .toBodilessEntity();
+                    .toBodilessEntity()));
         } catch (RestClientResponseException e) {
             log.error("Failed to assign role in Keycloak: {}", e.getResponseBodyAsString());
             throw new KeycloakException("Failed to assign role: " + e.getMessage());
@@ -183,77 +192,142 @@ public class KeycloakAdminServiceImpl implements KeycloakAdminService {
 
     @Override
     public void removeRealmRole(String userId, String roleName) {
-        String accessToken = getAdminAccessToken();
+        String removeRoleUrl = String.format("%s/admin/realms/%s/users/%s/role-mappings/realm", serverUrl, realm, userId);
+
+        try {
+            mapRoles(Set.of(roleName), roles -> tokenHolder.execute(accessToken -> restClient.method(HttpMethod.DELETE)
+                    .uri(removeRoleUrl)
+                    .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(roles)
+                    .retrieve()
+                    .toBodilessEntity()));
+        } catch (RestClientResponseException e) {
+            log.error("Failed to remove role in Keycloak: {}", e.getResponseBodyAsString());
+            throw new KeycloakException("Failed to remove role: " + e.getMessage());
+        }
+    }
+
+    // каталог ролей realm загружается после старта и затем обновляется в фоне
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmRoleCatalog() {
+        try {
+            refreshRoleCatalog();
+        } catch (RuntimeException e) {
+            // keycloak недоступен при старте: роли подгрузятся по одной при первом обращении
+            log.warn("Failed to warm Keycloak role catalogue: {}", e.getMessage());
+        }
+        long interval = roleRefreshInterval.toMillis();
+        roleRefresher.scheduleWithFixedDelay(this::refreshRoleCatalogQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        roleRefresher.shutdownNow();
+    }
+
+    // вызов с представлениями ролей из каталога; 404 значит, что роль пересоздана или удалена:
+    // представления перечитываются и вызов повторяется один раз
+    private void mapRoles(Set<String> roleNames, Consumer<List<Map<String, Object>>> call) {
+        try {
+            call.accept(resolveRoles(roleNames));
+        } catch (RestClientResponseException e) {
+            if (e.getStatusCode().value() != HttpStatus.NOT_FOUND.value()) {
+                throw e;
+            }
+            log.warn("Keycloak returned 404 for role mapping {}, reloading roles", roleNames);
+            roleNames.forEach(roleCatalog::remove);
+            call.accept(resolveRoles(roleNames));
+        }
+    }
+
+    private List<Map<String, Object>> resolveRoles(Set<String> roleNames) {
+        List<Map<String, Object>> roles = new ArrayList<>(roleNames.size());
+        for (String roleName : roleNames) {
+            Map<String, Object> role = roleCatalog.get(roleName);
+            if (role == null) {
+                role = fetchRole(roleName);
+                roleCatalog.put(roleName, role);
+            }
+            roles.add(role);
+        }
+        return roles;
+    }
 
-        // Get role representation
+    private Map<String, Object> fetchRole(String roleName) {
         String getRoleUrl = String.format("%s/admin/realms/%s/roles/%s", serverUrl, realm, roleName);
-        Map<String, Object> role;
 
         try {
-            role = restClient.get()
+            Map<String, Object> role = tokenHolder.execute(accessToken -> restClient.get()
                     .uri(getRoleUrl)
                     .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
                     .retrieve()
-                    .body(Map.class);
+                    .body(ROLE));
+            if (role == null) {
+                throw new KeycloakException("Role not found: " + roleName);
+            }
+            return role;
         } catch (RestClientResponseException e) {
             log.error("Failed to get role from Keycloak: {}", e.getResponseBodyAsString());
             throw new KeycloakException("Failed to get role: " + e.getMessage());
         }
+    }
 
-        // Remove role from user
-        String removeRoleUrl = String.format("%s/admin/realms/%s/users/%s/role-mappings/realm", serverUrl, realm, userId);
+    // все роли realm одним запросом; роли, исчезнувшие из keycloak, выбывают из каталога
+    private void refreshRoleCatalog() {
+        String url = String.format("%s/admin/realms/%s/roles", serverUrl, realm);
 
+        List<Map<String, Object>> roles;
         try {
-            restClient.method(HttpMethod.DELETE)
-                    .uri(removeRoleUrl)
+            roles = tokenHolder.execute(accessToken -> restClient.get()
+                    .uri(url)
                     .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .body(List.of(role))
                     .retrieve()
-                    .toBodilessEntity();
+                    .body(ROLE_LIST));
         } catch (RestClientResponseException e) {
-            log.error("Failed to remove role in Keycloak: {}", e.getResponseBodyAsString());
-            throw new KeycloakException("Failed to remove role: " + e.getMessage());
+            log.error("Failed to list roles in Keycloak: {}", e.getResponseBodyAsString());
+            throw new KeycloakException("Failed to list roles: " + e.getMessage());
+        }
+        if (roles == null) {
+            return;
         }
-    }
-
-    private String getAdminAccessToken() {
-        String tokenUrl = String.format("%s/realms/master/protocol/openid-connect/token", serverUrl);
 
-        MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
-        form.add("grant_type", "password");
-        form.add("client_id", adminClientId);
-        form.add("username", adminUsername);
-        form.add("password", adminPassword);
+        Map<String, Map<String, Object>> byName = new HashMap<>();
+        for (Map<String, Object> role : roles) {
+            byName.put((String) role.get("name"), role);
+        }
+        roleCatalog.putAll(byName);
+        roleCatalog.keySet().retainAll(byName.keySet());
+        log.debug("Loaded {} Keycloak realm roles", byName.size());
+    }
 
+    private void refreshRoleCatalogQuietly() {
         try {
-            KeycloakTokenResponse response = restClient.post()
-                    .uri(tokenUrl)
-                    .contentType(MediaType.APPLICATION_FORM_URLENCODED)
-                    .body(form)
-                    .retrieve()
-                    .body(KeycloakTokenResponse.class);
-
-            if (response == null || response.accessToken() == null) {
-                throw new KeycloakException("Failed to obtain admin access token");
-            }
+            refreshRoleCatalog();
+        } catch (RuntimeException e) {
+            log.warn("Failed to refresh Keycloak role catalogue: {}", e.getMessage());
+        }
+    }
 
-            return response.accessToken();
-        } catch (RestClientResponseException e) {
-            log.error("Failed to get admin access token: {}", e.getResponseBodyAsString());
-            throw new KeycloakException("Failed to authenticate as admin: " + e.getMessage());
+    private static String userIdFromLocation(URI location) {
+        if (location == null || location.getPath() == null) {
+            return null;
         }
+        String path = location.getPath();
+        int slash = path.lastIndexOf('/');
+        String id = path.substring(slash + 1);
+        return id.isEmpty() ? null : id;
     }
 
-    private String getUserIdByUsername(String username, String accessToken) {
+    private String getUserIdByUsername(String username) {
         String url = String.format("%s/admin/realms/%s/users?username=%s&exact=true", serverUrl, realm, username);
 
         try {
-            List<Map<String, Object>> users = restClient.get()
+            List<Map<String, Object>> users = tokenHolder.execute(accessToken -> restClient.get()
                     .uri(url)
                     .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
                     .retrieve()
-                    .body(List.class);
+                    .body(List.class));
 
             if (users == null || users.isEmpty()) {
                 throw new KeycloakException("User not found after creation: " + username);
@@ -0,0 +1,227 @@
+package uz.billsplitter2.demo.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientResponseException;
+import uz.billsplitter2.demo.dto.response.KeycloakTokenResponse;
+import uz.billsplitter2.demo.exception.KeycloakException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+// токен администратора keycloak (master realm): кэшируется до истечения, обновляется refresh-токеном
+// заранее в фоне, одновременные обновления сводятся к одному запросу
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class KeycloakAdminTokenHolder {
+
+    // срок жизни токена без expires_in в ответе
+    private static final long DEFAULT_EXPIRES_IN_SECONDS = 60;
+
+    private final RestClient restClient;
+
+    @Value("${keycloak.admin.server-url:http://localhost:8080}")
+    private String serverUrl;
+
+    @Value("${keycloak.admin.client-id:admin-cli}")
+    private String adminClientId;
+
+    @Value("${keycloak.admin.username:admin}")
+    private String adminUsername;
+
+    @Value("${keycloak.admin.password:admin}")
+    private String adminPassword;
+
+    // токен с меньшим остатком жизни не отдается, а обновляется синхронно
+    @Value("${keycloak.admin.token.min-validity:10s}")
+    private Duration minValidity;
+
+    // за сколько до истечения обновлять токен в фоне
+    @Value("${keycloak.admin.token.refresh-ahead:60s}")
+    private Duration refreshAhead;
+
+    private Clock clock = Clock.systemUTC();
+
+    private final ReentrantLock renewLock = new ReentrantLock();
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("keycloak-admin-token").daemon().factory());
+
+    private volatile AdminToken current;
+
+    // под renewLock
+    private ScheduledFuture<?> scheduledRefresh;
+
+    public String getAccessToken() {
+        AdminToken token = current;
+        if (token == null || !token.isValidAt(clock.instant(), minValidity)) {
+            token = renew();
+        }
+        token.used = true;
+        return token.accessToken;
+    }
+
+    // вызов admin api с токеном; на 401 (токен отозван, keycloak перезапущен) - одна повторная аутентификация
+    public <T> T execute(Function<String, T> call) {
+        String accessToken = getAccessToken();
+        try {
+            return call.apply(accessToken);
+        } catch (RestClientResponseException e) {
+            if (e.getStatusCode().value() != HttpStatus.UNAUTHORIZED.value()) {
+                throw e;
+            }
+            log.warn("Keycloak rejected admin access token, re-authenticating");
+            return call.apply(reauthenticate(accessToken));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    private AdminToken renew() {
+        renewLock.lock();
+        try {
+            // пока ждали блокировку, токен мог обновить другой поток
+            AdminToken token = current;
+            if (token != null && token.isValidAt(clock.instant(), minValidity)) {
+                return token;
+            }
+            return install(obtain(token));
+        } finally {
+            renewLock.unlock();
+        }
+    }
+
+    private String reauthenticate(String rejected) {
+        renewLock.lock();
+        try {
+            AdminToken token = current;
+            if (token != null && !token.accessToken.equals(rejected) && token.isValidAt(clock.instant(), minValidity)) {
+                return token.accessToken;
+            }
+            AdminToken renewed = install(requestToken(passwordForm()));
+            renewed.used = true;
+            return renewed.accessToken;
+        } finally {
+            renewLock.unlock();
+        }
+    }
+
+    // фоновое обновление только для токена, которым пользовались: простаивающий узел keycloak не нагружает
+    private void refreshInBackground(AdminToken scheduledFor) {
+        renewLock.lock();
+        try {
+            if (current != scheduledFor || !scheduledFor.used) {
+                return;
+            }
+            install(obtain(scheduledFor));
+        } catch (RuntimeException e) {
+            // следующий getAccessToken получит токен синхронно
+            log.warn("Background refresh of Keycloak admin token failed: {}", e.getMessage());
+        } finally {
+            renewLock.unlock();
+        }
+    }
+
+    // refresh_token, если он есть; истекшая сессия или отказ - новый password grant
+    private KeycloakTokenResponse obtain(AdminToken previous) {
+        if (previous != null && previous.refreshToken != null) {
+            try {
+                return requestToken(refreshForm(previous.refreshToken));
+            } catch (KeycloakException e) {
+                log.debug("Keycloak admin token refresh failed, re-authenticating: {}", e.getMessage());
+            }
+        }
+        return requestToken(passwordForm());
+    }
+
+    private AdminToken install(KeycloakTokenResponse response) {
+        Instant now = clock.instant();
+        long expiresIn = response.expiresIn() != null ? response.expiresIn() : DEFAULT_EXPIRES_IN_SECONDS;
+        AdminToken token = new AdminToken(response.accessToken(), response.refreshToken(), now.plusSeconds(expiresIn));
+        current = token;
+
+        if (scheduledRefresh != null) {
+            scheduledRefresh.cancel(false);
+        }
+        Duration lifetime = Duration.ofSeconds(expiresIn);
+        Duration delay = lifetime.compareTo(refreshAhead) > 0 ? lifetime.minus(refreshAhead) : lifetime.dividedBy(2);
+        scheduledRefresh = refresher.schedule(() -> refreshInBackground(token), delay.toMillis(), TimeUnit.MILLISECONDS);
+        return token;
+    }
+
+    private KeycloakTokenResponse requestToken(MultiValueMap<String, String> form) {
+        String tokenUrl = String.format("%s/realms/master/protocol/openid-connect/token", serverUrl);
+
+        try {
+            KeycloakTokenResponse response = restClient.post()
+                    .uri(tokenUrl)
+                    .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                    .body(form)
+                    .retrieve()
+                    .body(KeycloakTokenResponse.class);
+
+            if (response == null || response.accessToken() == null) {
+                throw new KeycloakException("Failed to obtain admin access token");
+            }
+
+            return response;
+        } catch (RestClientResponseException e) {
+            log.error("Failed to get admin access token: {}", e.getResponseBodyAsString());
+            throw new KeycloakException("Failed to authenticate as admin: " + e.getMessage());
+        }
+    }
+
+    private MultiValueMap<String, String> passwordForm() {
+        MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
+        form.add("grant_type", "password");
+        form.add("client_id", adminClientId);
+        form.add("username", adminUsername);
+        form.add("password", adminPassword);
+        return form;
+    }
+
+    private MultiValueMap<String, String> refreshForm(String refreshToken) {
+        MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
+        form.add("grant_type", "refresh_token");
+        form.add("client_id", adminClientId);
+        form.add("refresh_token", refreshToken);
+        return form;
+    }
+
+    private static final class AdminToken {
+        private final String accessToken;
+        private final String refreshToken;
+        private final Instant expiresAt;
+
+        // токен отдавался вызывающим с момента получения
+        private volatile boolean used;
+
+        private AdminToken(String accessToken, String refreshToken, Instant expiresAt) {
+            this.accessToken = accessToken;
+            this.refreshToken = refreshToken;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isValidAt(Instant now, Duration minValidity) {
+            return now.plus(minValidity).isBefore(expiresAt);
+        }
+    }
+}
@@ -1,24 +1,36 @@
 package uz.billsplitter2.demo.service.impl;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import uz.billsplitter2.demo.dto.response.AnalyticsBucketDto;
 import uz.billsplitter2.demo.dto.response.AnalyticsDto;
 import uz.billsplitter2.demo.dto.response.BillDto;
 import uz.billsplitter2.demo.dto.response.BillHistoryDto;
+import uz.billsplitter2.demo.dto.response.BillHistoryPageDto;
 import uz.billsplitter2.demo.entity.Bill;
 import uz.billsplitter2.demo.enums.BillStatus;
 import uz.billsplitter2.demo.exception.ResourceNotFoundException;
 import uz.billsplitter2.demo.exception.UnauthorizedException;
+import uz.billsplitter2.demo.exception.ValidationException;
 import uz.billsplitter2.demo.mapper.BillMapper;
+import uz.billsplitter2.demo.repository.AnalyticsBucketView;
 import uz.billsplitter2.demo.repository.BillRepository;
+import uz.billsplitter2.demo.repository.DailyBillRollupRepository;
 import uz.billsplitter2.demo.security.SecurityContext;
 import uz.billsplitter2.demo.service.OrderHistoryService;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.LocalDate;
 import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @Service
@@ -27,12 +39,24 @@ import java.util.UUID;
 public class OrderHistoryServiceImpl implements OrderHistoryService {
 
     private final BillRepository billRepository;
+    private final DailyBillRollupRepository rollupRepository;
     private final BillMapper billMapper;
     private final SecurityContext securityContext;
 
-    // получение закрытых счетов с фильтрацией по датам и официанту
+    @Value("${app.history.page-size.default:50}")
+    int defaultPageSize;
+
+    @Value("${app.history.page-size.max:200}")
+    int maxPageSize;
+
+    // часовой пояс заведения для разбивки по часам и дням
+    @Value("${app.analytics.time-zone:UTC}")
+    ZoneId analyticsZone;
+
+    // страница закрытых счетов с фильтрацией по датам и официанту (keyset по closed_at, id)
     @Override
-    public List<BillHistoryDto> getClosedBills(OffsetDateTime startDate, OffsetDateTime endDate, UUID waiterId) {
+    public BillHistoryPageDto getClosedBills(OffsetDateTime startDate, OffsetDateTime endDate, UUID waiterId,
+                                             String cursor, Integer size) {
         UUID effectiveWaiterId = waiterId;
 
         // обычный официант видит только свои счета
@@ -40,16 +64,29 @@ public class OrderHistoryServiceImpl implements OrderHistoryService {
             effectiveWaiterId = securityContext.getCurrentWaiterId();
         }
 
-        return billRepository.findClosedBillsWithFilters(BillStatus.CLOSED, startDate, endDate, effectiveWaiterId)
-                .stream()
-                .map(billMapper::toHistoryDto)
-                .toList();
+        int pageSize = resolvePageSize(size);
+        BillHistoryCursor after = cursor == null || cursor.isBlank() ? null : BillHistoryCursor.decode(cursor);
+
+        // на одну запись больше, чтобы узнать, есть ли следующая страница
+        Limit limit = Limit.of(pageSize + 1);
+        List<BillHistoryDto> rows = after == null
+                ? billRepository.findHistoryFirstPage(BillStatus.CLOSED, startDate, endDate, effectiveWaiterId, limit)
+                : billRepository.findHistoryPageAfter(BillStatus.CLOSED, startDate, endDate, effectiveWaiterId,
+                        after.closedAt(), after.id(), limit);
+
+        if (rows.size() <= pageSize) {
+            return new BillHistoryPageDto(rows, rows.size(), null);
+        }
+
+        List<BillHistoryDto> page = rows.subList(0, pageSize);
+        BillHistoryDto last = page.get(pageSize - 1);
+        return new BillHistoryPageDto(page, pageSize, new BillHistoryCursor(last.closedAt(), last.id()).encode());
     }
 
     // получение детальной информации о счете
     @Override
     public BillDto getBillDetails(UUID billId) {
-        Bill bill = billRepository.findById(billId)
+        Bill bill = billRepository.findWithCalculationInputById(billId)
                 .orElseThrow(() -> new ResourceNotFoundException("Bill not found with id: " + billId));
 
         if (!securityContext.isAdmin() && !bill.getParty().getWaiter().getId().equals(securityContext.getCurrentWaiterId())) {
@@ -59,35 +96,54 @@ public class OrderHistoryServiceImpl implements OrderHistoryService {
         return billMapper.toDto(bill);
     }
 
-    // получение аналитики по закрытым счетам (только админ)
+    // получение аналитики по закрытым счетам (только админ): целые дни из daily_bill_rollups,
+    // неполные крайние дни периода - агрегатами по bills
     @Override
     public AnalyticsDto getAnalytics(OffsetDateTime startDate, OffsetDateTime endDate) {
         if (!securityContext.isAdmin()) {
             throw new UnauthorizedException("Only admins can view analytics");
         }
 
-        List<Bill> closedBills = billRepository.findClosedBillsWithFilters(BillStatus.CLOSED, startDate, endDate, null);
-
-        long totalBills = closedBills.size();
-        BigDecimal totalRevenue = closedBills.stream()
-                .map(Bill::getTotalAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        BigDecimal totalServiceFees = closedBills.stream()
-                .map(Bill::getServiceFeeAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        String zone = analyticsZone.getId();
+        AnalyticsPeriod period = AnalyticsPeriod.of(startDate, endDate, analyticsZone);
+
+        BucketTotal totals = new BucketTotal(null);
+        Map<String, BucketTotal> byWaiter = new HashMap<>();
+        Map<String, BucketTotal> byTable = new HashMap<>();
+        Map<String, BucketTotal> byHour = new HashMap<>();
+        Map<String, BucketTotal> byDay = new HashMap<>();
+
+        if (period.hasWholeDays()) {
+            LocalDate from = period.firstWholeDay();
+            LocalDate to = period.lastWholeDay();
+            totals.add(rollupRepository.aggregate(from, to));
+            merge(byWaiter, rollupRepository.aggregateByWaiter(from, to));
+            merge(byTable, rollupRepository.aggregateByTable(from, to));
+            merge(byHour, rollupRepository.aggregateByHourOfDay(from, to));
+            merge(byDay, rollupRepository.aggregateByDay(from, to));
+        }
 
-        BigDecimal averageBillAmount = totalBills > 0
-                ? totalRevenue.divide(BigDecimal.valueOf(totalBills), 2, RoundingMode.HALF_UP)
-                : BigDecimal.ZERO;
+        for (AnalyticsPeriod.Range edge : period.edges()) {
+            totals.add(billRepository.aggregateClosedBills(BillStatus.CLOSED, edge.start(), edge.end()));
+            merge(byWaiter, billRepository.aggregateClosedBillsByWaiter(BillStatus.CLOSED, edge.start(), edge.end()));
+            merge(byTable, billRepository.aggregateClosedBillsByTable(BillStatus.CLOSED, edge.start(), edge.end()));
+            merge(byHour, billRepository.aggregateClosedBillsByHourOfDay(edge.start(), edge.end(), zone));
+            merge(byDay, billRepository.aggregateClosedBillsByDay(edge.start(), edge.end(), zone));
+        }
 
         return new AnalyticsDto(
-                totalBills,
-                totalRevenue,
-                totalServiceFees,
-                averageBillAmount,
+                totals.bills,
+                totals.revenue,
+                totals.serviceFees,
+                averageOf(totals.revenue, totals.bills),
                 startDate,
-                endDate
+                endDate,
+                zone,
+                toBuckets(byWaiter, Comparator.comparing(AnalyticsBucketDto::revenue).reversed()
+                        .thenComparing(AnalyticsBucketDto::key)),
+                toBuckets(byTable, Comparator.comparing(AnalyticsBucketDto::label)),
+                toBuckets(byHour, Comparator.comparing(AnalyticsBucketDto::key)),
+                toBuckets(byDay, Comparator.comparing(AnalyticsBucketDto::key))
         );
     }
 
@@ -115,4 +171,59 @@ public class OrderHistoryServiceImpl implements OrderHistoryService {
                 .map(billMapper::toDto)
                 .toList();
     }
+
+    private int resolvePageSize(Integer size) {
+        if (size == null) {
+            return defaultPageSize;
+        }
+        if (size < 1) {
+            throw new ValidationException("Page size must be positive");
+        }
+        return Math.min(size, maxPageSize);
+    }
+
+    private void merge(Map<String, BucketTotal> buckets, List<AnalyticsBucketView> rows) {
+        for (AnalyticsBucketView row : rows) {
+            buckets.computeIfAbsent(row.getBucket(), key -> new BucketTotal(row.getLabel())).add(row);
+        }
+    }
+
+    private List<AnalyticsBucketDto> toBuckets(Map<String, BucketTotal> buckets, Comparator<AnalyticsBucketDto> order) {
+        return buckets.entrySet().stream()
+                .map(entry -> new AnalyticsBucketDto(
+                        entry.getKey(),
+                        entry.getValue().label,
+                        entry.getValue().bills,
+                        entry.getValue().revenue,
+                        entry.getValue().serviceFees,
+                        averageOf(entry.getValue().revenue, entry.getValue().bills)
+                ))
+                .sorted(order)
+                .toList();
+    }
+
+    // средний чек из точных SUM/COUNT: AVG в JPQL вернул бы double
+    private BigDecimal averageOf(BigDecimal revenue, Long bills) {
+        return bills > 0
+                ? revenue.divide(BigDecimal.valueOf(bills), 2, RoundingMode.HALF_UP)
+                : BigDecimal.ZERO;
+    }
+
+    // сумма одной группы из свертки и крайних дней
+    private static final class BucketTotal {
+        private final String label;
+        private long bills;
+        private BigDecimal revenue = BigDecimal.ZERO;
+        private BigDecimal serviceFees = BigDecimal.ZERO;
+
+        private BucketTotal(String label) {
+            this.label = label;
+        }
+
+        private void add(AnalyticsBucketView row) {
+            bills += row.getBills();
+            revenue = revenue.add(row.getRevenue());
+            serviceFees = serviceFees.add(row.getServiceFees());
+        }
+    }
 }
@@ -1,8 +1,16 @@
 package uz.billsplitter2.demo.service.impl;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import uz.billsplitter2.demo.dto.request.CreatePartyDto;
 import uz.billsplitter2.demo.dto.response.PartyDto;
 import uz.billsplitter2.demo.entity.Party;
@@ -20,11 +28,15 @@ import uz.billsplitter2.demo.repository.PartyRepository;
 import uz.billsplitter2.demo.repository.RestaurantTableRepository;
 import uz.billsplitter2.demo.security.SecurityContext;
 import uz.billsplitter2.demo.service.PartyService;
+import uz.billsplitter2.demo.service.TableStatusRegistry;
 
 import java.time.OffsetDateTime;
 import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
+import java.util.function.Supplier;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 @Transactional
@@ -35,22 +47,33 @@ public class PartyServiceImpl implements PartyService {
     private final BillRepository billRepository;
     private final PartyMapper partyMapper;
     private final SecurityContext securityContext;
+    private final TableStatusRegistry tableStatusRegistry;
+    private final TransactionTemplate transactionTemplate;
+
+    // частичный уникальный индекс активной компании на стол (V9)
+    private static final String ACTIVE_PARTY_INDEX = "idx_parties_active_table";
+
+    // попыток рассадки и закрытия при конфликте версий стола или компании
+    @Value("${app.parties.conflict-attempts:3}")
+    private int conflictAttempts;
 
     // создание новой компании за столом
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public PartyDto createParty(CreatePartyDto dto) {
-        Waiter currentWaiter = securityContext.getCurrentWaiter();
+        return retryOnConflict(() -> seat(dto));
+    }
 
-        RestaurantTable table = tableRepository.findById(dto.tableId())
-                .orElseThrow(() -> new ResourceNotFoundException("Table not found with id: " + dto.tableId()));
+    private PartyDto seat(CreatePartyDto dto) {
+        Waiter currentWaiter = securityContext.getCurrentWaiter();
 
-        if (table.getStatus() == TableStatus.OCCUPIED) {
+        // стол занимается условным update: из одновременных запросов на один стол проходит один,
+        // остальные ждут только блокировку этой строки и получают 0 измененных строк
+        if (tableRepository.updateStatusIfDifferent(dto.tableId(), TableStatus.OCCUPIED, OffsetDateTime.now()) == 0) {
+            findTableOrThrow(dto.tableId());
             throw new BusinessLogicException("Table is already occupied");
         }
-
-        if (partyRepository.findByTableIdAndStatus(dto.tableId(), PartyStatus.ACTIVE).isPresent()) {
-            throw new BusinessLogicException("Table already has an active party");
-        }
+        RestaurantTable table = findTableOrThrow(dto.tableId());
 
         Party party = Party.builder()
                 .table(table)
@@ -58,10 +81,17 @@ public class PartyServiceImpl implements PartyService {
                 .status(PartyStatus.ACTIVE)
                 .build();
 
-        table.setStatus(TableStatus.OCCUPIED);
-
-        Party saved = partyRepository.save(party);
-        tableRepository.save(table);
+        Party saved;
+        try {
+            // уникальный индекс активной компании на стол: защита, если статус стола сбросили вручную
+            saved = partyRepository.saveAndFlush(party);
+        } catch (DataIntegrityViolationException e) {
+            if (!violates(e, ACTIVE_PARTY_INDEX)) {
+                throw e;
+            }
+            throw new BusinessLogicException("Table already has an active party");
+        }
+        tableStatusRegistry.tableChanged(table);
 
         return partyMapper.toDto(saved);
     }
@@ -97,7 +127,12 @@ public class PartyServiceImpl implements PartyService {
 
     // закрытие компании и освобождение стола
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public PartyDto closeParty(UUID id) {
+        return retryOnConflict(() -> close(id));
+    }
+
+    private PartyDto close(UUID id) {
         Party party = findPartyOrThrow(id);
         checkAccess(party);
 
@@ -118,6 +153,7 @@ public class PartyServiceImpl implements PartyService {
 
         partyRepository.save(party);
         tableRepository.save(table);
+        tableStatusRegistry.tableChanged(table);
 
         return partyMapper.toDto(party);
     }
@@ -134,11 +170,45 @@ public class PartyServiceImpl implements PartyService {
                 .toList();
     }
 
+    // конфликт версий (стол или компанию изменили параллельно) повторяется в новой транзакции,
+    // которая перечитывает строки; внутри транзакции вызывающего повторить нельзя - конфликт уходит ему
+    private PartyDto retryOnConflict(Supplier<PartyDto> action) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return action.get();
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> action.get());
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= conflictAttempts) {
+                    throw e;
+                }
+                log.debug("Concurrent modification on attempt {}, retrying: {}", attempt, e.getMessage());
+            }
+        }
+    }
+
+    // имя нарушенного ограничения из причины; остальные нарушения (fk, not null) - не занятый стол
+    private static boolean violates(DataIntegrityViolationException e, String constraint) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                String name = violation.getConstraintName();
+                return name != null && name.toLowerCase(Locale.ROOT).contains(constraint);
+            }
+        }
+        return false;
+    }
+
     private Party findPartyOrThrow(UUID id) {
         return partyRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Party not found with id: " + id));
     }
 
+    private RestaurantTable findTableOrThrow(UUID id) {
+        return tableRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Table not found with id: " + id));
+    }
+
     private void checkAccess(Party party) {
         if (!securityContext.isAdmin() && !party.getWaiter().getId().equals(securityContext.getCurrentWaiterId())) {
             throw new UnauthorizedException("You don't have access to this party");
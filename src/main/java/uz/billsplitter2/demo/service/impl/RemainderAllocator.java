@@ -0,0 +1,106 @@
+package uz.billsplitter2.demo.service.impl;
+
+/**
+ * Раздача остатка округления по копейке для обоих движков расчета (доли позиций и сервисного сбора).
+ * <p>
+ * Правило прежнее: копейки идут по кругу участникам в порядке убывания дробной части,
+ * при равной дробной части - раньше по исходному порядку. Каждый получает {@code |remainder| / n}
+ * копеек, а оставшиеся {@code |remainder| % n} - первые k по этому порядку; порядок внутри первых k
+ * на результат не влияет, поэтому вместо полной сортировки достаточно выбора k наибольших
+ * (quickselect, в среднем O(n)). Дробная часть и порядок упакованы в один {@code long},
+ * так что сравнение идет без {@code BigDecimal} и боксинга. Входы, не влезающие в упаковку,
+ * дают {@link ArithmeticException} - как и прочие переполнения движка с фиксированной точкой.
+ */
+public final class RemainderAllocator {
+
+    // дробная часть в старших битах, обратный порядок - в младших
+    private static final int ORDER_BITS = 21;
+    private static final long ORDER_MASK = (1L << ORDER_BITS) - 1;
+    private static final long MAX_RESIDUE = (1L << (Long.SIZE - 1 - ORDER_BITS)) - 1;
+
+    private RemainderAllocator() {
+    }
+
+    /**
+     * @param residues  дробные части долей в целых единицах (например, миллионных долях валюты), не отрицательные
+     * @param remainder остаток в копейках, со знаком
+     * @return поправка к каждой доле в копейках, по индексам {@code residues}
+     */
+    public static long[] allocate(long[] residues, long remainder) {
+        int count = residues.length;
+        long[] deltas = new long[count];
+        if (remainder == 0 || count == 0) {
+            return deltas;
+        }
+        if (count > ORDER_MASK) {
+            throw new ArithmeticException("Too many shares for packed ordering: " + count);
+        }
+
+        long step = Long.signum(remainder);
+        long fullRounds = Math.abs(remainder) / count;
+        int extra = (int) (Math.abs(remainder) % count);
+        if (fullRounds != 0) {
+            for (int i = 0; i < count; i++) {
+                deltas[i] = step * fullRounds;
+            }
+        }
+        if (extra == 0) {
+            return deltas;
+        }
+
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            long residue = residues[i];
+            if (residue < 0 || residue > MAX_RESIDUE) {
+                throw new ArithmeticException("Residue does not fit packed ordering: " + residue);
+            }
+            keys[i] = (residue << ORDER_BITS) | (ORDER_MASK - i);
+        }
+
+        // после выбора keys[0..extra) - наибольшие ключи; ключи различны за счет порядка
+        selectLargest(keys, extra);
+        for (int i = 0; i < extra; i++) {
+            int index = (int) (ORDER_MASK - (keys[i] & ORDER_MASK));
+            deltas[index] += step;
+        }
+        return deltas;
+    }
+
+    // частичное упорядочивание: k наибольших элементов в начале массива (в произвольном порядке)
+    private static void selectLargest(long[] keys, int k) {
+        int left = 0;
+        int right = keys.length - 1;
+        while (left < right) {
+            int pivotIndex = partition(keys, left, right, left + (right - left) / 2);
+            // слева от опорного только большие ключи: при позиции k - 1 или k первые k уже на месте
+            if (pivotIndex == k - 1 || pivotIndex == k) {
+                return;
+            }
+            if (pivotIndex < k) {
+                left = pivotIndex + 1;
+            } else {
+                right = pivotIndex - 1;
+            }
+        }
+    }
+
+    // разбиение по убыванию: слева от опорного элемента - большие ключи
+    private static int partition(long[] keys, int left, int right, int pivotIndex) {
+        long pivot = keys[pivotIndex];
+        swap(keys, pivotIndex, right);
+        int store = left;
+        for (int i = left; i < right; i++) {
+            if (keys[i] > pivot) {
+                swap(keys, i, store++);
+            }
+        }
+        swap(keys, store, right);
+        return store;
+    }
+
+    private static void swap(long[] keys, int i, int j) {
+        long tmp = keys[i];
+        keys[i] = keys[j];
+        keys[j] = tmp;
+    }
+}
@@ -0,0 +1,73 @@
+package uz.billsplitter2.demo.service.impl;
+
+import uz.billsplitter2.demo.repository.BillRepository;
+import uz.billsplitter2.demo.service.BillNumberGenerator;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.locks.ReentrantLock;
+
+// номера вида BILL-261018-00000101: день и сквозной счетчик из последовательности bill_number_seq;
+// экземпляр берет блок из BLOCK_SIZE номеров одним nextval и раздает его из памяти, поэтому номера
+// одного экземпляра строго возрастают, а разных экземпляров не пересекаются; счетчик не сбрасывается
+// по дням - иначе экземплярам пришлось бы договариваться о начале дня; неиспользованный остаток
+// блока при остановке теряется; бин по умолчанию - BillNumberConfig
+public class SequenceBillNumberGenerator implements BillNumberGenerator {
+
+    // равен INCREMENT BY последовательности (V12__add_bill_number_sequence.sql)
+    public static final int BLOCK_SIZE = 100;
+
+    private static final String PREFIX = "BILL-";
+    // старые номера BILL-yyyyMMddHHmmss-... сортируются раньше новых
+    private static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("yyMMdd");
+    // ширина счетчика: номера одного дня сравниваются как строки
+    private static final int COUNTER_DIGITS = 8;
+
+    private final BillRepository billRepository;
+    private final Clock clock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // под lock
+    private long next;
+    private long blockEnd;
+    private LocalDate day;
+    private String dayPrefix;
+
+    // clock задает и пояс, в котором начинается новый день номеров
+    public SequenceBillNumberGenerator(BillRepository billRepository, Clock clock) {
+        this.billRepository = billRepository;
+        this.clock = clock;
+    }
+
+    @Override
+    public String next() {
+        lock.lock();
+        try {
+            if (next == blockEnd) {
+                // блок кончился: один запрос в бд на BLOCK_SIZE счетов
+                next = billRepository.nextBillNumberBlock();
+                blockEnd = next + BLOCK_SIZE;
+            }
+            return dayPrefix() + pad(next++);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // префикс пересчитывается раз в день, а не форматируется на каждый номер
+    private String dayPrefix() {
+        LocalDate today = LocalDate.now(clock);
+        if (!today.equals(day)) {
+            day = today;
+            dayPrefix = PREFIX + DAY.format(today) + "-";
+        }
+        return dayPrefix;
+    }
+
+    private static String pad(long value) {
+        String digits = Long.toString(value);
+        return digits.length() >= COUNTER_DIGITS ? digits : "0".repeat(COUNTER_DIGITS - digits.length()) + digits;
+    }
+}
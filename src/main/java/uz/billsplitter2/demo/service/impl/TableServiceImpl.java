@@ -2,6 +2,7 @@ package uz.billsplitter2.demo.service.impl;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import uz.billsplitter2.demo.dto.request.CreateTableDto;
 import uz.billsplitter2.demo.dto.request.UpdateTableDto;
@@ -14,6 +15,7 @@ import uz.billsplitter2.demo.exception.ValidationException;
 import uz.billsplitter2.demo.mapper.TableMapper;
 import uz.billsplitter2.demo.repository.RestaurantTableRepository;
 import uz.billsplitter2.demo.service.TableService;
+import uz.billsplitter2.demo.service.TableStatusRegistry;
 
 import java.util.List;
 import java.util.UUID;
@@ -25,6 +27,7 @@ public class TableServiceImpl implements TableService {
 
     private final RestaurantTableRepository tableRepository;
     private final TableMapper tableMapper;
+    private final TableStatusRegistry tableStatusRegistry;
 
     // создание нового стола
     @Override
@@ -37,16 +40,15 @@ public class TableServiceImpl implements TableService {
         table.setStatus(TableStatus.AVAILABLE);
 
         RestaurantTable saved = tableRepository.save(table);
+        tableStatusRegistry.tableChanged(saved);
         return tableMapper.toDto(saved);
     }
 
-    // получение списка всех столов
+    // получение списка всех столов из реестра статусов, без запроса к бд
     @Override
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<TableDto> getAllTables() {
-        return tableRepository.findAll().stream()
-                .map(tableMapper::toDto)
-                .toList();
+        return tableStatusRegistry.snapshot().tables();
     }
 
     @Override
@@ -62,6 +64,7 @@ public class TableServiceImpl implements TableService {
         RestaurantTable table = findTableOrThrow(id);
         tableMapper.updateEntity(dto, table);
         RestaurantTable updated = tableRepository.save(table);
+        tableStatusRegistry.tableChanged(updated);
         return tableMapper.toDto(updated);
     }
 
@@ -75,13 +78,14 @@ public class TableServiceImpl implements TableService {
         }
 
         tableRepository.delete(table);
+        tableStatusRegistry.tableRemoved(id);
     }
 
     @Override
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<TableDto> getTablesByStatus(TableStatus status) {
-        return tableRepository.findAllByStatus(status).stream()
-                .map(tableMapper::toDto)
+        return tableStatusRegistry.snapshot().tables().stream()
+                .filter(table -> table.status() == status)
                 .toList();
     }
 
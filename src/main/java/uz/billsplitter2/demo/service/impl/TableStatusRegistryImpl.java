@@ -0,0 +1,322 @@
+package uz.billsplitter2.demo.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import uz.billsplitter2.demo.dto.response.TableDto;
+import uz.billsplitter2.demo.dto.response.TableStatusEventDto;
+import uz.billsplitter2.demo.dto.response.TableStatusSnapshotDto;
+import uz.billsplitter2.demo.entity.RestaurantTable;
+import uz.billsplitter2.demo.mapper.TableMapper;
+import uz.billsplitter2.demo.repository.RestaurantTableRepository;
+import uz.billsplitter2.demo.service.TableStatusRegistry;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+// состояние столов в памяти: загружается при старте, меняется после коммита изменений столов и компаний,
+// подписчики получают по sse снимок один раз и дальше только изменения с номером версии.
+// состояние локально для экземпляра приложения: изменения, сделанные другим экземпляром, сюда не попадут
+@Slf4j
+@Service
+public class TableStatusRegistryImpl implements TableStatusRegistry {
+
+    private static final Set<DataWithMediaType> HEARTBEAT = SseEmitter.event().comment("heartbeat").build();
+
+    private final RestaurantTableRepository tableRepository;
+    private final TableMapper tableMapper;
+    private final ObjectMapper objectMapper;
+    private final Duration emitterTimeout;
+    private final Duration heartbeatInterval;
+    private final int replaySize;
+    private final int maxPending;
+
+    // изменения и подписка идут под одной блокировкой: все подписчики видят события в порядке версий
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<UUID, TableDto> tables = new LinkedHashMap<>();
+    // удаленные столы: запоздавшее изменение не должно вернуть стол (uuid не переиспользуются)
+    private final Set<UUID> removed = new HashSet<>();
+    private final ArrayDeque<TableStatusEventDto> recent = new ArrayDeque<>();
+    private long version;
+
+    // неизменяемый снимок публикуется целиком: список столов читается без блокировки
+    private volatile TableStatusSnapshotDto state;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    // у каждого подписчика своя очередь и отправка на виртуальном потоке: медленный клиент не задерживает остальных
+    private final ExecutorService sender = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("table-status-sender-", 0).factory());
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("table-status-heartbeat").daemon().factory());
+
+    public TableStatusRegistryImpl(
+            RestaurantTableRepository tableRepository,
+            TableMapper tableMapper,
+            ObjectMapper objectMapper,
+            @Value("${app.tables.events.timeout:30m}") Duration emitterTimeout,
+            @Value("${app.tables.events.heartbeat:15s}") Duration heartbeatInterval,
+            @Value("${app.tables.events.replay-size:256}") int replaySize,
+            @Value("${app.tables.events.max-pending:64}") int maxPending
+    ) {
+        this.tableRepository = tableRepository;
+        this.tableMapper = tableMapper;
+        this.objectMapper = objectMapper;
+        this.emitterTimeout = emitterTimeout;
+        this.heartbeatInterval = heartbeatInterval;
+        this.replaySize = replaySize;
+        this.maxPending = maxPending;
+    }
+
+    // загрузка до первых запросов; heartbeat держит соединения через прокси и находит отключившихся клиентов
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        snapshot();
+        long interval = heartbeatInterval.toMillis();
+        heartbeat.scheduleWithFixedDelay(() -> subscribers.forEach(subscriber -> subscriber.offer(HEARTBEAT)),
+                interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        sender.shutdownNow();
+    }
+
+    @Override
+    public TableStatusSnapshotDto snapshot() {
+        TableStatusSnapshotDto current = state;
+        return current != null ? current : load();
+    }
+
+    @Override
+    public SseEmitter subscribe(Long lastVersion) {
+        snapshot();
+        SseEmitter emitter = new SseEmitter(emitterTimeout.toMillis());
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(error -> subscriber.close());
+
+        lock.lock();
+        try {
+            // начальные события отправляются здесь, до возврата emitter: он копит их и запись делает
+            // поток запроса; из потока отправки писать в ответ, пока запрос еще обрабатывается, нельзя
+            List<TableStatusEventDto> missed = lastVersion == null ? null : eventsSince(lastVersion);
+            if (missed == null) {
+                emitter.send(message("snapshot", state.version(), state));
+            } else {
+                for (TableStatusEventDto event : missed) {
+                    emitter.send(message("table", event.version(), event));
+                }
+            }
+            subscribers.add(subscriber);
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        } finally {
+            lock.unlock();
+        }
+        return emitter;
+    }
+
+    @Override
+    public void tableChanged(RestaurantTable table) {
+        // dto строится после коммита: updatedAt проставляется при flush
+        afterCommit(() -> apply(table.getId(), tableMapper.toDto(table)));
+    }
+
+    @Override
+    public void tableRemoved(UUID tableId) {
+        afterCommit(() -> apply(tableId, null));
+    }
+
+    // события после lastVersion из буфера последних изменений; null - их там уже нет
+    // (или версия от прошлого запуска), клиенту нужен снимок
+    public List<TableStatusEventDto> eventsSince(long lastVersion) {
+        lock.lock();
+        try {
+            if (lastVersion > version) {
+                return null;
+            }
+            TableStatusEventDto oldest = recent.peekFirst();
+            if (lastVersion < version && (oldest == null || oldest.version() > lastVersion + 1)) {
+                return null;
+            }
+            return recent.stream()
+                    .filter(event -> event.version() > lastVersion)
+                    .toList();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private TableStatusSnapshotDto load() {
+        lock.lock();
+        try {
+            if (state == null) {
+                // версии идут от времени загрузки: Last-Event-ID прошлого запуска меньше любой версии этого
+                version = System.currentTimeMillis();
+                for (RestaurantTable table : tableRepository.findAll()) {
+                    tables.put(table.getId(), tableMapper.toDto(table));
+                }
+                state = new TableStatusSnapshotDto(version, List.copyOf(tables.values()));
+                log.debug("Table status registry loaded {} tables at version {}", tables.size(), version);
+            }
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void afterCommit(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    change.run();
+                }
+            });
+        } else {
+            change.run();
+        }
+    }
+
+    private void apply(UUID tableId, TableDto table) {
+        lock.lock();
+        try {
+            if (state == null) {
+                // до загрузки изменения не копятся: загрузка прочитает уже закоммиченное состояние
+                return;
+            }
+            if (table != null) {
+                // afterCommit транзакций одного стола идут не в порядке коммитов: изменение, прочитавшее
+                // более старую версию строки, чем уже примененная, пропускается
+                if (removed.contains(tableId) || isOlder(table, tables.get(tableId))) {
+                    return;
+                }
+                tables.put(tableId, table);
+            } else {
+                removed.add(tableId);
+                if (tables.remove(tableId) == null) {
+                    return;
+                }
+            }
+
+            TableStatusEventDto event = new TableStatusEventDto(++version, tableId, table);
+            recent.addLast(event);
+            if (recent.size() > replaySize) {
+                recent.removeFirst();
+            }
+            state = new TableStatusSnapshotDto(version, List.copyOf(tables.values()));
+
+            // событие сериализуется один раз на всех подписчиков
+            Set<DataWithMediaType> message = message("table", event.version(), event);
+            subscribers.forEach(subscriber -> subscriber.offer(message));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static boolean isOlder(TableDto table, TableDto current) {
+        return current != null && table.version() != null && current.version() != null
+                && table.version() < current.version();
+    }
+
+    private Set<DataWithMediaType> message(String name, long eventVersion, Object payload) {
+        try {
+            return SseEmitter.event()
+                    .id(Long.toString(eventVersion))
+                    .name(name)
+                    .data(objectMapper.writeValueAsString(payload), MediaType.APPLICATION_JSON)
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize table status event", e);
+        }
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final Queue<Set<DataWithMediaType>> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pendingCount = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean closed;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        // переполненная очередь - клиент не успевает читать: соединение закрывается,
+        // клиент переподключается с Last-Event-ID и получает пропущенное или снимок
+        void offer(Set<DataWithMediaType> message) {
+            if (closed) {
+                return;
+            }
+            if (pendingCount.incrementAndGet() > maxPending) {
+                log.debug("Table status subscriber is too slow, closing stream");
+                close();
+                emitter.complete();
+                return;
+            }
+            pending.add(message);
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                Set<DataWithMediaType> message;
+                while (!closed && (message = pending.poll()) != null) {
+                    pendingCount.decrementAndGet();
+                    emitter.send(message);
+                }
+            } catch (IOException | IllegalStateException e) {
+                // клиент отключился или emitter уже завершен
+                close();
+                emitter.completeWithError(e);
+            } finally {
+                draining.set(false);
+                if (!closed && !pending.isEmpty()) {
+                    scheduleDrain();
+                }
+            }
+        }
+
+        void close() {
+            closed = true;
+            subscribers.remove(this);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package uz.billsplitter2.demo.service.impl;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import uz.billsplitter2.demo.dto.request.CreateWaiterDto;
+import uz.billsplitter2.demo.dto.response.ErrorResponse;
+import uz.billsplitter2.demo.dto.response.WaiterImportEntryDto;
+import uz.billsplitter2.demo.exception.ApplicationException;
+import uz.billsplitter2.demo.exception.ValidationException;
+import uz.billsplitter2.demo.service.WaiterImportService;
+import uz.billsplitter2.demo.service.WaiterService;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WaiterImportServiceImpl implements WaiterImportService {
+
+    private final WaiterService waiterService;
+    private final Validator validator;
+    private final TaskExecutor waiterImportExecutor;
+
+    @Value("${app.waiter.import.max-size:200}")
+    int maxImportSize;
+
+    // параллельное создание официантов (keycloak + бд): порядок сохраняется, ошибка одной строки не роняет импорт
+    @Override
+    public List<WaiterImportEntryDto> importWaiters(List<CreateWaiterDto> waiters, String path) {
+        if (waiters == null || waiters.isEmpty()) {
+            throw new ValidationException("Import must contain at least one waiter");
+        }
+        if (waiters.size() > maxImportSize) {
+            throw new ValidationException("Import size exceeds limit of " + maxImportSize);
+        }
+
+        // повтор username в одном файле не должен доходить до keycloak
+        Set<String> seen = new HashSet<>();
+        List<CompletableFuture<WaiterImportEntryDto>> futures = new ArrayList<>(waiters.size());
+        for (int i = 0; i < waiters.size(); i++) {
+            int index = i;
+            CreateWaiterDto dto = waiters.get(i);
+            boolean duplicate = dto != null && dto.username() != null && !seen.add(dto.username());
+            futures.add(CompletableFuture.supplyAsync(() -> importEntry(index, dto, duplicate, path), waiterImportExecutor));
+        }
+
+        return futures.stream()
+                .map(CompletableFuture::join)
+                .toList();
+    }
+
+    private WaiterImportEntryDto importEntry(int index, CreateWaiterDto dto, boolean duplicate, String path) {
+        String username = dto == null ? null : dto.username();
+        try {
+            ensureValid(dto);
+            if (duplicate) {
+                throw new ValidationException("Duplicate username in import: " + username);
+            }
+            return WaiterImportEntryDto.success(index, waiterService.createWaiter(dto));
+        } catch (ApplicationException ex) {
+            ErrorResponse error = ErrorResponse.of(ex.getCode(), ex.getMessage(), ex.getStatus(), path);
+            return WaiterImportEntryDto.failure(index, username, error);
+        } catch (RuntimeException ex) {
+            log.error("Unhandled exception in waiter import entry {}", index, ex);
+            ErrorResponse error = ErrorResponse.of("INTERNAL_ERROR", "Unexpected error", HttpStatus.INTERNAL_SERVER_ERROR, path);
+            return WaiterImportEntryDto.failure(index, username, error);
+        }
+    }
+
+    // та же bean validation, что @Valid на одиночном POST /waiters, но для каждой строки отдельно
+    private void ensureValid(CreateWaiterDto dto) {
+        if (dto == null) {
+            throw new ValidationException("Import entry is empty or malformed");
+        }
+        Set<ConstraintViolation<CreateWaiterDto>> violations = validator.validate(dto);
+        if (!violations.isEmpty()) {
+            String message = violations.stream()
+                    .map(v -> v.getPropertyPath() + " " + v.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+            throw new ValidationException(message);
+        }
+    }
+}
@@ -16,6 +16,7 @@ import uz.billsplitter2.demo.exception.ResourceNotFoundException;
 import uz.billsplitter2.demo.exception.ValidationException;
 import uz.billsplitter2.demo.mapper.WaiterMapper;
 import uz.billsplitter2.demo.repository.WaiterRepository;
+import uz.billsplitter2.demo.security.CurrentWaiterCache;
 import uz.billsplitter2.demo.service.KeycloakAdminService;
 import uz.billsplitter2.demo.service.WaiterService;
 
@@ -31,6 +32,7 @@ public class WaiterServiceImpl implements WaiterService {
     private final WaiterRepository waiterRepository;
     private final WaiterMapper waiterMapper;
     private final KeycloakAdminService keycloakAdminService;
+    private final CurrentWaiterCache currentWaiterCache;
 
     // создание нового официанта
     @Override
@@ -115,6 +117,7 @@ public class WaiterServiceImpl implements WaiterService {
         // Update waiter in database
         waiterMapper.updateEntity(dto, waiter);
         Waiter updated = waiterRepository.save(waiter);
+        currentWaiterCache.invalidate(updated.getKeycloakId());
         log.info("Updated waiter in database: {}", updated.getId());
 
         return waiterMapper.toDto(updated);
@@ -138,6 +141,7 @@ public class WaiterServiceImpl implements WaiterService {
         // Deactivate waiter in database
         waiter.setActive(false);
         waiterRepository.save(waiter);
+        currentWaiterCache.invalidate(waiter.getKeycloakId());
         log.info("Deactivated waiter in database: {}", id);
     }
 
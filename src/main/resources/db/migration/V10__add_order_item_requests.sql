@@ -0,0 +1,11 @@
+-- ключи Idempotency-Key добавления позиций: повтор запроса возвращает уже созданные позиции;
+-- item_ids - id позиций через запятую в порядке запроса, строки старше ttl удаляются фоном
+CREATE TABLE order_item_requests (
+    idempotency_key VARCHAR(64) PRIMARY KEY,
+    bill_id UUID NOT NULL REFERENCES bills(id) ON DELETE CASCADE,
+    request_hash VARCHAR(64) NOT NULL,
+    item_ids TEXT NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_order_item_requests_created_at ON order_item_requests(created_at);
@@ -0,0 +1,13 @@
+-- ответы изменяющих запросов счетов и компаний по заголовку Idempotency-Key (IdempotencyFilter):
+-- record_key - subject пользователя и ключ; status NULL - запрос еще выполняется
+CREATE TABLE idempotency_keys (
+    record_key VARCHAR(200) PRIMARY KEY,
+    request_hash VARCHAR(64) NOT NULL,
+    status INTEGER,
+    content_type VARCHAR(200),
+    response_body BYTEA,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    completed_at TIMESTAMP WITH TIME ZONE
+);
+
+CREATE INDEX idx_idempotency_keys_created_at ON idempotency_keys(created_at);
@@ -0,0 +1,6 @@
+-- номера счетов выдаются блоками: экземпляр приложения берет nextval и раздает INCREMENT BY номеров из памяти
+-- (SequenceBillNumberGenerator.BLOCK_SIZE), новые номера дописываются в правый край индекса bill_number
+CREATE SEQUENCE bill_number_seq START WITH 1 INCREMENT BY 100;
+
+-- дублирует индекс ограничения UNIQUE(bill_number)
+DROP INDEX IF EXISTS idx_bills_bill_number;
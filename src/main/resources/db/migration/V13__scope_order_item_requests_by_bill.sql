@@ -0,0 +1,4 @@
+-- Idempotency-Key добавления позиций уникален в пределах счета, а не глобально:
+-- планшет со своим счетчиком ключей может повторить значение на другом счете
+ALTER TABLE order_item_requests DROP CONSTRAINT order_item_requests_pkey;
+ALTER TABLE order_item_requests ADD PRIMARY KEY (bill_id, idempotency_key);
@@ -0,0 +1,21 @@
+-- промежуточные итоги гостей по позициям открытого счета
+CREATE TABLE bill_guest_shares (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    bill_id UUID NOT NULL REFERENCES bills(id) ON DELETE CASCADE,
+    guest_id UUID NOT NULL REFERENCES guests(id) ON DELETE CASCADE,
+    position INTEGER NOT NULL,
+    items_total NUMERIC(10, 2) NOT NULL DEFAULT 0,
+    item_count INTEGER NOT NULL DEFAULT 0,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT uq_bill_guest_shares_bill_guest UNIQUE (bill_id, guest_id)
+);
+
+CREATE INDEX idx_bill_guest_shares_guest_id ON bill_guest_shares(guest_id);
+
+CREATE TRIGGER update_bill_guest_shares_updated_at
+    BEFORE UPDATE ON bill_guest_shares
+    FOR EACH ROW EXECUTE FUNCTION update_updated_at_column();
+
+-- счета, открытые до миграции, пересобирают итоги при первом обращении
+ALTER TABLE bills ADD COLUMN guest_shares_ready BOOLEAN NOT NULL DEFAULT FALSE;
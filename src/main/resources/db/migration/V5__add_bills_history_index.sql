@@ -0,0 +1,2 @@
+-- keyset-пагинация истории закрытых счетов по (closed_at desc, id)
+CREATE INDEX idx_bills_status_closed_at_id ON bills(status, closed_at DESC, id);
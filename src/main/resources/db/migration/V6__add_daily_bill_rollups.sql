@@ -0,0 +1,12 @@
+-- суммы закрытых счетов по дню и часу (в поясе app.analytics.time-zone), официанту и столу
+CREATE TABLE daily_bill_rollups (
+    rollup_date DATE NOT NULL,
+    hour_of_day INTEGER NOT NULL,
+    waiter_id UUID NOT NULL REFERENCES waiters(id),
+    table_id UUID NOT NULL REFERENCES restaurant_tables(id),
+    bill_count BIGINT NOT NULL DEFAULT 0,
+    items_total NUMERIC(14, 2) NOT NULL DEFAULT 0,
+    service_fees NUMERIC(14, 2) NOT NULL DEFAULT 0,
+    total_amount NUMERIC(14, 2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (rollup_date, hour_of_day, waiter_id, table_id)
+);
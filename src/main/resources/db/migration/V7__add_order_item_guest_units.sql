@@ -0,0 +1,6 @@
+-- закрепление единиц позиции за гостями: json {"<guest_id>": <units>}, NULL - сумма позиции делится поровну;
+-- price остается ценой единицы, сумма позиции - price * quantity
+ALTER TABLE order_items ADD COLUMN guest_units TEXT;
+
+-- итоги открытых счетов посчитаны при цене позиции за одну единицу, пересобираются при первом обращении
+UPDATE bills SET guest_shares_ready = FALSE WHERE status = 'OPEN';
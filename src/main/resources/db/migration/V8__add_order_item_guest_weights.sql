@@ -0,0 +1,4 @@
+-- веса и фиксированные суммы гостей в позиции: json {"<guest_id>": <value>}, NULL - поровну;
+-- фиксированные суммы вычитаются из суммы позиции, остаток делится между прочими гостями по весам
+ALTER TABLE order_items ADD COLUMN guest_weights TEXT;
+ALTER TABLE order_items ADD COLUMN guest_fixed_amounts TEXT;
@@ -0,0 +1,10 @@
+-- версия строки для @Version в BaseEntity
+ALTER TABLE waiters ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE restaurant_tables ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE parties ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE bills ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE bill_guest_shares ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+
+-- не больше одной активной компании за столом; если миграция падает на этом индексе,
+-- лишние активные компании остались от прежней гонки при рассадке и закрываются вручную
+CREATE UNIQUE INDEX idx_parties_active_table ON parties(table_id) WHERE status = 'ACTIVE';
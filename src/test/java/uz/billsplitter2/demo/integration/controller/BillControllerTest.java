@@ -6,23 +6,34 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 import uz.billsplitter2.demo.controller.BillController;
 import uz.billsplitter2.demo.dto.request.BillRequestDto;
+import uz.billsplitter2.demo.dto.response.BillBatchEntryDto;
 import uz.billsplitter2.demo.dto.response.BillResponseDto;
+import uz.billsplitter2.demo.dto.response.ErrorResponse;
+import uz.billsplitter2.demo.dto.response.OrderItemDto;
 import uz.billsplitter2.demo.dto.response.ParticipantShareDto;
 import uz.billsplitter2.demo.exception.ValidationException;
 import uz.billsplitter2.demo.security.KeycloakJwtConverter;
+import uz.billsplitter2.demo.service.BillBatchCalculationService;
 import uz.billsplitter2.demo.service.BillCalculationService;
 import uz.billsplitter2.demo.service.BillManagementService;
 
 import java.math.BigDecimal;
+import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
@@ -41,6 +52,9 @@ class BillControllerTest {
     @MockitoBean
     BillManagementService billManagementService;
 
+    @MockitoBean
+    BillBatchCalculationService billBatchCalculationService;
+
     @Test
     @DisplayName("calculate endpoint returns computed shares for valid request")
     @WithMockUser(roles = "WAITER")
@@ -190,4 +204,142 @@ class BillControllerTest {
 
         Mockito.verify(billCalculationService).split(any(BillRequestDto.class));
     }
+
+    @Test
+    @DisplayName("batch endpoint returns per-entry results in request order")
+    @WithMockUser(roles = "WAITER")
+    void calculateBatchReturnsEntries() throws Exception {
+        BillResponseDto stubResponse = BillResponseDto.builder()
+                .itemsTotal(new BigDecimal("50.00"))
+                .serviceFeeApplied(new BigDecimal("5.00"))
+                .totalToPay(new BigDecimal("55.00"))
+                .shares(List.of())
+                .build();
+        ErrorResponse error = ErrorResponse.of("VALIDATION_ERROR", "items size must be between 1 and 2147483647",
+                HttpStatus.BAD_REQUEST, "/api/v1/bills/calculate/batch");
+        Mockito.when(billBatchCalculationService.calculateBatch(anyList(), eq("/api/v1/bills/calculate/batch")))
+                .thenReturn(List.of(BillBatchEntryDto.success(0, stubResponse), BillBatchEntryDto.failure(1, error)));
+
+        String body = """
+                [
+                  {"items": [{"name": "Pasta", "price": 50, "participants": ["Alice"]}]},
+                  {"items": []}
+                ]
+                """;
+
+        mockMvc.perform(post("/api/v1/bills/calculate/batch")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].index").value(0))
+                .andExpect(jsonPath("$[0].result.totalToPay").value(55.0))
+                .andExpect(jsonPath("$[0].error").doesNotExist())
+                .andExpect(jsonPath("$[1].index").value(1))
+                .andExpect(jsonPath("$[1].error.code").value("VALIDATION_ERROR"));
+    }
+
+    @Test
+    @DisplayName("json batch stops reading at the first bill over max-size")
+    @WithMockUser(roles = "WAITER")
+    void calculateBatchRejectsOversizedArray() throws Exception {
+        String body = "[" + String.join(",", Collections.nCopies(501, "{\"items\": []}")) + "]";
+
+        mockMvc.perform(post("/api/v1/bills/calculate/batch")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Batch size exceeds limit of 500"));
+
+        Mockito.verifyNoInteractions(billBatchCalculationService);
+    }
+
+    @Test
+    @DisplayName("json batch rejects a body that is not a complete array")
+    @WithMockUser(roles = "WAITER")
+    void calculateBatchRejectsMalformedArray() throws Exception {
+        for (String body : List.of("{\"items\": []}", "[{\"items\": []}")) {
+            mockMvc.perform(post("/api/v1/bills/calculate/batch")
+                            .with(csrf())
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(body))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.code").value("VALIDATION_ERROR"));
+        }
+
+        Mockito.verifyNoInteractions(billBatchCalculationService);
+    }
+
+    @Test
+    @DisplayName("ndjson batch passes malformed lines as empty entries")
+    @WithMockUser(roles = "WAITER")
+    void calculateBatchAcceptsNdjson() throws Exception {
+        Mockito.when(billBatchCalculationService.calculateBatch(anyList(), anyString())).thenReturn(List.of());
+
+        String body = """
+                {"items": [{"name": "Pasta", "price": 50, "participants": ["Alice"]}]}
+                {not json}
+
+                {"items": [{"name": "Tea", "price": 5, "participants": ["Bob"]}]}
+                """;
+
+        mockMvc.perform(post("/api/v1/bills/calculate/batch")
+                        .with(csrf())
+                        .contentType("application/x-ndjson")
+                        .content(body))
+                .andExpect(status().isOk());
+
+        Mockito.verify(billBatchCalculationService).calculateBatch(
+                argThat(requests -> requests.size() == 3 && requests.get(0) != null && requests.get(1) == null && requests.get(2) != null),
+                anyString()
+        );
+    }
+
+    @Test
+    @DisplayName("ndjson batch stops reading at the first line over max-size")
+    @WithMockUser(roles = "WAITER")
+    void calculateBatchNdjsonRejectsOversizedBatch() throws Exception {
+        String body = "{\"items\": []}\n".repeat(501);
+
+        mockMvc.perform(post("/api/v1/bills/calculate/batch")
+                        .with(csrf())
+                        .contentType("application/x-ndjson")
+                        .content(body))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Batch size exceeds limit of 500"));
+
+        Mockito.verifyNoInteractions(billBatchCalculationService);
+    }
+
+    @Test
+    @DisplayName("items batch returns created items with 201")
+    @WithMockUser(roles = "WAITER")
+    void addItemsBatchReturnsCreatedItems() throws Exception {
+        UUID billId = UUID.randomUUID();
+        UUID guestId = UUID.randomUUID();
+        Mockito.when(billManagementService.addOrderItems(eq(billId), anyList(), eq("retry-1"))).thenReturn(List.of(
+                OrderItemDto.builder().billId(billId).name("Pizza").price(new BigDecimal("30.00")).quantity(1).build(),
+                OrderItemDto.builder().billId(billId).name("Wine").price(new BigDecimal("12.00")).quantity(2).build()
+        ));
+
+        String body = """
+                [
+                  {"name": "Pizza", "price": 30, "quantity": 1, "guestIds": ["%1$s"]},
+                  {"name": "Wine", "price": 12, "quantity": 2, "guestIds": ["%1$s"]}
+                ]
+                """.formatted(guestId);
+
+        mockMvc.perform(post("/api/v1/bills/{id}/items/batch", billId)
+                        .with(csrf())
+                        .header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$[0].name").value("Pizza"))
+                .andExpect(jsonPath("$[1].quantity").value(2));
+
+        Mockito.verify(billManagementService).addOrderItems(eq(billId),
+                argThat(dtos -> dtos.size() == 2 && dtos.get(1).guestIds().equals(List.of(guestId))), eq("retry-1"));
+    }
 }
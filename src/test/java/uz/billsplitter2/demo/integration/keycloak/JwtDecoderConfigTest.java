@@ -0,0 +1,132 @@
+package uz.billsplitter2.demo.integration.keycloak;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
+import uz.billsplitter2.demo.config.JwtDecoderConfig;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// JwtDecoderConfig против jwks endpoint заглушки keycloak по http
+class JwtDecoderConfigTest {
+
+    StubKeycloakServer keycloak;
+    RSAKey currentKey;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        keycloak = new StubKeycloakServer();
+        currentKey = rotateKey();
+    }
+
+    @AfterEach
+    void tearDown() {
+        keycloak.close();
+    }
+
+    @Test
+    void verifiesTokenWithCachedKeys() throws Exception {
+        JwtDecoder decoder = decoder(keycloak.url() + "/realms/" + StubKeycloakServer.REALM + "/protocol/openid-connect/certs");
+
+        Jwt first = decoder.decode(token("kc-alice", keycloak.issuer()));
+        Jwt second = decoder.decode(token("kc-bob", keycloak.issuer()));
+
+        assertThat(first.getSubject()).isEqualTo("kc-alice");
+        assertThat(second.getSubject()).isEqualTo("kc-bob");
+        assertThat(keycloak.jwksRequests.get()).isEqualTo(1);
+    }
+
+    @Test
+    void reloadsKeysOnUnknownKid() throws Exception {
+        JwtDecoder decoder = decoder(keycloak.url() + "/realms/" + StubKeycloakServer.REALM + "/protocol/openid-connect/certs");
+        decoder.decode(token("kc-alice", keycloak.issuer()));
+
+        currentKey = rotateKey();
+
+        assertThat(decoder.decode(token("kc-alice", keycloak.issuer())).getSubject()).isEqualTo("kc-alice");
+        assertThat(keycloak.jwksRequests.get()).isEqualTo(2);
+    }
+
+    @Test
+    void repeatedBearerSkipsVerification() throws Exception {
+        JwtDecoder decoder = decoder(keycloak.url() + "/realms/" + StubKeycloakServer.REALM + "/protocol/openid-connect/certs");
+        String token = token("kc-alice", keycloak.issuer());
+        Jwt first = decoder.decode(token);
+
+        // после смены ключей подпись уже не проверить, но токен взят из кэша
+        currentKey = rotateKey();
+        keycloak.jwks = "{\"keys\":[]}";
+
+        assertThat(decoder.decode(token)).isSameAs(first);
+        assertThat(keycloak.jwksRequests.get()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsForeignIssuer() throws Exception {
+        JwtDecoder decoder = decoder(keycloak.url() + "/realms/" + StubKeycloakServer.REALM + "/protocol/openid-connect/certs");
+
+        assertThatThrownBy(() -> decoder.decode(token("kc-alice", "http://evil.example/realms/billsplitter")))
+                .isInstanceOf(JwtValidationException.class);
+    }
+
+    @Test
+    void startsWithoutReachableKeycloak() throws Exception {
+        keycloak.close();
+
+        JwtDecoder decoder = decoder(keycloak.url() + "/realms/" + StubKeycloakServer.REALM + "/protocol/openid-connect/certs");
+
+        assertThatThrownBy(() -> decoder.decode(token("kc-alice", keycloak.issuer())))
+                .isInstanceOf(JwtException.class);
+    }
+
+    private JwtDecoder decoder(String jwkSetUri) throws Exception {
+        JwtDecoderConfig config = new JwtDecoderConfig();
+        JWKSource<SecurityContext> jwkSource = config.keycloakJwkSource(jwkSetUri, Duration.ofMinutes(15),
+                Duration.ofMinutes(1), Duration.ofSeconds(5), Duration.ofMillis(1), Duration.ofSeconds(1), Duration.ofSeconds(2));
+        return config.jwtDecoder(jwkSource, new SimpleMeterRegistry(), keycloak.issuer(), 100, Duration.ofMinutes(5));
+    }
+
+    // новый ключ с новым kid, keycloak отдает только его
+    private RSAKey rotateKey() throws JOSEException {
+        RSAKey key = new RSAKeyGenerator(2048).keyID("kid-" + System.nanoTime()).generate();
+        keycloak.jwks = new JWKSet(key.toPublicJWK()).toString();
+        return key;
+    }
+
+    private String token(String subject, String issuer) throws JOSEException {
+        Instant now = Instant.now();
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject(subject)
+                .issuer(issuer)
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plusSeconds(300)))
+                .build();
+        SignedJWT jwt = new SignedJWT(
+                new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(currentKey.getKeyID()).type(JOSEObjectType.JWT).build(),
+                claims);
+        jwt.sign(new RSASSASigner(currentKey));
+        return jwt.serialize();
+    }
+}
@@ -0,0 +1,161 @@
+package uz.billsplitter2.demo.integration.keycloak;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestClient;
+import uz.billsplitter2.demo.dto.keycloak.KeycloakUserRepresentation;
+import uz.billsplitter2.demo.exception.KeycloakException;
+import uz.billsplitter2.demo.service.impl.KeycloakAdminServiceImpl;
+import uz.billsplitter2.demo.service.impl.KeycloakAdminTokenHolder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// кэш токена администратора против заглушки keycloak по http
+class KeycloakAdminTokenHolderTest {
+
+    StubKeycloakServer keycloak;
+    KeycloakAdminTokenHolder tokenHolder;
+    KeycloakAdminServiceImpl adminService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        keycloak = new StubKeycloakServer();
+        RestClient restClient = RestClient.create();
+
+        tokenHolder = new KeycloakAdminTokenHolder(restClient);
+        ReflectionTestUtils.setField(tokenHolder, "serverUrl", keycloak.url());
+        ReflectionTestUtils.setField(tokenHolder, "adminClientId", "admin-cli");
+        ReflectionTestUtils.setField(tokenHolder, "adminUsername", "admin");
+        ReflectionTestUtils.setField(tokenHolder, "adminPassword", "admin");
+        ReflectionTestUtils.setField(tokenHolder, "minValidity", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(tokenHolder, "refreshAhead", Duration.ofSeconds(60));
+
+        adminService = new KeycloakAdminServiceImpl(restClient, tokenHolder);
+        ReflectionTestUtils.setField(adminService, "serverUrl", keycloak.url());
+        ReflectionTestUtils.setField(adminService, "realm", StubKeycloakServer.REALM);
+    }
+
+    @AfterEach
+    void tearDown() {
+        tokenHolder.shutdown();
+        keycloak.close();
+    }
+
+    @Test
+    void reusesTokenUntilItNearsExpiry() {
+        assertThat(tokenHolder.getAccessToken()).isEqualTo("t1");
+        assertThat(tokenHolder.getAccessToken()).isEqualTo("t1");
+        adminService.setUserEnabled("u1", false);
+        adminService.setUserEnabled("u2", true);
+
+        assertThat(keycloak.grants).containsExactly("password");
+    }
+
+    @Test
+    void renewsNearlyExpiredTokenWithRefreshToken() {
+        // 5 с жизни меньше min-validity: второй вызов уже обновляет
+        keycloak.expiresIn = 5;
+
+        assertThat(tokenHolder.getAccessToken()).isEqualTo("t1");
+        assertThat(tokenHolder.getAccessToken()).isEqualTo("t2");
+
+        assertThat(keycloak.grants).containsExactly("password", "refresh_token");
+    }
+
+    @Test
+    void fallsBackToPasswordGrantWhenRefreshIsRejected() {
+        keycloak.expiresIn = 5;
+        keycloak.rejectRefreshGrant = true;
+
+        tokenHolder.getAccessToken();
+        assertThat(tokenHolder.getAccessToken()).isEqualTo("t2");
+
+        assertThat(keycloak.grants).containsExactly("password", "refresh_token", "password");
+    }
+
+    @Test
+    void refreshesUsedTokenInBackgroundBeforeExpiry() throws InterruptedException {
+        // 2 с жизни меньше refresh-ahead: фоновое обновление через половину срока, до истечения
+        keycloak.expiresIn = 2;
+        ReflectionTestUtils.setField(tokenHolder, "minValidity", Duration.ZERO);
+
+        assertThat(tokenHolder.getAccessToken()).isEqualTo("t1");
+        awaitGrants(2);
+        String token = tokenHolder.getAccessToken();
+        long deadline = System.nanoTime() + Duration.ofMillis(500).toNanos();
+        while (token.equals("t1") && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            token = tokenHolder.getAccessToken();
+        }
+
+        assertThat(token).isEqualTo("t2");
+        assertThat(keycloak.grants).startsWith("password", "refresh_token");
+    }
+
+    @Test
+    void singleFlightsConcurrentRenewals() throws Exception {
+        keycloak.tokenDelayMillis = 200;
+        int threads = 32;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> tokens = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < threads; i++) {
+                tokens.add(pool.submit(() -> {
+                    start.await();
+                    return tokenHolder.getAccessToken();
+                }));
+            }
+            start.countDown();
+            for (Future<String> token : tokens) {
+                assertThat(token.get()).isEqualTo("t1");
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(keycloak.grants).containsExactly("password");
+    }
+
+    @Test
+    void reauthenticatesOnceWhenAdminApiRejectsToken() {
+        tokenHolder.getAccessToken();
+        keycloak.rejectedTokens.add("t1");
+
+        adminService.setUserEnabled("u1", false);
+
+        assertThat(keycloak.grants).containsExactly("password", "password");
+        assertThat(keycloak.adminRequests).hasSize(2);
+        assertThat(tokenHolder.getAccessToken()).isEqualTo("t2");
+    }
+
+    @Test
+    void givesUpAfterSecondRejection() {
+        keycloak.rejectAllTokens = true;
+
+        assertThatThrownBy(() -> adminService.setUserEnabled("u1", false))
+                .isInstanceOf(KeycloakException.class);
+
+        assertThat(keycloak.grants).containsExactly("password", "password");
+        assertThat(keycloak.adminRequests).hasSize(2);
+    }
+
+    private void awaitGrants(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (keycloak.grants.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package uz.billsplitter2.demo.integration.keycloak;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestClient;
+import uz.billsplitter2.demo.dto.keycloak.KeycloakUserRepresentation;
+import uz.billsplitter2.demo.exception.KeycloakException;
+import uz.billsplitter2.demo.service.impl.KeycloakAdminServiceImpl;
+import uz.billsplitter2.demo.service.impl.KeycloakAdminTokenHolder;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// id созданного пользователя из Location против заглушки keycloak по http
+class KeycloakCreateUserTest {
+
+    private static final String USERS = "/admin/realms/" + StubKeycloakServer.REALM + "/users";
+
+    StubKeycloakServer keycloak;
+    KeycloakAdminTokenHolder tokenHolder;
+    KeycloakAdminServiceImpl adminService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        keycloak = new StubKeycloakServer();
+        RestClient restClient = RestClient.create();
+
+        tokenHolder = new KeycloakAdminTokenHolder(restClient);
+        ReflectionTestUtils.setField(tokenHolder, "serverUrl", keycloak.url());
+        ReflectionTestUtils.setField(tokenHolder, "adminClientId", "admin-cli");
+        ReflectionTestUtils.setField(tokenHolder, "adminUsername", "admin");
+        ReflectionTestUtils.setField(tokenHolder, "adminPassword", "admin");
+        ReflectionTestUtils.setField(tokenHolder, "minValidity", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(tokenHolder, "refreshAhead", Duration.ofSeconds(60));
+
+        adminService = new KeycloakAdminServiceImpl(restClient, tokenHolder);
+        ReflectionTestUtils.setField(adminService, "serverUrl", keycloak.url());
+        ReflectionTestUtils.setField(adminService, "realm", StubKeycloakServer.REALM);
+    }
+
+    @AfterEach
+    void tearDown() {
+        tokenHolder.shutdown();
+        keycloak.close();
+    }
+
+    @Test
+    void takesIdFromLocationWithoutSearch() {
+        String id = adminService.createUser(user("alice"));
+
+        assertThat(id).isEqualTo(keycloak.users.get("alice"));
+        assertThat(keycloak.adminRequests).containsExactly("POST " + USERS);
+    }
+
+    @Test
+    void searchesByUsernameWhenLocationIsMissing() {
+        keycloak.omitUserLocation = true;
+
+        String id = adminService.createUser(user("bob"));
+
+        assertThat(id).isEqualTo(keycloak.users.get("bob"));
+        assertThat(keycloak.adminRequests).containsExactly("POST " + USERS, "GET " + USERS);
+    }
+
+    @Test
+    void existingUsernameFails() {
+        adminService.createUser(user("carol"));
+
+        assertThatThrownBy(() -> adminService.createUser(user("carol")))
+                .isInstanceOf(KeycloakException.class)
+                .hasMessageContaining("Failed to create user");
+    }
+
+    private KeycloakUserRepresentation user(String username) {
+        return KeycloakUserRepresentation.builder()
+                .username(username)
+                .email(username + "@example.com")
+                .enabled(true)
+                .build();
+    }
+}
@@ -0,0 +1,122 @@
+package uz.billsplitter2.demo.integration.keycloak;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestClient;
+import uz.billsplitter2.demo.exception.KeycloakException;
+import uz.billsplitter2.demo.service.impl.KeycloakAdminServiceImpl;
+import uz.billsplitter2.demo.service.impl.KeycloakAdminTokenHolder;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// каталог ролей realm в KeycloakAdminServiceImpl против заглушки keycloak по http
+class KeycloakRoleCatalogueTest {
+
+    private static final String ROLE_MAPPINGS = "/admin/realms/" + StubKeycloakServer.REALM + "/users/u1/role-mappings/realm";
+
+    StubKeycloakServer keycloak;
+    KeycloakAdminTokenHolder tokenHolder;
+    KeycloakAdminServiceImpl adminService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        keycloak = new StubKeycloakServer();
+        RestClient restClient = RestClient.create();
+
+        tokenHolder = new KeycloakAdminTokenHolder(restClient);
+        ReflectionTestUtils.setField(tokenHolder, "serverUrl", keycloak.url());
+        ReflectionTestUtils.setField(tokenHolder, "adminClientId", "admin-cli");
+        ReflectionTestUtils.setField(tokenHolder, "adminUsername", "admin");
+        ReflectionTestUtils.setField(tokenHolder, "adminPassword", "admin");
+        ReflectionTestUtils.setField(tokenHolder, "minValidity", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(tokenHolder, "refreshAhead", Duration.ofSeconds(60));
+
+        adminService = new KeycloakAdminServiceImpl(restClient, tokenHolder);
+        ReflectionTestUtils.setField(adminService, "serverUrl", keycloak.url());
+        ReflectionTestUtils.setField(adminService, "realm", StubKeycloakServer.REALM);
+        ReflectionTestUtils.setField(adminService, "roleRefreshInterval", Duration.ofMinutes(10));
+    }
+
+    @AfterEach
+    void tearDown() {
+        adminService.shutdown();
+        tokenHolder.shutdown();
+        keycloak.close();
+    }
+
+    @Test
+    void warmedCatalogueLeavesOneRequestPerRoleChange() {
+        adminService.warmRoleCatalog();
+        keycloak.adminRequests.clear();
+
+        adminService.assignRealmRole("u1", "WAITER");
+        adminService.removeRealmRole("u1", "WAITER");
+        adminService.assignRealmRole("u1", "ADMIN");
+
+        assertThat(keycloak.adminRequests).containsExactly(
+                "POST " + ROLE_MAPPINGS, "DELETE " + ROLE_MAPPINGS, "POST " + ROLE_MAPPINGS);
+        assertThat(keycloak.roleMappings.get("u1")).containsExactly("role-admin");
+    }
+
+    @Test
+    void coldCatalogueFetchesRoleOnce() {
+        adminService.assignRealmRole("u1", "WAITER");
+        adminService.removeRealmRole("u1", "WAITER");
+
+        assertThat(keycloak.adminRequests).containsExactly(
+                "GET /admin/realms/" + StubKeycloakServer.REALM + "/roles/WAITER",
+                "POST " + ROLE_MAPPINGS,
+                "DELETE " + ROLE_MAPPINGS);
+    }
+
+    @Test
+    void assignsSeveralRolesWithOneMappingRequest() {
+        adminService.warmRoleCatalog();
+        keycloak.adminRequests.clear();
+
+        adminService.assignRealmRoles("u1", Set.of("ADMIN", "WAITER"));
+
+        assertThat(keycloak.adminRequests).containsExactly("POST " + ROLE_MAPPINGS);
+        assertThat(keycloak.roleMappings.get("u1")).containsExactlyInAnyOrder("role-admin", "role-waiter");
+    }
+
+    @Test
+    void reloadsRoleRecreatedInKeycloak() {
+        adminService.warmRoleCatalog();
+        keycloak.roles.put("WAITER", "role-waiter-2");
+        keycloak.adminRequests.clear();
+
+        adminService.assignRealmRole("u1", "WAITER");
+
+        assertThat(keycloak.adminRequests).containsExactly(
+                "POST " + ROLE_MAPPINGS,
+                "GET /admin/realms/" + StubKeycloakServer.REALM + "/roles/WAITER",
+                "POST " + ROLE_MAPPINGS);
+        assertThat(keycloak.roleMappings.get("u1")).containsExactly("role-waiter-2");
+    }
+
+    @Test
+    void unknownRoleFails() {
+        assertThatThrownBy(() -> adminService.assignRealmRole("u1", "MANAGER"))
+                .isInstanceOf(KeycloakException.class)
+                .hasMessageContaining("Failed to get role");
+    }
+
+    @Test
+    void warmupToleratesUnavailableKeycloak() {
+        keycloak.rejectAllTokens = true;
+
+        adminService.warmRoleCatalog();
+
+        keycloak.rejectAllTokens = false;
+        keycloak.adminRequests.clear();
+        adminService.assignRealmRole("u1", "WAITER");
+        assertThat(keycloak.adminRequests).hasSize(2);
+    }
+}
@@ -0,0 +1,91 @@
+package uz.billsplitter2.demo.integration.keycloak;
+
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.core5.io.CloseMode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClient;
+import uz.billsplitter2.demo.config.RestClientConfig;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// пул соединений RestClient против заглушки keycloak по http
+class RestClientConfigTest {
+
+    StubKeycloakServer keycloak;
+    CloseableHttpClient httpClient;
+    RestClientConfig config = new RestClientConfig();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        keycloak = new StubKeycloakServer();
+    }
+
+    @AfterEach
+    void tearDown() {
+        httpClient.close(CloseMode.IMMEDIATE);
+        keycloak.close();
+    }
+
+    @Test
+    void limitsConcurrentRequestsPerRoute() throws Exception {
+        keycloak.tokenDelayMillis = 50;
+        RestClient restClient = restClient(4, Duration.ofSeconds(10));
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<String>> logins = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                logins.add(executor.submit(() -> requestToken(restClient)));
+            }
+            for (Future<String> login : logins) {
+                assertThat(login.get()).contains("access_token");
+            }
+        }
+
+        assertThat(keycloak.grants).hasSize(32);
+        assertThat(keycloak.maxConcurrentTokenRequests.get()).isBetween(1, 4);
+    }
+
+    @Test
+    void failsWhenNoConnectionFreesUpInTime() throws Exception {
+        keycloak.tokenDelayMillis = 500;
+        RestClient restClient = restClient(1, Duration.ofMillis(50));
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<String> first = executor.submit(() -> requestToken(restClient));
+            while (keycloak.grants.isEmpty()) {
+                Thread.sleep(5);
+            }
+
+            assertThatThrownBy(() -> requestToken(restClient))
+                    .isInstanceOf(ResourceAccessException.class);
+            assertThat(first.get()).contains("access_token");
+        }
+    }
+
+    private RestClient restClient(int maxPerRoute, Duration acquireTimeout) {
+        httpClient = config.keycloakHttpClient(Duration.ofSeconds(5), Duration.ofSeconds(10), Duration.ofSeconds(30),
+                100, maxPerRoute, acquireTimeout);
+        return config.restClient(RestClient.builder(), httpClient);
+    }
+
+    private String requestToken(RestClient restClient) {
+        return restClient.post()
+                .uri(keycloak.url() + "/realms/master/protocol/openid-connect/token")
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .body("grant_type=password&client_id=admin-cli&username=admin&password=admin")
+                .retrieve()
+                .body(String.class);
+    }
+}
@@ -0,0 +1,230 @@
+package uz.billsplitter2.demo.integration.keycloak;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// локальная заглушка keycloak: token endpoint master realm и admin api пользователей и ролей
+class StubKeycloakServer implements AutoCloseable {
+
+    static final String REALM = "billsplitter";
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final HttpServer server;
+    private final AtomicInteger issued = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    // grant_type каждого запроса токена по порядку
+    final List<String> grants = new CopyOnWriteArrayList<>();
+    // "METHOD path" каждого запроса admin api
+    final List<String> adminRequests = new CopyOnWriteArrayList<>();
+    // access-токены, на которые admin api отвечает 401
+    final Set<String> rejectedTokens = ConcurrentHashMap.newKeySet();
+    // наибольшее число одновременно обрабатываемых запросов токена
+    final AtomicInteger maxConcurrentTokenRequests = new AtomicInteger();
+    // роли realm: имя -> id; пересоздание роли меняет id
+    final Map<String, String> roles = new ConcurrentHashMap<>(Map.of("ADMIN", "role-admin", "WAITER", "role-waiter"));
+    // созданные пользователи: username -> id
+    final Map<String, String> users = new ConcurrentHashMap<>();
+    // id ролей, назначенных пользователю: userId -> roleIds
+    final Map<String, Set<String>> roleMappings = new ConcurrentHashMap<>();
+
+    volatile long expiresIn = 300;
+    volatile long tokenDelayMillis;
+    volatile boolean rejectRefreshGrant;
+    volatile boolean rejectAllTokens;
+    // набор ключей realm, отдаваемый jwks endpoint
+    volatile String jwks = "{\"keys\":[]}";
+    final AtomicInteger jwksRequests = new AtomicInteger();
+    // ответ на создание пользователя без заголовка Location
+    volatile boolean omitUserLocation;
+
+    StubKeycloakServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/realms/master/protocol/openid-connect/token", this::token);
+        server.createContext("/admin/realms/" + REALM + "/", this::admin);
+        server.createContext("/realms/" + REALM + "/protocol/openid-connect/certs", this::certs);
+        server.start();
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    String issuer() {
+        return url() + "/realms/" + REALM;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void token(HttpExchange exchange) throws IOException {
+        Map<String, String> form = parseForm(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+        String grant = form.get("grant_type");
+        grants.add(grant);
+        maxConcurrentTokenRequests.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            sleep(tokenDelayMillis);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+
+        if ("refresh_token".equals(grant) && rejectRefreshGrant) {
+            respond(exchange, 400, "{\"error\":\"invalid_grant\"}");
+            return;
+        }
+
+        int n = issued.incrementAndGet();
+        respond(exchange, 200, String.format(
+                "{\"access_token\":\"t%d\",\"refresh_token\":\"r%d\",\"expires_in\":%d,\"token_type\":\"Bearer\"}",
+                n, n, expiresIn));
+    }
+
+    private void certs(HttpExchange exchange) throws IOException {
+        jwksRequests.incrementAndGet();
+        respond(exchange, 200, jwks);
+    }
+
+    private void admin(HttpExchange exchange) throws IOException {
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        adminRequests.add(method + " " + path);
+
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        String token = authorization == null ? "" : authorization.substring("Bearer ".length());
+        if (rejectAllTokens || rejectedTokens.contains(token)) {
+            respond(exchange, 401, "{\"error\":\"HTTP 401 Unauthorized\"}");
+            return;
+        }
+
+        String resource = path.substring(("/admin/realms/" + REALM + "/").length());
+        if (method.equals("GET") && resource.equals("roles")) {
+            List<Map<String, String>> all = roles.entrySet().stream()
+                    .map(role -> Map.of("id", role.getValue(), "name", role.getKey()))
+                    .toList();
+            respond(exchange, 200, JSON.writeValueAsString(all));
+            return;
+        }
+        if (method.equals("GET") && resource.startsWith("roles/")) {
+            String name = resource.substring("roles/".length());
+            String id = roles.get(name);
+            if (id == null) {
+                respond(exchange, 404, "{\"error\":\"Could not find role\"}");
+                return;
+            }
+            respond(exchange, 200, JSON.writeValueAsString(Map.of("id", id, "name", name)));
+            return;
+        }
+        if (resource.equals("users")) {
+            users(exchange, method, body);
+            return;
+        }
+        if (resource.startsWith("users/") && resource.endsWith("/role-mappings/realm")) {
+            mapRoles(exchange, method, resource.split("/")[1], body);
+            return;
+        }
+        exchange.sendResponseHeaders(204, -1);
+        exchange.close();
+    }
+
+    // POST - создание (409 на занятый username), GET ?username= - точный поиск
+    private void users(HttpExchange exchange, String method, byte[] body) throws IOException {
+        if (method.equals("GET")) {
+            String username = parseForm(exchange.getRequestURI().getRawQuery()).get("username");
+            String id = users.get(username);
+            List<Map<String, String>> found = id == null ? List.of() : List.of(Map.of("id", id, "username", username));
+            respond(exchange, 200, JSON.writeValueAsString(found));
+            return;
+        }
+
+        String username = (String) JSON.readValue(body, Map.class).get("username");
+        String id = UUID.randomUUID().toString();
+        if (users.putIfAbsent(username, id) != null) {
+            respond(exchange, 409, "{\"errorMessage\":\"User exists with same username\"}");
+            return;
+        }
+        if (!omitUserLocation) {
+            exchange.getResponseHeaders().set("Location", url() + "/admin/realms/" + REALM + "/users/" + id);
+        }
+        exchange.sendResponseHeaders(201, -1);
+        exchange.close();
+    }
+
+    // как keycloak: роль с неизвестным id - 404 на весь запрос
+    private void mapRoles(HttpExchange exchange, String method, String userId, byte[] body) throws IOException {
+        List<Map<String, Object>> requested = JSON.readValue(body, new TypeReference<>() {
+        });
+        Set<String> ids = new HashSet<>();
+        for (Map<String, Object> role : requested) {
+            String id = (String) role.get("id");
+            if (!roles.containsValue(id)) {
+                respond(exchange, 404, "{\"error\":\"Could not find role\"}");
+                return;
+            }
+            ids.add(id);
+        }
+
+        Set<String> mapped = roleMappings.computeIfAbsent(userId, key -> ConcurrentHashMap.newKeySet());
+        if (method.equals("POST")) {
+            mapped.addAll(ids);
+        } else {
+            mapped.removeAll(ids);
+        }
+        exchange.sendResponseHeaders(204, -1);
+        exchange.close();
+    }
+
+    private static Map<String, String> parseForm(String body) {
+        Map<String, String> form = new HashMap<>();
+        for (String pair : body.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                form.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return form;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package uz.billsplitter2.demo.integration.repository;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import uz.billsplitter2.demo.config.JpaConfig;
+import uz.billsplitter2.demo.entity.Party;
+import uz.billsplitter2.demo.enums.BillStatus;
+import uz.billsplitter2.demo.repository.AnalyticsBucketView;
+import uz.billsplitter2.demo.repository.BillRepository;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@Import(JpaConfig.class)
+class BillAnalyticsQueryTest {
+
+    private static final OffsetDateTime EVENING = OffsetDateTime.of(2025, 3, 1, 20, 30, 0, 0, ZoneOffset.UTC);
+
+    @Autowired
+    BillRepository billRepository;
+
+    @Autowired
+    EntityManager entityManager;
+
+    Party alice;
+    Party bob;
+
+    @BeforeEach
+    void setUp() {
+        BillFixtures fixtures = new BillFixtures(entityManager);
+        alice = fixtures.party("alice", "T1");
+        bob = fixtures.party("bob", "T2");
+
+        fixtures.bill(alice, BillStatus.CLOSED, EVENING, "100.00", "110.00", "10.00");
+        fixtures.bill(alice, BillStatus.CLOSED, EVENING.plusMinutes(20), "30.32", "33.35", "3.03");
+        fixtures.bill(bob, BillStatus.CLOSED, EVENING.minusHours(3), "0.01", "0.01", "0.00");
+        fixtures.bill(bob, BillStatus.OPEN, null, "999.99", "999.99", "0.00");
+        fixtures.bill(bob, BillStatus.CLOSED, EVENING.minusDays(30), "45.00", "50.00", "5.00");
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void aggregatesTotalsExactlyWithinPeriod() {
+        AnalyticsBucketView totals = billRepository.aggregateClosedBills(BillStatus.CLOSED, EVENING.minusDays(1), EVENING.plusDays(1));
+
+        assertThat(totals.getBills()).isEqualTo(3);
+        assertThat(totals.getRevenue()).isEqualByComparingTo("143.36");
+        assertThat(totals.getServiceFees()).isEqualByComparingTo("13.03");
+    }
+
+    @Test
+    void aggregatesEmptyPeriodToZero() {
+        AnalyticsBucketView totals = billRepository.aggregateClosedBills(BillStatus.CLOSED, EVENING.plusDays(5), null);
+
+        assertThat(totals.getBills()).isZero();
+        assertThat(totals.getRevenue()).isEqualByComparingTo(BigDecimal.ZERO);
+    }
+
+    @Test
+    void breaksDownByWaiterAndTable() {
+        List<AnalyticsBucketView> byWaiter = billRepository.aggregateClosedBillsByWaiter(BillStatus.CLOSED, null, null);
+        List<AnalyticsBucketView> byTable = billRepository.aggregateClosedBillsByTable(BillStatus.CLOSED, null, null);
+
+        assertThat(byWaiter).extracting(AnalyticsBucketView::getBucket, AnalyticsBucketView::getLabel, AnalyticsBucketView::getBills)
+                .containsExactly(
+                        tuple(alice.getWaiter().getId().toString(), "alice", 2L),
+                        tuple(bob.getWaiter().getId().toString(), "bob", 2L)
+                );
+        assertThat(byTable).extracting(AnalyticsBucketView::getLabel).containsExactly("T1", "T2");
+        assertThat(byTable.get(0).getRevenue()).isEqualByComparingTo("143.35");
+        assertThat(byTable.get(1).getRevenue()).isEqualByComparingTo("50.01");
+    }
+
+    @Test
+    void breaksDownByHourAndDayInGivenZone() {
+        OffsetDateTime from = EVENING.minusDays(1);
+
+        List<AnalyticsBucketView> utcHours = billRepository.aggregateClosedBillsByHourOfDay(from, null, "UTC");
+        List<AnalyticsBucketView> tashkentHours = billRepository.aggregateClosedBillsByHourOfDay(from, null, "Asia/Tashkent");
+        List<AnalyticsBucketView> tashkentDays = billRepository.aggregateClosedBillsByDay(from, null, "Asia/Tashkent");
+
+        assertThat(utcHours).extracting(AnalyticsBucketView::getBucket, AnalyticsBucketView::getBills)
+                .containsExactly(tuple("17", 1L), tuple("20", 2L));
+        assertThat(tashkentHours).extracting(AnalyticsBucketView::getBucket, AnalyticsBucketView::getBills)
+                .containsExactly(tuple("01", 2L), tuple("22", 1L));
+        assertThat(tashkentDays).extracting(AnalyticsBucketView::getBucket, AnalyticsBucketView::getBills)
+                .containsExactly(tuple("2025-03-01", 1L), tuple("2025-03-02", 2L));
+        assertThat(tashkentDays.get(1).getRevenue()).isEqualByComparingTo("143.35");
+    }
+}
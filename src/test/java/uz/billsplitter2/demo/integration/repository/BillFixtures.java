@@ -0,0 +1,52 @@
+package uz.billsplitter2.demo.integration.repository;
+
+import jakarta.persistence.EntityManager;
+import uz.billsplitter2.demo.entity.Bill;
+import uz.billsplitter2.demo.entity.Party;
+import uz.billsplitter2.demo.entity.RestaurantTable;
+import uz.billsplitter2.demo.entity.Waiter;
+import uz.billsplitter2.demo.enums.BillStatus;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+// сущности для запросов по счетам в @DataJpaTest: компания со своим официантом и столом, счета с суммами
+final class BillFixtures {
+
+    private final EntityManager entityManager;
+
+    BillFixtures(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    // официант name за столом tableNumber
+    Party party(String name, String tableNumber) {
+        Waiter waiter = Waiter.builder().keycloakId("kc-" + name).username(name).email(name + "@example.com").build();
+        RestaurantTable table = RestaurantTable.builder().tableNumber(tableNumber).capacity(4).build();
+        entityManager.persist(waiter);
+        entityManager.persist(table);
+        Party party = Party.builder().table(table).waiter(waiter).build();
+        entityManager.persist(party);
+        return party;
+    }
+
+    // счет с нулевыми суммами
+    Bill bill(Party party, BillStatus status, OffsetDateTime closedAt) {
+        return bill(party, status, closedAt, "0.00", "0.00", "0.00");
+    }
+
+    Bill bill(Party party, BillStatus status, OffsetDateTime closedAt, String itemsTotal, String total, String serviceFee) {
+        Bill bill = Bill.builder()
+                .party(party)
+                .billNumber("BILL-" + UUID.randomUUID().toString().substring(0, 8))
+                .status(status)
+                .closedAt(closedAt)
+                .itemsTotal(new BigDecimal(itemsTotal))
+                .totalAmount(new BigDecimal(total))
+                .serviceFeeAmount(new BigDecimal(serviceFee))
+                .build();
+        entityManager.persist(bill);
+        return bill;
+    }
+}
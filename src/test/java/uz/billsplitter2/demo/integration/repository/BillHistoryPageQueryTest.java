@@ -0,0 +1,101 @@
+package uz.billsplitter2.demo.integration.repository;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import uz.billsplitter2.demo.config.JpaConfig;
+import uz.billsplitter2.demo.dto.response.BillHistoryDto;
+import uz.billsplitter2.demo.entity.Bill;
+import uz.billsplitter2.demo.entity.Party;
+import uz.billsplitter2.demo.enums.BillStatus;
+import uz.billsplitter2.demo.repository.BillRepository;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@Import(JpaConfig.class)
+class BillHistoryPageQueryTest {
+
+    private static final OffsetDateTime BASE = OffsetDateTime.of(2025, 3, 1, 18, 0, 0, 0, ZoneOffset.UTC);
+
+    @Autowired
+    BillRepository billRepository;
+
+    @Autowired
+    EntityManager entityManager;
+
+    BillFixtures fixtures;
+
+    @BeforeEach
+    void setUp() {
+        fixtures = new BillFixtures(entityManager);
+    }
+
+    @Test
+    void pagesThroughClosedBillsWithoutGapsOrDuplicates() {
+        Party party = fixtures.party("alice", "T-alice");
+        List<Bill> closed = new ArrayList<>();
+        for (int i = 0; i < 11; i++) {
+            // по три счета на одно время закрытия: порядок внутри решает id
+            closed.add(fixtures.bill(party, BillStatus.CLOSED, BASE.plusMinutes(i / 3)));
+        }
+        fixtures.bill(party, BillStatus.OPEN, null);
+        entityManager.flush();
+        entityManager.clear();
+
+        // бд сравнивает uuid как беззнаковые байты, это порядок их hex-строк (не UUID.compareTo)
+        List<UUID> expected = closed.stream()
+                .sorted(Comparator.comparing(Bill::getClosedAt).reversed()
+                        .thenComparing(bill -> bill.getId().toString()))
+                .map(Bill::getId)
+                .toList();
+
+        List<UUID> seen = new ArrayList<>();
+        List<BillHistoryDto> page = billRepository.findHistoryFirstPage(BillStatus.CLOSED, null, null, null, Limit.of(4));
+        page.forEach(row -> seen.add(row.id()));
+        while (page.size() == 4) {
+            BillHistoryDto last = page.get(page.size() - 1);
+            page = billRepository.findHistoryPageAfter(
+                    BillStatus.CLOSED, null, null, null, last.closedAt(), last.id(), Limit.of(4));
+            page.forEach(row -> seen.add(row.id()));
+        }
+
+        assertThat(seen).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void projectsTableAndWaiterAndAppliesFilters() {
+        Party alice = fixtures.party("alice", "T-alice");
+        Party bob = fixtures.party("bob", "T-bob");
+        fixtures.bill(alice, BillStatus.CLOSED, BASE);
+        Bill bobBill = fixtures.bill(bob, BillStatus.CLOSED, BASE.plusHours(1));
+        fixtures.bill(bob, BillStatus.CLOSED, BASE.plusDays(2));
+        entityManager.flush();
+        entityManager.clear();
+
+        List<BillHistoryDto> rows = billRepository.findHistoryFirstPage(
+                BillStatus.CLOSED, BASE.plusMinutes(1), BASE.plusDays(1), bob.getWaiter().getId(), Limit.of(10));
+
+        assertThat(rows).singleElement().satisfies(row -> {
+            assertThat(row.id()).isEqualTo(bobBill.getId());
+            assertThat(row.partyId()).isEqualTo(bob.getId());
+            assertThat(row.tableNumber()).isEqualTo("T-bob");
+            assertThat(row.waiterUsername()).isEqualTo("bob");
+            assertThat(row.status()).isEqualTo(BillStatus.CLOSED);
+        });
+    }
+}
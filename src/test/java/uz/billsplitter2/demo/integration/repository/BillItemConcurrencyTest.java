@@ -0,0 +1,235 @@
+package uz.billsplitter2.demo.integration.repository;
+
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import uz.billsplitter2.demo.config.JpaConfig;
+import uz.billsplitter2.demo.dto.request.AddOrderItemDto;
+import uz.billsplitter2.demo.dto.response.OrderItemDto;
+import uz.billsplitter2.demo.entity.Bill;
+import uz.billsplitter2.demo.entity.Guest;
+import uz.billsplitter2.demo.entity.OrderItem;
+import uz.billsplitter2.demo.entity.OrderItemRequest;
+import uz.billsplitter2.demo.entity.Party;
+import uz.billsplitter2.demo.entity.RestaurantTable;
+import uz.billsplitter2.demo.entity.Waiter;
+import uz.billsplitter2.demo.enums.BillStatus;
+import uz.billsplitter2.demo.exception.BusinessLogicException;
+import uz.billsplitter2.demo.job.OrderItemRequestCleanupJob;
+import uz.billsplitter2.demo.mapper.BillMapper;
+import uz.billsplitter2.demo.mapper.OrderItemMapper;
+import uz.billsplitter2.demo.repository.BillGuestShareRepository;
+import uz.billsplitter2.demo.repository.BillRepository;
+import uz.billsplitter2.demo.repository.GuestRepository;
+import uz.billsplitter2.demo.repository.OrderItemRepository;
+import uz.billsplitter2.demo.repository.OrderItemRequestRepository;
+import uz.billsplitter2.demo.repository.PartyRepository;
+import uz.billsplitter2.demo.repository.RestaurantTableRepository;
+import uz.billsplitter2.demo.repository.WaiterRepository;
+import uz.billsplitter2.demo.security.SecurityContext;
+import uz.billsplitter2.demo.service.BillNumberGenerator;
+import uz.billsplitter2.demo.service.DailyBillRollupService;
+import uz.billsplitter2.demo.service.impl.BillCalculationServiceImpl;
+import uz.billsplitter2.demo.service.impl.BillManagementServiceImpl;
+import uz.billsplitter2.demo.service.impl.BillRunningTotalsServiceImpl;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+// добавление позиций из многих потоков одновременно с закрытием счета: закрытый счет содержит ровно
+// успешно добавленные позиции; повторы с одним Idempotency-Key добавляют позицию один раз
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@Import(JpaConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BillItemConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final BigDecimal PRICE = new BigDecimal("10.00");
+
+    @Autowired
+    BillRepository billRepository;
+
+    @Autowired
+    PartyRepository partyRepository;
+
+    @Autowired
+    OrderItemRepository orderItemRepository;
+
+    @Autowired
+    OrderItemRequestRepository orderItemRequestRepository;
+
+    @Autowired
+    GuestRepository guestRepository;
+
+    @Autowired
+    BillGuestShareRepository shareRepository;
+
+    @Autowired
+    RestaurantTableRepository tableRepository;
+
+    @Autowired
+    WaiterRepository waiterRepository;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    ValidatorFactory validatorFactory;
+    BillManagementServiceImpl billManagementService;
+    Waiter waiter;
+    RestaurantTable table;
+    Party party;
+    List<Guest> guests;
+    Bill bill;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        waiter = waiterRepository.save(Waiter.builder()
+                .keycloakId("kc-" + suffix).username("waiter-" + suffix).email(suffix + "@example.com").build());
+        table = tableRepository.save(RestaurantTable.builder().tableNumber("T-" + suffix).capacity(2).build());
+        party = partyRepository.save(Party.builder().table(table).waiter(waiter).build());
+        guests = guestRepository.saveAll(List.of(
+                Guest.builder().party(party).name("Alice").build(),
+                Guest.builder().party(party).name("Bob").build()));
+        bill = billRepository.save(Bill.builder().party(party).billNumber("BILL-" + suffix).guestSharesReady(true).build());
+
+        BillCalculationServiceImpl calculationService = new BillCalculationServiceImpl();
+        ReflectionTestUtils.setField(calculationService, "serviceFeePercent", BigDecimal.TEN);
+        SecurityContext securityContext = Mockito.mock(SecurityContext.class);
+        when(securityContext.isAdmin()).thenReturn(true);
+        OrderItemMapper orderItemMapper = Mockito.mock(OrderItemMapper.class);
+        when(orderItemMapper.toDto(any(OrderItem.class)))
+                .thenAnswer(invocation -> OrderItemDto.builder().id(invocation.<OrderItem>getArgument(0).getId()).build());
+
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        billManagementService = new BillManagementServiceImpl(billRepository, partyRepository, orderItemRepository,
+                orderItemRequestRepository, guestRepository, Mockito.mock(BillMapper.class), orderItemMapper,
+                calculationService, new BillRunningTotalsServiceImpl(shareRepository, billRepository, calculationService),
+                Mockito.mock(DailyBillRollupService.class), securityContext, validatorFactory.getValidator(),
+                Mockito.mock(BillNumberGenerator.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        validatorFactory.close();
+        orderItemRequestRepository.deleteAll();
+        transactionTemplate.executeWithoutResult(status -> {
+            shareRepository.deleteAll(shareRepository.findAllByBillIdWithGuest(bill.getId()));
+            billRepository.deleteById(bill.getId());
+        });
+        guestRepository.deleteAll(guests);
+        partyRepository.deleteById(party.getId());
+        tableRepository.deleteById(table.getId());
+        waiterRepository.deleteById(waiter.getId());
+    }
+
+    @Test
+    void closedBillContainsExactlyItemsAddedBeforeClose() throws Exception {
+        // пустой счет не закрывается
+        transactionTemplate.executeWithoutResult(status -> billManagementService.addOrderItem(bill.getId(), item("First"), null));
+        CountDownLatch start = new CountDownLatch(1);
+        List<Callable<Boolean>> attempts = new ArrayList<>(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            AddOrderItemDto item = item("Item " + i);
+            attempts.add(() -> {
+                start.await();
+                try {
+                    transactionTemplate.executeWithoutResult(status -> billManagementService.addOrderItem(bill.getId(), item, null));
+                    return true;
+                } catch (BusinessLogicException e) {
+                    // счет уже закрыт
+                    return false;
+                }
+            });
+        }
+
+        List<Future<Boolean>> added;
+        try (ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1)) {
+            added = attempts.stream().map(executor::submit).toList();
+            Future<Integer> closed = executor.submit(() -> {
+                start.await();
+                // клиент повторяет закрытие, пока оно не пройдет без конфликта версий
+                for (int conflicts = 0; ; conflicts++) {
+                    try {
+                        transactionTemplate.executeWithoutResult(status -> billManagementService.closeBill(bill.getId()));
+                        return conflicts;
+                    } catch (ObjectOptimisticLockingFailureException e) {
+                        assertThat(conflicts).isLessThan(THREADS);
+                    }
+                }
+            });
+            start.countDown();
+            closed.get();
+        }
+
+        long successes = 1;
+        for (Future<Boolean> future : added) {
+            successes += future.get() ? 1 : 0;
+        }
+        Bill closed = billRepository.findById(bill.getId()).orElseThrow();
+        assertThat(closed.getStatus()).isEqualTo(BillStatus.CLOSED);
+        assertThat(orderItemRepository.findAllByBillId(bill.getId())).hasSize((int) successes);
+        assertThat(closed.getItemsTotal()).isEqualByComparingTo(PRICE.multiply(BigDecimal.valueOf(successes)));
+    }
+
+    @Test
+    void concurrentRetriesWithSameIdempotencyKeyAddItemOnce() throws Exception {
+        AddOrderItemDto item = item("Pizza");
+        CountDownLatch start = new CountDownLatch(1);
+        List<Callable<UUID>> retries = new ArrayList<>(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            retries.add(() -> {
+                start.await();
+                return transactionTemplate.execute(status -> billManagementService.addOrderItem(bill.getId(), item, "retry-key").id());
+            });
+        }
+
+        List<UUID> ids = new ArrayList<>(THREADS);
+        try (ExecutorService executor = Executors.newFixedThreadPool(THREADS)) {
+            List<Future<UUID>> futures = retries.stream().map(executor::submit).toList();
+            start.countDown();
+            for (Future<UUID> future : futures) {
+                ids.add(future.get());
+            }
+        }
+
+        List<OrderItem> items = orderItemRepository.findAllByBillId(bill.getId());
+        assertThat(items).hasSize(1);
+        assertThat(ids).containsOnly(items.get(0).getId());
+
+        // ключ старше ttl удаляется, повтор после этого считается новым запросом
+        assertThat(new OrderItemRequestCleanupJob(orderItemRequestRepository, Duration.ZERO, Duration.ofMinutes(1)).cleanUp())
+                .isEqualTo(1);
+        assertThat(orderItemRequestRepository.findById(new OrderItemRequest.Key(bill.getId(), "retry-key"))).isEmpty();
+    }
+
+    private AddOrderItemDto item(String name) {
+        return new AddOrderItemDto(name, PRICE, 1, guests.stream().map(Guest::getId).toList());
+    }
+}
@@ -0,0 +1,92 @@
+package uz.billsplitter2.demo.integration.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import uz.billsplitter2.demo.config.JpaConfig;
+import uz.billsplitter2.demo.repository.BillRepository;
+import uz.billsplitter2.demo.service.impl.SequenceBillNumberGenerator;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// два экземпляра приложения (два генератора) выдают номера из одной последовательности в 16 потоков:
+// номера не повторяются, а номера, полученные одним потоком, возрастают
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@Import(JpaConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BillNumberSequenceTest {
+
+    private static final int THREADS = 16;
+    private static final int NUMBERS_PER_THREAD = 250;
+
+    @Autowired
+    BillRepository billRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    // схему создает hibernate, последовательность - только миграция V12
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("CREATE SEQUENCE bill_number_seq START WITH 1 INCREMENT BY "
+                + SequenceBillNumberGenerator.BLOCK_SIZE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP SEQUENCE bill_number_seq");
+    }
+
+    @Test
+    void nodesSharingSequenceNeverCollide() throws Exception {
+        List<SequenceBillNumberGenerator> nodes = List.of(
+                new SequenceBillNumberGenerator(billRepository, Clock.systemUTC()),
+                new SequenceBillNumberGenerator(billRepository, Clock.systemUTC()));
+        CountDownLatch start = new CountDownLatch(1);
+        List<Callable<List<String>>> workers = new ArrayList<>(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            SequenceBillNumberGenerator node = nodes.get(i % nodes.size());
+            workers.add(() -> {
+                start.await();
+                List<String> numbers = new ArrayList<>(NUMBERS_PER_THREAD);
+                for (int n = 0; n < NUMBERS_PER_THREAD; n++) {
+                    numbers.add(node.next());
+                }
+                return numbers;
+            });
+        }
+
+        Set<String> all = new HashSet<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(THREADS)) {
+            List<Future<List<String>>> futures = workers.stream().map(executor::submit).toList();
+            start.countDown();
+            for (Future<List<String>> future : futures) {
+                List<String> numbers = future.get();
+                assertThat(numbers).isSorted();
+                all.addAll(numbers);
+            }
+        }
+
+        assertThat(all).hasSize(THREADS * NUMBERS_PER_THREAD);
+    }
+}
@@ -0,0 +1,144 @@
+package uz.billsplitter2.demo.integration.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import uz.billsplitter2.demo.config.JpaConfig;
+import uz.billsplitter2.demo.dto.request.BillRequestDto;
+import uz.billsplitter2.demo.entity.Bill;
+import uz.billsplitter2.demo.entity.Guest;
+import uz.billsplitter2.demo.entity.OrderItem;
+import uz.billsplitter2.demo.entity.Party;
+import uz.billsplitter2.demo.entity.RestaurantTable;
+import uz.billsplitter2.demo.entity.Waiter;
+import uz.billsplitter2.demo.repository.BillRepository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// число sql-запросов при загрузке входа расчета не зависит от числа позиций
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import(JpaConfig.class)
+class BillRepositoryFetchTest {
+
+    private static final int GUESTS = 6;
+
+    @Autowired
+    BillRepository billRepository;
+
+    @Autowired
+    EntityManager entityManager;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 60})
+    void loadsCalculationInputInTwoStatements(int itemCount) {
+        UUID billId = persistBill(itemCount);
+
+        statistics.clear();
+        Bill bill = billRepository.findWithCalculationInputById(billId).orElseThrow();
+        BillRequestDto request = bill.toBillRequestDto();
+        long guestLinks = bill.getOrderItems().stream()
+                .flatMap(item -> item.getGuests().stream())
+                .map(guest -> guest.getParty().getId())
+                .count();
+
+        assertThat(request.items()).hasSize(itemCount);
+        assertThat(guestLinks).isGreaterThanOrEqualTo(itemCount);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 60})
+    void loadsOrderItemsWithGuestsInOneStatement(int itemCount) {
+        UUID billId = persistBill(itemCount);
+
+        statistics.clear();
+        List<OrderItem> items = billRepository.findOrderItemsWithGuestsByBillId(billId);
+        items.forEach(item -> item.getGuests().forEach(Guest::getName));
+
+        assertThat(items).hasSize(itemCount);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void calculationInputCarriesQuantityAndGuestUnits() {
+        UUID billId = persistBill(1);
+        OrderItem item = billRepository.findWithCalculationInputById(billId).orElseThrow().getOrderItems().get(0);
+        List<Guest> guests = item.getParticipantsInSplitOrder();
+        item.setQuantity(6);
+        item.setGuestUnits(Map.of(guests.get(0).getId(), 1, guests.get(1).getId(), 2, guests.get(2).getId(), 3));
+        entityManager.flush();
+        entityManager.clear();
+
+        BillRequestDto request = billRepository.findWithCalculationInputById(billId).orElseThrow().toBillRequestDto();
+
+        assertThat(request.items()).singleElement().satisfies(dto -> {
+            assertThat(dto.quantity()).isEqualTo(6);
+            assertThat(dto.units()).containsExactly(
+                    Map.entry("Guest 0", 1), Map.entry("Guest 1", 2), Map.entry("Guest 2", 3));
+        });
+    }
+
+    private UUID persistBill(int itemCount) {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+
+        Waiter waiter = Waiter.builder().keycloakId("kc-" + suffix).username("waiter-" + suffix).email(suffix + "@example.com").build();
+        RestaurantTable table = RestaurantTable.builder().tableNumber("T-" + suffix).capacity(GUESTS).build();
+        entityManager.persist(waiter);
+        entityManager.persist(table);
+
+        Party party = Party.builder().table(table).waiter(waiter).build();
+        entityManager.persist(party);
+
+        List<Guest> guests = new ArrayList<>(GUESTS);
+        for (int i = 0; i < GUESTS; i++) {
+            Guest guest = Guest.builder().party(party).name("Guest " + i).build();
+            entityManager.persist(guest);
+            guests.add(guest);
+        }
+
+        Bill bill = Bill.builder().party(party).billNumber("BILL-" + suffix).build();
+        entityManager.persist(bill);
+
+        for (int i = 0; i < itemCount; i++) {
+            OrderItem item = OrderItem.builder()
+                    .bill(bill)
+                    .name("Item " + i)
+                    .price(BigDecimal.valueOf(1000 + i, 2))
+                    .guests(new ArrayList<>(guests.subList(i % GUESTS, Math.min(GUESTS, i % GUESTS + 3))))
+                    .build();
+            entityManager.persist(item);
+        }
+
+        entityManager.flush();
+        entityManager.clear();
+        return bill.getId();
+    }
+}
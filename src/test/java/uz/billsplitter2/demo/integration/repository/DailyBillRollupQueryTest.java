@@ -0,0 +1,113 @@
+package uz.billsplitter2.demo.integration.repository;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import uz.billsplitter2.demo.config.JpaConfig;
+import uz.billsplitter2.demo.entity.DailyBillRollup;
+import uz.billsplitter2.demo.entity.Party;
+import uz.billsplitter2.demo.enums.BillStatus;
+import uz.billsplitter2.demo.repository.AnalyticsBucketView;
+import uz.billsplitter2.demo.repository.BillRepository;
+import uz.billsplitter2.demo.repository.DailyBillRollupRepository;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+// свертка из bills дает те же агрегаты, что и запросы по сырым счетам
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@Import(JpaConfig.class)
+class DailyBillRollupQueryTest {
+
+    private static final String ZONE = "Asia/Tashkent";
+    private static final OffsetDateTime EVENING = OffsetDateTime.of(2025, 3, 1, 20, 30, 0, 0, ZoneOffset.UTC);
+
+    @Autowired
+    DailyBillRollupRepository rollupRepository;
+
+    @Autowired
+    BillRepository billRepository;
+
+    @Autowired
+    EntityManager entityManager;
+
+    Party alice;
+    Party bob;
+
+    @BeforeEach
+    void setUp() {
+        BillFixtures fixtures = new BillFixtures(entityManager);
+        alice = fixtures.party("alice", "T1");
+        bob = fixtures.party("bob", "T2");
+
+        fixtures.bill(alice, BillStatus.CLOSED, EVENING, "100.00", "110.00", "10.00");
+        fixtures.bill(alice, BillStatus.CLOSED, EVENING.plusMinutes(20), "30.32", "33.35", "3.03");
+        fixtures.bill(bob, BillStatus.CLOSED, EVENING.minusHours(3), "0.01", "0.01", "0.00");
+        fixtures.bill(bob, BillStatus.OPEN, null, "999.99", "999.99", "0.00");
+        fixtures.bill(bob, BillStatus.CLOSED, EVENING.minusDays(30), "45.45", "50.00", "5.00");
+        entityManager.flush();
+
+        rollupRepository.insertFromClosedBills(ZONE);
+        entityManager.clear();
+    }
+
+    @Test
+    void backfillGroupsClosedBillsByLocalDayHourWaiterAndTable() {
+        List<DailyBillRollup> rows = rollupRepository.findAll().stream()
+                .sorted((a, b) -> a.getRollupDate().atTime(a.getHourOfDay(), 0).compareTo(b.getRollupDate().atTime(b.getHourOfDay(), 0)))
+                .toList();
+
+        assertThat(rows).extracting(DailyBillRollup::getRollupDate, DailyBillRollup::getHourOfDay, DailyBillRollup::getBillCount)
+                .containsExactly(
+                        tuple(LocalDate.of(2025, 1, 31), 1, 1L),
+                        tuple(LocalDate.of(2025, 3, 1), 22, 1L),
+                        tuple(LocalDate.of(2025, 3, 2), 1, 2L)
+                );
+        assertThat(rows.get(2).getWaiterId()).isEqualTo(alice.getWaiter().getId());
+        assertThat(rows.get(2).getItemsTotal()).isEqualByComparingTo("130.32");
+        assertThat(rows.get(2).getTotalAmount()).isEqualByComparingTo("143.35");
+    }
+
+    @Test
+    void rollupAggregatesMatchRawBills() {
+        AnalyticsBucketView rollup = rollupRepository.aggregate(null, null);
+        AnalyticsBucketView raw = billRepository.aggregateClosedBills(BillStatus.CLOSED, null, null);
+
+        assertThat(rollup.getBills()).isEqualTo(raw.getBills());
+        assertThat(rollup.getRevenue()).isEqualByComparingTo(raw.getRevenue());
+        assertThat(rollup.getServiceFees()).isEqualByComparingTo(raw.getServiceFees());
+
+        assertThat(rollupRepository.aggregateByWaiter(null, null))
+                .extracting(AnalyticsBucketView::getBucket, AnalyticsBucketView::getLabel, AnalyticsBucketView::getBills)
+                .containsExactlyInAnyOrder(
+                        tuple(alice.getWaiter().getId().toString(), "alice", 2L),
+                        tuple(bob.getWaiter().getId().toString(), "bob", 2L)
+                );
+        assertThat(rollupRepository.aggregateByTable(null, null))
+                .extracting(AnalyticsBucketView::getLabel).containsExactlyInAnyOrder("T1", "T2");
+    }
+
+    @Test
+    void filtersByWholeDaysAndFormatsBucketsLikeRawQueries() {
+        LocalDate day = LocalDate.of(2025, 3, 2);
+
+        assertThat(rollupRepository.aggregateByHourOfDay(day, day))
+                .extracting(AnalyticsBucketView::getBucket, AnalyticsBucketView::getBills)
+                .containsExactly(tuple("01", 2L));
+        assertThat(rollupRepository.aggregateByDay(LocalDate.of(2025, 3, 1), null))
+                .extracting(AnalyticsBucketView::getBucket, AnalyticsBucketView::getBills)
+                .containsExactlyInAnyOrder(tuple("2025-03-01", 1L), tuple("2025-03-02", 2L));
+        assertThat(rollupRepository.aggregate(day.plusDays(1), null).getBills()).isZero();
+    }
+}
@@ -0,0 +1,123 @@
+package uz.billsplitter2.demo.integration.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import uz.billsplitter2.demo.config.JpaConfig;
+import uz.billsplitter2.demo.entity.IdempotencyRecord;
+import uz.billsplitter2.demo.entity.RestaurantTable;
+import uz.billsplitter2.demo.repository.IdempotencyRecordRepository;
+import uz.billsplitter2.demo.repository.RestaurantTableRepository;
+import uz.billsplitter2.demo.service.IdempotencyStore;
+import uz.billsplitter2.demo.service.impl.IdempotencyStoreImpl;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// строка ключа пишется в транзакции запроса: вместе с его изменениями или вместо них, если ключ уже занят
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@ImportAutoConfiguration(TransactionManagerCustomizationAutoConfiguration.class)
+@Import({JpaConfig.class, IdempotencyStoreImpl.class, IdempotencyKeyTransactionTest.Metrics.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IdempotencyKeyTransactionTest {
+
+    private static final String HASH = "a".repeat(64);
+
+    @Autowired
+    IdempotencyStore store;
+
+    @Autowired
+    IdempotencyRecordRepository repository;
+
+    @Autowired
+    RestaurantTableRepository tableRepository;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @AfterEach
+    void tearDown() {
+        repository.deleteAll();
+        tableRepository.deleteAll();
+    }
+
+    @Test
+    void keyIsCommittedWithRequestChanges() {
+        String key = "waiter-1:" + UUID.randomUUID();
+        store.claim(key, HASH);
+
+        transactionTemplate.executeWithoutResult(status -> tableRepository.save(table()));
+
+        assertThat(repository.findById(key)).hasValueSatisfying(record -> assertThat(record.getStatus()).isNull());
+        // подтверждение не пишет ключ второй раз
+        assertThat(store.confirm(key, true)).isNull();
+        store.release(key);
+        assertThat(repository.findById(key)).isEmpty();
+    }
+
+    @Test
+    void rolledBackRequestLeavesNoKey() {
+        String key = "waiter-1:" + UUID.randomUUID();
+        store.claim(key, HASH);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            tableRepository.save(table());
+            status.setRollbackOnly();
+        });
+
+        assertThat(repository.findById(key)).isEmpty();
+        store.release(key);
+    }
+
+    @Test
+    void keyTakenByAnotherInstanceRollsBackRequestAndReplaysStoredResponse() {
+        String key = "waiter-1:" + UUID.randomUUID();
+        repository.save(IdempotencyRecord.builder()
+                .key(key)
+                .requestHash(HASH)
+                .status(201)
+                .contentType("application/json")
+                .responseBody("{}".getBytes())
+                .createdAt(OffsetDateTime.now().minusMinutes(1))
+                .build());
+        store.claim(key, HASH);
+
+        assertThatThrownBy(() -> transactionTemplate.executeWithoutResult(status -> tableRepository.save(table())))
+                .isInstanceOf(DataIntegrityViolationException.class);
+
+        assertThat(tableRepository.count()).isZero();
+        assertThat(store.confirm(key, true)).isInstanceOfSatisfying(IdempotencyStore.Replay.class,
+                replay -> assertThat(replay.response().status()).isEqualTo(201));
+    }
+
+    private RestaurantTable table() {
+        return RestaurantTable.builder().tableNumber("T-" + UUID.randomUUID().toString().substring(0, 8)).capacity(2).build();
+    }
+
+    @TestConfiguration
+    static class Metrics {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package uz.billsplitter2.demo.integration.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import uz.billsplitter2.demo.config.JpaConfig;
+import uz.billsplitter2.demo.entity.Bill;
+import uz.billsplitter2.demo.entity.Guest;
+import uz.billsplitter2.demo.entity.OrderItem;
+import uz.billsplitter2.demo.entity.Party;
+import uz.billsplitter2.demo.entity.RestaurantTable;
+import uz.billsplitter2.demo.entity.Waiter;
+import uz.billsplitter2.demo.repository.BillRepository;
+import uz.billsplitter2.demo.repository.OrderItemRepository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// позиции пакета и их гости пишутся jdbc-батчами: число подготовленных запросов не зависит от числа позиций
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+        "spring.jpa.properties.hibernate.order_inserts=true"
+})
+@Import(JpaConfig.class)
+class OrderItemBatchInsertTest {
+
+    private static final int GUESTS = 4;
+
+    @Autowired
+    OrderItemRepository orderItemRepository;
+
+    @Autowired
+    BillRepository billRepository;
+
+    @Autowired
+    EntityManager entityManager;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    Statistics statistics;
+    Bill bill;
+    List<Guest> guests;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        Waiter waiter = Waiter.builder().keycloakId("kc-batch").username("waiter-batch").email("batch@example.com").build();
+        RestaurantTable table = RestaurantTable.builder().tableNumber("T-BATCH").capacity(GUESTS).build();
+        entityManager.persist(waiter);
+        entityManager.persist(table);
+
+        Party party = Party.builder().table(table).waiter(waiter).build();
+        entityManager.persist(party);
+
+        guests = new ArrayList<>(GUESTS);
+        for (int i = 0; i < GUESTS; i++) {
+            Guest guest = Guest.builder().party(party).name("Guest " + i).build();
+            entityManager.persist(guest);
+            guests.add(guest);
+        }
+
+        bill = Bill.builder().party(party).billNumber("BILL-BATCH").build();
+        entityManager.persist(bill);
+        entityManager.flush();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 40})
+    void insertsItemsAndGuestLinksInTwoStatements(int itemCount) {
+        List<OrderItem> items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            items.add(OrderItem.builder()
+                    .bill(bill)
+                    .name("Item " + i)
+                    .price(BigDecimal.valueOf(1000 + i, 2))
+                    .guests(new ArrayList<>(List.of(guests.get(i % GUESTS), guests.get((i + 1) % GUESTS))))
+                    .build());
+        }
+
+        statistics.clear();
+        orderItemRepository.saveAll(items);
+        entityManager.flush();
+
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(itemCount);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+
+        entityManager.clear();
+        assertThat(billRepository.findOrderItemsWithGuestsByBillId(bill.getId()))
+                .hasSize(itemCount)
+                .allSatisfy(item -> assertThat(item.getGuests()).hasSize(2));
+    }
+}
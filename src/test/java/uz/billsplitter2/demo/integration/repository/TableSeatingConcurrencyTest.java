@@ -0,0 +1,141 @@
+package uz.billsplitter2.demo.integration.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import uz.billsplitter2.demo.config.JpaConfig;
+import uz.billsplitter2.demo.dto.request.CreatePartyDto;
+import uz.billsplitter2.demo.entity.RestaurantTable;
+import uz.billsplitter2.demo.entity.Waiter;
+import uz.billsplitter2.demo.enums.PartyStatus;
+import uz.billsplitter2.demo.enums.TableStatus;
+import uz.billsplitter2.demo.exception.BusinessLogicException;
+import uz.billsplitter2.demo.mapper.PartyMapper;
+import uz.billsplitter2.demo.repository.BillRepository;
+import uz.billsplitter2.demo.repository.PartyRepository;
+import uz.billsplitter2.demo.repository.RestaurantTableRepository;
+import uz.billsplitter2.demo.repository.WaiterRepository;
+import uz.billsplitter2.demo.security.SecurityContext;
+import uz.billsplitter2.demo.service.TableStatusRegistry;
+import uz.billsplitter2.demo.service.impl.PartyServiceImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+
+// рассадка за один стол из 64 потоков: ровно одна активная компания, остальные получают "занят";
+// каждый поток в своей транзакции, поэтому тест сам без транзакции
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@Import(JpaConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TableSeatingConcurrencyTest {
+
+    private static final int THREADS = 64;
+
+    @Autowired
+    RestaurantTableRepository tableRepository;
+
+    @Autowired
+    PartyRepository partyRepository;
+
+    @Autowired
+    BillRepository billRepository;
+
+    @Autowired
+    WaiterRepository waiterRepository;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    PartyServiceImpl partyService;
+    Waiter waiter;
+    RestaurantTable table;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        waiter = waiterRepository.save(Waiter.builder()
+                .keycloakId("kc-" + suffix).username("waiter-" + suffix).email(suffix + "@example.com").build());
+        table = tableRepository.save(RestaurantTable.builder().tableNumber("T-" + suffix).capacity(4).build());
+
+        SecurityContext securityContext = Mockito.mock(SecurityContext.class);
+        when(securityContext.getCurrentWaiter()).thenReturn(waiter);
+        partyService = new PartyServiceImpl(partyRepository, tableRepository, billRepository,
+                Mockito.mock(PartyMapper.class), securityContext, Mockito.mock(TableStatusRegistry.class), transactionTemplate);
+    }
+
+    @AfterEach
+    void tearDown() {
+        partyRepository.deleteAll(partyRepository.findAll().stream()
+                .filter(party -> party.getTable().getId().equals(table.getId()))
+                .toList());
+        tableRepository.deleteById(table.getId());
+        waiterRepository.deleteById(waiter.getId());
+    }
+
+    @Test
+    void seatsOnePartyWhenSameTableIsSeatedFromManyThreads() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Callable<Boolean>> attempts = new ArrayList<>(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            attempts.add(() -> {
+                start.await();
+                try {
+                    transactionTemplate.executeWithoutResult(status -> partyService.createParty(new CreatePartyDto(table.getId())));
+                    return true;
+                } catch (BusinessLogicException e) {
+                    return false;
+                }
+            });
+        }
+
+        List<Boolean> results = new ArrayList<>(THREADS);
+        try (ExecutorService executor = Executors.newFixedThreadPool(THREADS)) {
+            List<Future<Boolean>> futures = attempts.stream().map(executor::submit).toList();
+            start.countDown();
+            for (Future<Boolean> future : futures) {
+                results.add(future.get());
+            }
+        }
+
+        assertThat(results).filteredOn(Boolean::booleanValue).hasSize(1);
+        assertThat(partyRepository.findAllByStatus(PartyStatus.ACTIVE))
+                .filteredOn(party -> party.getTable().getId().equals(table.getId()))
+                .hasSize(1);
+        RestaurantTable seated = tableRepository.findById(table.getId()).orElseThrow();
+        assertThat(seated.getStatus()).isEqualTo(TableStatus.OCCUPIED);
+        assertThat(seated.getVersion()).isEqualTo(table.getVersion() + 1);
+    }
+
+    @Test
+    void staleTableVersionIsRejected() {
+        RestaurantTable stale = tableRepository.findById(table.getId()).orElseThrow();
+        RestaurantTable fresh = tableRepository.findById(table.getId()).orElseThrow();
+        fresh.setCapacity(6);
+        tableRepository.save(fresh);
+
+        stale.setStatus(TableStatus.RESERVED);
+        assertThatThrownBy(() -> tableRepository.save(stale))
+                .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+    }
+}
@@ -0,0 +1,39 @@
+package uz.billsplitter2.demo.unit.config;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.boot.context.annotation.UserConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import uz.billsplitter2.demo.config.BillNumberConfig;
+import uz.billsplitter2.demo.repository.BillRepository;
+import uz.billsplitter2.demo.service.BillNumberGenerator;
+import uz.billsplitter2.demo.service.impl.SequenceBillNumberGenerator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BillNumberConfigTest {
+
+    private final ApplicationContextRunner runner = new ApplicationContextRunner()
+            .withConfiguration(UserConfigurations.of(BillNumberConfig.class))
+            .withBean(BillRepository.class, () -> Mockito.mock(BillRepository.class));
+
+    @Test
+    void sequenceGeneratorIsDefault() {
+        runner.run(context -> assertThat(context).getBean(BillNumberGenerator.class)
+                .isInstanceOf(SequenceBillNumberGenerator.class));
+    }
+
+    @Test
+    void ownGeneratorReplacesDefault() {
+        BillNumberGenerator own = () -> "BILL-OWN";
+
+        runner.withBean(BillNumberGenerator.class, () -> own)
+                .run(context -> assertThat(context).getBean(BillNumberGenerator.class).isSameAs(own));
+    }
+
+    @Test
+    void rejectsUnknownTimeZone() {
+        runner.withPropertyValues("app.analytics.time-zone=Mars/Olympus")
+                .run(context -> assertThat(context).hasFailed());
+    }
+}
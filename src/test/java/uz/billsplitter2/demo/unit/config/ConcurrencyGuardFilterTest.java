@@ -0,0 +1,71 @@
+package uz.billsplitter2.demo.unit.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import uz.billsplitter2.demo.config.ConcurrencyGuardFilter;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConcurrencyGuardFilterTest {
+
+    ConcurrencyGuardFilter filter = new ConcurrencyGuardFilter(1, Duration.ofMillis(50),
+            new ObjectMapper().registerModule(new JavaTimeModule()));
+
+    @Test
+    void rejectsRequestWhenNoSlotFreesUpInTime() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<MockHttpServletResponse> first = executor.submit(() -> {
+                MockHttpServletResponse response = new MockHttpServletResponse();
+                filter.doFilter(request(), response, (req, res) -> {
+                    entered.countDown();
+                    await(release);
+                });
+                return response;
+            });
+            entered.await();
+
+            MockHttpServletResponse rejected = new MockHttpServletResponse();
+            filter.doFilter(request(), rejected, new MockFilterChain());
+            release.countDown();
+
+            assertThat(rejected.getStatus()).isEqualTo(503);
+            assertThat(rejected.getHeader("Retry-After")).isEqualTo("1");
+            assertThat(rejected.getContentAsString()).contains("\"code\":\"SERVICE_UNAVAILABLE\"", "/api/v1/bills");
+            assertThat(first.get().getStatus()).isEqualTo(200);
+        }
+    }
+
+    @Test
+    void releasesSlotAfterRequest() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(request(), response, new MockFilterChain());
+            assertThat(response.getStatus()).isEqualTo(200);
+        }
+    }
+
+    private MockHttpServletRequest request() {
+        return new MockHttpServletRequest("GET", "/api/v1/bills");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
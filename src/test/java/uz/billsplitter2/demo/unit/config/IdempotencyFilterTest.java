@@ -0,0 +1,231 @@
+package uz.billsplitter2.demo.unit.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import uz.billsplitter2.demo.config.IdempotencyFilter;
+import uz.billsplitter2.demo.entity.IdempotencyRecord;
+import uz.billsplitter2.demo.repository.IdempotencyRecordRepository;
+import uz.billsplitter2.demo.service.impl.IdempotencyStoreImpl;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IdempotencyFilterTest {
+
+    IdempotencyRecordRepository repository;
+    IdempotencyFilter filter;
+    AtomicInteger executions = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        repository = Mockito.mock(IdempotencyRecordRepository.class);
+        IdempotencyStoreImpl store = new IdempotencyStoreImpl(repository, new SimpleMeterRegistry(),
+                Duration.ofHours(24), Duration.ofSeconds(30), 100, Duration.ofMinutes(15));
+        filter = new IdempotencyFilter(store, List.of("/api/v1/bills", "/api/v1/bills/{id}/close"), Duration.ofSeconds(5),
+                new ObjectMapper().registerModule(new JavaTimeModule()));
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("waiter-1", null));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void retryGetsStoredResponseWithoutExecutingAgain() throws Exception {
+        MockHttpServletResponse first = perform(request("key-1", "{\"partyId\":1}"), created("BILL-1"));
+        MockHttpServletResponse retry = perform(request("key-1", "{\"partyId\":1}"), created("BILL-2"));
+
+        assertThat(executions).hasValue(1);
+        assertThat(first.getStatus()).isEqualTo(201);
+        assertThat(retry.getStatus()).isEqualTo(201);
+        assertThat(retry.getContentAsString()).isEqualTo("{\"billNumber\":\"BILL-1\"}");
+        assertThat(retry.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isEqualTo("true");
+        // повтор взят из кэша, в бд только ключ и ответ первого запроса (ответ - в фоне)
+        verify(repository, times(1)).insertPending(anyString(), anyString(), any());
+        verify(repository, timeout(1000)).complete(eq("waiter-1:key-1"), eq(201), eq("application/json"), any(), any());
+    }
+
+    @Test
+    void sameKeyWithAnotherBodyIsRejected() throws Exception {
+        perform(request("key-1", "{\"partyId\":1}"), created("BILL-1"));
+        MockHttpServletResponse reused = perform(request("key-1", "{\"partyId\":2}"), created("BILL-2"));
+
+        assertThat(executions).hasValue(1);
+        assertThat(reused.getStatus()).isEqualTo(422);
+        assertThat(reused.getContentAsString()).contains("\"code\":\"IDEMPOTENCY_KEY_REUSED\"");
+    }
+
+    @Test
+    void keysOfDifferentUsersDoNotCollide() throws Exception {
+        perform(request("key-1", "{}"), created("BILL-1"));
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("waiter-2", null));
+        MockHttpServletResponse other = perform(request("key-1", "{}"), created("BILL-2"));
+
+        assertThat(executions).hasValue(2);
+        assertThat(other.getContentAsString()).contains("BILL-2");
+    }
+
+    @Test
+    void concurrentDuplicateWaitsForFirstRequestAndReplaysItsResponse() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<MockHttpServletResponse> first = executor.submit(() -> {
+                SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("waiter-1", null));
+                return perform(request("key-1", "{}"), (req, res) -> {
+                    entered.countDown();
+                    await(release);
+                    created("BILL-1").doFilter(req, res);
+                });
+            });
+            entered.await();
+
+            Future<MockHttpServletResponse> duplicate = executor.submit(() -> {
+                SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("waiter-1", null));
+                return perform(request("key-1", "{}"), created("BILL-2"));
+            });
+            Thread.sleep(50);
+            assertThat(duplicate).isNotDone();
+            release.countDown();
+
+            assertThat(first.get().getContentAsString()).contains("BILL-1");
+            assertThat(duplicate.get().getContentAsString()).contains("BILL-1");
+            assertThat(duplicate.get().getHeader(IdempotencyFilter.REPLAYED_HEADER)).isEqualTo("true");
+        }
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void transientResponseIsNotStoredAndRetryExecutesAgain() throws Exception {
+        FilterChain busy = (req, res) -> {
+            executions.incrementAndGet();
+            ((HttpServletResponse) res).setStatus(409);
+            ((HttpServletResponse) res).setHeader("Retry-After", "0");
+        };
+        perform(request("key-1", "{}"), busy);
+        MockHttpServletResponse retry = perform(request("key-1", "{}"), created("BILL-1"));
+
+        assertThat(executions).hasValue(2);
+        assertThat(retry.getStatus()).isEqualTo(201);
+        // ключ первого выполнения не записывался: удалять в бд нечего
+        verify(repository, never()).deletePending(anyString());
+    }
+
+    @Test
+    void keyStoredByAnotherInstanceReplaysItsResponseInsteadOfNewOne() throws Exception {
+        // другой экземпляр выполнил тот же запрос: ключ занят, в записи его ответ
+        AtomicReference<String> hash = new AtomicReference<>();
+        doAnswer(invocation -> {
+            hash.set(invocation.getArgument(1));
+            throw new DataIntegrityViolationException("duplicate key");
+        }).when(repository).insertPending(eq("waiter-1:key-1"), anyString(), any());
+        when(repository.findById("waiter-1:key-1")).thenAnswer(invocation -> Optional.of(IdempotencyRecord.builder()
+                .key("waiter-1:key-1")
+                .requestHash(hash.get())
+                .status(201)
+                .contentType("application/json")
+                .responseBody("{\"billNumber\":\"BILL-1\"}".getBytes(StandardCharsets.UTF_8))
+                .createdAt(OffsetDateTime.now().minusMinutes(1))
+                .build()));
+
+        MockHttpServletResponse retry = perform(request("key-1", "{}"), created("BILL-2"));
+
+        assertThat(retry.getStatus()).isEqualTo(201);
+        assertThat(retry.getContentAsString()).isEqualTo("{\"billNumber\":\"BILL-1\"}");
+        assertThat(retry.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isEqualTo("true");
+        verify(repository, never()).complete(anyString(), anyInt(), any(), any(), any());
+    }
+
+    @Test
+    void requestsWithoutKeyOrOnOtherPathsPassThrough() throws Exception {
+        MockHttpServletRequest withoutKey = request(null, "{}");
+        MockHttpServletRequest calculate = request("key-1", "{}");
+        calculate.setRequestURI("/api/v1/bills/calculate");
+
+        perform(withoutKey, created("BILL-1"));
+        perform(calculate, created("BILL-2"));
+
+        assertThat(executions).hasValue(2);
+        verify(repository, never()).insertPending(anyString(), anyString(), any());
+    }
+
+    @Test
+    void rejectsTooLongKey() throws Exception {
+        MockHttpServletResponse response = perform(request("k".repeat(65), "{}"), created("BILL-1"));
+
+        assertThat(response.getStatus()).isEqualTo(400);
+        assertThat(executions).hasValue(0);
+        verify(repository, never()).complete(anyString(), anyInt(), any(), any(), any());
+    }
+
+    private MockHttpServletResponse perform(MockHttpServletRequest request, FilterChain chain) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    // контроллер читает тело из обертки фильтра
+    private FilterChain created(String billNumber) {
+        return (req, res) -> {
+            executions.incrementAndGet();
+            assertThat(new String(req.getInputStream().readAllBytes(), StandardCharsets.UTF_8)).startsWith("{");
+            HttpServletResponse response = (HttpServletResponse) res;
+            response.setStatus(201);
+            response.setContentType("application/json");
+            response.getWriter().write("{\"billNumber\":\"" + billNumber + "\"}");
+        };
+    }
+
+    private MockHttpServletRequest request(String key, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/bills");
+        if (key != null) {
+            request.addHeader(IdempotencyFilter.HEADER, key);
+        }
+        request.setContentType("application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package uz.billsplitter2.demo.unit.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import uz.billsplitter2.demo.security.CachingJwtDecoder;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CachingJwtDecoderTest {
+
+    private static final Instant NOW = Instant.parse("2026-10-17T12:00:00Z");
+
+    @Mock
+    JwtDecoder delegate;
+
+    SimpleMeterRegistry meterRegistry;
+    CachingJwtDecoder decoder;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        decoder = new CachingJwtDecoder(delegate, 100, Duration.ofMinutes(5), Clock.fixed(NOW, ZoneOffset.UTC))
+                .monitor(meterRegistry);
+    }
+
+    @Test
+    void decodesSameTokenOnce() {
+        Jwt jwt = jwt("a", NOW.plusSeconds(300));
+        when(delegate.decode("a")).thenReturn(jwt);
+
+        assertThat(decoder.decode("a")).isSameAs(jwt);
+        assertThat(decoder.decode("a")).isSameAs(jwt);
+
+        verify(delegate, times(1)).decode("a");
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "decoded-jwt").tag("result", "hit").functionCounter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void doesNotCacheRejectedToken() {
+        when(delegate.decode("bad")).thenThrow(new BadJwtException("bad signature"));
+
+        assertThatThrownBy(() -> decoder.decode("bad")).isInstanceOf(BadJwtException.class);
+        assertThatThrownBy(() -> decoder.decode("bad")).isInstanceOf(BadJwtException.class);
+
+        verify(delegate, times(2)).decode("bad");
+    }
+
+    @Test
+    void doesNotKeepTokenPastItsExpiry() {
+        Jwt expired = jwt("old", NOW.minusSeconds(1));
+        when(delegate.decode("old")).thenReturn(expired);
+
+        decoder.decode("old");
+        decoder.decode("old");
+
+        verify(delegate, times(2)).decode("old");
+    }
+
+    @Test
+    void boundsLifetimeByMaxTtl() throws InterruptedException {
+        decoder = new CachingJwtDecoder(delegate, 100, Duration.ofMillis(50), Clock.fixed(NOW, ZoneOffset.UTC));
+        when(delegate.decode("a")).thenReturn(jwt("a", NOW.plusSeconds(300)));
+
+        decoder.decode("a");
+        Thread.sleep(100);
+        decoder.decode("a");
+
+        verify(delegate, times(2)).decode("a");
+    }
+
+    private Jwt jwt(String token, Instant expiresAt) {
+        return Jwt.withTokenValue(token)
+                .header("alg", "RS256")
+                .subject("kc-alice")
+                .issuedAt(expiresAt.minusSeconds(300))
+                .expiresAt(expiresAt)
+                .build();
+    }
+}
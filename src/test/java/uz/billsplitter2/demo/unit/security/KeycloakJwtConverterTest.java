@@ -0,0 +1,80 @@
+package uz.billsplitter2.demo.unit.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.test.util.ReflectionTestUtils;
+import uz.billsplitter2.demo.security.KeycloakJwtConverter;
+import uz.billsplitter2.demo.security.WaiterAuthenticationToken;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KeycloakJwtConverterTest {
+
+    KeycloakJwtConverter converter;
+
+    @BeforeEach
+    void setUp() {
+        converter = new KeycloakJwtConverter();
+        ReflectionTestUtils.setField(converter, "clientId", "billsplitter-api");
+    }
+
+    @Test
+    void convertsRealmAndClientRolesToAuthoritiesAndBits() {
+        WaiterAuthenticationToken token = convert(jwt(
+                List.of("admin", "offline_access"),
+                Map.of("billsplitter-api", Map.of("roles", List.of("ROLE_WAITER")))
+        ));
+
+        assertThat(token.getAuthorities()).extracting(GrantedAuthority::getAuthority)
+                .containsExactlyInAnyOrder("ROLE_ADMIN", "ROLE_OFFLINE_ACCESS", "ROLE_WAITER");
+        assertThat(token.hasRole(WaiterAuthenticationToken.ROLE_ADMIN)).isTrue();
+        assertThat(token.hasRole(WaiterAuthenticationToken.ROLE_WAITER)).isTrue();
+        assertThat(token.isAuthenticated()).isTrue();
+        assertThat(token.getName()).isEqualTo("kc-subject");
+    }
+
+    @Test
+    void ignoresRolesOfOtherClients() {
+        WaiterAuthenticationToken token = convert(jwt(
+                List.of("WAITER"),
+                Map.of("other-client", Map.of("roles", List.of("ADMIN")))
+        ));
+
+        assertThat(token.getRoles()).isEqualTo(WaiterAuthenticationToken.ROLE_WAITER);
+        assertThat(token.getAuthorities()).extracting(GrantedAuthority::getAuthority).containsExactly("ROLE_WAITER");
+    }
+
+    @Test
+    void tokenWithoutRoleClaimsHasNoRoles() {
+        WaiterAuthenticationToken token = convert(Jwt.withTokenValue("t").header("alg", "none").subject("kc-subject").build());
+
+        assertThat(token.getRoles()).isZero();
+        assertThat(token.getAuthorities()).isEmpty();
+    }
+
+    @Test
+    void reusesAuthoritiesForEqualRoleClaims() {
+        WaiterAuthenticationToken first = convert(jwt(List.of("WAITER"), Map.of()));
+        WaiterAuthenticationToken second = convert(jwt(List.of("WAITER"), Map.of()));
+
+        assertThat(second.getAuthorities().iterator().next()).isSameAs(first.getAuthorities().iterator().next());
+    }
+
+    private WaiterAuthenticationToken convert(Jwt jwt) {
+        return (WaiterAuthenticationToken) converter.convert(jwt);
+    }
+
+    private Jwt jwt(List<String> realmRoles, Map<String, Object> resourceAccess) {
+        return Jwt.withTokenValue("t")
+                .header("alg", "none")
+                .subject("kc-subject")
+                .claim("realm_access", Map.of("roles", realmRoles))
+                .claim("resource_access", resourceAccess)
+                .build();
+    }
+}
@@ -0,0 +1,146 @@
+package uz.billsplitter2.demo.unit.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import uz.billsplitter2.demo.entity.Waiter;
+import uz.billsplitter2.demo.exception.ResourceNotFoundException;
+import uz.billsplitter2.demo.repository.WaiterRepository;
+import uz.billsplitter2.demo.security.CurrentWaiterCache;
+import uz.billsplitter2.demo.security.SecurityContext;
+import uz.billsplitter2.demo.security.WaiterAuthenticationToken;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SecurityContextTest {
+
+    private static final String SUBJECT = "kc-alice";
+
+    @Mock
+    WaiterRepository waiterRepository;
+
+    SimpleMeterRegistry meterRegistry;
+    CurrentWaiterCache cache;
+    SecurityContext securityContext;
+    Waiter alice;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new CurrentWaiterCache(meterRegistry, 100, Duration.ofMinutes(5));
+        securityContext = new SecurityContext(waiterRepository, cache);
+
+        alice = Waiter.builder().keycloakId(SUBJECT).username("alice").email("alice@example.com").build();
+        alice.setId(UUID.randomUUID());
+
+        Jwt jwt = Jwt.withTokenValue("token").header("alg", "none").subject(SUBJECT).build();
+        SecurityContextHolder.getContext().setAuthentication(new JwtAuthenticationToken(jwt, List.of()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void resolvesWaiterOncePerRequest() {
+        when(waiterRepository.findByKeycloakId(SUBJECT)).thenReturn(Optional.of(alice));
+        startRequest();
+
+        UUID id = securityContext.getCurrentWaiterId();
+        String username = securityContext.getCurrentUsername();
+        Waiter waiter = securityContext.getCurrentWaiter();
+
+        assertThat(id).isEqualTo(alice.getId());
+        assertThat(username).isEqualTo("alice");
+        assertThat(waiter).isSameAs(securityContext.getCurrentWaiter());
+        verify(waiterRepository, times(1)).findByKeycloakId(SUBJECT);
+        assertThat(gets("miss")).isEqualTo(1);
+        assertThat(gets("hit")).isZero();
+    }
+
+    @Test
+    void servesLaterRequestsFromCacheWithCopies() {
+        when(waiterRepository.findByKeycloakId(SUBJECT)).thenReturn(Optional.of(alice));
+
+        startRequest();
+        Waiter first = securityContext.getCurrentWaiter();
+        startRequest();
+        Waiter second = securityContext.getCurrentWaiter();
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getId()).isEqualTo(alice.getId());
+        verify(waiterRepository, times(1)).findByKeycloakId(SUBJECT);
+        assertThat(gets("hit")).isEqualTo(1);
+    }
+
+    @Test
+    void invalidationReloadsWaiter() {
+        when(waiterRepository.findByKeycloakId(SUBJECT)).thenReturn(Optional.of(alice));
+        assertThat(securityContext.getCurrentUsername()).isEqualTo("alice");
+
+        Waiter renamed = Waiter.builder().keycloakId(SUBJECT).username("alice.v2").email("alice@example.com").build();
+        renamed.setId(alice.getId());
+        when(waiterRepository.findByKeycloakId(SUBJECT)).thenReturn(Optional.of(renamed));
+        cache.invalidate(SUBJECT);
+
+        assertThat(securityContext.getCurrentUsername()).isEqualTo("alice.v2");
+        verify(waiterRepository, times(2)).findByKeycloakId(SUBJECT);
+    }
+
+    @Test
+    void doesNotCacheMissingWaiter() {
+        when(waiterRepository.findByKeycloakId(SUBJECT)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> securityContext.getCurrentWaiter()).isInstanceOf(ResourceNotFoundException.class);
+        assertThatThrownBy(() -> securityContext.getCurrentWaiter()).isInstanceOf(ResourceNotFoundException.class);
+
+        verify(waiterRepository, times(2)).findByKeycloakId(SUBJECT);
+    }
+
+    @Test
+    void readsRolesAndKeepsWaiterInConvertedToken() {
+        when(waiterRepository.findByKeycloakId(SUBJECT)).thenReturn(Optional.of(alice));
+        Jwt jwt = Jwt.withTokenValue("token").header("alg", "none").subject(SUBJECT).build();
+        WaiterAuthenticationToken token = new WaiterAuthenticationToken(jwt, List.of(), WaiterAuthenticationToken.ROLE_WAITER);
+        SecurityContextHolder.getContext().setAuthentication(token);
+
+        assertThat(securityContext.isWaiter()).isTrue();
+        assertThat(securityContext.isAdmin()).isFalse();
+        assertThat(securityContext.getCurrentWaiterId()).isEqualTo(alice.getId());
+        assertThat(securityContext.getCurrentUsername()).isEqualTo("alice");
+
+        assertThat(token.getWaiterId()).isEqualTo(alice.getId());
+        verify(waiterRepository, times(1)).findByKeycloakId(SUBJECT);
+    }
+
+    private void startRequest() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    }
+
+    private double gets(String result) {
+        return meterRegistry.get("cache.gets").tag("cache", "current-waiter").tag("result", result)
+                .functionCounter().count();
+    }
+}
@@ -0,0 +1,100 @@
+package uz.billsplitter2.demo.unit.service.impl;
+
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import uz.billsplitter2.demo.dto.request.BillRequestDto;
+import uz.billsplitter2.demo.dto.request.OrderItemRequestDto;
+import uz.billsplitter2.demo.dto.response.BillBatchEntryDto;
+import uz.billsplitter2.demo.exception.ValidationException;
+import uz.billsplitter2.demo.service.impl.BillBatchCalculationServiceImpl;
+import uz.billsplitter2.demo.service.impl.BillCalculationServiceImpl;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BillBatchCalculationServiceImplTest {
+
+    private static final String PATH = "/api/v1/bills/calculate/batch";
+
+    ValidatorFactory validatorFactory;
+    ThreadPoolTaskExecutor executor;
+    BillCalculationServiceImpl calculationService;
+    BillBatchCalculationServiceImpl batchService;
+
+    @BeforeEach
+    void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(4);
+        executor.initialize();
+
+        calculationService = new BillCalculationServiceImpl();
+        ReflectionTestUtils.setField(calculationService, "serviceFeePercent", new BigDecimal("10"));
+
+        batchService = new BillBatchCalculationServiceImpl(calculationService, validatorFactory.getValidator(), executor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+        validatorFactory.close();
+    }
+
+    @Test
+    void preservesRequestOrder() {
+        List<BillRequestDto> requests = new ArrayList<>();
+        for (int i = 1; i <= 50; i++) {
+            requests.add(bill(new BigDecimal(i), "Guest"));
+        }
+
+        List<BillBatchEntryDto> results = batchService.calculateBatch(requests, PATH);
+
+        assertThat(results).hasSize(50);
+        for (int i = 0; i < 50; i++) {
+            assertThat(results.get(i).index()).isEqualTo(i);
+            assertThat(results.get(i).result()).isEqualTo(calculationService.split(requests.get(i)));
+            assertThat(results.get(i).error()).isNull();
+        }
+    }
+
+    @Test
+    void reportsErrorsPerEntryWithoutFailingBatch() {
+        List<BillRequestDto> requests = Arrays.asList(
+                bill(new BigDecimal("20"), "Alice"),
+                new BillRequestDto(List.of()),
+                null,
+                bill(new BigDecimal("-5"), "Bob")
+        );
+
+        List<BillBatchEntryDto> results = batchService.calculateBatch(requests, PATH);
+
+        assertThat(results.get(0).result().totalToPay()).isEqualByComparingTo("22.00");
+        assertThat(results.get(1).error().code()).isEqualTo("VALIDATION_ERROR");
+        assertThat(results.get(1).error().path()).isEqualTo(PATH);
+        assertThat(results.get(2).error().message()).contains("malformed");
+        assertThat(results.get(3).error().status()).isEqualTo(400);
+        assertThat(results.get(3).result()).isNull();
+    }
+
+    @Test
+    void rejectsEmptyBatch() {
+        assertThatThrownBy(() -> batchService.calculateBatch(List.of(), PATH))
+                .isInstanceOf(ValidationException.class)
+                .hasMessageContaining("at least one bill");
+    }
+
+    private BillRequestDto bill(BigDecimal price, String guest) {
+        return new BillRequestDto(List.of(new OrderItemRequestDto("Item", price, List.of(guest))));
+    }
+}
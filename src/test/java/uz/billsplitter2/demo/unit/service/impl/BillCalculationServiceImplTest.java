@@ -11,7 +11,9 @@ import uz.billsplitter2.demo.exception.ValidationException;
 import uz.billsplitter2.demo.service.impl.BillCalculationServiceImpl;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -165,4 +167,158 @@ class BillCalculationServiceImplTest {
         assertThat(response.serviceFeeApplied()).isEqualByComparingTo("0.00");
         assertThat(response.totalToPay()).isEqualByComparingTo("5.00");
     }
+
+    @Test
+    void multipliesUnitPriceByQuantityAndSplitsLineEvenly() {
+        ReflectionTestUtils.setField(service, "serviceFeePercent", BigDecimal.ZERO);
+
+        BillRequestDto request = new BillRequestDto(List.of(
+                new OrderItemRequestDto("Beer", new BigDecimal("3.35"), 6, List.of("A", "B", "C", "D"), null)
+        ));
+
+        BillResponseDto response = service.split(request);
+
+        assertThat(response.itemsTotal()).isEqualByComparingTo("20.10");
+        assertThat(response.shares())
+                .extracting(ParticipantShareDto::name, ParticipantShareDto::itemsTotal)
+                .containsExactly(
+                        tuple("A", new BigDecimal("5.02")),
+                        tuple("B", new BigDecimal("5.02")),
+                        tuple("C", new BigDecimal("5.03")),
+                        tuple("D", new BigDecimal("5.03"))
+                );
+    }
+
+    @Test
+    void unitAssignmentMatchesOneRowPerUnit() {
+        BillRequestDto oneRow = new BillRequestDto(List.of(
+                new OrderItemRequestDto("Pizza", new BigDecimal("12.00"), List.of("Alice", "Bob")),
+                new OrderItemRequestDto("Beer", new BigDecimal("4.99"), 6, List.of("Alice", "Bob"), Map.of("Alice", 2, "Bob", 4))
+        ));
+        List<OrderItemRequestDto> rows = new ArrayList<>();
+        rows.add(new OrderItemRequestDto("Pizza", new BigDecimal("12.00"), List.of("Alice", "Bob")));
+        for (int i = 0; i < 6; i++) {
+            rows.add(new OrderItemRequestDto("Beer", new BigDecimal("4.99"), List.of(i < 2 ? "Alice" : "Bob")));
+        }
+
+        BillResponseDto response = service.split(oneRow);
+
+        assertThat(response).isEqualTo(service.split(new BillRequestDto(rows)));
+        assertThat(response.shares())
+                .extracting(ParticipantShareDto::name, ParticipantShareDto::itemsTotal)
+                .containsExactly(
+                        tuple("Alice", new BigDecimal("15.98")),
+                        tuple("Bob", new BigDecimal("25.96"))
+                );
+    }
+
+    @Test
+    void rejectsUnitsThatDoNotCoverQuantity() {
+        BillRequestDto request = new BillRequestDto(List.of(
+                new OrderItemRequestDto("Beer", new BigDecimal("4.99"), 6, List.of("Alice", "Bob"), Map.of("Alice", 2, "Bob", 3))
+        ));
+
+        assertThatThrownBy(() -> service.split(request))
+                .isInstanceOf(ValidationException.class)
+                .hasMessage("Item units must assign every unit to a participant");
+    }
+
+    @Test
+    void rejectsUnitsForGuestOutsideParticipants() {
+        BillRequestDto request = new BillRequestDto(List.of(
+                new OrderItemRequestDto("Beer", new BigDecimal("4.99"), 2, List.of("Alice"), Map.of("Alice", 1, "Carol", 1))
+        ));
+
+        assertThatThrownBy(() -> service.split(request))
+                .isInstanceOf(ValidationException.class)
+                .hasMessage("Item units must assign every unit to a participant");
+    }
+
+    @Test
+    void splitsByWeightsWithLargestRemainder() {
+        ReflectionTestUtils.setField(service, "serviceFeePercent", BigDecimal.ZERO);
+
+        BillRequestDto request = new BillRequestDto(List.of(
+                OrderItemRequestDto.builder()
+                        .name("Platter")
+                        .price(new BigDecimal("10.00"))
+                        .participants(List.of("A", "B", "C"))
+                        .weights(Map.of("A", new BigDecimal("2"), "C", new BigDecimal("1.5")))
+                        .build()
+        ));
+
+        assertThat(service.split(request).shares())
+                .extracting(ParticipantShareDto::name, ParticipantShareDto::itemsTotal)
+                .containsExactly(
+                        tuple("A", new BigDecimal("4.45")),
+                        tuple("B", new BigDecimal("2.22")),
+                        tuple("C", new BigDecimal("3.33"))
+                );
+    }
+
+    @Test
+    void chargesFixedAmountsAndSplitsRestEvenly() {
+        ReflectionTestUtils.setField(service, "serviceFeePercent", BigDecimal.ZERO);
+
+        BillRequestDto request = new BillRequestDto(List.of(
+                OrderItemRequestDto.builder()
+                        .name("Wine")
+                        .price(new BigDecimal("25.00"))
+                        .quantity(2)
+                        .participants(List.of("A", "B", "C", "D"))
+                        .fixedAmounts(Map.of("B", new BigDecimal("20.00")))
+                        .build()
+        ));
+
+        assertThat(service.split(request).shares())
+                .extracting(ParticipantShareDto::name, ParticipantShareDto::itemsTotal)
+                .containsExactly(
+                        tuple("A", new BigDecimal("10.00")),
+                        tuple("B", new BigDecimal("20.00")),
+                        tuple("C", new BigDecimal("10.00")),
+                        tuple("D", new BigDecimal("10.00"))
+                );
+    }
+
+    @Test
+    void equalWeightsMatchEvenSplit() {
+        OrderItemRequestDto even = new OrderItemRequestDto("Pizza", new BigDecimal("100"), List.of("A", "B", "C"));
+        OrderItemRequestDto weighted = OrderItemRequestDto.builder()
+                .name("Pizza")
+                .price(new BigDecimal("100"))
+                .participants(List.of("A", "B", "C"))
+                .weights(Map.of("A", new BigDecimal("3"), "B", new BigDecimal("3"), "C", new BigDecimal("3")))
+                .build();
+
+        assertThat(service.split(new BillRequestDto(List.of(weighted))))
+                .isEqualTo(service.split(new BillRequestDto(List.of(even))));
+    }
+
+    @Test
+    void rejectsFixedAmountsAboveItemTotal() {
+        BillRequestDto request = new BillRequestDto(List.of(
+                OrderItemRequestDto.builder()
+                        .name("Wine")
+                        .price(new BigDecimal("25.00"))
+                        .participants(List.of("A", "B"))
+                        .fixedAmounts(Map.of("A", new BigDecimal("30.00")))
+                        .build()
+        ));
+
+        assertThatThrownBy(() -> service.split(request))
+                .isInstanceOf(ValidationException.class)
+                .hasMessage("Item fixed amounts exceed item total");
+    }
+
+    @Test
+    void rejectsUnitsCombinedWithWeights() {
+        BillRequestDto request = new BillRequestDto(List.of(
+                new OrderItemRequestDto("Beer", new BigDecimal("4.99"), 2, List.of("A", "B"),
+                        Map.of("A", 1, "B", 1), Map.of("A", BigDecimal.TEN), null)
+        ));
+
+        assertThatThrownBy(() -> service.split(request))
+                .isInstanceOf(ValidationException.class)
+                .hasMessage("Item units cannot be combined with weights or fixed amounts");
+    }
 }
@@ -0,0 +1,318 @@
+package uz.billsplitter2.demo.unit.service.impl;
+
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+import uz.billsplitter2.demo.dto.request.AddOrderItemDto;
+import uz.billsplitter2.demo.dto.response.OrderItemDto;
+import uz.billsplitter2.demo.entity.Bill;
+import uz.billsplitter2.demo.entity.Guest;
+import uz.billsplitter2.demo.entity.OrderItem;
+import uz.billsplitter2.demo.entity.OrderItemRequest;
+import uz.billsplitter2.demo.entity.Party;
+import uz.billsplitter2.demo.entity.Waiter;
+import uz.billsplitter2.demo.enums.BillStatus;
+import uz.billsplitter2.demo.exception.BusinessLogicException;
+import uz.billsplitter2.demo.exception.ResourceNotFoundException;
+import uz.billsplitter2.demo.exception.UnauthorizedException;
+import uz.billsplitter2.demo.exception.ValidationException;
+import uz.billsplitter2.demo.mapper.BillMapper;
+import uz.billsplitter2.demo.mapper.OrderItemMapper;
+import uz.billsplitter2.demo.repository.BillRepository;
+import uz.billsplitter2.demo.repository.GuestRepository;
+import uz.billsplitter2.demo.repository.OrderItemRepository;
+import uz.billsplitter2.demo.repository.OrderItemRequestRepository;
+import uz.billsplitter2.demo.repository.PartyRepository;
+import uz.billsplitter2.demo.security.SecurityContext;
+import uz.billsplitter2.demo.service.BillCalculationService;
+import uz.billsplitter2.demo.service.BillNumberGenerator;
+import uz.billsplitter2.demo.service.BillRunningTotalsService;
+import uz.billsplitter2.demo.service.DailyBillRollupService;
+import uz.billsplitter2.demo.service.impl.BillManagementServiceImpl;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class BillManagementServiceImplTest {
+
+    @Mock
+    BillRepository billRepository;
+
+    @Mock
+    PartyRepository partyRepository;
+
+    @Mock
+    OrderItemRepository orderItemRepository;
+
+    @Mock
+    OrderItemRequestRepository orderItemRequestRepository;
+
+    @Mock
+    GuestRepository guestRepository;
+
+    @Mock
+    BillMapper billMapper;
+
+    @Mock
+    OrderItemMapper orderItemMapper;
+
+    @Mock
+    BillCalculationService calculationService;
+
+    @Mock
+    BillRunningTotalsService runningTotalsService;
+
+    @Mock
+    DailyBillRollupService rollupService;
+
+    @Mock
+    SecurityContext securityContext;
+
+    @Mock
+    BillNumberGenerator billNumberGenerator;
+
+    ValidatorFactory validatorFactory;
+    BillManagementServiceImpl billManagementService;
+
+    Bill bill;
+    Guest alice;
+    Guest bob;
+
+    @BeforeEach
+    void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        billManagementService = new BillManagementServiceImpl(billRepository, partyRepository, orderItemRepository,
+                orderItemRequestRepository, guestRepository, billMapper, orderItemMapper, calculationService, runningTotalsService, rollupService,
+                securityContext, validatorFactory.getValidator(), billNumberGenerator);
+        ReflectionTestUtils.setField(billManagementService, "maxItemBatchSize", 3);
+
+        Waiter waiter = Waiter.builder().keycloakId("kc-1").username("waiter1").build();
+        waiter.setId(UUID.randomUUID());
+        Party party = Party.builder().waiter(waiter).build();
+        party.setId(UUID.randomUUID());
+        bill = Bill.builder().party(party).billNumber("BILL-1").status(BillStatus.OPEN).build();
+        bill.setId(UUID.randomUUID());
+        alice = Guest.builder().id(UUID.randomUUID()).party(party).name("Alice").build();
+        bob = Guest.builder().id(UUID.randomUUID()).party(party).name("Bob").build();
+
+        when(securityContext.isAdmin()).thenReturn(true);
+        when(billRepository.findWithPartyById(bill.getId())).thenReturn(Optional.of(bill));
+        when(guestRepository.findAllById(any())).thenAnswer(invocation -> {
+            Collection<UUID> ids = new ArrayList<>();
+            invocation.<Iterable<UUID>>getArgument(0).forEach(ids::add);
+            return List.of(alice, bob).stream().filter(guest -> ids.contains(guest.getId())).toList();
+        });
+        when(orderItemRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(orderItemMapper.toDto(any(OrderItem.class))).thenAnswer(invocation -> {
+            OrderItem item = invocation.getArgument(0);
+            return new OrderItemDto(null, bill.getId(), item.getName(), item.getPrice(), item.getQuantity(), item.getGuestUnits(), item.getGuestWeights(), item.getGuestFixedAmounts(), List.of(), null);
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void addOrderItemsLoadsGuestsOnceAndSavesAllItemsInOrder() {
+        List<OrderItemDto> created = billManagementService.addOrderItems(bill.getId(), List.of(
+                item("Pizza", alice.getId(), bob.getId()),
+                item("Wine", bob.getId()),
+                item("Tea", alice.getId())
+        ), null);
+
+        assertThat(created).extracting(OrderItemDto::name).containsExactly("Pizza", "Wine", "Tea");
+        verify(guestRepository, times(1)).findAllById(any());
+
+        ArgumentCaptor<List<OrderItem>> saved = ArgumentCaptor.forClass(List.class);
+        verify(orderItemRepository).saveAll(saved.capture());
+        assertThat(saved.getValue()).extracting(OrderItem::getGuests)
+                .containsExactly(List.of(alice, bob), List.of(bob), List.of(alice));
+        verify(runningTotalsService).addItems(bill, saved.getValue());
+    }
+
+    @Test
+    void addOrderItemsRejectsInvalidItemBeforeTouchingDatabase() {
+        AddOrderItemDto invalid = new AddOrderItemDto("Wine", new BigDecimal("0.00"), 1, List.of(bob.getId()));
+
+        assertThatThrownBy(() -> billManagementService.addOrderItems(bill.getId(), List.of(item("Pizza", alice.getId()), invalid), null))
+                .isInstanceOf(ValidationException.class)
+                .hasMessage("Item 1: Price must be greater than 0");
+        verifyNoInteractions(billRepository, guestRepository, orderItemRepository);
+    }
+
+    @Test
+    void addOrderItemsRejectsItemSharedByTooManyGuests() {
+        List<UUID> guests = Stream.generate(UUID::randomUUID).limit(AddOrderItemDto.MAX_GUESTS + 1).toList();
+        AddOrderItemDto crowded = new AddOrderItemDto("Cake", new BigDecimal("500.00"), 1, guests);
+
+        assertThatThrownBy(() -> billManagementService.addOrderItems(bill.getId(), List.of(crowded), null))
+                .isInstanceOf(ValidationException.class)
+                .hasMessage("Item 0: At most 200 guests can share an item");
+        verifyNoInteractions(billRepository, guestRepository, orderItemRepository);
+    }
+
+    @Test
+    void addOrderItemsKeepsGuestUnitsAndRejectsUnitsNotCoveringQuantity() {
+        AddOrderItemDto beer = new AddOrderItemDto("Beer", new BigDecimal("4.99"), 6,
+                List.of(alice.getId(), bob.getId()), Map.of(alice.getId(), 2, bob.getId(), 4));
+        AddOrderItemDto underAssigned = new AddOrderItemDto("Beer", new BigDecimal("4.99"), 6,
+                List.of(alice.getId(), bob.getId()), Map.of(alice.getId(), 2, bob.getId(), 3));
+
+        assertThat(billManagementService.addOrderItems(bill.getId(), List.of(beer), null))
+                .singleElement()
+                .satisfies(dto -> assertThat(dto.guestUnits()).isEqualTo(Map.of(alice.getId(), 2, bob.getId(), 4)));
+        assertThatThrownBy(() -> billManagementService.addOrderItems(bill.getId(), List.of(beer, underAssigned), null))
+                .isInstanceOf(ValidationException.class)
+                .hasMessage("Item 1: Item units must assign every unit to a participant");
+    }
+
+    @Test
+    void addOrderItemsRejectsBatchOverLimit() {
+        List<AddOrderItemDto> items = List.of(
+                item("A", alice.getId()), item("B", alice.getId()), item("C", alice.getId()), item("D", alice.getId()));
+
+        assertThatThrownBy(() -> billManagementService.addOrderItems(bill.getId(), items, null))
+                .isInstanceOf(ValidationException.class)
+                .hasMessage("Batch size exceeds limit of 3");
+    }
+
+    @Test
+    void addOrderItemsFailsWholeBatchOnUnknownGuest() {
+        List<AddOrderItemDto> items = List.of(item("Pizza", alice.getId()), item("Wine", UUID.randomUUID()));
+
+        assertThatThrownBy(() -> billManagementService.addOrderItems(bill.getId(), items, null))
+                .isInstanceOf(ResourceNotFoundException.class);
+        verify(runningTotalsService, never()).addItems(any(), anyList());
+        verify(orderItemRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void addOrderItemsRejectsGuestOfAnotherParty() {
+        Party other = Party.builder().build();
+        other.setId(UUID.randomUUID());
+        bob.setParty(other);
+
+        assertThatThrownBy(() -> billManagementService.addOrderItems(bill.getId(), List.of(item("Wine", bob.getId())), null))
+                .isInstanceOf(BusinessLogicException.class)
+                .hasMessage("Guest does not belong to this party");
+        verify(orderItemRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void addOrderItemsRejectsClosedBill() {
+        bill.setStatus(BillStatus.CLOSED);
+
+        assertThatThrownBy(() -> billManagementService.addOrderItems(bill.getId(), List.of(item("Wine", bob.getId())), null))
+                .isInstanceOf(BusinessLogicException.class)
+                .hasMessage("Cannot add items to closed bill");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void retryWithSameIdempotencyKeyReturnsItemsOfFirstRequest() {
+        when(orderItemRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<OrderItem> items = invocation.getArgument(0);
+            items.forEach(item -> item.setId(UUID.randomUUID()));
+            return items;
+        });
+        List<AddOrderItemDto> items = List.of(item("Pizza", alice.getId()), item("Wine", bob.getId()));
+        billManagementService.addOrderItems(bill.getId(), items, "key-1");
+
+        ArgumentCaptor<List<OrderItem>> saved = ArgumentCaptor.forClass(List.class);
+        verify(orderItemRepository).saveAll(saved.capture());
+        ArgumentCaptor<OrderItemRequest> request = ArgumentCaptor.forClass(OrderItemRequest.class);
+        verify(orderItemRequestRepository).save(request.capture());
+        assertThat(request.getValue().getItemIds()).hasSize(2);
+
+        when(orderItemRequestRepository.findById(new OrderItemRequest.Key(bill.getId(), "key-1"))).thenReturn(Optional.of(request.getValue()));
+        when(orderItemRepository.findAllById(request.getValue().getItemIds())).thenReturn(saved.getValue().reversed());
+        bill.setStatus(BillStatus.CLOSED);
+
+        assertThat(billManagementService.addOrderItems(bill.getId(), items, "key-1"))
+                .extracting(OrderItemDto::name).containsExactly("Pizza", "Wine");
+        verify(orderItemRepository, times(1)).saveAll(anyList());
+        verify(runningTotalsService, times(1)).addItems(any(), anyList());
+    }
+
+    @Test
+    void idempotencyKeyReusedForAnotherRequestIsRejected() {
+        OrderItemRequest earlier = OrderItemRequest.builder()
+                .idempotencyKey("key-1").billId(bill.getId()).requestHash("0".repeat(64)).itemIds(List.of()).build();
+        when(orderItemRequestRepository.findById(new OrderItemRequest.Key(bill.getId(), "key-1"))).thenReturn(Optional.of(earlier));
+
+        assertThatThrownBy(() -> billManagementService.addOrderItem(bill.getId(), item("Wine", bob.getId()), "key-1"))
+                .isInstanceOf(BusinessLogicException.class)
+                .hasMessage("Idempotency key was already used for another request");
+        verify(orderItemRepository, never()).save(any());
+    }
+
+    @Test
+    void sameIdempotencyKeyOnAnotherBillIsNewRequest() {
+        // планшет со своим счетчиком ключей уже отправлял key-1 для другого счета
+        UUID otherBillId = UUID.randomUUID();
+        OrderItemRequest other = OrderItemRequest.builder()
+                .idempotencyKey("key-1").billId(otherBillId).requestHash("0".repeat(64)).itemIds(List.of()).build();
+        when(orderItemRequestRepository.findById(new OrderItemRequest.Key(otherBillId, "key-1"))).thenReturn(Optional.of(other));
+
+        assertThat(billManagementService.addOrderItems(bill.getId(), List.of(item("Wine", bob.getId())), "key-1"))
+                .extracting(OrderItemDto::name).containsExactly("Wine");
+        verify(orderItemRepository).saveAll(anyList());
+    }
+
+    @Test
+    void itemChangesLockOpenBillBeforeReadingIt() {
+        billManagementService.addOrderItems(bill.getId(), List.of(item("Pizza", alice.getId())), null);
+
+        InOrder order = inOrder(billRepository);
+        order.verify(billRepository).findWithPartyById(bill.getId());
+        order.verify(billRepository).incrementVersionIfStatus(eq(bill.getId()), eq(BillStatus.OPEN), any());
+        order.verify(billRepository).findWithPartyById(bill.getId());
+    }
+
+    @Test
+    void itemChangesOfWaiterWithoutAccessDoNotLockBill() {
+        when(securityContext.isAdmin()).thenReturn(false);
+        when(securityContext.getCurrentWaiterId()).thenReturn(UUID.randomUUID());
+
+        assertThatThrownBy(() -> billManagementService.addOrderItems(bill.getId(), List.of(item("Pizza", alice.getId())), null))
+                .isInstanceOf(UnauthorizedException.class);
+        verify(billRepository, never()).incrementVersionIfStatus(any(), any(), any());
+    }
+
+    private AddOrderItemDto item(String name, UUID... guestIds) {
+        return new AddOrderItemDto(name, new BigDecimal("10.00"), 1, List.of(guestIds));
+    }
+}
@@ -0,0 +1,255 @@
+package uz.billsplitter2.demo.unit.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+import uz.billsplitter2.demo.dto.request.ParticipantTotalDto;
+import uz.billsplitter2.demo.dto.response.BillResponseDto;
+import uz.billsplitter2.demo.entity.Bill;
+import uz.billsplitter2.demo.entity.BillGuestShare;
+import uz.billsplitter2.demo.entity.Guest;
+import uz.billsplitter2.demo.entity.OrderItem;
+import uz.billsplitter2.demo.exception.ValidationException;
+import uz.billsplitter2.demo.repository.BillGuestShareRepository;
+import uz.billsplitter2.demo.repository.BillRepository;
+import uz.billsplitter2.demo.service.impl.BillCalculationServiceImpl;
+import uz.billsplitter2.demo.service.impl.BillRunningTotalsServiceImpl;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class BillRunningTotalsServiceImplTest {
+
+    @Mock
+    BillGuestShareRepository shareRepository;
+
+    @Mock
+    BillRepository billRepository;
+
+    BillCalculationServiceImpl calculationService;
+    BillRunningTotalsServiceImpl runningTotalsService;
+
+    // строки bill_guest_shares одного счета
+    List<BillGuestShare> stored;
+
+    Bill bill;
+    Guest alice;
+    Guest bob;
+    Guest carol;
+
+    @BeforeEach
+    void setUp() {
+        calculationService = new BillCalculationServiceImpl();
+        ReflectionTestUtils.setField(calculationService, "serviceFeePercent", new BigDecimal("10"));
+        runningTotalsService = new BillRunningTotalsServiceImpl(shareRepository, billRepository, calculationService);
+
+        stored = new ArrayList<>();
+        when(shareRepository.findAllByBillIdWithGuest(any())).thenAnswer(invocation -> stored.stream()
+                .sorted(Comparator.comparing(BillGuestShare::getPosition))
+                .toList());
+        when(shareRepository.save(any(BillGuestShare.class))).thenAnswer(invocation -> {
+            BillGuestShare share = invocation.getArgument(0);
+            if (!stored.contains(share)) {
+                stored.add(share);
+            }
+            return share;
+        });
+        doAnswer(invocation -> stored.remove(invocation.<BillGuestShare>getArgument(0)))
+                .when(shareRepository).delete(any(BillGuestShare.class));
+        doAnswer(invocation -> stored.removeAll(invocation.<Collection<BillGuestShare>>getArgument(0)))
+                .when(shareRepository).deleteAll(anyCollection());
+
+        bill = Bill.builder().billNumber("BILL-1").guestSharesReady(true).build();
+        bill.setId(UUID.randomUUID());
+        alice = guest("Alice");
+        bob = guest("Bob");
+        carol = guest("Carol");
+    }
+
+    @Test
+    void addItemAccumulatesSharesLikeFullRecompute() {
+        add(item("Pizza", "100.00", carol, alice, bob));
+        add(item("Wine", "33.35", bob));
+        add(item("Tea", "0.01", alice, bob));
+
+        assertThat(runningTotalsService.currentTotals(bill)).containsExactly(
+                new ParticipantTotalDto("Alice", new BigDecimal("33.34")),
+                new ParticipantTotalDto("Bob", new BigDecimal("66.69")),
+                new ParticipantTotalDto("Carol", new BigDecimal("33.33"))
+        );
+        assertThat(calculationService.splitTotals(runningTotalsService.currentTotals(bill)))
+                .isEqualTo(fullRecompute());
+    }
+
+    @Test
+    void addItemChargesAssignedUnitsAndMatchesFullRecompute() {
+        OrderItem beer = item("Beer", "4.99", alice, bob);
+        beer.setQuantity(6);
+        beer.setGuestUnits(Map.of(alice.getId(), 2, bob.getId(), 4));
+        add(beer);
+        add(item("Nachos", "9.00", alice, bob, carol));
+
+        assertThat(runningTotalsService.currentTotals(bill)).containsExactly(
+                new ParticipantTotalDto("Alice", new BigDecimal("12.98")),
+                new ParticipantTotalDto("Bob", new BigDecimal("22.96")),
+                new ParticipantTotalDto("Carol", new BigDecimal("3.00"))
+        );
+        assertThat(calculationService.splitTotals(runningTotalsService.currentTotals(bill)))
+                .isEqualTo(fullRecompute());
+    }
+
+    @Test
+    void itemOfRemovedGuestWithUnitsOrFixedAmountKeepsItsTotal() {
+        UUID removedGuest = UUID.randomUUID();
+        OrderItem beer = item("Beer", "5.00", alice, bob);
+        beer.setQuantity(6);
+        beer.setGuestUnits(Map.of(alice.getId(), 2, bob.getId(), 1, removedGuest, 3));
+        OrderItem wine = item("Wine", "30.00", alice);
+        wine.setGuestFixedAmounts(Map.of(alice.getId(), new BigDecimal("10.00"), removedGuest, new BigDecimal("20.00")));
+        OrderItem cake = item("Cake", "12.00", alice, bob);
+        cake.setGuestFixedAmounts(Map.of(alice.getId(), new BigDecimal("2.00"), removedGuest, new BigDecimal("4.00")));
+        add(beer);
+        add(wine);
+        add(cake);
+
+        // пиво 6 x 5.00 поровну, вино целиком Alice, остаток торта после ее 2.00 - Bob
+        assertThat(runningTotalsService.currentTotals(bill)).containsExactly(
+                new ParticipantTotalDto("Alice", new BigDecimal("47.00")),
+                new ParticipantTotalDto("Bob", new BigDecimal("25.00"))
+        );
+    }
+
+    @Test
+    void closingBillWhoseItemLostItsOnlyGuestFailsNamingItem() {
+        OrderItem wine = item("Wine", "30.00", alice);
+        add(wine);
+        add(item("Pizza", "90.00", alice, bob));
+
+        // гость удален из компании: бд убрала его из позиций, итоги счета сброшены
+        bill.getOrderItems().forEach(item -> item.getGuests().remove(alice));
+        runningTotalsService.invalidate(bill);
+
+        assertThatThrownBy(() -> runningTotalsService.currentTotals(bill))
+                .isInstanceOf(ValidationException.class)
+                .hasMessageContaining("Wine");
+        assertThatThrownBy(() -> runningTotalsService.finalTotals(bill))
+                .isInstanceOf(ValidationException.class)
+                .hasMessageContaining("Wine");
+
+        // позицию без участников можно удалить, после этого счет закрывается
+        remove(wine);
+        assertThat(runningTotalsService.finalTotals(bill))
+                .containsExactly(new ParticipantTotalDto("Bob", new BigDecimal("90.00")));
+    }
+
+    @Test
+    void removeItemSubtractsAndDropsGuestsWithoutItems() {
+        OrderItem pizza = item("Pizza", "90.00", alice, bob, carol);
+        OrderItem wine = item("Wine", "20.00", carol);
+        add(pizza);
+        add(wine);
+
+        remove(pizza);
+
+        assertThat(runningTotalsService.currentTotals(bill))
+                .containsExactly(new ParticipantTotalDto("Carol", new BigDecimal("20.00")));
+        assertThat(stored).singleElement().satisfies(share -> assertThat(share.getItemCount()).isEqualTo(1));
+    }
+
+    @Test
+    void addItemRebuildsSharesOfBillOpenedBeforeRunningTotals() {
+        bill.setGuestSharesReady(false);
+        bill.addOrderItem(item("Soup", "10.00", alice, bob));
+
+        add(item("Bread", "3.00", bob));
+
+        assertThat(bill.getGuestSharesReady()).isTrue();
+        assertThat(runningTotalsService.currentTotals(bill)).containsExactly(
+                new ParticipantTotalDto("Alice", new BigDecimal("5.00")),
+                new ParticipantTotalDto("Bob", new BigDecimal("8.00"))
+        );
+    }
+
+    @Test
+    void currentTotalsOfNotReadyBillAreComputedWithoutWrites() {
+        bill.setGuestSharesReady(false);
+        bill.addOrderItem(item("Soup", "10.00", alice, bob));
+
+        assertThat(runningTotalsService.currentTotals(bill)).containsExactly(
+                new ParticipantTotalDto("Alice", new BigDecimal("5.00")),
+                new ParticipantTotalDto("Bob", new BigDecimal("5.00"))
+        );
+        verify(shareRepository, never()).save(any());
+        assertThat(bill.getGuestSharesReady()).isFalse();
+    }
+
+    @Test
+    void finalTotalsRebuildDivergedSharesInVerifyMode() {
+        ReflectionTestUtils.setField(runningTotalsService, "verify", true);
+        add(item("Pizza", "100.00", alice, bob, carol));
+        stored.get(0).setItemsTotal(new BigDecimal("99.99"));
+
+        List<ParticipantTotalDto> totals = runningTotalsService.finalTotals(bill);
+
+        assertThat(calculationService.splitTotals(totals)).isEqualTo(fullRecompute());
+        assertThat(stored).extracting(BillGuestShare::getItemsTotal).containsExactly(
+                new BigDecimal("33.34"), new BigDecimal("33.33"), new BigDecimal("33.33")
+        );
+    }
+
+    @Test
+    void finalTotalsKeepDivergedSharesWhenVerifyIsOff() {
+        add(item("Pizza", "100.00", alice, bob, carol));
+        stored.get(0).setItemsTotal(new BigDecimal("99.99"));
+
+        assertThat(runningTotalsService.finalTotals(bill).get(0).itemsTotal()).isEqualByComparingTo("99.99");
+    }
+
+    private void add(OrderItem item) {
+        runningTotalsService.addItem(bill, item);
+        bill.addOrderItem(item);
+    }
+
+    private void remove(OrderItem item) {
+        runningTotalsService.removeItem(bill, item);
+        bill.removeOrderItem(item);
+    }
+
+    private BillResponseDto fullRecompute() {
+        return calculationService.split(bill.toBillRequestDto());
+    }
+
+    private Guest guest(String name) {
+        return Guest.builder().id(UUID.randomUUID()).name(name).build();
+    }
+
+    private OrderItem item(String name, String price, Guest... guests) {
+        return OrderItem.builder()
+                .id(UUID.randomUUID())
+                .name(name)
+                .price(new BigDecimal(price))
+                .guests(new ArrayList<>(List.of(guests)))
+                .build();
+    }
+}
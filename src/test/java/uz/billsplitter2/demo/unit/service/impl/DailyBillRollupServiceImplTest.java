@@ -0,0 +1,99 @@
+package uz.billsplitter2.demo.unit.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import uz.billsplitter2.demo.entity.Bill;
+import uz.billsplitter2.demo.entity.Party;
+import uz.billsplitter2.demo.entity.RestaurantTable;
+import uz.billsplitter2.demo.entity.Waiter;
+import uz.billsplitter2.demo.enums.BillStatus;
+import uz.billsplitter2.demo.repository.BillRepository;
+import uz.billsplitter2.demo.repository.DailyBillRollupRepository;
+import uz.billsplitter2.demo.service.impl.DailyBillRollupServiceImpl;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DailyBillRollupServiceImplTest {
+
+    @Mock
+    DailyBillRollupRepository rollupRepository;
+
+    @Mock
+    BillRepository billRepository;
+
+    @InjectMocks
+    DailyBillRollupServiceImpl rollupService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(rollupService, "analyticsZone", ZoneId.of("Asia/Tashkent"));
+    }
+
+    @Test
+    void recordClosedBill_AddsBillToLocalDayAndHour() {
+        Waiter waiter = Waiter.builder().build();
+        waiter.setId(UUID.randomUUID());
+        RestaurantTable table = RestaurantTable.builder().build();
+        table.setId(UUID.randomUUID());
+        Bill bill = Bill.builder()
+                .party(Party.builder().waiter(waiter).table(table).build())
+                .status(BillStatus.CLOSED)
+                .closedAt(OffsetDateTime.parse("2025-03-01T20:30:00Z"))
+                .itemsTotal(new BigDecimal("100.00"))
+                .serviceFeeAmount(new BigDecimal("10.00"))
+                .totalAmount(new BigDecimal("110.00"))
+                .build();
+
+        rollupService.recordClosedBill(bill);
+
+        verify(rollupRepository).addClosedBill(LocalDate.of(2025, 3, 2), 1, waiter.getId(), table.getId(),
+                new BigDecimal("100.00"), new BigDecimal("10.00"), new BigDecimal("110.00"));
+    }
+
+    @Test
+    void rebuild_LocksThenReplacesRowsInConfiguredZone() {
+        when(rollupRepository.insertFromClosedBills("Asia/Tashkent")).thenReturn(12);
+
+        assertThat(rollupService.rebuild()).isEqualTo(12);
+
+        InOrder order = inOrder(rollupRepository);
+        order.verify(rollupRepository).lockForRebuild();
+        order.verify(rollupRepository).deleteAllInBatch();
+        order.verify(rollupRepository).insertFromClosedBills("Asia/Tashkent");
+    }
+
+    @Test
+    void rebuildIfEmpty_SkipsFilledRollups() {
+        when(rollupRepository.count()).thenReturn(5L);
+
+        assertThat(rollupService.rebuildIfEmpty()).isFalse();
+        verify(rollupRepository, never()).insertFromClosedBills(any());
+    }
+
+    @Test
+    void rebuildIfEmpty_BackfillsWhenClosedBillsExist() {
+        when(rollupRepository.count()).thenReturn(0L);
+        when(billRepository.existsByStatus(BillStatus.CLOSED)).thenReturn(true);
+
+        assertThat(rollupService.rebuildIfEmpty()).isTrue();
+        verify(rollupRepository).insertFromClosedBills("Asia/Tashkent");
+    }
+}
@@ -0,0 +1,193 @@
+package uz.billsplitter2.demo.unit.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import uz.billsplitter2.demo.dto.request.BillRequestDto;
+import uz.billsplitter2.demo.dto.request.OrderItemRequestDto;
+import uz.billsplitter2.demo.dto.response.BillResponseDto;
+import uz.billsplitter2.demo.exception.ValidationException;
+import uz.billsplitter2.demo.service.impl.BillCalculationServiceImpl;
+import uz.billsplitter2.demo.service.impl.FixedPointBillCalculationServiceImpl;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FixedPointBillCalculationServiceImplTest {
+
+    // число случайных счетов; для полного прогона: ./gradlew test -Pdifferential.iterations=2000000
+    private static final int ITERATIONS = Integer.getInteger("billsplitter.differential.iterations", 100_000);
+
+    private static final String[] NAMES = {
+            "Alice", "Bob", "Carol", "Dave", "Eve", "Frank", "Grace", "Heidi",
+            "Ivan", "Judy", "Mallory", "Niaj", "Olivia", "Peggy", "Rupert", "Sybil"
+    };
+
+    BillCalculationServiceImpl decimalEngine;
+    FixedPointBillCalculationServiceImpl fixedPointEngine;
+
+    @BeforeEach
+    void setUp() {
+        decimalEngine = new BillCalculationServiceImpl();
+        fixedPointEngine = new FixedPointBillCalculationServiceImpl(decimalEngine);
+        setServiceFee(new BigDecimal("10"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"0", "10", "12.5", "7.25", "15", "0.333", "33.333333", "100"})
+    void matchesDecimalEngineOnRandomBills(String serviceFee) {
+        setServiceFee(new BigDecimal(serviceFee));
+        Random random = new Random(serviceFee.hashCode());
+
+        for (int i = 0; i < ITERATIONS / 8; i++) {
+            BillRequestDto request = randomRequest(random, true);
+            assertThat(fixedPointEngine.split(request))
+                    .as("request %s", request)
+                    .isEqualTo(decimalEngine.split(request));
+        }
+    }
+
+    @Test
+    void doesNotDelegateWholeCentBills() {
+        BillCalculationServiceImpl decimalSpy = Mockito.spy(decimalEngine);
+        FixedPointBillCalculationServiceImpl engine = new FixedPointBillCalculationServiceImpl(decimalSpy);
+        ReflectionTestUtils.setField(engine, "serviceFeePercent", new BigDecimal("12.5"));
+
+        Random random = new Random(7);
+        for (int i = 0; i < 1_000; i++) {
+            engine.split(randomRequest(random, false));
+        }
+
+        Mockito.verify(decimalSpy, Mockito.never()).split(Mockito.any());
+    }
+
+    @Test
+    void fallsBackToDecimalEngineForSubCentPrices() {
+        BillRequestDto request = new BillRequestDto(List.of(
+                new OrderItemRequestDto("Espresso", new BigDecimal("2.005"), List.of("A", "B")),
+                new OrderItemRequestDto("Water", new BigDecimal("0.995"), List.of("B"))
+        ));
+
+        assertThat(fixedPointEngine.split(request)).isEqualTo(decimalEngine.split(request));
+    }
+
+    @Test
+    void fallsBackToDecimalEngineOnOverflow() {
+        BillRequestDto request = new BillRequestDto(List.of(
+                new OrderItemRequestDto("Banquet", new BigDecimal("99999999.99"), List.of("A", "B", "C")),
+                new OrderItemRequestDto("Wine", new BigDecimal("12345678.91"), List.of("C"))
+        ));
+
+        assertThat(fixedPointEngine.split(request)).isEqualTo(decimalEngine.split(request));
+    }
+
+    @Test
+    void keepsMoneyScaleOfDecimalEngine() {
+        BillRequestDto request = new BillRequestDto(List.of(
+                new OrderItemRequestDto("Pizza", new BigDecimal("100"), List.of("A", "B", "C"))
+        ));
+
+        BillResponseDto response = fixedPointEngine.split(request);
+
+        assertThat(response.itemsTotal()).isEqualTo(new BigDecimal("100.00"));
+        assertThat(response.serviceFeeApplied()).isEqualTo(new BigDecimal("10.00"));
+        assertThat(response.shares().get(0).total()).isEqualTo(new BigDecimal("36.68"));
+        assertThat(response.shares().get(0).percentage()).isEqualTo(new BigDecimal("33.35"));
+    }
+
+    @Test
+    void validatesNegativeServiceFee() {
+        setServiceFee(new BigDecimal("-1"));
+
+        BillRequestDto request = new BillRequestDto(
+                List.of(new OrderItemRequestDto("Tea", new BigDecimal("10"), List.of("Solo")))
+        );
+
+        assertThatThrownBy(() -> fixedPointEngine.split(request))
+                .isInstanceOf(ValidationException.class)
+                .hasMessageContaining("Service fee percent");
+    }
+
+    @Test
+    void throwsWhenNoItems() {
+        assertThatThrownBy(() -> fixedPointEngine.split(new BillRequestDto(List.of())))
+                .isInstanceOf(ValidationException.class)
+                .hasMessageContaining("At least one order item");
+    }
+
+    private void setServiceFee(BigDecimal percent) {
+        ReflectionTestUtils.setField(decimalEngine, "serviceFeePercent", percent);
+        ReflectionTestUtils.setField(fixedPointEngine, "serviceFeePercent", percent);
+    }
+
+    private BillRequestDto randomRequest(Random random, boolean allowSubCent) {
+        int itemCount = 1 + random.nextInt(random.nextInt(10) == 0 ? 60 : 8);
+        int guestCount = 1 + random.nextInt(NAMES.length);
+        List<OrderItemRequestDto> items = new ArrayList<>(itemCount);
+
+        for (int i = 0; i < itemCount; i++) {
+            int participantCount = 1 + random.nextInt(guestCount);
+            List<String> participants = new ArrayList<>(participantCount);
+            for (int j = 0; j < participantCount; j++) {
+                participants.add(NAMES[random.nextInt(guestCount)]);
+            }
+            items.add(randomItem(random, "Item " + i, randomPrice(random, allowSubCent), participants));
+        }
+
+        return new BillRequestDto(items);
+    }
+
+    // одна единица, несколько единиц поровну, единицы, закрепленные за участниками, или веса с фиксированными суммами
+    private OrderItemRequestDto randomItem(Random random, String name, BigDecimal price, List<String> participants) {
+        return switch (random.nextInt(4)) {
+            case 0 -> new OrderItemRequestDto(name, price, participants);
+            case 1 -> new OrderItemRequestDto(name, price, 1 + random.nextInt(12), participants, null);
+            case 3 -> {
+                int quantity = 1 + random.nextInt(4);
+                List<String> distinct = participants.stream().distinct().toList();
+                Map<String, BigDecimal> weights = new LinkedHashMap<>();
+                Map<String, BigDecimal> fixedAmounts = new LinkedHashMap<>();
+                // фиксированные суммы не больше половины позиции, чтобы остаток не ушел в минус
+                long budget = price.setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValue() * quantity / 2;
+                for (String participant : distinct.subList(0, distinct.size() - 1)) {
+                    if (random.nextInt(3) == 0 && budget > 0) {
+                        long cents = 1 + (long) (random.nextDouble() * budget);
+                        budget -= cents;
+                        fixedAmounts.put(participant, BigDecimal.valueOf(cents, 2));
+                    } else if (random.nextBoolean()) {
+                        weights.put(participant, BigDecimal.valueOf(1 + random.nextInt(40), random.nextInt(3)));
+                    }
+                }
+                yield new OrderItemRequestDto(name, price, quantity, participants, null, weights, fixedAmounts);
+            }
+            default -> {
+                Map<String, Integer> units = new LinkedHashMap<>();
+                participants.forEach(participant -> units.merge(participant, 1 + random.nextInt(4), Integer::sum));
+                int quantity = units.values().stream().mapToInt(Integer::intValue).sum();
+                yield new OrderItemRequestDto(name, price, quantity, participants, units);
+            }
+        };
+    }
+
+    private BigDecimal randomPrice(Random random, boolean allowSubCent) {
+        return switch (random.nextInt(allowSubCent ? 6 : 4)) {
+            case 0 -> BigDecimal.valueOf(1 + random.nextInt(100));
+            case 1 -> BigDecimal.valueOf(1 + random.nextInt(10_000), 1);
+            case 2 -> BigDecimal.valueOf(1 + random.nextInt(5), 2);
+            case 3 -> BigDecimal.valueOf(1 + random.nextInt(5_000_000), 2);
+            case 4 -> BigDecimal.valueOf(1 + random.nextInt(100_000), 3);
+            default -> BigDecimal.valueOf(1 + random.nextInt(100_000), 2);
+        };
+    }
+}
@@ -0,0 +1,131 @@
+package uz.billsplitter2.demo.unit.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import uz.billsplitter2.demo.entity.Bill;
+import uz.billsplitter2.demo.entity.Guest;
+import uz.billsplitter2.demo.entity.OrderItem;
+import uz.billsplitter2.demo.entity.Party;
+import uz.billsplitter2.demo.enums.BillStatus;
+import uz.billsplitter2.demo.exception.BusinessLogicException;
+import uz.billsplitter2.demo.mapper.GuestMapper;
+import uz.billsplitter2.demo.repository.BillRepository;
+import uz.billsplitter2.demo.repository.GuestRepository;
+import uz.billsplitter2.demo.repository.PartyRepository;
+import uz.billsplitter2.demo.security.SecurityContext;
+import uz.billsplitter2.demo.service.BillRunningTotalsService;
+import uz.billsplitter2.demo.service.impl.GuestServiceImpl;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class GuestServiceImplTest {
+
+    @Mock
+    GuestRepository guestRepository;
+
+    @Mock
+    PartyRepository partyRepository;
+
+    @Mock
+    BillRepository billRepository;
+
+    @Mock
+    BillRunningTotalsService runningTotalsService;
+
+    @Mock
+    GuestMapper guestMapper;
+
+    @Mock
+    SecurityContext securityContext;
+
+    @InjectMocks
+    GuestServiceImpl guestService;
+
+    Party party;
+    Guest alice;
+    Guest bob;
+    Bill bill;
+
+    @BeforeEach
+    void setUp() {
+        party = Party.builder().build();
+        ReflectionTestUtils.setField(party, "id", UUID.randomUUID());
+        alice = Guest.builder().id(UUID.randomUUID()).party(party).name("Alice").build();
+        bob = Guest.builder().id(UUID.randomUUID()).party(party).name("Bob").build();
+        bill = Bill.builder().party(party).billNumber("BILL-1").status(BillStatus.OPEN).build();
+        ReflectionTestUtils.setField(bill, "id", UUID.randomUUID());
+
+        when(securityContext.isAdmin()).thenReturn(true);
+        when(partyRepository.findById(party.getId())).thenReturn(Optional.of(party));
+        when(guestRepository.findById(alice.getId())).thenReturn(Optional.of(alice));
+        when(billRepository.findByPartyIdAndStatus(party.getId(), BillStatus.OPEN)).thenReturn(Optional.of(bill));
+    }
+
+    @Test
+    void removeGuestRejectsOnlyParticipantOfOpenBillItem() {
+        when(billRepository.findOrderItemsWithGuestsByBillId(bill.getId()))
+                .thenReturn(List.of(item("Wine", alice), item("Pizza", alice, bob)));
+
+        assertThatThrownBy(() -> guestService.removeGuest(party.getId(), alice.getId()))
+                .isInstanceOf(BusinessLogicException.class)
+                .hasMessageContaining("Alice")
+                .hasMessageContaining("[Wine]");
+
+        verify(guestRepository, never()).delete(any());
+        verify(runningTotalsService, never()).invalidate(any());
+    }
+
+    @Test
+    void removeGuestRejectsGuestHoldingUnitsOrFixedAmount() {
+        OrderItem beer = item("Beer", alice, bob);
+        beer.setQuantity(3);
+        beer.setGuestUnits(Map.of(alice.getId(), 2, bob.getId(), 1));
+        OrderItem wine = item("Wine", alice, bob);
+        wine.setGuestFixedAmounts(Map.of(alice.getId(), new BigDecimal("10.00")));
+        when(billRepository.findOrderItemsWithGuestsByBillId(bill.getId())).thenReturn(List.of(beer, wine));
+
+        assertThatThrownBy(() -> guestService.removeGuest(party.getId(), alice.getId()))
+                .isInstanceOf(BusinessLogicException.class)
+                .hasMessageContaining("[Beer, Wine]");
+
+        verify(guestRepository, never()).delete(any());
+    }
+
+    @Test
+    void removeGuestSharingItemsRebuildsTotalsOfOpenBill() {
+        when(billRepository.findOrderItemsWithGuestsByBillId(bill.getId()))
+                .thenReturn(List.of(item("Pizza", alice, bob), item("Tea", bob)));
+
+        guestService.removeGuest(party.getId(), alice.getId());
+
+        verify(runningTotalsService).invalidate(bill);
+        verify(guestRepository).delete(alice);
+    }
+
+    private OrderItem item(String name, Guest... guests) {
+        return OrderItem.builder()
+                .id(UUID.randomUUID())
+                .bill(bill)
+                .name(name)
+                .price(new BigDecimal("10.00"))
+                .guests(new ArrayList<>(List.of(guests)))
+                .build();
+    }
+}
@@ -0,0 +1,139 @@
+package uz.billsplitter2.demo.unit.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import uz.billsplitter2.demo.entity.IdempotencyRecord;
+import uz.billsplitter2.demo.repository.IdempotencyRecordRepository;
+import uz.billsplitter2.demo.service.IdempotencyStore;
+import uz.billsplitter2.demo.service.impl.IdempotencyStoreImpl;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+// ветки захвата ключа, уже записанного в бд другим экземпляром: новый ключ захватывается в памяти,
+// запись в бд находит его занятым только при подтверждении после выполнения
+@ExtendWith(MockitoExtension.class)
+class IdempotencyStoreImplTest {
+
+    private static final String KEY = "waiter-1:key-1";
+    private static final String HASH = "a".repeat(64);
+
+    @Mock
+    IdempotencyRecordRepository repository;
+
+    IdempotencyStoreImpl store;
+
+    @BeforeEach
+    void setUp() {
+        store = new IdempotencyStoreImpl(repository, new SimpleMeterRegistry(),
+                Duration.ofHours(24), Duration.ofSeconds(30), 100, Duration.ofMinutes(15));
+        lenient().doThrow(new DataIntegrityViolationException("duplicate key"))
+                .when(repository).insertPending(eq(KEY), anyString(), any());
+    }
+
+    @Test
+    void storedResponseIsReplayedAndCached() {
+        when(repository.findById(KEY)).thenReturn(Optional.of(record(OffsetDateTime.now().minusMinutes(1), 201)));
+
+        assertThat(store.claim(KEY, HASH)).isInstanceOf(IdempotencyStore.Acquired.class);
+        IdempotencyStore.Claim first = store.confirm(KEY, true);
+        IdempotencyStore.Claim second = store.claim(KEY, HASH);
+
+        assertThat(first).isInstanceOfSatisfying(IdempotencyStore.Replay.class,
+                replay -> assertThat(replay.response().status()).isEqualTo(201));
+        assertThat(second).isInstanceOf(IdempotencyStore.Replay.class);
+        verify(repository, times(1)).findById(KEY);
+    }
+
+    @Test
+    void recentPendingRecordMeansRequestIsInProgressElsewhere() {
+        when(repository.findById(KEY)).thenReturn(Optional.of(record(OffsetDateTime.now().minusSeconds(1), null)));
+
+        store.claim(KEY, HASH);
+
+        assertThat(store.confirm(KEY, true)).isInstanceOf(IdempotencyStore.InProgress.class);
+    }
+
+    @Test
+    void stalePendingRecordIsTakenOverOnce() {
+        IdempotencyRecord stale = record(OffsetDateTime.now().minusMinutes(5), null);
+        when(repository.findById(KEY)).thenReturn(Optional.of(stale));
+        when(repository.restart(eq(KEY), eq(HASH), eq(stale.getCreatedAt()), any())).thenReturn(1, 0);
+
+        store.claim(KEY, HASH);
+        assertThat(store.confirm(KEY, true)).isInstanceOf(IdempotencyStore.Acquired.class);
+        store.release(KEY);
+        verify(repository).deletePending(KEY);
+        // другой экземпляр успел захватить ту же запись раньше
+        store.claim(KEY, HASH);
+        assertThat(store.confirm(KEY, true)).isInstanceOf(IdempotencyStore.InProgress.class);
+    }
+
+    @Test
+    void expiredRecordIsReusedEvenForAnotherRequest() {
+        IdempotencyRecord expired = record(OffsetDateTime.now().minusDays(2), 201);
+        when(repository.findById(KEY)).thenReturn(Optional.of(expired));
+        when(repository.restart(eq(KEY), eq("b".repeat(64)), eq(expired.getCreatedAt()), any())).thenReturn(1);
+
+        store.claim(KEY, "b".repeat(64));
+
+        assertThat(store.confirm(KEY, true)).isInstanceOf(IdempotencyStore.Acquired.class);
+    }
+
+    @Test
+    void anotherRequestWithLiveKeyIsMismatch() {
+        when(repository.findById(KEY)).thenReturn(Optional.of(record(OffsetDateTime.now(), 201)));
+
+        store.claim(KEY, "b".repeat(64));
+
+        assertThat(store.confirm(KEY, true)).isInstanceOf(IdempotencyStore.Mismatch.class);
+    }
+
+    @Test
+    void newKeyIsClaimedWithoutDatabase() {
+        assertThat(store.claim(KEY, HASH)).isInstanceOf(IdempotencyStore.Acquired.class);
+        // повтор до ответа ждет первый запрос на этом экземпляре
+        assertThat(store.claim(KEY, HASH)).isInstanceOf(IdempotencyStore.Wait.class);
+
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void responseIsWrittenAfterCompleteReturns() {
+        store.claim("waiter-1:key-2", HASH);
+        assertThat(store.confirm("waiter-1:key-2", true)).isNull();
+
+        store.complete("waiter-1:key-2", new IdempotencyStore.StoredResponse(201, "application/json", "{}".getBytes()));
+
+        assertThat(store.claim("waiter-1:key-2", HASH)).isInstanceOf(IdempotencyStore.Replay.class);
+        verify(repository, timeout(1000)).complete(eq("waiter-1:key-2"), eq(201), eq("application/json"), any(), any());
+    }
+
+    private IdempotencyRecord record(OffsetDateTime createdAt, Integer status) {
+        return IdempotencyRecord.builder()
+                .key(KEY)
+                .requestHash(HASH)
+                .status(status)
+                .contentType(status != null ? "application/json" : null)
+                .responseBody(status != null ? "{}".getBytes() : null)
+                .createdAt(createdAt)
+                .build();
+    }
+}
@@ -0,0 +1,249 @@
+package uz.billsplitter2.demo.unit.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import uz.billsplitter2.demo.dto.response.AnalyticsBucketDto;
+import uz.billsplitter2.demo.dto.response.AnalyticsDto;
+import uz.billsplitter2.demo.dto.response.BillHistoryDto;
+import uz.billsplitter2.demo.dto.response.BillHistoryPageDto;
+import uz.billsplitter2.demo.enums.BillStatus;
+import uz.billsplitter2.demo.exception.ValidationException;
+import uz.billsplitter2.demo.mapper.BillMapper;
+import uz.billsplitter2.demo.repository.AnalyticsBucketView;
+import uz.billsplitter2.demo.repository.BillRepository;
+import uz.billsplitter2.demo.repository.DailyBillRollupRepository;
+import uz.billsplitter2.demo.security.SecurityContext;
+import uz.billsplitter2.demo.service.impl.OrderHistoryServiceImpl;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OrderHistoryServiceImplTest {
+
+    private static final OffsetDateTime CLOSED_AT = OffsetDateTime.of(2025, 3, 1, 18, 30, 15, 123_456_000, ZoneOffset.UTC);
+
+    @Mock
+    BillRepository billRepository;
+
+    @Mock
+    DailyBillRollupRepository rollupRepository;
+
+    @Mock
+    BillMapper billMapper;
+
+    @Mock
+    SecurityContext securityContext;
+
+    @InjectMocks
+    OrderHistoryServiceImpl orderHistoryService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(orderHistoryService, "defaultPageSize", 50);
+        ReflectionTestUtils.setField(orderHistoryService, "maxPageSize", 200);
+        ReflectionTestUtils.setField(orderHistoryService, "analyticsZone", ZoneId.of("UTC"));
+    }
+
+    @Test
+    void getClosedBills_ReturnsCursorOfLastRowWhenMoreRowsExist() {
+        when(securityContext.isAdmin()).thenReturn(true);
+        List<BillHistoryDto> rows = rows(4);
+        when(billRepository.findHistoryFirstPage(eq(BillStatus.CLOSED), isNull(), isNull(), isNull(), eq(Limit.of(4))))
+                .thenReturn(rows);
+
+        BillHistoryPageDto page = orderHistoryService.getClosedBills(null, null, null, null, 3);
+
+        assertThat(page.items()).containsExactlyElementsOf(rows.subList(0, 3));
+        assertThat(page.nextCursor()).isNotBlank();
+
+        // курсор возвращает в запрос позицию последней строки страницы
+        when(billRepository.findHistoryPageAfter(any(), any(), any(), any(), any(), any(), any())).thenReturn(List.of());
+        orderHistoryService.getClosedBills(null, null, null, page.nextCursor(), 3);
+
+        verify(billRepository).findHistoryPageAfter(eq(BillStatus.CLOSED), isNull(), isNull(), isNull(),
+                eq(rows.get(2).closedAt()), eq(rows.get(2).id()), eq(Limit.of(4)));
+    }
+
+    @Test
+    void getClosedBills_LastPageHasNoCursor() {
+        when(securityContext.isAdmin()).thenReturn(true);
+        when(billRepository.findHistoryFirstPage(any(), any(), any(), any(), any())).thenReturn(rows(2));
+
+        BillHistoryPageDto page = orderHistoryService.getClosedBills(null, null, null, null, 3);
+
+        assertThat(page.items()).hasSize(2);
+        assertThat(page.nextCursor()).isNull();
+    }
+
+    @Test
+    void getClosedBills_CapsPageSizeAndRestrictsWaiterToOwnBills() {
+        UUID ownId = UUID.randomUUID();
+        when(securityContext.isAdmin()).thenReturn(false);
+        when(securityContext.getCurrentWaiterId()).thenReturn(ownId);
+        when(billRepository.findHistoryFirstPage(any(), any(), any(), any(), any())).thenReturn(List.of());
+
+        orderHistoryService.getClosedBills(null, null, UUID.randomUUID(), null, 10_000);
+
+        verify(billRepository).findHistoryFirstPage(eq(BillStatus.CLOSED), isNull(), isNull(), eq(ownId), eq(Limit.of(201)));
+    }
+
+    @Test
+    void getClosedBills_RejectsMalformedCursor() {
+        when(securityContext.isAdmin()).thenReturn(true);
+
+        assertThatThrownBy(() -> orderHistoryService.getClosedBills(null, null, null, "not-a-cursor", null))
+                .isInstanceOf(ValidationException.class)
+                .hasMessageContaining("cursor");
+    }
+
+    @Test
+    void getAnalytics_ComputesExactAveragesFromAggregates() {
+        when(securityContext.isAdmin()).thenReturn(true);
+        when(rollupRepository.aggregate(null, null)).thenReturn(bucket(null, null, 3, "100.00", "9.09"));
+        when(rollupRepository.aggregateByWaiter(null, null))
+                .thenReturn(List.of(bucket("w-1", "alice", 3, "100.00", "9.09")));
+
+        AnalyticsDto analytics = orderHistoryService.getAnalytics(null, null);
+
+        assertThat(analytics.totalClosedBills()).isEqualTo(3);
+        assertThat(analytics.averageBillAmount()).isEqualTo(new BigDecimal("33.33"));
+        assertThat(analytics.timeZone()).isEqualTo("UTC");
+        assertThat(analytics.byWaiter()).singleElement().satisfies(row -> {
+            assertThat(row.label()).isEqualTo("alice");
+            assertThat(row.averageBillAmount()).isEqualTo(new BigDecimal("33.33"));
+        });
+        verifyNoInteractions(billRepository);
+    }
+
+    @Test
+    void getAnalytics_ReturnsZeroAverageForEmptyPeriod() {
+        when(securityContext.isAdmin()).thenReturn(true);
+        when(rollupRepository.aggregate(any(), any())).thenReturn(bucket(null, null, 0, "0", "0"));
+
+        assertThat(orderHistoryService.getAnalytics(null, null).averageBillAmount()).isEqualTo(BigDecimal.ZERO);
+    }
+
+    @Test
+    void getAnalytics_ReadsWholeDaysFromRollupsAndEdgeDaysFromBills() {
+        OffsetDateTime start = OffsetDateTime.parse("2025-03-01T10:00:00Z");
+        OffsetDateTime end = OffsetDateTime.parse("2025-03-04T15:00:00Z");
+        LocalDate firstWhole = LocalDate.of(2025, 3, 2);
+        LocalDate lastWhole = LocalDate.of(2025, 3, 3);
+        OffsetDateTime headEnd = OffsetDateTime.parse("2025-03-01T23:59:59.999999Z");
+        OffsetDateTime tailStart = OffsetDateTime.parse("2025-03-04T00:00:00Z");
+
+        when(securityContext.isAdmin()).thenReturn(true);
+        when(rollupRepository.aggregate(firstWhole, lastWhole)).thenReturn(bucket(null, null, 4, "400.00", "40.00"));
+        when(rollupRepository.aggregateByWaiter(firstWhole, lastWhole)).thenReturn(List.of(
+                bucket("w-1", "alice", 3, "300.00", "30.00"),
+                bucket("w-2", "bob", 1, "100.00", "10.00")));
+        when(billRepository.aggregateClosedBills(BillStatus.CLOSED, start, headEnd)).thenReturn(bucket(null, null, 1, "50.00", "5.00"));
+        when(billRepository.aggregateClosedBills(BillStatus.CLOSED, tailStart, end)).thenReturn(bucket(null, null, 2, "250.00", "25.00"));
+        when(billRepository.aggregateClosedBillsByWaiter(BillStatus.CLOSED, start, headEnd)).thenReturn(List.of());
+        when(billRepository.aggregateClosedBillsByWaiter(BillStatus.CLOSED, tailStart, end))
+                .thenReturn(List.of(bucket("w-2", "bob", 2, "250.00", "25.00")));
+
+        AnalyticsDto analytics = orderHistoryService.getAnalytics(start, end);
+
+        assertThat(analytics.totalClosedBills()).isEqualTo(7);
+        assertThat(analytics.totalRevenue()).isEqualByComparingTo("700.00");
+        assertThat(analytics.byWaiter()).extracting(AnalyticsBucketDto::label, AnalyticsBucketDto::bills)
+                .containsExactly(tuple("bob", 3L), tuple("alice", 3L));
+    }
+
+    @Test
+    void getAnalytics_ReadsOnlyBillsForPeriodWithinOneDay() {
+        OffsetDateTime start = OffsetDateTime.parse("2025-03-01T10:00:00Z");
+        OffsetDateTime end = OffsetDateTime.parse("2025-03-01T15:00:00Z");
+
+        when(securityContext.isAdmin()).thenReturn(true);
+        when(billRepository.aggregateClosedBills(BillStatus.CLOSED, start, end)).thenReturn(bucket(null, null, 1, "10.00", "1.00"));
+
+        assertThat(orderHistoryService.getAnalytics(start, end).totalClosedBills()).isEqualTo(1);
+        verifyNoInteractions(rollupRepository);
+    }
+
+    @Test
+    void getAnalytics_StartingAtLocalMidnightHasNoHeadEdge() {
+        ReflectionTestUtils.setField(orderHistoryService, "analyticsZone", ZoneId.of("Asia/Tashkent"));
+        OffsetDateTime start = OffsetDateTime.parse("2025-03-01T00:00:00+05:00");
+        OffsetDateTime end = OffsetDateTime.parse("2025-03-03T00:00:00+05:00");
+        LocalDate firstWhole = LocalDate.of(2025, 3, 1);
+        LocalDate lastWhole = LocalDate.of(2025, 3, 2);
+
+        when(securityContext.isAdmin()).thenReturn(true);
+        when(rollupRepository.aggregate(firstWhole, lastWhole)).thenReturn(bucket(null, null, 2, "20.00", "2.00"));
+        when(billRepository.aggregateClosedBills(eq(BillStatus.CLOSED), any(), any())).thenReturn(bucket(null, null, 0, "0", "0"));
+
+        orderHistoryService.getAnalytics(start, end);
+
+        verify(billRepository).aggregateClosedBills(BillStatus.CLOSED, end, end);
+        verify(billRepository, times(1)).aggregateClosedBills(any(), any(), any());
+    }
+
+    private AnalyticsBucketView bucket(String key, String label, long bills, String revenue, String serviceFees) {
+        return new AnalyticsBucketView() {
+            @Override
+            public String getBucket() {
+                return key;
+            }
+
+            @Override
+            public String getLabel() {
+                return label;
+            }
+
+            @Override
+            public Long getBills() {
+                return bills;
+            }
+
+            @Override
+            public BigDecimal getRevenue() {
+                return new BigDecimal(revenue);
+            }
+
+            @Override
+            public BigDecimal getServiceFees() {
+                return new BigDecimal(serviceFees);
+            }
+        };
+    }
+
+    private List<BillHistoryDto> rows(int count) {
+        List<BillHistoryDto> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(BillHistoryDto.builder()
+                    .id(UUID.randomUUID())
+                    .billNumber("BILL-" + i)
+                    .status(BillStatus.CLOSED)
+                    .closedAt(CLOSED_AT.minusMinutes(i))
+                    .build());
+        }
+        return rows;
+    }
+}
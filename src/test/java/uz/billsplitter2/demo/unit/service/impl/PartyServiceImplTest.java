@@ -1,11 +1,17 @@
 package uz.billsplitter2.demo.unit.service.impl;
 
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 import uz.billsplitter2.demo.dto.request.CreatePartyDto;
 import uz.billsplitter2.demo.dto.response.PartyDto;
 import uz.billsplitter2.demo.entity.Party;
@@ -22,15 +28,20 @@ import uz.billsplitter2.demo.repository.BillRepository;
 import uz.billsplitter2.demo.repository.PartyRepository;
 import uz.billsplitter2.demo.repository.RestaurantTableRepository;
 import uz.billsplitter2.demo.security.SecurityContext;
+import uz.billsplitter2.demo.service.TableStatusRegistry;
 import uz.billsplitter2.demo.service.impl.PartyServiceImpl;
 
+import java.sql.SQLException;
 import java.util.Optional;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -52,6 +63,12 @@ class PartyServiceImplTest {
     @Mock
     SecurityContext securityContext;
 
+    @Mock
+    TableStatusRegistry tableStatusRegistry;
+
+    @Mock
+    TransactionTemplate transactionTemplate;
+
     @InjectMocks
     PartyServiceImpl partyService;
 
@@ -63,6 +80,11 @@ class PartyServiceImplTest {
 
     @BeforeEach
     void setUp() {
+        // каждая попытка - в своей транзакции шаблона
+        lenient().when(transactionTemplate.execute(anyCallback()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        ReflectionTestUtils.setField(partyService, "conflictAttempts", 3);
+
         UUID waiterId = UUID.randomUUID();
         UUID tableId = UUID.randomUUID();
         UUID partyId = UUID.randomUUID();
@@ -107,55 +129,59 @@ class PartyServiceImplTest {
     @Test
     void createParty_Success() {
         when(securityContext.getCurrentWaiter()).thenReturn(waiter);
+        when(tableRepository.updateStatusIfDifferent(eq(table.getId()), eq(TableStatus.OCCUPIED), any())).thenReturn(1);
         when(tableRepository.findById(table.getId())).thenReturn(Optional.of(table));
-        when(partyRepository.findByTableIdAndStatus(table.getId(), PartyStatus.ACTIVE)).thenReturn(Optional.empty());
-        when(partyRepository.save(any(Party.class))).thenReturn(party);
+        when(partyRepository.saveAndFlush(any(Party.class))).thenReturn(party);
         when(partyMapper.toDto(party)).thenReturn(partyDto);
 
         PartyDto result = partyService.createParty(createDto);
 
         assertThat(result).isNotNull();
         assertThat(result.status()).isEqualTo(PartyStatus.ACTIVE);
-        verify(tableRepository).save(table);
-        assertThat(table.getStatus()).isEqualTo(TableStatus.OCCUPIED);
+        verify(tableStatusRegistry).tableChanged(table);
     }
 
     @Test
     void createParty_TableNotFound_ThrowsResourceNotFoundException() {
         when(securityContext.getCurrentWaiter()).thenReturn(waiter);
+        when(tableRepository.updateStatusIfDifferent(eq(table.getId()), eq(TableStatus.OCCUPIED), any())).thenReturn(0);
         when(tableRepository.findById(table.getId())).thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> partyService.createParty(createDto))
                 .isInstanceOf(ResourceNotFoundException.class)
                 .hasMessageContaining("not found");
 
-        verify(partyRepository, never()).save(any());
+        verify(partyRepository, never()).saveAndFlush(any());
     }
 
     @Test
     void createParty_TableOccupied_ThrowsBusinessLogicException() {
         table.setStatus(TableStatus.OCCUPIED);
         when(securityContext.getCurrentWaiter()).thenReturn(waiter);
+        when(tableRepository.updateStatusIfDifferent(eq(table.getId()), eq(TableStatus.OCCUPIED), any())).thenReturn(0);
         when(tableRepository.findById(table.getId())).thenReturn(Optional.of(table));
 
         assertThatThrownBy(() -> partyService.createParty(createDto))
                 .isInstanceOf(BusinessLogicException.class)
                 .hasMessageContaining("occupied");
 
-        verify(partyRepository, never()).save(any());
+        verify(partyRepository, never()).saveAndFlush(any());
     }
 
     @Test
     void createParty_ActivePartyExists_ThrowsBusinessLogicException() {
         when(securityContext.getCurrentWaiter()).thenReturn(waiter);
+        when(tableRepository.updateStatusIfDifferent(eq(table.getId()), eq(TableStatus.OCCUPIED), any())).thenReturn(1);
         when(tableRepository.findById(table.getId())).thenReturn(Optional.of(table));
-        when(partyRepository.findByTableIdAndStatus(table.getId(), PartyStatus.ACTIVE)).thenReturn(Optional.of(party));
+        when(partyRepository.saveAndFlush(any(Party.class)))
+                .thenThrow(new DataIntegrityViolationException("duplicate key", new ConstraintViolationException(
+                        "duplicate key value violates unique constraint", new SQLException(), "idx_parties_active_table")));
 
         assertThatThrownBy(() -> partyService.createParty(createDto))
                 .isInstanceOf(BusinessLogicException.class)
                 .hasMessageContaining("already has");
 
-        verify(partyRepository, never()).save(any());
+        verify(tableStatusRegistry, never()).tableChanged(any());
     }
 
     @Test
@@ -171,10 +197,57 @@ class PartyServiceImplTest {
         assertThat(result).isNotNull();
         verify(partyRepository).save(party);
         verify(tableRepository).save(table);
+        verify(tableStatusRegistry).tableChanged(table);
         assertThat(party.getStatus()).isEqualTo(PartyStatus.CLOSED);
         assertThat(table.getStatus()).isEqualTo(TableStatus.AVAILABLE);
     }
 
+    @Test
+    void createParty_OtherIntegrityViolation_IsNotReportedAsOccupiedTable() {
+        when(securityContext.getCurrentWaiter()).thenReturn(waiter);
+        when(tableRepository.updateStatusIfDifferent(eq(table.getId()), eq(TableStatus.OCCUPIED), any())).thenReturn(1);
+        when(tableRepository.findById(table.getId())).thenReturn(Optional.of(table));
+        DataIntegrityViolationException notNull = new DataIntegrityViolationException("not-null",
+                new ConstraintViolationException("null value in column", new SQLException(), "parties_waiter_id_not_null"));
+        when(partyRepository.saveAndFlush(any(Party.class))).thenThrow(notNull);
+
+        assertThatThrownBy(() -> partyService.createParty(createDto)).isSameAs(notNull);
+    }
+
+    @Test
+    void closeParty_VersionConflict_IsRetriedInNewTransaction() {
+        // вторая попытка перечитывает компанию в новом persistence context
+        Party reloaded = Party.builder().table(table).waiter(waiter).status(PartyStatus.ACTIVE).build();
+        ReflectionTestUtils.setField(reloaded, "id", party.getId());
+        when(partyRepository.findById(party.getId())).thenReturn(Optional.of(party)).thenReturn(Optional.of(reloaded));
+        when(securityContext.isAdmin()).thenReturn(true);
+        when(billRepository.findByPartyIdAndStatus(party.getId(), BillStatus.OPEN)).thenReturn(Optional.empty());
+        when(tableRepository.save(table))
+                .thenThrow(new ObjectOptimisticLockingFailureException(RestaurantTable.class, table.getId()))
+                .thenReturn(table);
+        when(partyMapper.toDto(reloaded)).thenReturn(partyDto);
+
+        assertThat(partyService.closeParty(party.getId())).isEqualTo(partyDto);
+        verify(transactionTemplate, times(2)).execute(anyCallback());
+        assertThat(reloaded.getStatus()).isEqualTo(PartyStatus.CLOSED);
+    }
+
+    @Test
+    void closeParty_PersistentConflict_GivesUpAfterConfiguredAttempts() {
+        when(partyRepository.findById(party.getId())).thenAnswer(invocation -> {
+            Party fresh = Party.builder().table(table).waiter(waiter).status(PartyStatus.ACTIVE).build();
+            ReflectionTestUtils.setField(fresh, "id", party.getId());
+            return Optional.of(fresh);
+        });
+        when(securityContext.isAdmin()).thenReturn(true);
+        when(billRepository.findByPartyIdAndStatus(party.getId(), BillStatus.OPEN)).thenReturn(Optional.empty());
+        when(tableRepository.save(table)).thenThrow(new ObjectOptimisticLockingFailureException(RestaurantTable.class, table.getId()));
+
+        assertThatThrownBy(() -> partyService.closeParty(party.getId()))
+                .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+        verify(transactionTemplate, times(3)).execute(anyCallback());
+    }
+
     @Test
     void closeParty_WithOpenBill_ThrowsBusinessLogicException() {
         when(partyRepository.findById(party.getId())).thenReturn(Optional.of(party));
@@ -203,4 +276,9 @@ class PartyServiceImplTest {
 
         verify(billRepository, never()).findByPartyIdAndStatus(any(), any());
     }
+
+    // типизированный матчер колбэка шаблона, без сырого TransactionCallback
+    private static TransactionCallback<Object> anyCallback() {
+        return any();
+    }
 }
@@ -0,0 +1,83 @@
+package uz.billsplitter2.demo.unit.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import uz.billsplitter2.demo.service.impl.RemainderAllocator;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// выбор k наибольших против прежней полной сортировки (дробная часть по убыванию, затем исходный порядок)
+class RemainderAllocatorTest {
+
+    private static final int ITERATIONS = 20_000;
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3, 7, 16, 100})
+    void matchesSortBasedAllocationOnRandomShares(int maxCount) {
+        Random random = new Random(maxCount);
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            int count = 1 + random.nextInt(maxCount);
+            // узкий диапазон дробных частей дает много равных значений
+            int residueBound = random.nextBoolean() ? 3 : 1_000_000;
+            long[] residues = new long[count];
+            for (int j = 0; j < count; j++) {
+                residues[j] = random.nextInt(residueBound);
+            }
+            long remainder = random.nextInt(3 * count + 1) - (long) (3 * count / 2);
+
+            assertThat(RemainderAllocator.allocate(residues.clone(), remainder))
+                    .as("residues %s, remainder %d", Arrays.toString(residues), remainder)
+                    .containsExactly(sortBased(residues, remainder));
+        }
+    }
+
+    @Test
+    void tiesGoToEarlierShares() {
+        assertThat(RemainderAllocator.allocate(new long[]{5, 9, 5, 9, 5}, 3)).containsExactly(1, 1, 0, 1, 0);
+        assertThat(RemainderAllocator.allocate(new long[]{5, 9, 5, 9, 5}, -3)).containsExactly(-1, -1, 0, -1, 0);
+    }
+
+    @Test
+    void remainderLargerThanShareCountGoesAroundInFullRounds() {
+        assertThat(RemainderAllocator.allocate(new long[]{1, 3, 2}, 7)).containsExactly(2, 3, 2);
+        assertThat(RemainderAllocator.allocate(new long[]{42}, -5)).containsExactly(-5);
+    }
+
+    @Test
+    void noRemainderOrNoSharesGivesZeroDeltas() {
+        assertThat(RemainderAllocator.allocate(new long[]{1, 2}, 0)).containsExactly(0, 0);
+        assertThat(RemainderAllocator.allocate(new long[0], 3)).isEmpty();
+    }
+
+    @Test
+    void rejectsResidueOutsidePackedRange() {
+        assertThatThrownBy(() -> RemainderAllocator.allocate(new long[]{1, -1}, 1))
+                .isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> RemainderAllocator.allocate(new long[]{1, Long.MAX_VALUE >> 1}, 1))
+                .isInstanceOf(ArithmeticException.class);
+    }
+
+    // прежнее правило: полная сортировка и раздача по кругу i % n
+    private long[] sortBased(long[] residues, long remainder) {
+        List<Integer> order = IntStream.range(0, residues.length).boxed()
+                .sorted(Comparator.<Integer>comparingLong(i -> residues[i]).reversed()
+                        .thenComparingInt(i -> i))
+                .toList();
+
+        long[] deltas = new long[residues.length];
+        long step = Long.signum(remainder);
+        for (int i = 0; i < Math.abs(remainder); i++) {
+            deltas[order.get(i % order.size())] += step;
+        }
+        return deltas;
+    }
+}
@@ -0,0 +1,97 @@
+package uz.billsplitter2.demo.unit.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import uz.billsplitter2.demo.repository.BillRepository;
+import uz.billsplitter2.demo.service.impl.SequenceBillNumberGenerator;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SequenceBillNumberGeneratorTest {
+
+    @Mock
+    BillRepository billRepository;
+
+    @Test
+    void handsOutWholeBlockBeforeNextSequenceCall() {
+        when(billRepository.nextBillNumberBlock()).thenReturn(1L, 1001L);
+        SequenceBillNumberGenerator generator = new SequenceBillNumberGenerator(billRepository, clock("2026-10-18T09:30:00Z"));
+
+        List<String> numbers = new ArrayList<>();
+        for (int i = 0; i < SequenceBillNumberGenerator.BLOCK_SIZE + 1; i++) {
+            numbers.add(generator.next());
+        }
+
+        verify(billRepository, times(2)).nextBillNumberBlock();
+        assertThat(numbers.getFirst()).isEqualTo("BILL-261018-00000001");
+        assertThat(numbers.get(SequenceBillNumberGenerator.BLOCK_SIZE - 1)).isEqualTo("BILL-261018-00000100");
+        // следующий блок взят другим экземпляром после 101..1000
+        assertThat(numbers.getLast()).isEqualTo("BILL-261018-00001001");
+        assertThat(numbers).isSorted().doesNotHaveDuplicates();
+    }
+
+    @Test
+    void dayPrefixFollowsClockAndNumbersStillSort() {
+        when(billRepository.nextBillNumberBlock()).thenReturn(123_456_701L);
+        MutableClock clock = new MutableClock(Instant.parse("2026-10-18T23:59:59Z"));
+        SequenceBillNumberGenerator generator = new SequenceBillNumberGenerator(billRepository, clock);
+
+        String lastOfDay = generator.next();
+        clock.instant = Instant.parse("2026-10-19T00:00:01Z");
+        String firstOfNextDay = generator.next();
+
+        assertThat(lastOfDay).isEqualTo("BILL-261018-123456701");
+        assertThat(firstOfNextDay).isEqualTo("BILL-261019-123456702");
+        // новые номера сортируются после номеров прежнего формата
+        assertThat(List.of("BILL-20261018235959-1A2B3C4D", lastOfDay, firstOfNextDay)).isSorted();
+    }
+
+    @Test
+    void dayStartsInClockZone() {
+        when(billRepository.nextBillNumberBlock()).thenReturn(1L);
+        // 21:30 UTC - уже следующий день в Ташкенте (UTC+5)
+        Clock tashkent = Clock.fixed(Instant.parse("2026-10-18T21:30:00Z"), ZoneId.of("Asia/Tashkent"));
+
+        assertThat(new SequenceBillNumberGenerator(billRepository, tashkent).next()).isEqualTo("BILL-261019-00000001");
+    }
+
+    private static Clock clock(String instant) {
+        return Clock.fixed(Instant.parse(instant), ZoneOffset.UTC);
+    }
+
+    private static final class MutableClock extends Clock {
+        Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -9,6 +9,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import uz.billsplitter2.demo.dto.request.CreateTableDto;
 import uz.billsplitter2.demo.dto.request.UpdateTableDto;
 import uz.billsplitter2.demo.dto.response.TableDto;
+import uz.billsplitter2.demo.dto.response.TableStatusSnapshotDto;
 import uz.billsplitter2.demo.entity.RestaurantTable;
 import uz.billsplitter2.demo.enums.TableStatus;
 import uz.billsplitter2.demo.exception.BusinessLogicException;
@@ -16,8 +17,10 @@ import uz.billsplitter2.demo.exception.ResourceNotFoundException;
 import uz.billsplitter2.demo.exception.ValidationException;
 import uz.billsplitter2.demo.mapper.TableMapper;
 import uz.billsplitter2.demo.repository.RestaurantTableRepository;
+import uz.billsplitter2.demo.service.TableStatusRegistry;
 import uz.billsplitter2.demo.service.impl.TableServiceImpl;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -26,6 +29,7 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -37,6 +41,9 @@ class TableServiceImplTest {
     @Mock
     TableMapper tableMapper;
 
+    @Mock
+    TableStatusRegistry tableStatusRegistry;
+
     @InjectMocks
     TableServiceImpl tableService;
 
@@ -61,6 +68,7 @@ class TableServiceImplTest {
                 "T1",
                 4,
                 TableStatus.AVAILABLE,
+                0L,
                 null,
                 null
         );
@@ -78,6 +86,7 @@ class TableServiceImplTest {
         assertThat(result).isNotNull();
         assertThat(result.tableNumber()).isEqualTo("T1");
         verify(tableRepository).save(any(RestaurantTable.class));
+        verify(tableStatusRegistry).tableChanged(table);
     }
 
     @Test
@@ -124,6 +133,7 @@ class TableServiceImplTest {
         assertThat(result).isNotNull();
         verify(tableMapper).updateEntity(updateDto, table);
         verify(tableRepository).save(table);
+        verify(tableStatusRegistry).tableChanged(table);
     }
 
     @Test
@@ -133,6 +143,7 @@ class TableServiceImplTest {
         tableService.deleteTable(table.getId());
 
         verify(tableRepository).delete(table);
+        verify(tableStatusRegistry).tableRemoved(table.getId());
     }
 
     @Test
@@ -145,5 +156,16 @@ class TableServiceImplTest {
                 .hasMessageContaining("occupied");
 
         verify(tableRepository, never()).delete(any());
+        verify(tableStatusRegistry, never()).tableRemoved(any());
+    }
+
+    @Test
+    void getTablesByStatus_ReadsRegistryWithoutRepository() {
+        TableDto occupied = new TableDto(UUID.randomUUID(), "T2", 2, TableStatus.OCCUPIED, 0L, null, null);
+        when(tableStatusRegistry.snapshot()).thenReturn(new TableStatusSnapshotDto(7, List.of(tableDto, occupied)));
+
+        assertThat(tableService.getAllTables()).containsExactly(tableDto, occupied);
+        assertThat(tableService.getTablesByStatus(TableStatus.OCCUPIED)).containsExactly(occupied);
+        verifyNoInteractions(tableRepository);
     }
 }
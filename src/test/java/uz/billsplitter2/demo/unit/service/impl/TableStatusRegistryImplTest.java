@@ -0,0 +1,143 @@
+package uz.billsplitter2.demo.unit.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import uz.billsplitter2.demo.dto.response.TableStatusEventDto;
+import uz.billsplitter2.demo.dto.response.TableStatusSnapshotDto;
+import uz.billsplitter2.demo.entity.RestaurantTable;
+import uz.billsplitter2.demo.enums.TableStatus;
+import uz.billsplitter2.demo.mapper.TableMapperImpl;
+import uz.billsplitter2.demo.repository.RestaurantTableRepository;
+import uz.billsplitter2.demo.service.impl.TableStatusRegistryImpl;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TableStatusRegistryImplTest {
+
+    @Mock
+    RestaurantTableRepository tableRepository;
+
+    TableStatusRegistryImpl registry;
+
+    RestaurantTable first;
+    RestaurantTable second;
+
+    @BeforeEach
+    void setUp() {
+        registry = new TableStatusRegistryImpl(tableRepository, new TableMapperImpl(),
+                new ObjectMapper().findAndRegisterModules(), Duration.ofMinutes(1), Duration.ofSeconds(15), 2, 16);
+        first = table("T1");
+        second = table("T2");
+        when(tableRepository.findAll()).thenReturn(List.of(first, second));
+    }
+
+    @Test
+    void snapshotIsLoadedOnceAndReadFromMemory() {
+        TableStatusSnapshotDto snapshot = registry.snapshot();
+        registry.snapshot();
+
+        assertThat(snapshot.tables()).extracting("tableNumber").containsExactly("T1", "T2");
+        verify(tableRepository, times(1)).findAll();
+    }
+
+    @Test
+    void changeInsideTransactionIsAppliedAfterCommit() {
+        long loaded = registry.snapshot().version();
+        first.setStatus(TableStatus.OCCUPIED);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            registry.tableChanged(first);
+            assertThat(registry.snapshot().version()).isEqualTo(loaded);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        TableStatusSnapshotDto snapshot = registry.snapshot();
+        assertThat(snapshot.version()).isEqualTo(loaded + 1);
+        assertThat(snapshot.tables()).extracting("status").containsExactly(TableStatus.OCCUPIED, TableStatus.AVAILABLE);
+    }
+
+    @Test
+    void removedTableLeavesSnapshotWithDeletionEvent() {
+        long loaded = registry.snapshot().version();
+
+        registry.tableRemoved(second.getId());
+        registry.tableRemoved(second.getId());
+
+        assertThat(registry.snapshot().tables()).extracting("tableNumber").containsExactly("T1");
+        assertThat(registry.eventsSince(loaded)).containsExactly(new TableStatusEventDto(loaded + 1, second.getId(), null));
+    }
+
+    @Test
+    void eventsSinceReplaysBufferedChangesOrRequestsSnapshot() {
+        long loaded = registry.snapshot().version();
+        registry.tableChanged(first);
+        registry.tableChanged(second);
+        registry.tableChanged(first);
+
+        assertThat(registry.eventsSince(loaded + 1)).extracting(TableStatusEventDto::version)
+                .containsExactly(loaded + 2, loaded + 3);
+        assertThat(registry.eventsSince(loaded + 3)).isEmpty();
+        // изменение loaded + 1 вытеснено из буфера на 2 события
+        assertThat(registry.eventsSince(loaded)).isNull();
+        // версия больше текущей - с прошлого запуска приложения
+        assertThat(registry.eventsSince(loaded + 10)).isNull();
+    }
+
+    @Test
+    void olderTableVersionCommittedLaterDoesNotOverwriteNewer() {
+        long loaded = registry.snapshot().version();
+        RestaurantTable seated = copy(first, 2L, TableStatus.OCCUPIED);
+        RestaurantTable renamed = copy(first, 1L, TableStatus.AVAILABLE);
+
+        // afterCommit рассадки выполнился раньше afterCommit прежнего изменения стола
+        registry.tableChanged(seated);
+        registry.tableChanged(renamed);
+
+        TableStatusSnapshotDto snapshot = registry.snapshot();
+        assertThat(snapshot.version()).isEqualTo(loaded + 1);
+        assertThat(snapshot.tables()).extracting("status").containsExactly(TableStatus.OCCUPIED, TableStatus.AVAILABLE);
+    }
+
+    @Test
+    void changeArrivingAfterRemovalDoesNotRestoreTable() {
+        registry.snapshot();
+
+        registry.tableRemoved(second.getId());
+        registry.tableChanged(second);
+
+        assertThat(registry.snapshot().tables()).extracting("tableNumber").containsExactly("T1");
+    }
+
+    private RestaurantTable copy(RestaurantTable source, long version, TableStatus status) {
+        RestaurantTable table = RestaurantTable.builder()
+                .tableNumber(source.getTableNumber()).capacity(source.getCapacity()).status(status).build();
+        ReflectionTestUtils.setField(table, "id", source.getId());
+        ReflectionTestUtils.setField(table, "version", version);
+        return table;
+    }
+
+    private RestaurantTable table(String number) {
+        RestaurantTable table = RestaurantTable.builder().tableNumber(number).capacity(4).build();
+        ReflectionTestUtils.setField(table, "id", UUID.randomUUID());
+        return table;
+    }
+}
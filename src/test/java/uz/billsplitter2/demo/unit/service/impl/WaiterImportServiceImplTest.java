@@ -0,0 +1,164 @@
+package uz.billsplitter2.demo.unit.service.impl;
+
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import uz.billsplitter2.demo.dto.request.CreateWaiterDto;
+import uz.billsplitter2.demo.dto.response.WaiterDto;
+import uz.billsplitter2.demo.dto.response.WaiterImportEntryDto;
+import uz.billsplitter2.demo.enums.WaiterRole;
+import uz.billsplitter2.demo.exception.ValidationException;
+import uz.billsplitter2.demo.service.WaiterService;
+import uz.billsplitter2.demo.service.impl.WaiterImportServiceImpl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WaiterImportServiceImplTest {
+
+    private static final String PATH = "/api/v1/admin/waiters/import";
+    private static final int PARALLELISM = 3;
+
+    ValidatorFactory validatorFactory;
+    ThreadPoolTaskExecutor executor;
+    WaiterService waiterService;
+    WaiterImportServiceImpl importService;
+
+    @BeforeEach
+    void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(PARALLELISM);
+        executor.setMaxPoolSize(PARALLELISM);
+        executor.initialize();
+
+        waiterService = mock(WaiterService.class);
+        importService = new WaiterImportServiceImpl(waiterService, validatorFactory.getValidator(), executor);
+        ReflectionTestUtils.setField(importService, "maxImportSize", 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+        validatorFactory.close();
+    }
+
+    @Test
+    void createsWaitersWithBoundedParallelismInRequestOrder() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        when(waiterService.createWaiter(any())).thenAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(10);
+            inFlight.decrementAndGet();
+            return created(invocation.getArgument(0));
+        });
+
+        List<CreateWaiterDto> waiters = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            waiters.add(waiter("waiter" + i));
+        }
+
+        List<WaiterImportEntryDto> results = importService.importWaiters(waiters, PATH);
+
+        assertThat(results).hasSize(30);
+        for (int i = 0; i < 30; i++) {
+            assertThat(results.get(i).index()).isEqualTo(i);
+            assertThat(results.get(i).username()).isEqualTo("waiter" + i);
+            assertThat(results.get(i).result().username()).isEqualTo("waiter" + i);
+            assertThat(results.get(i).error()).isNull();
+        }
+        assertThat(maxInFlight.get()).isBetween(1, PARALLELISM);
+    }
+
+    @Test
+    void reportsErrorsPerRowWithoutFailingImport() {
+        when(waiterService.createWaiter(any())).thenAnswer(invocation -> created(invocation.getArgument(0)));
+        doThrow(new ValidationException("Username already exists: taken"))
+                .when(waiterService).createWaiter(argThat(dto -> dto.username().equals("taken")));
+
+        List<CreateWaiterDto> waiters = Arrays.asList(
+                waiter("alice"),
+                waiter("taken"),
+                null,
+                CreateWaiterDto.builder().username("bob").email("not-an-email").password("secret123").role(WaiterRole.WAITER).build(),
+                waiter("alice")
+        );
+
+        List<WaiterImportEntryDto> results = importService.importWaiters(waiters, PATH);
+
+        assertThat(results.get(0).result().username()).isEqualTo("alice");
+        assertThat(results.get(1).error().message()).contains("already exists");
+        assertThat(results.get(1).error().path()).isEqualTo(PATH);
+        assertThat(results.get(2).error().message()).contains("malformed");
+        assertThat(results.get(3).error().code()).isEqualTo("VALIDATION_ERROR");
+        assertThat(results.get(3).error().message()).contains("email");
+        assertThat(results.get(4).error().message()).contains("Duplicate username");
+        verify(waiterService, times(2)).createWaiter(any());
+    }
+
+    @Test
+    void unexpectedErrorIsReportedAsInternal() {
+        when(waiterService.createWaiter(any())).thenThrow(new IllegalStateException("boom"));
+
+        List<WaiterImportEntryDto> results = importService.importWaiters(List.of(waiter("alice")), PATH);
+
+        assertThat(results.get(0).error().code()).isEqualTo("INTERNAL_ERROR");
+        assertThat(results.get(0).error().status()).isEqualTo(500);
+    }
+
+    @Test
+    void rejectsEmptyImport() {
+        assertThatThrownBy(() -> importService.importWaiters(List.of(), PATH))
+                .isInstanceOf(ValidationException.class)
+                .hasMessageContaining("at least one waiter");
+    }
+
+    @Test
+    void rejectsOversizedImport() {
+        List<CreateWaiterDto> waiters = new ArrayList<>();
+        for (int i = 0; i < 101; i++) {
+            waiters.add(waiter("waiter" + i));
+        }
+
+        assertThatThrownBy(() -> importService.importWaiters(waiters, PATH))
+                .isInstanceOf(ValidationException.class)
+                .hasMessageContaining("limit of 100");
+    }
+
+    private CreateWaiterDto waiter(String username) {
+        return CreateWaiterDto.builder()
+                .username(username)
+                .email(username + "@example.com")
+                .password("secret123")
+                .role(WaiterRole.WAITER)
+                .build();
+    }
+
+    private WaiterDto created(CreateWaiterDto dto) {
+        return WaiterDto.builder()
+                .id(UUID.randomUUID())
+                .username(dto.username())
+                .email(dto.email())
+                .role(dto.role())
+                .active(true)
+                .build();
+    }
+}